@@ -0,0 +1,42 @@
+package com.serphacker.serposcope.benchmarks;
+
+import com.serphacker.serposcope.task.google.GoogleTaskLoadTest;
+import java.util.Arrays;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * main class of benchmarks.jar, accepts the jmh command line and always attaches the gc profiler
+ * so every suite reports its allocation rate (gc.alloc.rate.norm = bytes allocated per operation).
+ *
+ * java -jar benchmarks/target/benchmarks.jar [jmh options] [benchmark regexp]
+ *
+ * or runs the offline load test of a google task, see {@link GoogleTaskLoadTest}
+ *
+ * java -jar benchmarks/target/benchmarks.jar loadtest [--option=value ...]
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "loadtest".equals(args[0])) {
+            GoogleTaskLoadTest.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (cli.getProfilers().stream().noneMatch((profiler) -> GCProfiler.class.getName().equals(profiler.getKlass()))) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.serphacker.serposcope.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * captured serps of the scraper tests, bundled in the benchmarks jar
+ */
+public class Fixtures {
+
+    public final static String ROOT = "/google";
+
+    /**
+     * raw content of every captured serp, keyed by resource path, sorted
+     */
+    public static Map<String, byte[]> serps() {
+        return load((path) -> !path.endsWith(".res"));
+    }
+
+    /**
+     * raw content of the captured serps that have an expected top 10 (.res file), keyed by resource path, sorted
+     */
+    public static Map<String, byte[]> rankedSerps() {
+        Map<String, byte[]> serps = serps();
+        Map<String, byte[]> results = load((path) -> path.endsWith(".res"));
+        serps.keySet().removeIf((path) -> !results.containsKey(path + ".res"));
+        return serps;
+    }
+
+    /**
+     * organic urls of every captured top 10 (.res files), in rank order
+     */
+    public static List<String> urls() {
+        List<String> urls = new ArrayList<>();
+        for (byte[] content : load((path) -> path.endsWith(".res")).values()) {
+            for (String line : new String(content, StandardCharsets.UTF_8).split("\n")) {
+                if (!line.trim().isEmpty()) {
+                    urls.add(line.trim());
+                }
+            }
+        }
+        return urls;
+    }
+
+    protected static Map<String, byte[]> load(java.util.function.Predicate<String> filter) {
+        URL url = Fixtures.class.getResource(ROOT);
+        if (url == null) {
+            throw new IllegalStateException("fixtures not found in the classpath : " + ROOT);
+        }
+
+        try {
+            URI uri = url.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                try (FileSystem fs = FileSystems.newFileSystem(uri, Collections.emptyMap())) {
+                    return read(fs.getPath(ROOT), filter);
+                }
+            }
+            return read(Paths.get(uri), filter);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    protected static Map<String, byte[]> read(Path root, java.util.function.Predicate<String> filter) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream
+                .filter(Files::isRegularFile)
+                .filter((path) -> filter.test(path.toString()))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        Map<String, byte[]> contents = new LinkedHashMap<>();
+        for (Path file : files) {
+            contents.put(root.relativize(file).toString(), Files.readAllBytes(file));
+        }
+        return contents;
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.serphacker.serposcope.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * local stand-in of the 2captcha api (in.php and res.php) for load tests, every captcha is solved solveMS after
+ * its submission with a response accepted by {@link LocalGoogleServer}
+ */
+public class LocalCaptchaProvider implements Closeable {
+
+    public final static String RESPONSE_PREFIX = "local-response-";
+
+    final long solveMS;
+    final HttpServer server;
+    final ExecutorService executor;
+    final Map<String, Long> readyAt = new ConcurrentHashMap<>();
+
+    final AtomicLong ids = new AtomicLong();
+    final AtomicLong polls = new AtomicLong();
+
+    public LocalCaptchaProvider(long solveMS) throws IOException {
+        this.solveMS = solveMS;
+        executor = Executors.newCachedThreadPool((runnable) -> {
+            Thread thread = new Thread(runnable, "local-captcha");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.setExecutor(executor);
+        // the solver joins its api url and the script names with an extra slash
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * api url of the solver, http://127.0.0.1:port/
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    protected void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> params = LocalGoogleServer.parseForm(exchange.getRequestURI().getRawQuery());
+
+        if (path.endsWith("/in.php")) {
+            LocalGoogleServer.readBody(exchange);
+            String id = Long.toString(ids.incrementAndGet());
+            readyAt.put(id, System.currentTimeMillis() + solveMS);
+            LocalGoogleServer.respond(exchange, 200, null, "OK|" + id);
+            return;
+        }
+
+        if (path.endsWith("/res.php")) {
+            String action = params.get("action");
+            if ("getbalance".equals(action)) {
+                LocalGoogleServer.respond(exchange, 200, null, "100.0");
+                return;
+            }
+            if ("get".equals(action) && params.containsKey("ids")) {
+                polls.incrementAndGet();
+                List<String> answers = new ArrayList<>();
+                for (String id : params.get("ids").split(",")) {
+                    answers.add(answer(id));
+                }
+                LocalGoogleServer.respond(exchange, 200, null, String.join("|", answers));
+                return;
+            }
+            if ("get".equals(action) && params.containsKey("id")) {
+                polls.incrementAndGet();
+                String answer = answer(params.get("id"));
+                LocalGoogleServer.respond(exchange, 200, null, answer.startsWith(RESPONSE_PREFIX) ? "OK|" + answer : answer);
+                return;
+            }
+        }
+
+        LocalGoogleServer.respond(exchange, 404, null, "ERROR_WRONG_ACTION");
+    }
+
+    protected String answer(String id) {
+        Long ready = readyAt.get(id);
+        if (ready == null) {
+            return "ERROR_WRONG_CAPTCHA_ID";
+        }
+        if (System.currentTimeMillis() < ready) {
+            return "CAPCHA_NOT_READY";
+        }
+        readyAt.remove(id);
+        return RESPONSE_PREFIX + id;
+    }
+
+    /**
+     * captchas submitted to in.php
+     */
+    public long getSubmitted() {
+        return ids.get();
+    }
+
+    /**
+     * res.php requests, one per batch of polled captchas
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
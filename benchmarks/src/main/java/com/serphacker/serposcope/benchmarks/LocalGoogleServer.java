@@ -0,0 +1,230 @@
+package com.serphacker.serposcope.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * local stand-in of www.google.com serving captured serps, for load tests.
+ *
+ * /search answers after latencyMS with a captured serp picked from its query string, or with a 403 (banRate) or
+ * a 302 to a recaptcha form (captchaRate). A query sent to the captcha form stays blocked until the form is posted
+ * with a response of {@link LocalCaptchaProvider}.
+ * Pages link to the https://www.google.com host, {@link LocalScrapClient} sends them here.
+ */
+public class LocalGoogleServer implements Closeable {
+
+    public final static String HOST = "https://www.google.com";
+
+    final byte[][] serps;
+    final long latencyMS;
+    final double captchaRate;
+    final double banRate;
+
+    final HttpServer server;
+    final ExecutorService executor;
+    final Set<String> blocked = ConcurrentHashMap.newKeySet();
+
+    final AtomicLong served = new AtomicLong();
+    final AtomicLong captchas = new AtomicLong();
+    final AtomicLong solved = new AtomicLong();
+    final AtomicLong bans = new AtomicLong();
+
+    public LocalGoogleServer(byte[][] serps, long latencyMS, double captchaRate, double banRate) throws IOException {
+        if (serps.length == 0) {
+            throw new IllegalArgumentException("no serp to serve");
+        }
+        this.serps = serps;
+        this.latencyMS = latencyMS;
+        this.captchaRate = captchaRate;
+        this.banRate = banRate;
+
+        executor = Executors.newCachedThreadPool((runnable) -> {
+            Thread thread = new Thread(runnable, "local-google");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.setExecutor(executor);
+        server.createContext("/search", this::search);
+        server.createContext("/sorry/index", this::sorry);
+        server.start();
+    }
+
+    /**
+     * http://127.0.0.1:port
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    protected void search(HttpExchange exchange) throws IOException {
+        try {
+            String query = exchange.getRequestURI().getRawQuery();
+            query = query == null ? "" : query;
+
+            if (latencyMS > 0) {
+                Thread.sleep(latencyMS);
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (blocked.contains(query) || random.nextDouble() < captchaRate) {
+                if (blocked.add(query)) {
+                    captchas.incrementAndGet();
+                }
+                String continueUrl = HOST + "/search?" + query;
+                respond(exchange, 302, HOST + "/sorry/index?continue=" + encode(continueUrl), (byte[]) null);
+                return;
+            }
+
+            if (random.nextDouble() < banRate) {
+                bans.incrementAndGet();
+                respond(exchange, 403, null, "<html><body>forbidden</body></html>");
+                return;
+            }
+
+            served.incrementAndGet();
+            respond(exchange, 200, null, serps[Math.floorMod(query.hashCode(), serps.length)]);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 500, null, (byte[]) null);
+        }
+    }
+
+    protected void sorry(HttpExchange exchange) throws IOException {
+        if ("POST".equals(exchange.getRequestMethod())) {
+            Map<String, String> form = parseForm(readBody(exchange));
+            String response = form.get("g-recaptcha-response");
+            String continueUrl = form.get("continue");
+            if (response == null || !response.startsWith(LocalCaptchaProvider.RESPONSE_PREFIX)
+                || continueUrl == null || !continueUrl.startsWith(HOST + "/search?")) {
+                respond(exchange, 503, null, "<html><body>invalid captcha</body></html>");
+                return;
+            }
+            blocked.remove(continueUrl.substring(HOST.length() + "/search?".length()));
+            solved.incrementAndGet();
+            respond(exchange, 302, continueUrl, (byte[]) null);
+            return;
+        }
+
+        String continueUrl = parseForm(exchange.getRequestURI().getRawQuery()).get("continue");
+        if (continueUrl == null) {
+            respond(exchange, 404, null, (byte[]) null);
+            return;
+        }
+        respond(exchange, 200, null,
+            "<html><body><form id=\"captcha-form\" action=\"/sorry/index\" method=\"post\">"
+            + "<div id=\"recaptcha\" class=\"g-recaptcha\" data-sitekey=\"local-sitekey\" data-s=\"local-data-s\"></div>"
+            + "<input type=\"hidden\" name=\"q\" value=\"local\">"
+            + "<input type=\"hidden\" name=\"continue\" value=\"" + escape(continueUrl) + "\">"
+            + "</form></body></html>");
+    }
+
+    protected static void respond(HttpExchange exchange, int status, String location, String body) throws IOException {
+        respond(exchange, status, location, body == null ? null : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected static void respond(HttpExchange exchange, int status, String location, byte[] body) throws IOException {
+        if (location != null) {
+            exchange.getResponseHeaders().add("Location", location);
+        }
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    protected static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (InputStream is = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+            }
+        }
+        return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * decoded parameters of a query string or an url encoded body
+     */
+    protected static Map<String, String> parseForm(String encoded) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return params;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq < 0) {
+                params.put(URLDecoder.decode(pair, "utf-8"), "");
+            } else {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "utf-8"), URLDecoder.decode(pair.substring(eq + 1), "utf-8"));
+            }
+        }
+        return params;
+    }
+
+    protected static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "utf-8");
+    }
+
+    protected static String escape(String value) {
+        return value.replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * serps answered with a 200
+     */
+    public long getServed() {
+        return served.get();
+    }
+
+    /**
+     * queries sent to the captcha form
+     */
+    public long getCaptchas() {
+        return captchas.get();
+    }
+
+    /**
+     * captcha forms posted with a valid response
+     */
+    public long getSolved() {
+        return solved.get();
+    }
+
+    public long getBans() {
+        return bans.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+}
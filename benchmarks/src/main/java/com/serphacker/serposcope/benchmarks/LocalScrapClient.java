@@ -0,0 +1,37 @@
+package com.serphacker.serposcope.benchmarks;
+
+import com.serphacker.serposcope.scraper.http.ScrapClient;
+import com.serphacker.serposcope.scraper.http.ScrapClientConfig;
+import com.serphacker.serposcope.scraper.http.ScrapResponse;
+import com.serphacker.serposcope.scraper.http.proxy.ScrapProxy;
+import java.net.URI;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * scrap client sending the requests for www.google.com (http or https) to a {@link LocalGoogleServer},
+ * everything else is unchanged
+ */
+public class LocalScrapClient extends ScrapClient {
+
+    final static String[] HOSTS = new String[]{"https://www.google.com", "http://www.google.com"};
+
+    final String target;
+
+    public LocalScrapClient(ScrapClientConfig config, String target) {
+        super(config);
+        this.target = target;
+    }
+
+    @Override
+    protected ScrapResponse doExchange(HttpRequestBase request, ScrapProxy proxy) {
+        String uri = request.getURI().toString();
+        for (String host : HOSTS) {
+            if (uri.startsWith(host)) {
+                request.setURI(URI.create(target + uri.substring(host.length())));
+                break;
+            }
+        }
+        return super.doExchange(request, proxy);
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.querydsl.sql.Configuration;
+import com.serphacker.serposcope.benchmarks.Fixtures;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.di.db.ConfigurationProvider;
+import com.serphacker.serposcope.di.db.DataSourceProvider;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSearchRanks;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSerpEntry;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * search chart ranks of an in-memory h2 database of generated runs, read from the rank series or matched in
+ * every serp of the search. Guice needs "--add-opens java.base/java.lang=ALL-UNNAMED" on recent jdks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleSearchRanksDBBenchmark {
+
+    public final static int ENTRIES = 100;
+
+    @Param({"30", "365"})
+    public int runCount;
+
+    @Param({"5"})
+    public int targetCount;
+
+    GoogleDB googleDB;
+    Group group;
+    GoogleSearch search;
+    List<GoogleTarget> targets = new ArrayList<>();
+    List<Run> runs = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        String dbUrl = "jdbc:h2:mem:searchranks_" + runCount + "_" + targetCount + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(DataSource.class).toProvider(new DataSourceProvider(dbUrl, false)).in(Singleton.class);
+                bind(Configuration.class).toProvider(new ConfigurationProvider(dbUrl)).in(Singleton.class);
+            }
+        });
+        BaseDB baseDB = injector.getInstance(BaseDB.class);
+        googleDB = injector.getInstance(GoogleDB.class);
+        baseDB.migration.recreateDb();
+
+        group = new Group(Group.Module.GOOGLE, "benchmark");
+        baseDB.group.insert(group);
+        search = new GoogleSearch("benchmark");
+        googleDB.search.insert(Arrays.asList(search), group.getId());
+
+        List<String> urls = Fixtures.urls();
+        Set<String> domains = new LinkedHashSet<>();
+        for (String url : urls) {
+            domains.add(new URI(url).getHost());
+        }
+        for (String domain : domains) {
+            if (targets.size() == targetCount) {
+                break;
+            }
+            targets.add(new GoogleTarget(group.getId(), domain, GoogleTarget.PatternType.DOMAIN, domain));
+        }
+        googleDB.target.insert(targets);
+        GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+
+        List<GoogleRank> ranks = new ArrayList<>();
+        LocalDateTime day = LocalDateTime.of(2018, 4, 1, 0, 0);
+        for (int i = 0; i < runCount; i++) {
+            Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, day.plusDays(i));
+            run.setFinished(run.getStarted().plusHours(1));
+            run.setStatus(Run.Status.DONE_SUCCESS);
+            baseDB.run.insert(run);
+            runs.add(run);
+
+            // shift the captured urls every day so the targets move
+            GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+            for (int j = 0; j < ENTRIES; j++) {
+                serp.addEntry(new GoogleSerpEntry(urls.get((i * 7 + j) % urls.size()) + "#" + j));
+            }
+            googleDB.serp.insert(serp);
+
+            int[] positions = matcher.match(serp);
+            for (int j = 0; j < targets.size(); j++) {
+                ranks.add(new GoogleRank(run.getId(), group.getId(), targets.get(j).getId(), search.getId(),
+                    positions[j], GoogleRank.UNRANKED, null));
+            }
+        }
+        googleDB.rank.insert(ranks);
+        googleDB.rankSeries.rebuild();
+    }
+
+    @Benchmark
+    public GoogleSearchRanks fromSeries() {
+        return googleDB.searchRanks.list(runs, group.getId(), search.getId(), targets);
+    }
+
+    @Benchmark
+    public GoogleSearchRanks fromSerps() {
+        return googleDB.searchRanks.listFromSerps(runs.get(0).getId(), runs.get(runs.size() - 1).getId(),
+            search.getId(), targets);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.serphacker.serposcope.db.google;
+
+import com.serphacker.serposcope.models.google.GoogleSerpBenchmark;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * lz4 compression of serialized serps as stored in the GOOGLE_SERP table, no database involved
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleSerpDBBenchmark {
+
+    @Param({"0", "30"})
+    public int historyDays;
+
+    GoogleSerpDB db = new GoogleSerpDB();
+    byte[] serialized;
+    byte[] compressed;
+
+    @Setup
+    public void setup() throws IOException {
+        serialized = GoogleSerpBenchmark.serp(historyDays).getSerializedEntries();
+        compressed = db.compress(serialized);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return db.compress(serialized);
+    }
+
+    @Benchmark
+    public byte[] decompress() {
+        return db.decompress(compressed);
+    }
+
+}
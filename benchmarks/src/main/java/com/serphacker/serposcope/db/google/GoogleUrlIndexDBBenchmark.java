@@ -0,0 +1,129 @@
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.querydsl.sql.Configuration;
+import com.serphacker.serposcope.benchmarks.Fixtures;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.di.db.ConfigurationProvider;
+import com.serphacker.serposcope.di.db.DataSourceProvider;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSerpEntry;
+import com.serphacker.serposcope.models.google.GoogleUrlPostings;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * positions of an url in the serps of a search of an in-memory h2 database, read from the url index or by scanning
+ * every serp like the search page url chart used to. Guice needs "--add-opens java.base/java.lang=ALL-UNNAMED" on
+ * recent jdks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleUrlIndexDBBenchmark {
+
+    public final static int ENTRIES = 100;
+
+    @Param({"30", "365"})
+    public int runCount;
+
+    GoogleDB googleDB;
+    GoogleSearch search;
+    int firstRunId;
+    int lastRunId;
+    String url;
+
+    @Setup
+    public void setup() throws Exception {
+        String dbUrl = "jdbc:h2:mem:urlindex_" + runCount + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        Injector injector = Guice.createInjector(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(DataSource.class).toProvider(new DataSourceProvider(dbUrl, false)).in(Singleton.class);
+                bind(Configuration.class).toProvider(new ConfigurationProvider(dbUrl)).in(Singleton.class);
+            }
+        });
+        BaseDB baseDB = injector.getInstance(BaseDB.class);
+        googleDB = injector.getInstance(GoogleDB.class);
+        baseDB.migration.recreateDb();
+
+        Group group = new Group(Group.Module.GOOGLE, "benchmark");
+        baseDB.group.insert(group);
+        search = new GoogleSearch("benchmark");
+        googleDB.search.insert(Arrays.asList(search), group.getId());
+
+        List<String> urls = Fixtures.urls();
+        url = urls.get(0) + "#0";
+        LocalDateTime day = LocalDateTime.of(2018, 4, 1, 0, 0);
+        for (int i = 0; i < runCount; i++) {
+            Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, day.plusDays(i));
+            baseDB.run.insert(run);
+
+            // shift the captured urls every day so the url moves
+            GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+            for (int j = 0; j < ENTRIES; j++) {
+                int index = (i * 7 + j) % ENTRIES;
+                serp.addEntry(new GoogleSerpEntry(urls.get(index % urls.size()) + "#" + index));
+            }
+            googleDB.result.insert(Collections.singletonList(serp), Collections.emptyList(), Collections.emptyList());
+
+            if (i == 0) {
+                firstRunId = run.getId();
+            }
+            lastRunId = run.getId();
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> fromIndex() {
+        Map<Integer, Integer> positions = new LinkedHashMap<>();
+        GoogleUrlPostings postings = googleDB.urlIndex.get(url, search.getId());
+        for (Integer runId : googleDB.serp.listRunDays(firstRunId, lastRunId, search.getId()).keySet()) {
+            positions.put(runId, postings == null ? 0 : (int) postings.getPositionOfRun(runId));
+        }
+        return positions;
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> fromSerps() {
+        Map<Integer, Integer> positions = new LinkedHashMap<>();
+        googleDB.serp.stream(firstRunId, lastRunId, search.getId(), (GoogleSerp serp) -> {
+            int position = 0;
+            for (int i = 0; i < serp.getEntries().size(); i++) {
+                if (serp.getEntries().get(i).getUrl().equals(url)) {
+                    position = i + 1;
+                    break;
+                }
+            }
+            positions.put(serp.getRunId(), position);
+        });
+        return positions;
+    }
+
+}
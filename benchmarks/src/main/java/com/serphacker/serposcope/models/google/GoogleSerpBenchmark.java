@@ -0,0 +1,73 @@
+package com.serphacker.serposcope.models.google;
+
+import com.serphacker.serposcope.benchmarks.Fixtures;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * (de)serialization of a serp of 100 entries built from the captured urls, with history days of positions
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleSerpBenchmark {
+
+    public final static int ENTRIES = 100;
+
+    @Param({"0", "30"})
+    public int historyDays;
+
+    GoogleSerp serp;
+    byte[] serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        serp = serp(historyDays);
+        serialized = serp.getSerializedEntries();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return serp.getSerializedEntries();
+    }
+
+    @Benchmark
+    public GoogleSerp deserialize() throws IOException {
+        GoogleSerp deserialized = new GoogleSerp(1, 1, serp.getRunDay());
+        deserialized.setSerializedEntries(serialized);
+        return deserialized;
+    }
+
+    /**
+     * serp of {@link #ENTRIES} captured urls where each entry has a position for the given number of previous days
+     */
+    public static GoogleSerp serp(int historyDays) {
+        List<String> urls = Fixtures.urls();
+        GoogleSerp serp = new GoogleSerp(1, 1, LocalDateTime.of(2018, 4, 1, 0, 0));
+        for (int i = 0; i < ENTRIES; i++) {
+            GoogleSerpEntry entry = new GoogleSerpEntry(urls.get(i % urls.size()) + (i < urls.size() ? "" : "#" + i));
+            for (short day = 1; day <= historyDays; day++) {
+                entry.getMap().put(day, (short) ((i + day) % (ENTRIES + 1)));
+            }
+            serp.addEntry(entry);
+        }
+        return serp;
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.serphacker.serposcope.models.google;
+
+import com.serphacker.serposcope.benchmarks.Fixtures;
+import com.serphacker.serposcope.models.google.GoogleTarget.PatternType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * matches every captured url against one target, as done for each target of a group on each serp
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleTargetBenchmark {
+
+    @Param({"DOMAIN", "SUBDOMAIN", "REGEX"})
+    public PatternType type;
+
+    String[] urls;
+    GoogleTarget target;
+
+    @Setup
+    public void setup() {
+        urls = Fixtures.urls().toArray(new String[0]);
+        switch (type) {
+            case DOMAIN:
+                target = new GoogleTarget(1, "target", type, "fr.wikipedia.org");
+                break;
+            case SUBDOMAIN:
+                target = new GoogleTarget(1, "target", type, "wikipedia.org");
+                break;
+            default:
+                target = new GoogleTarget(1, "target", type, "^https?://[^/]+/wiki/.*lion");
+                break;
+        }
+    }
+
+    @Benchmark
+    public int match() {
+        int matches = 0;
+        for (String url : urls) {
+            if (target.match(url)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.serphacker.serposcope.models.google;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * feeds the ranks of a whole run (one per search) to a fresh target summary
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GoogleTargetSummaryBenchmark {
+
+    @Param({"100", "5000"})
+    public int searches;
+
+    GoogleRank[] ranks;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        ranks = new GoogleRank[searches];
+        for (int i = 0; i < searches; i++) {
+            int rank = random.nextInt(102) == 0 ? GoogleRank.UNRANKED : 1 + random.nextInt(100);
+            int previousRank = random.nextInt(5) == 0 ? GoogleRank.UNRANKED : 1 + random.nextInt(100);
+            ranks[i] = new GoogleRank(2, 1, 1, i + 1, rank, previousRank, "http://www.site.com/page/" + i);
+        }
+    }
+
+    @Benchmark
+    public GoogleTargetSummary addRankCandidat() {
+        GoogleTargetSummary summary = new GoogleTargetSummary(1, 1, 2, 0);
+        for (GoogleRank rank : ranks) {
+            summary.addRankCandidat(rank);
+        }
+        return summary;
+    }
+
+}
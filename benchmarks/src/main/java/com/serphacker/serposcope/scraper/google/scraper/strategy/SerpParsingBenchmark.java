@@ -0,0 +1,67 @@
+package com.serphacker.serposcope.scraper.google.scraper.strategy;
+
+import com.serphacker.serposcope.benchmarks.Fixtures;
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * parses every captured serp once per operation, the dom strategy includes the decoding and the jsoup parsing
+ * the scraper does before calling it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerpParsingBenchmark {
+
+    byte[][] serps;
+
+    DefaultSerpParsingStrategy dom = new DefaultSerpParsingStrategy();
+    StreamingSerpParsingStrategy streaming = new StreamingSerpParsingStrategy();
+
+    @Setup
+    public void setup() {
+        serps = Fixtures.serps().values().toArray(new byte[0][]);
+    }
+
+    @Benchmark
+    public void dom(Blackhole bh) {
+        for (byte[] serp : serps) {
+            Document document = Jsoup.parse(new String(serp, StandardCharsets.UTF_8));
+            List<String> urls = new ArrayList<>();
+            Status status = dom.parse(document, urls);
+            bh.consume(status);
+            bh.consume(urls);
+            bh.consume(dom.parseResultsCount(document));
+            bh.consume(dom.hasNextPage(document));
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) {
+        for (byte[] serp : serps) {
+            List<String> urls = new ArrayList<>();
+            bh.consume(streaming.parse(serp, urls));
+            bh.consume(urls);
+        }
+    }
+
+}
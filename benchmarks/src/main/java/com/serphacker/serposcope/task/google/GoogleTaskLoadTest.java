@@ -0,0 +1,343 @@
+package com.serphacker.serposcope.task.google;
+
+import ch.qos.logback.classic.Level;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Singleton;
+import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.querydsl.sql.Configuration;
+import com.serphacker.serposcope.benchmarks.Fixtures;
+import com.serphacker.serposcope.benchmarks.LocalCaptchaProvider;
+import com.serphacker.serposcope.benchmarks.LocalGoogleServer;
+import com.serphacker.serposcope.benchmarks.LocalScrapClient;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.db.google.GoogleDB;
+import com.serphacker.serposcope.db.google.GoogleResultDB;
+import com.serphacker.serposcope.di.CaptchaSolverFactory;
+import com.serphacker.serposcope.di.GoogleScraperFactory;
+import com.serphacker.serposcope.di.ScrapClientFactory;
+import com.serphacker.serposcope.di.TaskFactory;
+import com.serphacker.serposcope.di.db.ConfigurationProvider;
+import com.serphacker.serposcope.di.db.DataSourceProvider;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Proxy;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleBest;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSettings;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTarget.PatternType;
+import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
+import com.serphacker.serposcope.scraper.captcha.solver.TwoCaptchaSolver;
+import com.serphacker.serposcope.scraper.google.GoogleCountryCode;
+import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
+import com.serphacker.serposcope.scraper.http.ScrapClient;
+import com.serphacker.serposcope.scraper.http.ScrapClientConfig;
+import com.serphacker.serposcope.scraper.http.proxy.BindProxy;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.slf4j.LoggerFactory;
+
+/**
+ * offline load test of a whole GoogleTask run : the scrapers hit a {@link LocalGoogleServer} serving the captured
+ * serps, captchas are solved by a {@link LocalCaptchaProvider} and the results are written to an on-disk h2.
+ * Reports the searches per second, the p50/p99 latency of a search, the time spent writing results and the heap.
+ *
+ * java -jar benchmarks/target/benchmarks.jar loadtest [--option=value ...]
+ * (guice needs --add-opens java.base/java.lang=ALL-UNNAMED on java 9+)
+ *
+ *   --groups=10 --searches=100 --targets=5    groups, searches per group and targets per group generated
+ *   --pages=1                                 pages fetched per search (10 results each)
+ *   --threads=8 --leases=0                    proxies (one bind address 127.0.0.x each), async leases per proxy
+ *   --latency=50                              milliseconds before the server answers a serp
+ *   --captcha-rate=0 --ban-rate=0             probability of a captcha redirect and of a 403 per serp request
+ *   --solve=3000                              milliseconds for the captcha provider to solve a captcha
+ *   --stop-when-resolved=false                stop the pagination once the targets are ranked
+ *   --db=/tmp/serposcope_loadtest             h2 database file, recreated
+ *   --log=WARN                                level of the com.serphacker loggers
+ */
+public class GoogleTaskLoadTest {
+
+    final Map<String, String> options;
+
+    final LatencyScraperFactory scraperFactory = new LatencyScraperFactory();
+    final TimedResultDB resultDB = new TimedResultDB();
+    volatile long peakHeap;
+
+    public GoogleTaskLoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("invalid option " + arg + ", expected --name=value");
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        new GoogleTaskLoadTest(options).run();
+        System.exit(0);
+    }
+
+    int intOption(String name, int def) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : def;
+    }
+
+    double doubleOption(String name, double def) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : def;
+    }
+
+    public void run() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.serphacker"))
+            .setLevel(Level.toLevel(options.getOrDefault("log", "WARN")));
+
+        int threads = intOption("threads", 8);
+        if (threads < 1 || threads > 254) {
+            throw new IllegalArgumentException("--threads must be between 1 and 254");
+        }
+
+        byte[][] serps = Fixtures.rankedSerps().values().toArray(new byte[0][]);
+        String dbUrl = "jdbc:h2:" + options.getOrDefault("db", System.getProperty("java.io.tmpdir") + "/serposcope_loadtest")
+            + ";MODE=MySQL";
+
+        try (
+            LocalGoogleServer google = new LocalGoogleServer(serps, intOption("latency", 50),
+                doubleOption("captcha-rate", 0), doubleOption("ban-rate", 0));
+            LocalCaptchaProvider provider = new LocalCaptchaProvider(intOption("solve", 3000))
+        ) {
+            Injector injector = Guice.createInjector(new AbstractModule() {
+                @Override
+                protected void configure() {
+                    bind(DataSource.class).toProvider(new DataSourceProvider(dbUrl, false)).in(Singleton.class);
+                    bind(Configuration.class).toProvider(new ConfigurationProvider(dbUrl)).in(Singleton.class);
+                    bind(GoogleResultDB.class).toInstance(resultDB);
+                    bind(GoogleScraperFactory.class).toInstance(scraperFactory);
+                    bind(ScrapClientFactory.class).toInstance((String userAgent, int timeoutMS) -> new LocalScrapClient(
+                        ScrapClientConfig.builder()
+                            .userAgent(userAgent)
+                            .timeout(timeoutMS)
+                            .pooled(ScrapClient.MAX_POOLED_CONNECTIONS)
+                            .build(),
+                        google.getUrl()));
+                    bind(CaptchaSolverFactory.class).toInstance((config) -> {
+                        TwoCaptchaSolver solver = new TwoCaptchaSolver("loadtest");
+                        solver.setApiUrl(provider.getUrl());
+                        return solver;
+                    });
+                    install(new FactoryModuleBuilder().build(TaskFactory.class));
+                }
+            });
+
+            BaseDB baseDB = injector.getInstance(BaseDB.class);
+            GoogleDB googleDB = injector.getInstance(GoogleDB.class);
+            baseDB.migration.recreateDb();
+            int searchCount = generate(baseDB, googleDB, threads);
+
+            Thread sampler = new Thread(this::sampleHeap, "loadtest-heap");
+            sampler.setDaemon(true);
+            sampler.start();
+
+            GoogleTask task = injector.getInstance(TaskFactory.class).create(
+                new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, LocalDateTime.now().withNano(0)));
+            long started = System.nanoTime();
+            task.run();
+            long durationMS = (System.nanoTime() - started) / 1000000l;
+            sampler.interrupt();
+
+            report(task.getRun(), searchCount, durationMS, google, provider);
+        }
+    }
+
+    /**
+     * groups, searches, targets and proxies of the run, like the debug generator but with targets on the domains
+     * of the captured serps so ranks get written
+     */
+    protected int generate(BaseDB baseDB, GoogleDB googleDB, int threads) {
+        int groups = intOption("groups", 10);
+        int searchPerGroup = intOption("searches", 100);
+        int targetPerGroup = intOption("targets", 5);
+
+        TreeSet<String> domainSet = new TreeSet<>();
+        for (String url : Fixtures.urls()) {
+            try {
+                String host = URI.create(url).getHost();
+                if (host != null) {
+                    domainSet.add(host);
+                }
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+        List<String> domains = new ArrayList<>(domainSet);
+
+        for (int i = 0; i < groups; i++) {
+            Group group = new Group(Group.Module.GOOGLE, "group#" + i);
+            baseDB.group.insert(group);
+
+            List<GoogleSearch> searches = new ArrayList<>();
+            for (int j = 0; j < searchPerGroup; j++) {
+                GoogleSearch search = new GoogleSearch("search#" + j + "#" + group.getName());
+                search.setCountry(GoogleCountryCode.__);
+                searches.add(search);
+            }
+            googleDB.search.insert(searches, group.getId());
+
+            List<GoogleTarget> targets = new ArrayList<>();
+            for (int j = 0; j < targetPerGroup; j++) {
+                String domain = domains.get((i * targetPerGroup + j) % domains.size());
+                targets.add(new GoogleTarget(group.getId(), "target#" + j + "#" + group.getName(), PatternType.DOMAIN, domain));
+            }
+            googleDB.target.insert(targets);
+        }
+
+        List<Proxy> proxies = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            proxies.add(new Proxy(new BindProxy("127.0.0." + (i + 1))));
+        }
+        baseDB.proxy.insert(proxies);
+
+        GoogleSettings settings = googleDB.options.get();
+        settings.setPages(intOption("pages", 1));
+        settings.setResultPerPage(10);
+        settings.setMinPauseBetweenPageSec(0);
+        settings.setMaxPauseBetweenPageSec(0);
+        settings.setMaxThreads(threads);
+        settings.setLeasesPerProxy(intOption("leases", 0));
+        settings.setStopWhenResolved(Boolean.parseBoolean(options.getOrDefault("stop-when-resolved", "false")));
+        googleDB.options.update(settings);
+
+        return groups * searchPerGroup;
+    }
+
+    protected void sampleHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        while (!Thread.currentThread().isInterrupted()) {
+            peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    protected void report(Run run, int searchCount, long durationMS, LocalGoogleServer google, LocalCaptchaProvider provider) {
+        long[] latencies = scraperFactory.latencies();
+        Arrays.sort(latencies);
+        System.gc();
+        long heapAfterGC = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        long writeMS = resultDB.nanos.get() / 1000000l;
+
+        System.out.printf("run            : %s, %d searches, %d errors, %d captchas%n",
+            run.getStatus(), searchCount, run.getErrors(), run.getCaptchas());
+        System.out.printf("duration       : %.1f s%n", durationMS / 1000d);
+        System.out.printf("throughput     : %.1f searches/s%n", searchCount * 1000d / Math.max(1, durationMS));
+        System.out.printf("search latency : p50 %d ms, p99 %d ms, max %d ms (%d searches)%n",
+            percentile(latencies, 0.5), percentile(latencies, 0.99),
+            latencies.length == 0 ? 0 : latencies[latencies.length - 1], latencies.length);
+        System.out.printf("db writes      : %d batches, %d serps, %d ranks, %d ms (%.1f%% of the run)%n",
+            resultDB.batches.get(), resultDB.serps.get(), resultDB.ranks.get(), writeMS,
+            writeMS * 100d / Math.max(1, durationMS));
+        System.out.printf("heap           : peak %d MB, %d MB after gc%n", peakHeap >> 20, heapAfterGC >> 20);
+        System.out.printf("google         : %d serps, %d captchas, %d solved, %d bans%n",
+            google.getServed(), google.getCaptchas(), google.getSolved(), google.getBans());
+        System.out.printf("captcha api    : %d submitted, %d polls%n", provider.getSubmitted(), provider.getPolls());
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * scrapers recording the duration of each search, from the first page request to the result
+     */
+    static class LatencyScraperFactory implements GoogleScraperFactory {
+
+        final LongArrayList latencies = new LongArrayList();
+
+        @Override
+        public GoogleScraper get(ScrapClient http, CaptchaSolver solver) {
+            return new GoogleScraper(http, solver) {
+
+                final Map<ScrapState, Long> starts = new ConcurrentHashMap<>();
+
+                @Override
+                public ScrapState startScrap(GoogleScrapSearch search) {
+                    ScrapState state = super.startScrap(search);
+                    starts.put(state, System.nanoTime());
+                    return state;
+                }
+
+                @Override
+                public boolean scrapPage(ScrapState state) throws InterruptedException {
+                    boolean next = false;
+                    try {
+                        next = super.scrapPage(state);
+                        return next;
+                    } finally {
+                        if (!next) {
+                            Long start = starts.remove(state);
+                            if (start != null) {
+                                record((System.nanoTime() - start) / 1000000l);
+                            }
+                        }
+                    }
+                }
+            };
+        }
+
+        synchronized void record(long latencyMS) {
+            latencies.add(latencyMS);
+        }
+
+        synchronized long[] latencies() {
+            return latencies.toLongArray();
+        }
+    }
+
+    /**
+     * result writes of the task writer, timed
+     */
+    static class TimedResultDB extends GoogleResultDB {
+
+        final AtomicLong nanos = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final AtomicLong serps = new AtomicLong();
+        final AtomicLong ranks = new AtomicLong();
+
+        @Override
+        public boolean insert(Collection<GoogleSerp> serps, Collection<GoogleRank> ranks, Collection<GoogleBest> bests) {
+            long start = System.nanoTime();
+            try {
+                return super.insert(serps, ranks, bests);
+            } finally {
+                nanos.addAndGet(System.nanoTime() - start);
+                batches.incrementAndGet();
+                this.serps.addAndGet(serps.size());
+                this.ranks.addAndGet(ranks.size());
+            }
+        }
+    }
+
+}
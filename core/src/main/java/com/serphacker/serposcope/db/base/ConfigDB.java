@@ -40,6 +40,8 @@ public class ConfigDB extends AbstractDB {
     
     public final static String APP_IMAGETYPERZ_KEY = "app.imagetyperz.key";
     
+    public final static String APP_CAPTCHA_HEDGE_PERCENTILE = "app.captcha.hedge_percentile";
+    
     public final static String APP_DISPLAY_HOME = "app.display.home";
     public final static String APP_DISPLAY_GOOGLE_TARGET = "app.display.google.target";
     public final static String APP_DISPLAY_GOOGLE_SEARCH = "app.display.google.search";
@@ -146,6 +148,8 @@ public class ConfigDB extends AbstractDB {
         
         config.setImageTyperzKey(get(APP_IMAGETYPERZ_KEY, null));
         
+        config.setCaptchaHedgePercentile(getInt(APP_CAPTCHA_HEDGE_PERCENTILE, Config.DEFAULT_CAPTCHA_HEDGE_PERCENTILE));
+        
         config.setDisplayHome(get(APP_DISPLAY_HOME, Config.DEFAULT_DISPLAY_HOME));
         config.setDisplayGoogleSearch(get(APP_DISPLAY_GOOGLE_SEARCH, Config.DEFAULT_DISPLAY_GOOGLE_SEARCH));
         config.setDisplayGoogleTarget(get(APP_DISPLAY_GOOGLE_TARGET, Config.DEFAULT_DISPLAY_GOOGLE_TARGET));
@@ -170,6 +174,8 @@ public class ConfigDB extends AbstractDB {
         
         update(APP_IMAGETYPERZ_KEY, config.getImageTyperzKey());
         
+        updateInt(APP_CAPTCHA_HEDGE_PERCENTILE, config.getCaptchaHedgePercentile());
+        
         update(APP_DISPLAY_HOME, config.getDisplayHome());
         update(APP_DISPLAY_GOOGLE_SEARCH, config.getDisplayGoogleSearch());
         update(APP_DISPLAY_GOOGLE_TARGET, config.getDisplayGoogleTarget());
@@ -10,6 +10,8 @@ package com.serphacker.serposcope.db.base;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Singleton;
 import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.google.GoogleRankSeriesDB;
+import com.serphacker.serposcope.db.google.GoogleUrlIndexDB;
 import com.serphacker.serposcope.scraper.google.GoogleCountryCode;
 import java.io.InputStream;
 import java.sql.Connection;
@@ -23,7 +25,7 @@ import org.slf4j.LoggerFactory;
 @Singleton
 public class MigrationDB extends AbstractDB {
     
-    public final static int LAST_DB_VERSION = 7;
+    public final static int LAST_DB_VERSION = 9;
     
     public final static String[] DB_SCHEMA_FILES = new String[]{
         "/db/00-base.h2.sql",
@@ -32,12 +34,19 @@ public class MigrationDB extends AbstractDB {
     
     public final static String[] TABLES = new String[]{
         "CONFIG", "USER", "GROUP", "EVENT", "USER_GROUP", "RUN", "PROXY",
-        "GOOGLE_SEARCH", "GOOGLE_SERP", "GOOGLE_SEARCH_GROUP", "GOOGLE_TARGET", "GOOGLE_RANK", "GOOGLE_RANK_BEST", "GOOGLE_TARGET_SUMMARY"
+        "GOOGLE_SEARCH", "GOOGLE_SERP", "GOOGLE_SEARCH_GROUP", "GOOGLE_TARGET", "GOOGLE_RANK", "GOOGLE_RANK_BEST", "GOOGLE_TARGET_SUMMARY",
+        "GOOGLE_RANK_SERIES", "GOOGLE_URL", "GOOGLE_URL_POSTING"
     };    
     
     @Inject
     ConfigDB config;
     
+    @Inject
+    GoogleRankSeriesDB rankSeries;
+    
+    @Inject
+    GoogleUrlIndexDB urlIndex;
+    
     private static final Logger LOG = LoggerFactory.getLogger(MigrationDB.class);
     
     public boolean isDbCreated() throws Exception {
@@ -108,6 +117,12 @@ public class MigrationDB extends AbstractDB {
                         case 6:
                             upgradeFromV6(stmt);
                             break;
+                        case 7:
+                            upgradeFromV7(stmt);
+                            break;
+                        case 8:
+                            upgradeFromV8(stmt);
+                            break;
                     }
                 }catch(Exception ex){
                     con.rollback();
@@ -196,4 +211,18 @@ public class MigrationDB extends AbstractDB {
         stmt.executeUpdate("insert into `CONFIG` values ('app.dbversion','7') on duplicate key update `value` = '7';");
     }    
     
+    protected void upgradeFromV7(Statement stmt) throws Exception {
+        // GOOGLE_RANK_SERIES is created by the patch, backfill it from GOOGLE_RANK
+        long series = rankSeries.rebuild(stmt.getConnection());
+        LOG.info("{} rank series backfilled", series);
+        stmt.executeUpdate("insert into `CONFIG` values ('app.dbversion','8') on duplicate key update `value` = '8';");
+    }
+    
+    protected void upgradeFromV8(Statement stmt) throws Exception {
+        // GOOGLE_URL and GOOGLE_URL_POSTING are created by the patch, index the serps already stored
+        long postings = urlIndex.rebuild(stmt.getConnection());
+        LOG.info("{} url postings indexed", postings);
+        stmt.executeUpdate("insert into `CONFIG` values ('app.dbversion','9') on duplicate key update `value` = '9';");
+    }
+    
 }
@@ -11,12 +11,15 @@ package com.serphacker.serposcope.db.base;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.google.GoogleRankSeriesDB;
+import com.serphacker.serposcope.db.google.GoogleUrlIndexDB;
 import com.serphacker.serposcope.querybuilder.QGoogleRank;
 import com.serphacker.serposcope.querybuilder.QGoogleSerp;
 import com.serphacker.serposcope.querybuilder.QGoogleTargetSummary;
 import com.serphacker.serposcope.querybuilder.QRun;
 import java.sql.Connection;
 import java.util.List;
+import javax.inject.Inject;
 
 
 public class PruneDB extends AbstractDB {
@@ -25,6 +28,12 @@ public class PruneDB extends AbstractDB {
     QGoogleSerp t_serp = QGoogleSerp.googleSerp;
     QGoogleTargetSummary t_target_summary = QGoogleTargetSummary.googleTargetSummary;
     
+    @Inject
+    GoogleRankSeriesDB rankSeries;
+    
+    @Inject
+    GoogleUrlIndexDB urlIndex;
+    
     public long prune(int maxRuns){
         
         if(maxRuns <= 0){
@@ -57,6 +66,8 @@ public class PruneDB extends AbstractDB {
                 .fetch();
             
             new SQLDeleteClause(con, dbTplConf, t_google_rank).where(t_google_rank.runId.in(runIds)).execute();
+            rankSeries.deleteByRunIds(runIds);
+            urlIndex.deleteByRunIds(runIds);
             new SQLDeleteClause(con, dbTplConf, t_serp).where(t_serp.runId.in(runIds)).execute();
             new SQLDeleteClause(con, dbTplConf, t_target_summary).where(t_target_summary.runId.in(runIds)).execute();
             return new SQLDeleteClause(con, dbTplConf, t_run).where(t_run.id.in(runIds)).execute();
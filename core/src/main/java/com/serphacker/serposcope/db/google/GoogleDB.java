@@ -28,10 +28,22 @@ public class GoogleDB {
     @Inject
     public GoogleRankDB rank;
     
+    @Inject
+    public GoogleRankSeriesDB rankSeries;
+    
+    @Inject
+    public GoogleSearchRanksDB searchRanks;
+    
+    @Inject
+    public GoogleUrlIndexDB urlIndex;
+    
     @Inject
     public GoogleTargetSummaryDB targetSummary;
     
     @Inject
     public GoogleSerpRescanDB serpRescan;
     
+    @Inject
+    public GoogleResultDB result;
+    
 }
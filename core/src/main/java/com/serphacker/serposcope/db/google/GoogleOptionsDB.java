@@ -17,10 +17,18 @@ public class GoogleOptionsDB {
     
     private final static String PAGES = "google.pages";
     private final static String RESULT_PER_PAGE = "google.result_per_page";
+    private final static String STOP_WHEN_RESOLVED = "google.stop_when_resolved";
+    private final static String STREAMING_PARSER = "google.streaming_parser";
     private final static String MIN_PAUSE_BETWEEN_PAGE_SEC = "google.min_pause_between_page_sec";
     private final static String MAX_PAUSE_BETWEEN_PAGE_SEC = "google.max_pause_between_page_sec";    
     private final static String MAX_THREADS = "google.maxThreads";
     private final static String FETCH_RETRY = "google.fetchRetry";    
+    private final static String WRITER_BATCH_SIZE = "google.writer_batch_size";
+    private final static String WRITER_FLUSH_INTERVAL_MS = "google.writer_flush_interval_ms";
+    private final static String LEASES_PER_PROXY = "google.leases_per_proxy";
+    private final static String PROXY_BENCH_SEC = "google.proxy_bench_sec";
+    private final static String PROXY_MAX_FAILURES = "google.proxy_max_failures";
+    private final static String PROXY_MIN_REUSE_SEC = "google.proxy_min_reuse_sec";
     
     private final static String DEFAULT_DATACENTER = "google.default_datacenter";
     private final static String DEFAULT_DEVICE = "google.default.device";
@@ -36,10 +44,18 @@ public class GoogleOptionsDB {
         
         options.setPages(configDB.getInt(PAGES, options.getPages()));
         options.setResultPerPage(configDB.getInt(RESULT_PER_PAGE, options.getResultPerPage()));
+        options.setStopWhenResolved(configDB.getBoolean(STOP_WHEN_RESOLVED, options.isStopWhenResolved()));
+        options.setStreamingParser(configDB.getBoolean(STREAMING_PARSER, options.isStreamingParser()));
         options.setMinPauseBetweenPageSec(configDB.getInt(MIN_PAUSE_BETWEEN_PAGE_SEC, options.getMinPauseBetweenPageSec()));
         options.setMaxPauseBetweenPageSec(configDB.getInt(MAX_PAUSE_BETWEEN_PAGE_SEC, options.getMaxPauseBetweenPageSec()));        
         options.setMaxThreads(configDB.getInt(MAX_THREADS, options.getMaxThreads()));
         options.setFetchRetry(configDB.getInt(FETCH_RETRY, options.getFetchRetry()));
+        options.setWriterBatchSize(configDB.getInt(WRITER_BATCH_SIZE, options.getWriterBatchSize()));
+        options.setWriterFlushIntervalMS(configDB.getInt(WRITER_FLUSH_INTERVAL_MS, options.getWriterFlushIntervalMS()));
+        options.setLeasesPerProxy(configDB.getInt(LEASES_PER_PROXY, options.getLeasesPerProxy()));
+        options.setProxyBenchSec(configDB.getInt(PROXY_BENCH_SEC, options.getProxyBenchSec()));
+        options.setProxyMaxFailures(configDB.getInt(PROXY_MAX_FAILURES, options.getProxyMaxFailures()));
+        options.setProxyMinReuseSec(configDB.getInt(PROXY_MIN_REUSE_SEC, options.getProxyMinReuseSec()));
         
         options.setDefaultDatacenter(configDB.get(DEFAULT_DATACENTER, options.getDefaultDatacenter()));
         options.setDefaultDevice(configDB.get(DEFAULT_DEVICE, null));
@@ -57,10 +73,18 @@ public class GoogleOptionsDB {
         // scraping
         configDB.updateInt(PAGES, nullIfDefault(opts.getPages(), def.getPages()));
         configDB.updateInt(RESULT_PER_PAGE, nullIfDefault(opts.getResultPerPage(), def.getResultPerPage()));
+        configDB.updateBoolean(STOP_WHEN_RESOLVED, nullIfDefault(opts.isStopWhenResolved(), def.isStopWhenResolved()));
+        configDB.updateBoolean(STREAMING_PARSER, nullIfDefault(opts.isStreamingParser(), def.isStreamingParser()));
         configDB.updateInt(MIN_PAUSE_BETWEEN_PAGE_SEC, nullIfDefault(opts.getMinPauseBetweenPageSec(), def.getMinPauseBetweenPageSec()));
         configDB.updateInt(MAX_PAUSE_BETWEEN_PAGE_SEC, nullIfDefault(opts.getMaxPauseBetweenPageSec(), def.getMaxPauseBetweenPageSec()));
         configDB.updateInt(MAX_THREADS, nullIfDefault(opts.getMaxThreads(), def.getMaxThreads()));
         configDB.updateInt(FETCH_RETRY, nullIfDefault(opts.getFetchRetry(), def.getFetchRetry()));
+        configDB.updateInt(WRITER_BATCH_SIZE, nullIfDefault(opts.getWriterBatchSize(), def.getWriterBatchSize()));
+        configDB.updateInt(WRITER_FLUSH_INTERVAL_MS, nullIfDefault(opts.getWriterFlushIntervalMS(), def.getWriterFlushIntervalMS()));
+        configDB.updateInt(LEASES_PER_PROXY, nullIfDefault(opts.getLeasesPerProxy(), def.getLeasesPerProxy()));
+        configDB.updateInt(PROXY_BENCH_SEC, nullIfDefault(opts.getProxyBenchSec(), def.getProxyBenchSec()));
+        configDB.updateInt(PROXY_MAX_FAILURES, nullIfDefault(opts.getProxyMaxFailures(), def.getProxyMaxFailures()));
+        configDB.updateInt(PROXY_MIN_REUSE_SEC, nullIfDefault(opts.getProxyMinReuseSec(), def.getProxyMinReuseSec()));
 
         // search
         configDB.update(DEFAULT_DATACENTER, nullIfDefault(opts.getDefaultDatacenter(), def.getDefaultDatacenter()));
@@ -75,6 +99,10 @@ public class GoogleOptionsDB {
         return (Integer)nullIfDefaultObject(value, def);
     }
     
+    protected Boolean nullIfDefault(Boolean value, Boolean def){
+        return (Boolean)nullIfDefaultObject(value, def);
+    }
+    
     protected String nullIfDefault(String value, String def){
         return (String)nullIfDefaultObject(value, def);
     }
@@ -13,6 +13,7 @@ import com.querydsl.core.QueryFlag;
 import com.querydsl.core.Tuple;
 import com.querydsl.sql.SQLBindings;
 import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.StatementOptions;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.querydsl.sql.dml.SQLInsertClause;
 import com.querydsl.sql.dml.SQLMergeBatch;
@@ -23,6 +24,7 @@ import com.serphacker.serposcope.models.google.GoogleRank;
 import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.querybuilder.QGoogleRank;
 import com.serphacker.serposcope.querybuilder.QGoogleRankBest;
+import it.unimi.dsi.fastutil.longs.Long2ShortOpenHashMap;
 import java.sql.Connection;
 import java.sql.Statement;
 import java.sql.Timestamp;
@@ -40,6 +42,11 @@ public class GoogleRankDB extends AbstractDB {
 
     static QGoogleRank t_rank = QGoogleRank.googleRank;
     static QGoogleRankBest t_best = QGoogleRankBest.googleRankBest;
+    
+    /**
+     * rows fetched per round trip by {@link #stream(int, int, int, int, Consumer)}
+     */
+    public final static int STREAM_FETCH_SIZE = 500;
 
     public boolean insertBest(GoogleBest best){
         boolean inserted = false;
@@ -58,6 +65,28 @@ public class GoogleRankDB extends AbstractDB {
         return inserted;
     }
     
+    /**
+     * batch upsert using the caller connection, the caller is in charge of the transaction
+     */
+    public long insertBest(Connection con, Collection<GoogleBest> bests) throws Exception {
+        if(bests.isEmpty()){
+            return 0;
+        }
+        
+        SQLMergeClause clause = new SQLMergeClause(con, dbTplConf, t_best);
+        for (GoogleBest best : bests) {
+            clause
+                .set(t_best.groupId, best.getGroupId())
+                .set(t_best.googleTargetId, best.getGoogleTargetId())
+                .set(t_best.googleSearchId, best.getGoogleSearchId())
+                .set(t_best.rank, best.getRank())
+                .set(t_best.url, best.getUrl())
+                .set(t_best.runDay, best.getRunDay() == null ? null : Timestamp.valueOf(best.getRunDay()))
+                .addBatch();
+        }
+        return clause.execute();
+    }
+    
     public GoogleBest getBest(int groupId, int googleTargetId, int googleSearchId){
         GoogleBest best = null;
         
@@ -107,20 +136,7 @@ public class GoogleRankDB extends AbstractDB {
     
     public boolean insertMerge(Collection<GoogleRank> ranks){
         try(Connection con = ds.getConnection()){
-            SQLMergeClause clause = new SQLMergeClause(con, dbTplConf, t_rank);
-            for (GoogleRank rank : ranks) {
-                clause
-                    .set(t_rank.runId, rank.runId)
-                    .set(t_rank.groupId, rank.groupId)
-                    .set(t_rank.googleTargetId, rank.googleTargetId)
-                    .set(t_rank.googleSearchId, rank.googleSearchId)
-                    .set(t_rank.rank, rank.rank)
-                    .set(t_rank.previousRank, rank.previousRank)
-                    .set(t_rank.diff, rank.diff)
-                    .set(t_rank.url, rank.url)
-                    .addBatch();
-            }
-            return clause.execute() > 0;
+            return insertMerge(con, ranks) > 0;
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
@@ -129,63 +145,96 @@ public class GoogleRankDB extends AbstractDB {
     
     public boolean insertOnDuplicateKey(Collection<GoogleRank> ranks){
         try(Connection con = ds.getConnection()){
-            
-            // waiting for patch https://github.com/querydsl/querydsl/issues/1921
-            /*
-            SQLInsertClause clause = new SQLInsertClause(con, dbTplConf, t_rank);
-            clause.setBatchToBulk(true);
-            for (GoogleRank rank : ranks) {
-                clause
-                    .set(t_rank.runId, rank.runId)
-                    .set(t_rank.groupId, rank.groupId)
-                    .set(t_rank.googleTargetId, rank.googleTargetId)
-                    .set(t_rank.googleSearchId, rank.googleSearchId)
-                    .set(t_rank.rank, rank.rank)
-                    .set(t_rank.previousRank, rank.previousRank)
-                    .set(t_rank.diff, rank.diff)
-                    .set(t_rank.url, rank.url)
-                    .addBatch();
-            }
-            clause.addFlag(QueryFlag.Position.END, 
-                " on duplicate key update rank = values(rank) " +
-                ", previous_rank = values(previous_rank)" + 
-                ", diff = values(diff)" + 
-                ", url = values(url)"
-            );
-            return clause.execute() > 0;
-            */
-            
-            // 
-            StringBuilder builder = new StringBuilder("INSERT INTO `GOOGLE_RANK` " + 
-                "(`RUN_ID`, `GROUP_ID`, `GOOGLE_TARGET_ID`, `GOOGLE_SEARCH_ID`, `RANK`, `PREVIOUS_RANK`, `DIFF`, `URL`) " + 
-                "VALUES ");
-            for (GoogleRank rank : ranks) {
-                builder.append("(");
-                builder.append(rank.runId).append(',');
-                builder.append(rank.groupId).append(',');
-                builder.append(rank.googleTargetId).append(',');
-                builder.append(rank.googleSearchId).append(',');
-                builder.append(rank.rank).append(',');
-                builder.append(rank.previousRank).append(',');
-                builder.append(rank.diff).append(',');
-                builder.append(dbTplConf.asLiteral(rank.url));
-                builder.append("),");
-            }
-            builder.setCharAt(builder.length()-1, ' ');
-            builder.append(" on duplicate key update rank = values(rank) " +
-                ", previous_rank = values(previous_rank)" + 
-                ", diff = values(diff)" + 
-                ", url = values(url)"
-            );
-            try(Statement stmt = con.createStatement()){
-                return stmt.executeUpdate(builder.toString()) > 0;
-            }
-            
+            return insertOnDuplicateKey(con, ranks) > 0;
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
         return false;
-    }    
+    }
+    
+    /**
+     * batch upsert using the caller connection, the caller is in charge of the transaction
+     */
+    public long insert(Connection con, Collection<GoogleRank> ranks) throws Exception {
+        if(ranks.isEmpty()){
+            return 0;
+        }
+        if(dbTplConf.getTemplates().isNativeMerge()){
+            return insertMerge(con, ranks);
+        } else {
+            return insertOnDuplicateKey(con, ranks);
+        }
+    }
+    
+    protected long insertMerge(Connection con, Collection<GoogleRank> ranks) throws Exception {
+        SQLMergeClause clause = new SQLMergeClause(con, dbTplConf, t_rank);
+        for (GoogleRank rank : ranks) {
+            clause
+                .set(t_rank.runId, rank.runId)
+                .set(t_rank.groupId, rank.groupId)
+                .set(t_rank.googleTargetId, rank.googleTargetId)
+                .set(t_rank.googleSearchId, rank.googleSearchId)
+                .set(t_rank.rank, rank.rank)
+                .set(t_rank.previousRank, rank.previousRank)
+                .set(t_rank.diff, rank.diff)
+                .set(t_rank.url, rank.url)
+                .addBatch();
+        }
+        return clause.execute();
+    }
+    
+    protected long insertOnDuplicateKey(Connection con, Collection<GoogleRank> ranks) throws Exception {
+        // waiting for patch https://github.com/querydsl/querydsl/issues/1921
+        /*
+        SQLInsertClause clause = new SQLInsertClause(con, dbTplConf, t_rank);
+        clause.setBatchToBulk(true);
+        for (GoogleRank rank : ranks) {
+            clause
+                .set(t_rank.runId, rank.runId)
+                .set(t_rank.groupId, rank.groupId)
+                .set(t_rank.googleTargetId, rank.googleTargetId)
+                .set(t_rank.googleSearchId, rank.googleSearchId)
+                .set(t_rank.rank, rank.rank)
+                .set(t_rank.previousRank, rank.previousRank)
+                .set(t_rank.diff, rank.diff)
+                .set(t_rank.url, rank.url)
+                .addBatch();
+        }
+        clause.addFlag(QueryFlag.Position.END, 
+            " on duplicate key update rank = values(rank) " +
+            ", previous_rank = values(previous_rank)" + 
+            ", diff = values(diff)" + 
+            ", url = values(url)"
+        );
+        return clause.execute() > 0;
+        */
+
+        // 
+        StringBuilder builder = new StringBuilder("INSERT INTO `GOOGLE_RANK` " + 
+            "(`RUN_ID`, `GROUP_ID`, `GOOGLE_TARGET_ID`, `GOOGLE_SEARCH_ID`, `RANK`, `PREVIOUS_RANK`, `DIFF`, `URL`) " + 
+            "VALUES ");
+        for (GoogleRank rank : ranks) {
+            builder.append("(");
+            builder.append(rank.runId).append(',');
+            builder.append(rank.groupId).append(',');
+            builder.append(rank.googleTargetId).append(',');
+            builder.append(rank.googleSearchId).append(',');
+            builder.append(rank.rank).append(',');
+            builder.append(rank.previousRank).append(',');
+            builder.append(rank.diff).append(',');
+            builder.append(dbTplConf.asLiteral(rank.url));
+            builder.append("),");
+        }
+        builder.setCharAt(builder.length()-1, ' ');
+        builder.append(" on duplicate key update rank = values(rank) " +
+            ", previous_rank = values(previous_rank)" + 
+            ", diff = values(diff)" + 
+            ", url = values(url)"
+        );
+        try(Statement stmt = con.createStatement()){
+            return stmt.executeUpdate(builder.toString());
+        }
+    }
     
     public boolean insertMerge(GoogleRank rank) {
         boolean inserted = false;
@@ -252,6 +301,72 @@ public class GoogleRankDB extends AbstractDB {
         return rank != null ? rank : GoogleRank.UNRANKED;
     }
 
+    /**
+     * a target belongs to a single group, (target, search) is enough to identify a rank of a run
+     */
+    public static long targetSearchKey(int googleTargetId, int googleSearchId){
+        return (((long)googleTargetId) << 32) | (googleSearchId & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * stream all the ranks of a run in a map keyed by {@link #targetSearchKey(int, int)}
+     */
+    public Long2ShortOpenHashMap loadRanks(int runId){
+        Long2ShortOpenHashMap ranks = new Long2ShortOpenHashMap();
+        ranks.defaultReturnValue((short)GoogleRank.UNRANKED);
+        
+        try(Connection con = ds.getConnection()){
+            
+            try(CloseableIterator<Tuple> iterate = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_rank.googleTargetId, t_rank.googleSearchId, t_rank.rank)
+                .from(t_rank)
+                .where(t_rank.runId.eq(runId))
+                .iterate()){
+                while(iterate.hasNext()){
+                    Tuple tuple = iterate.next();
+                    Short rank = tuple.get(t_rank.rank);
+                    if(rank != null){
+                        ranks.put(targetSearchKey(tuple.get(t_rank.googleTargetId), tuple.get(t_rank.googleSearchId)), rank.shortValue());
+                    }
+                }
+            }
+            
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        
+        return ranks;
+    }
+    
+    /**
+     * stream the whole best table in a map keyed by {@link #targetSearchKey(int, int)}
+     */
+    public Long2ShortOpenHashMap loadBests(){
+        Long2ShortOpenHashMap bests = new Long2ShortOpenHashMap();
+        bests.defaultReturnValue((short)GoogleRank.UNRANKED);
+        
+        try(Connection con = ds.getConnection()){
+            
+            try(CloseableIterator<Tuple> iterate = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_best.googleTargetId, t_best.googleSearchId, t_best.rank)
+                .from(t_best)
+                .iterate()){
+                while(iterate.hasNext()){
+                    Tuple tuple = iterate.next();
+                    Short rank = tuple.get(t_best.rank);
+                    if(rank != null){
+                        bests.put(targetSearchKey(tuple.get(t_best.googleTargetId), tuple.get(t_best.googleSearchId)), rank.shortValue());
+                    }
+                }
+            }
+            
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        
+        return bests;
+    }
+
     public GoogleRank getFull(int runId, int groupId, int googleTargetId, int googleSearchId){
         GoogleRank rank = null;
         
@@ -275,6 +390,34 @@ public class GoogleRankDB extends AbstractDB {
         return rank;
     }   
     
+    /**
+     * stream the ranks of a target in a range of runs, ordered by run id then search id,
+     * with a single query read on a forward only cursor
+     */
+    public void stream(int firstRunId, int lastRunId, int groupId, int googleTargetId, Consumer<GoogleRank> callback){
+        
+        try(Connection con = ds.getConnection()){
+            
+            SQLQuery<Tuple> query = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_rank.all())
+                .from(t_rank)
+                .where(t_rank.runId.between(firstRunId, lastRunId))
+                .where(t_rank.groupId.eq(groupId))
+                .where(t_rank.googleTargetId.eq(googleTargetId))
+                .orderBy(t_rank.runId.asc(), t_rank.googleSearchId.asc());
+            query.setStatementOptions(StatementOptions.builder().setFetchSize(STREAM_FETCH_SIZE).build());
+            
+            try(CloseableIterator<Tuple> iterate = query.iterate()){
+                while(iterate.hasNext()){
+                    callback.accept(fromTuple(iterate.next()));
+                }
+            }
+            
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+    
     public List<GoogleRank> list0(int runId, int groupId, int targetId){
         List<GoogleRank> ranks = new ArrayList<>();
         
@@ -392,14 +535,21 @@ public class GoogleRankDB extends AbstractDB {
     
     public void deleteByRunId(Integer runId){
         try(Connection con = ds.getConnection()){
-            new SQLDeleteClause(con, dbTplConf, t_rank)
-                .where(t_rank.runId.eq(runId))
-                .execute();
+            deleteByRunId(con, runId);
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
     }        
     
+    /**
+     * delete using the caller connection, the caller is in charge of the transaction
+     */
+    public long deleteByRunId(Connection con, int runId) throws Exception {
+        return new SQLDeleteClause(con, dbTplConf, t_rank)
+            .where(t_rank.runId.eq(runId))
+            .execute();
+    }
+    
     public void wipe(){
         try(Connection con = ds.getConnection()){
             new SQLDeleteClause(con, dbTplConf, t_best).execute();
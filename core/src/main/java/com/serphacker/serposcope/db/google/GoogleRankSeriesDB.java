@@ -0,0 +1,522 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Singleton;
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLMergeClause;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleRankSeries;
+import com.serphacker.serposcope.querybuilder.QGoogleRank;
+import com.serphacker.serposcope.querybuilder.QGoogleRankSeries;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.sql.rowset.serial.SerialBlob;
+
+/**
+ * rank history of each (group, target, search) in a single row, kept in sync with GOOGLE_RANK at the end of
+ * each run so history reads don't scan GOOGLE_RANK run by run.
+ * The series only hold the positions, views needing the ranked url or the previous rank still read GOOGLE_RANK.
+ */
+@Singleton
+public class GoogleRankSeriesDB extends AbstractDB {
+
+    static QGoogleRankSeries t_series = QGoogleRankSeries.googleRankSeries;
+    static QGoogleRank t_rank = QGoogleRank.googleRank;
+
+    public final static int WRITE_BATCH_SIZE = 500;
+
+    public GoogleRankSeries get(int groupId, int googleTargetId, int googleSearchId){
+        GoogleRankSeries series = null;
+
+        try(Connection con = ds.getConnection()){
+            Tuple tuple = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_series.all())
+                .from(t_series)
+                .where(t_series.groupId.eq(groupId))
+                .where(t_series.googleTargetId.eq(googleTargetId))
+                .where(t_series.googleSearchId.eq(googleSearchId))
+                .fetchFirst();
+
+            series = fromTuple(tuple);
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        return series;
+    }
+
+    /**
+     * series of a target ordered by search id
+     */
+    public List<GoogleRankSeries> list(int groupId, int googleTargetId){
+        List<GoogleRankSeries> list = new ArrayList<>();
+
+        try(Connection con = ds.getConnection()){
+            list.addAll(listByTarget(con, groupId, googleTargetId).values());
+            list.sort((s1, s2) -> Integer.compare(s1.getGoogleSearchId(), s2.getGoogleSearchId()));
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        return list;
+    }
+
+    /**
+     * series of the targets of a search, keyed by target id
+     */
+    public Map<Integer, GoogleRankSeries> listBySearch(int groupId, int googleSearchId){
+        Map<Integer, GoogleRankSeries> map = new HashMap<>();
+
+        try(Connection con = ds.getConnection()){
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_series.all())
+                .from(t_series)
+                .where(t_series.groupId.eq(groupId))
+                .where(t_series.googleSearchId.eq(googleSearchId))
+                .fetch();
+
+            for (Tuple tuple : tuples) {
+                GoogleRankSeries series = fromTuple(tuple);
+                map.put(series.getGoogleTargetId(), series);
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        return map;
+    }
+
+    /**
+     * ranks of a target in a range of runs, ordered by run id then search id, like
+     * {@link GoogleRankDB#stream(int, int, int, int, Consumer)} but read from the series of the target.
+     * The ranks have no url and no previous rank.
+     */
+    public void stream(int firstRunId, int lastRunId, int groupId, int googleTargetId, Consumer<GoogleRank> callback){
+        List<GoogleRankSeries> list = list(groupId, googleTargetId);
+
+        int[] cursors = new int[list.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            int index = list.get(i).indexOf(firstRunId);
+            cursors[i] = index < 0 ? -index - 1 : index;
+        }
+
+        while(true){
+            int runId = Integer.MAX_VALUE;
+            for (int i = 0; i < cursors.length; i++) {
+                GoogleRankSeries series = list.get(i);
+                if(cursors[i] < series.size() && series.getRunId(cursors[i]) < runId){
+                    runId = series.getRunId(cursors[i]);
+                }
+            }
+            if(runId == Integer.MAX_VALUE || runId > lastRunId){
+                return;
+            }
+
+            for (int i = 0; i < cursors.length; i++) {
+                GoogleRankSeries series = list.get(i);
+                if(cursors[i] < series.size() && series.getRunId(cursors[i]) == runId){
+                    callback.accept(new GoogleRank(runId, groupId, googleTargetId, series.getGoogleSearchId(),
+                        series.getRank(cursors[i]), GoogleRank.UNRANKED, null));
+                    cursors[i]++;
+                }
+            }
+        }
+    }
+
+    public boolean insert(Collection<GoogleRankSeries> series){
+        try(Connection con = ds.getConnection()){
+            insert(con, series);
+            return true;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    /**
+     * batch upsert using the caller connection
+     */
+    public long insert(Connection con, Collection<GoogleRankSeries> series) throws Exception {
+        if(series.isEmpty()){
+            return 0;
+        }
+
+        SQLMergeClause clause = new SQLMergeClause(con, dbTplConf, t_series);
+        for (GoogleRankSeries serie : series) {
+            clause
+                .set(t_series.groupId, serie.getGroupId())
+                .set(t_series.googleTargetId, serie.getGoogleTargetId())
+                .set(t_series.googleSearchId, serie.getGoogleSearchId())
+                .set(t_series.firstRunId, serie.getFirstRunId())
+                .set(t_series.lastRunId, serie.getLastRunId())
+                .set(t_series.series, new SerialBlob(serie.getSerialized()))
+                .addBatch();
+        }
+        return clause.execute();
+    }
+
+    /**
+     * adds the ranks of a run to the series, ranks already in the series for this run are replaced
+     */
+    public boolean appendRun(int runId){
+        try(Connection con = ds.getConnection()){
+            appendRun(con, runId);
+            return true;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    /**
+     * append using the caller connection, the caller is in charge of the transaction
+     */
+    public void appendRun(Connection con, int runId) throws Exception {
+        Map<Integer, GoogleRankSeries> targetSeries = Collections.emptyMap();
+        int groupId = 0, targetId = 0;
+        List<GoogleRankSeries> updated = new ArrayList<>();
+
+        // ranks are streamed ordered by target, only the series of the current target are in memory
+        try(CloseableIterator<Tuple> ranks = new SQLQuery<Void>(con, dbTplConf)
+            .select(t_rank.groupId, t_rank.googleTargetId, t_rank.googleSearchId, t_rank.rank)
+            .from(t_rank)
+            .where(t_rank.runId.eq(runId))
+            .orderBy(t_rank.groupId.asc(), t_rank.googleTargetId.asc())
+            .iterate()){
+
+            while(ranks.hasNext()){
+                Tuple tuple = ranks.next();
+                if(tuple.get(t_rank.groupId) != groupId || tuple.get(t_rank.googleTargetId) != targetId){
+                    groupId = tuple.get(t_rank.groupId);
+                    targetId = tuple.get(t_rank.googleTargetId);
+                    targetSeries = listByTarget(con, groupId, targetId);
+                }
+
+                final int group = groupId, target = targetId;
+                GoogleRankSeries series = targetSeries.computeIfAbsent(tuple.get(t_rank.googleSearchId),
+                    (searchId) -> new GoogleRankSeries(group, target, searchId));
+                series.put(runId, rankOf(tuple));
+                updated.add(series);
+
+                if(updated.size() >= WRITE_BATCH_SIZE){
+                    insert(con, updated);
+                    updated.clear();
+                }
+            }
+        }
+        insert(con, updated);
+    }
+
+    public boolean deleteByRunId(int runId){
+        return deleteByRunIds(Collections.singletonList(runId));
+    }
+
+    /**
+     * removes the runs from the series, series left empty are deleted
+     */
+    public boolean deleteByRunIds(Collection<Integer> runIds){
+        if(runIds.isEmpty()){
+            return true;
+        }
+
+        try(Connection con = ds.getConnection()){
+            deleteByRunIds(con, runIds);
+            return true;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    /**
+     * delete using the caller connection, the caller is in charge of the transaction
+     */
+    public void deleteByRunIds(Connection con, Collection<Integer> runIds) throws Exception {
+        if(runIds.isEmpty()){
+            return;
+        }
+
+        int minRunId = Collections.min(runIds);
+        int maxRunId = Collections.max(runIds);
+
+        List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+            .select(t_series.all())
+            .from(t_series)
+            .where(t_series.firstRunId.loe(maxRunId))
+            .where(t_series.lastRunId.goe(minRunId))
+            .fetch();
+
+        List<GoogleRankSeries> updated = new ArrayList<>();
+        for (Tuple tuple : tuples) {
+            GoogleRankSeries series = fromTuple(tuple);
+            boolean removed = false;
+            for (Integer runId : runIds) {
+                removed |= series.remove(runId);
+            }
+            if(!removed){
+                continue;
+            }
+
+            if(series.size() == 0){
+                new SQLDeleteClause(con, dbTplConf, t_series)
+                    .where(t_series.groupId.eq(series.getGroupId()))
+                    .where(t_series.googleTargetId.eq(series.getGoogleTargetId()))
+                    .where(t_series.googleSearchId.eq(series.getGoogleSearchId()))
+                    .execute();
+            } else {
+                updated.add(series);
+            }
+
+            if(updated.size() >= WRITE_BATCH_SIZE){
+                insert(con, updated);
+                updated.clear();
+            }
+        }
+        insert(con, updated);
+    }
+
+    public boolean deleteBySearch(int groupId, int googleSearchId){
+        boolean deleted = false;
+        try(Connection con = ds.getConnection()){
+            deleted = new SQLDeleteClause(con, dbTplConf, t_series)
+                .where(t_series.groupId.eq(groupId))
+                .where(t_series.googleSearchId.eq(googleSearchId))
+                .execute() > 0;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return deleted;
+    }
+
+    public boolean deleteByTarget(int groupId, int googleTargetId){
+        boolean deleted = false;
+        try(Connection con = ds.getConnection()){
+            deleted = new SQLDeleteClause(con, dbTplConf, t_series)
+                .where(t_series.groupId.eq(groupId))
+                .where(t_series.googleTargetId.eq(googleTargetId))
+                .execute() > 0;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return deleted;
+    }
+
+    public void wipe(){
+        try(Connection con = ds.getConnection()){
+            new SQLDeleteClause(con, dbTplConf, t_series)
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    /**
+     * rebuilds all the series from GOOGLE_RANK, returns the number of series written or -1 on error
+     */
+    public long rebuild(){
+        try(Connection con = ds.getConnection()){
+            return rebuild(con);
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return -1;
+    }
+
+    /**
+     * rebuild using the caller connection, the caller is in charge of the transaction
+     */
+    public long rebuild(Connection con) throws Exception {
+        new SQLDeleteClause(con, dbTplConf, t_series).execute();
+
+        long written = 0;
+        List<GoogleRankSeries> batch = new ArrayList<>();
+        try(RankSeriesReader reader = readRanks(con)){
+            GoogleRankSeries series;
+            while((series = reader.next()) != null){
+                batch.add(series);
+                if(batch.size() >= WRITE_BATCH_SIZE){
+                    insert(con, batch);
+                    written += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        insert(con, batch);
+        written += batch.size();
+
+        return written;
+    }
+
+    /**
+     * compares the series with GOOGLE_RANK, returns the number of series missing, extra or different,
+     * or -1 on error
+     */
+    public int check(){
+        int inconsistent = 0;
+
+        try(
+            Connection con = ds.getConnection();
+            RankSeriesReader reader = readRanks(con);
+            CloseableIterator<Tuple> stored = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_series.all())
+                .from(t_series)
+                .orderBy(t_series.groupId.asc(), t_series.googleTargetId.asc(), t_series.googleSearchId.asc())
+                .iterate()
+        ){
+            GoogleRankSeries expected = reader.next();
+            GoogleRankSeries actual = stored.hasNext() ? fromTuple(stored.next()) : null;
+
+            while(expected != null || actual != null){
+                int cmp = expected == null ? 1 : (actual == null ? -1 : compareKeys(expected, actual));
+                if(cmp == 0 && expected.equals(actual)){
+                    expected = reader.next();
+                    actual = stored.hasNext() ? fromTuple(stored.next()) : null;
+                    continue;
+                }
+
+                inconsistent++;
+                GoogleRankSeries key = cmp <= 0 ? expected : actual;
+                LOG.warn("inconsistent rank series group={} target={} search={} ({})", new Object[]{
+                    key.getGroupId(), key.getGoogleTargetId(), key.getGoogleSearchId(),
+                    cmp < 0 ? "missing" : (cmp > 0 ? "extra" : "different")
+                });
+
+                if(cmp <= 0){
+                    expected = reader.next();
+                }
+                if(cmp >= 0){
+                    actual = stored.hasNext() ? fromTuple(stored.next()) : null;
+                }
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+            return -1;
+        }
+
+        return inconsistent;
+    }
+
+    protected RankSeriesReader readRanks(Connection con){
+        return new RankSeriesReader(new SQLQuery<Void>(con, dbTplConf)
+            .select(t_rank.groupId, t_rank.googleTargetId, t_rank.googleSearchId, t_rank.runId, t_rank.rank)
+            .from(t_rank)
+            .orderBy(t_rank.groupId.asc(), t_rank.googleTargetId.asc(), t_rank.googleSearchId.asc(), t_rank.runId.asc())
+            .iterate());
+    }
+
+    /**
+     * builds the series from ranks ordered by group, target, search and run
+     */
+    protected static class RankSeriesReader implements AutoCloseable {
+
+        final CloseableIterator<Tuple> ranks;
+        Tuple pending;
+
+        public RankSeriesReader(CloseableIterator<Tuple> ranks) {
+            this.ranks = ranks;
+        }
+
+        /**
+         * null at the end
+         */
+        public GoogleRankSeries next(){
+            Tuple tuple = pending;
+            pending = null;
+            if(tuple == null){
+                if(!ranks.hasNext()){
+                    return null;
+                }
+                tuple = ranks.next();
+            }
+
+            GoogleRankSeries series = new GoogleRankSeries(tuple.get(t_rank.groupId), tuple.get(t_rank.googleTargetId),
+                tuple.get(t_rank.googleSearchId));
+            series.put(tuple.get(t_rank.runId), rankOf(tuple));
+
+            while(ranks.hasNext()){
+                tuple = ranks.next();
+                if(tuple.get(t_rank.groupId) != series.getGroupId()
+                    || tuple.get(t_rank.googleTargetId) != series.getGoogleTargetId()
+                    || tuple.get(t_rank.googleSearchId) != series.getGoogleSearchId()){
+                    pending = tuple;
+                    break;
+                }
+                series.put(tuple.get(t_rank.runId), rankOf(tuple));
+            }
+
+            return series;
+        }
+
+        @Override
+        public void close() {
+            ranks.close();
+        }
+
+    }
+
+    protected static int compareKeys(GoogleRankSeries s1, GoogleRankSeries s2){
+        int cmp = Integer.compare(s1.getGroupId(), s2.getGroupId());
+        if(cmp == 0){
+            cmp = Integer.compare(s1.getGoogleTargetId(), s2.getGoogleTargetId());
+        }
+        if(cmp == 0){
+            cmp = Integer.compare(s1.getGoogleSearchId(), s2.getGoogleSearchId());
+        }
+        return cmp;
+    }
+
+    protected static int rankOf(Tuple tuple){
+        Short rank = tuple.get(t_rank.rank);
+        return rank == null ? GoogleRank.UNRANKED : rank;
+    }
+
+    protected Map<Integer, GoogleRankSeries> listByTarget(Connection con, int groupId, int googleTargetId) throws Exception {
+        Map<Integer, GoogleRankSeries> map = new HashMap<>();
+
+        List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+            .select(t_series.all())
+            .from(t_series)
+            .where(t_series.groupId.eq(groupId))
+            .where(t_series.googleTargetId.eq(googleTargetId))
+            .fetch();
+
+        for (Tuple tuple : tuples) {
+            GoogleRankSeries series = fromTuple(tuple);
+            map.put(series.getGoogleSearchId(), series);
+        }
+
+        return map;
+    }
+
+    protected GoogleRankSeries fromTuple(Tuple tuple) throws Exception {
+        if(tuple == null){
+            return null;
+        }
+
+        GoogleRankSeries series = new GoogleRankSeries(tuple.get(t_series.groupId), tuple.get(t_series.googleTargetId),
+            tuple.get(t_series.googleSearchId));
+        Blob blob = tuple.get(t_series.series);
+        if(blob != null){
+            series.setSerialized(blob.getBytes(1, (int)blob.length()));
+        }
+        return series;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.common.collect.Iterables;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.models.google.GoogleBest;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleTargetSummary;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * writes the results of a batch of searches (serps and their url index, ranks and bests) in a single transaction
+ */
+@Singleton
+public class GoogleResultDB extends AbstractDB {
+
+    public final static int WRITE_BATCH_SIZE = 2000;
+
+    @Inject
+    GoogleSerpDB serpDB;
+
+    @Inject
+    GoogleRankDB rankDB;
+
+    @Inject
+    GoogleUrlIndexDB urlIndexDB;
+
+    @Inject
+    GoogleRankSeriesDB rankSeriesDB;
+
+    @Inject
+    GoogleTargetSummaryDB targetSummaryDB;
+
+    public boolean insert(Collection<GoogleSerp> serps, Collection<GoogleRank> ranks, Collection<GoogleBest> bests){
+        try(Connection con = ds.getConnection()){
+            con.setAutoCommit(false);
+            try {
+                serpDB.insert(con, serps);
+                urlIndexDB.index(con, serps);
+                rankDB.insert(con, ranks);
+                rankDB.insertBest(con, bests);
+                con.commit();
+                return true;
+            } catch(Exception ex){
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    /**
+     * replaces the ranks, rank series and summaries of a run in a single transaction, the previous rows are kept
+     * if anything fails
+     */
+    public boolean replaceRun(int runId, Collection<GoogleRank> ranks, Collection<GoogleBest> bests,
+        Collection<GoogleTargetSummary> summaries){
+        try(Connection con = ds.getConnection()){
+            con.setAutoCommit(false);
+            try {
+                targetSummaryDB.deleteByRun(con, runId);
+                rankDB.deleteByRunId(con, runId);
+                rankSeriesDB.deleteByRunIds(con, Collections.singletonList(runId));
+                for (List<GoogleRank> batch : Iterables.partition(ranks, WRITE_BATCH_SIZE)) {
+                    rankDB.insert(con, batch);
+                }
+                rankDB.insertBest(con, bests);
+                rankSeriesDB.appendRun(con, runId);
+                targetSummaryDB.insert(con, summaries);
+                con.commit();
+                return true;
+            } catch(Exception ex){
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+}
@@ -321,6 +321,33 @@ public class GoogleSearchDB extends AbstractDB {
         return searches;
     }
     
+    /**
+     * groups of every search, in a single query
+     */
+    public Map<Integer, List<Integer>> mapGroupsBySearchId(){
+        Map<Integer, List<Integer>> groups = new HashMap<>();
+        
+        try(Connection con = ds.getConnection()){
+            
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_ggroup.googleSearchId, t_ggroup.groupId)
+                .from(t_ggroup)
+                .fetch();
+            
+            if(tuples != null){
+                for (Tuple tuple : tuples) {
+                    groups.computeIfAbsent(tuple.get(t_ggroup.googleSearchId), (id) -> new ArrayList<>())
+                        .add(tuple.get(t_ggroup.groupId));
+                }
+            }
+            
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        
+        return groups;
+    }
+    
     public List<Integer> listGroups(GoogleSearch search){
         List<Integer> groups = new ArrayList<>();
         
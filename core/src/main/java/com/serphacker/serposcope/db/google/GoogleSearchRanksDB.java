@@ -0,0 +1,144 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleRankSeries;
+import com.serphacker.serposcope.models.google.GoogleSearchRanks;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * rank history of the targets of a search, as shown by the search page chart
+ */
+@Singleton
+public class GoogleSearchRanksDB extends AbstractDB {
+
+    // position of a target absent from a partial serp
+    final static int UNKNOWN_RANK = -1;
+
+    @Inject
+    GoogleSerpDB serpDB;
+
+    @Inject
+    GoogleRankSeriesDB rankSeriesDB;
+
+    /**
+     * ranks read from the rank series, the serps are only matched for the runs where a target has no rank
+     * (target added after the run, target not found in a partial serp)
+     *
+     * @param runs ordered by id
+     */
+    public GoogleSearchRanks list(List<Run> runs, int groupId, int googleSearchId, List<GoogleTarget> targets){
+        GoogleSearchRanks ranks = new GoogleSearchRanks(targets.size());
+        if(runs.isEmpty()){
+            return ranks;
+        }
+
+        GoogleRankSeries[] series = new GoogleRankSeries[targets.size()];
+        if(!targets.isEmpty()){
+            Map<Integer, GoogleRankSeries> seriesByTarget = rankSeriesDB.listBySearch(groupId, googleSearchId);
+            for (int i = 0; i < series.length; i++) {
+                series[i] = seriesByTarget.get(targets.get(i).getId());
+            }
+        }
+
+        int[][] rows = new int[runs.size()][];
+        Map<Integer, Integer> missing = new HashMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            int runId = runs.get(i).getId();
+            int[] row = new int[targets.size()];
+            boolean complete = !targets.isEmpty();
+            for (int j = 0; j < series.length && complete; j++) {
+                int index = series[j] == null ? -1 : series[j].indexOf(runId);
+                if(index < 0){
+                    complete = false;
+                } else {
+                    row[j] = series[j].getRank(index);
+                }
+            }
+            if(complete){
+                rows[i] = row;
+            } else {
+                missing.put(runId, i);
+            }
+        }
+
+        if(!missing.isEmpty()){
+            GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+            serpDB.stream(new ArrayList<>(missing.keySet()), googleSearchId, (GoogleSerp serp) -> {
+                int[] row = matcher.match(serp);
+                for (int j = 0; j < series.length; j++) {
+                    int index = series[j] == null ? -1 : series[j].indexOf(serp.getRunId());
+                    if(index >= 0){
+                        row[j] = series[j].getRank(index);
+                    } else if(row[j] == GoogleRank.UNRANKED && serp.isPartial()){
+                        row[j] = UNKNOWN_RANK;
+                    }
+                }
+                rows[missing.get(serp.getRunId())] = row;
+            });
+        }
+
+        int[] previous = null;
+        for (int i = 0; i < rows.length; i++) {
+            // no serp for this run
+            if(rows[i] != null){
+                keepPreviousRanks(rows[i], previous);
+                ranks.add(runs.get(i).getId(), runs.get(i).getStarted(), rows[i]);
+                previous = rows[i];
+            }
+        }
+        return ranks;
+    }
+
+    /**
+     * ranks matched in every serp of the search in a range of runs, what {@link #list(List, int, int, List)}
+     * falls back to
+     */
+    public GoogleSearchRanks listFromSerps(int firstRunId, int lastRunId, int googleSearchId, List<GoogleTarget> targets){
+        GoogleSearchRanks ranks = new GoogleSearchRanks(targets.size());
+        GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+        int[][] previous = new int[1][];
+        serpDB.stream(firstRunId, lastRunId, googleSearchId, (GoogleSerp serp) -> {
+            int[] row = matcher.match(serp);
+            if(serp.isPartial()){
+                for (int j = 0; j < row.length; j++) {
+                    if(row[j] == GoogleRank.UNRANKED){
+                        row[j] = UNKNOWN_RANK;
+                    }
+                }
+            }
+            keepPreviousRanks(row, previous[0]);
+            ranks.add(serp.getRunId(), serp.getRunDay(), row);
+            previous[0] = row;
+        });
+        return ranks;
+    }
+
+    /**
+     * targets not found in a partial serp keep the rank of the previous run
+     */
+    protected static void keepPreviousRanks(int[] row, int[] previous){
+        for (int j = 0; j < row.length; j++) {
+            if(row[j] == UNKNOWN_RANK){
+                row[j] = previous == null ? GoogleRank.UNRANKED : previous[j];
+            }
+        }
+    }
+
+}
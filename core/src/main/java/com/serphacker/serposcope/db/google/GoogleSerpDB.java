@@ -20,6 +20,11 @@ import java.nio.ByteBuffer;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import javax.sql.rowset.serial.SerialBlob;
 import net.jpountz.lz4.LZ4Compressor;
@@ -54,6 +59,26 @@ public class GoogleSerpDB extends AbstractDB {
         return inserted;
     }
     
+    /**
+     * batch insert using the caller connection, the caller is in charge of the transaction
+     */
+    public long insert(Connection con, Collection<GoogleSerp> serps) throws Exception {
+        if(serps.isEmpty()){
+            return 0;
+        }
+        
+        SQLInsertClause clause = new SQLInsertClause(con, dbTplConf, t_serp);
+        for (GoogleSerp serp : serps) {
+            clause
+                .set(t_serp.runId, serp.getRunId())
+                .set(t_serp.googleSearchId, serp.getGoogleSearchId())
+                .set(t_serp.runDay, Timestamp.valueOf(serp.getRunDay()))
+                .set(t_serp.serp, new SerialBlob(compress(serp.getSerializedEntries())))
+                .addBatch();
+        }
+        return clause.execute();
+    }
+    
     public void deleteByRun(int runId){
         try(Connection con = ds.getConnection()){
             new SQLDeleteClause(con, dbTplConf, t_serp)
@@ -102,26 +127,59 @@ public class GoogleSerpDB extends AbstractDB {
         return serp;
     }
     
-//    public void stream(Collection<Integer> runs, int googleSearchId, Consumer<GoogleSerp> callback){
-//        try(Connection con = ds.getConnection()){
-//            
-//            CloseableIterator<Tuple> iterate = new SQLQuery<Void>(con, dbTplConf)
-//                .select(t_serp.all())
-//                .from(t_serp)
-//                .where(t_serp.runId.in(runs))
-//                .where(t_serp.googleSearchId.eq(googleSearchId))
-//                .orderBy(t_serp.runId.asc())
-//                .iterate();
-//            
-//            while(iterate.hasNext()){
-//                GoogleSerp serp = fromTuple(iterate.next());
-//                callback.accept(serp);
-//            }
-//            
-//        }catch(Exception ex){
-//            LOG.error("SQL error", ex);
-//        }
-//    }    
+    /**
+     * run days of the serps of a search in a range of runs, keyed by run id in run order, serps are not read
+     */
+    public Map<Integer, LocalDateTime> listRunDays(int firstRun, int lastRun, int googleSearchId){
+        Map<Integer, LocalDateTime> runDays = new LinkedHashMap<>();
+        try(Connection con = ds.getConnection()){
+            
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.runId, t_serp.runDay)
+                .from(t_serp)
+                .where(t_serp.runId.between(firstRun, lastRun))
+                .where(t_serp.googleSearchId.eq(googleSearchId))
+                .orderBy(t_serp.runId.asc())
+                .fetch();
+            
+            for (Tuple tuple : tuples) {
+                runDays.put(tuple.get(t_serp.runId), tuple.get(t_serp.runDay).toLocalDateTime());
+            }
+            
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return runDays;
+    }
+    
+    /**
+     * stream the serps of a search for a set of runs, ordered by run id
+     */
+    public void stream(Collection<Integer> runs, int googleSearchId, Consumer<GoogleSerp> callback){
+        if(runs.isEmpty()){
+            return;
+        }
+        
+        try(Connection con = ds.getConnection()){
+            
+            CloseableIterator<Tuple> iterate = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.all())
+                .from(t_serp)
+                .where(t_serp.runId.in(runs))
+                .where(t_serp.googleSearchId.eq(googleSearchId))
+                .orderBy(t_serp.runId.asc())
+                .iterate();
+            
+            while(iterate.hasNext()){
+                GoogleSerp serp = fromTuple(iterate.next());
+                callback.accept(serp);
+            }
+            iterate.close();
+            
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }    
     
     public void stream(Integer firstRun, Integer lastRun, int googleSearchId, Consumer<GoogleSerp> callback){
         try(Connection con = ds.getConnection()){
@@ -153,6 +211,73 @@ public class GoogleSerpDB extends AbstractDB {
         }
     }
     
+    /**
+     * stream the serps of a set of searches in a range of runs, ordered by search id then run id
+     */
+    public void stream(Integer firstRun, Integer lastRun, Collection<Integer> googleSearchIds, Consumer<GoogleSerp> callback){
+        if(googleSearchIds.isEmpty()){
+            return;
+        }
+        
+        try(Connection con = ds.getConnection()){
+            
+            SQLQuery<Tuple> query = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.all())
+                .from(t_serp);
+            
+            if(firstRun != null){
+                query.where(t_serp.runId.goe(firstRun));
+            }
+            
+            if(lastRun != null){
+                query.where(t_serp.runId.loe(lastRun));
+            }
+            
+            CloseableIterator<Tuple> iterate = query
+                .where(t_serp.googleSearchId.in(googleSearchIds))
+                .orderBy(t_serp.googleSearchId.asc(), t_serp.runId.asc())
+                .iterate();
+            
+            while(iterate.hasNext()){
+                GoogleSerp serp = fromTuple(iterate.next());
+                callback.accept(serp);
+            }
+            iterate.close();
+            
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+    
+    /**
+     * stream the serps of a run for a set of searches, ordered by search id
+     */
+    public void stream(int runId, Collection<Integer> googleSearchIds, Consumer<GoogleSerp> callback){
+        if(googleSearchIds.isEmpty()){
+            return;
+        }
+        
+        try(Connection con = ds.getConnection()){
+            
+            CloseableIterator<Tuple> iterate = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.all())
+                .from(t_serp)
+                .where(t_serp.runId.eq(runId))
+                .where(t_serp.googleSearchId.in(googleSearchIds))
+                .orderBy(t_serp.googleSearchId.asc())
+                .iterate();
+            
+            while(iterate.hasNext()){
+                GoogleSerp serp = fromTuple(iterate.next());
+                callback.accept(serp);
+            }
+            iterate.close();
+            
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+    
     protected GoogleSerp fromTuple(Tuple tuple) throws Exception{
         if(tuple == null){
             return null;
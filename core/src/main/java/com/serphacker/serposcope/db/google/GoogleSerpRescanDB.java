@@ -15,6 +15,7 @@ import com.serphacker.serposcope.models.google.GoogleRank;
 import com.serphacker.serposcope.models.google.GoogleSearch;
 import com.serphacker.serposcope.models.google.GoogleSerp;
 import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
 import com.serphacker.serposcope.models.google.GoogleTargetSummary;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,7 +26,6 @@ import java.util.TreeMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,72 +64,50 @@ public class GoogleSerpRescanDB {
             }
         }        
         
-        for (GoogleTarget target : targets) {
-            
-            Map<Integer, GoogleTargetSummary> summaryByRunId = new HashMap<>();
-            GoogleTargetSummary specificPreviousSummary = specPrevRunSummaryByTarget.get(target.getId());
-            if(specificPreviousSummary != null){
-                summaryByRunId.put(specPrevRun.getId(), specificPreviousSummary);
-            }
-            
-            for (GoogleSearch search : searches) {
-                final MutableInt previousRunId = new MutableInt(0);
-                final MutableInt previousRank = new MutableInt(GoogleRank.UNRANKED);
-                GoogleBest searchBest = new GoogleBest(target.getGroupId(), target.getId(), search.getId(), GoogleRank.UNRANKED, null, null);
-                
-                if(specPrevRun != null){
-                    previousRunId.setValue(specPrevRun.getId());
-                    previousRank.setValue(rankDB.get(specPrevRun.getId(), target.getGroupId(), target.getId(), search.getId()));
-                    GoogleBest specificBest = rankDB.getBest(target.getGroupId(), target.getId(), search.getId());
-                    if(specificBest != null){
-                        searchBest = specificBest;
-                    }
-                }
-                final GoogleBest best = searchBest;
+        GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+        List<GoogleTarget> matcherTargets = matcher.getTargets();
+        List<Map<Integer, GoogleTargetSummary>> summariesByTarget = initSummaries(matcherTargets, specPrevRun, specPrevRunSummaryByTarget);
+        
+        for (GoogleSearch search : searches) {
+            int[] previousRanks = new int[matcherTargets.size()];
+            GoogleBest[] bests = initBests(matcherTargets, search, specPrevRun, previousRanks);
 
-                serpDB.stream(specificRunId, specificRunId, search.getId(), (GoogleSerp res) -> {
-                    
-                    int rank = GoogleRank.UNRANKED;
-                    String rankedUrl = null;
-                    for (int i = 0; i < res.getEntries().size(); i++) {
-                        if (target.match(res.getEntries().get(i).getUrl())) {
-                            rankedUrl = res.getEntries().get(i).getUrl();
-                            rank = i + 1;
-                            break;
-                        }
+            // every target is matched in a single pass over each serp
+            serpDB.stream(specificRunId, specificRunId, search.getId(), (GoogleSerp res) -> {
+                int[] positions = matcher.match(res);
+                for (int t = 0; t < matcherTargets.size(); t++) {
+                    GoogleTarget target = matcherTargets.get(t);
+                    int rank = positions[t];
+                    if(rank == GoogleRank.UNRANKED && res.isPartial()){
+                        // the pagination stopped before this target was searched, its previous rank is kept
+                        continue;
                     }
+                    String rankedUrl = rank == GoogleRank.UNRANKED ? null : res.getEntries().get(rank - 1).getUrl();
 
                     // only update last run
                     GoogleRank gRank = new GoogleRank(res.getRunId(), target.getGroupId(), target.getId(), search.getId(),
-                        rank, previousRank.shortValue(), rankedUrl);
+                        rank, (short)previousRanks[t], rankedUrl);
                     rankDB.insert(gRank);
                     
                     if(updateSummary){
-                        GoogleTargetSummary summary = summaryByRunId.get(res.getRunId());
-                        if (summary == null) {
-                            summaryByRunId.put(res.getRunId(), summary = new GoogleTargetSummary(target.getGroupId(),
-                                target.getId(), res.getRunId(), 0));
-                        }
-                        summary.addRankCandidat(gRank);
-                    }                    
-
-                    if (rank != GoogleRank.UNRANKED && rank <= best.getRank()) {
-                        best.setRank((short) rank);
-                        best.setUrl(rankedUrl);
-                        best.setRunDay(res.getRunDay());
+                        addRankCandidat(summariesByTarget.get(t), target, gRank);
                     }
 
-                    previousRunId.setValue(res.getRunId());
-                    previousRank.setValue(rank);
-                });
+                    updateBest(bests[t], rank, rankedUrl, res);
+                    previousRanks[t] = rank;
+                }
+            });
 
+            for (GoogleBest best : bests) {
                 if (best.getRank() != GoogleRank.UNRANKED) {
                     rankDB.insertBest(best);
                 }
             }
+        }
 
-            // fill previous summary score
-            if(updateSummary){
+        // fill previous summary score
+        if(updateSummary){
+            for (Map<Integer, GoogleTargetSummary> summaryByRunId : summariesByTarget) {
                 TreeMap<Integer, GoogleTargetSummary> summaries = new TreeMap<>(summaryByRunId);
                 
                 GoogleTargetSummary previousSummary = null;
@@ -167,45 +145,30 @@ public class GoogleSerpRescanDB {
             }
         }        
         
+        GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+        List<GoogleTarget> matcherTargets = matcher.getTargets();
+        List<Map<Integer, GoogleTargetSummary>> summariesByTarget = initSummaries(matcherTargets, specPrevRun, specPrevRunSummaryByTarget);
+        
         List<GoogleRank> ranks = new ArrayList<>();
-        for (GoogleTarget target : targets) {
-            
-            Map<Integer, GoogleTargetSummary> summaryByRunId = new HashMap<>();
-            GoogleTargetSummary specificPreviousSummary = specPrevRunSummaryByTarget.get(target.getId());
-            if(specificPreviousSummary != null){
-                summaryByRunId.put(specPrevRun.getId(), specificPreviousSummary);
-            }
-            
-            for (GoogleSearch search : searches) {
-                final MutableInt previousRunId = new MutableInt(0);
-                final MutableInt previousRank = new MutableInt(GoogleRank.UNRANKED);
-                GoogleBest searchBest = new GoogleBest(target.getGroupId(), target.getId(), search.getId(), GoogleRank.UNRANKED, null, null);
-                
-                if(specPrevRun != null){
-                    previousRunId.setValue(specPrevRun.getId());
-                    previousRank.setValue(rankDB.get(specPrevRun.getId(), target.getGroupId(), target.getId(), search.getId()));
-                    GoogleBest specificBest = rankDB.getBest(target.getGroupId(), target.getId(), search.getId());
-                    if(specificBest != null){
-                        searchBest = specificBest;
-                    }
-                }
-                final GoogleBest best = searchBest;
+        for (GoogleSearch search : searches) {
+            int[] previousRanks = new int[matcherTargets.size()];
+            GoogleBest[] bests = initBests(matcherTargets, search, specPrevRun, previousRanks);
 
-                serpDB.stream(specificRunId, specificRunId, search.getId(), (GoogleSerp res) -> {
-                    
-                    int rank = GoogleRank.UNRANKED;
-                    String rankedUrl = null;
-                    for (int i = 0; i < res.getEntries().size(); i++) {
-                        if (target.match(res.getEntries().get(i).getUrl())) {
-                            rankedUrl = res.getEntries().get(i).getUrl();
-                            rank = i + 1;
-                            break;
-                        }
+            // every target is matched in a single pass over each serp
+            serpDB.stream(specificRunId, specificRunId, search.getId(), (GoogleSerp res) -> {
+                int[] positions = matcher.match(res);
+                for (int t = 0; t < matcherTargets.size(); t++) {
+                    GoogleTarget target = matcherTargets.get(t);
+                    int rank = positions[t];
+                    if(rank == GoogleRank.UNRANKED && res.isPartial()){
+                        // the pagination stopped before this target was searched, its previous rank is kept
+                        continue;
                     }
+                    String rankedUrl = rank == GoogleRank.UNRANKED ? null : res.getEntries().get(rank - 1).getUrl();
 
                     // only update last run
                     GoogleRank gRank = new GoogleRank(res.getRunId(), target.getGroupId(), target.getId(), search.getId(),
-                        rank, previousRank.shortValue(), rankedUrl);
+                        rank, (short)previousRanks[t], rankedUrl);
                     ranks.add(gRank);
                     if(ranks.size() > 2000){
                         rankDB.insert(ranks);
@@ -213,31 +176,24 @@ public class GoogleSerpRescanDB {
                     }
                     
                     if(updateSummary){
-                        GoogleTargetSummary summary = summaryByRunId.get(res.getRunId());
-                        if (summary == null) {
-                            summaryByRunId.put(res.getRunId(), summary = new GoogleTargetSummary(target.getGroupId(),
-                                target.getId(), res.getRunId(), 0));
-                        }
-                        summary.addRankCandidat(gRank);
-                    }                    
-
-                    if (rank != GoogleRank.UNRANKED && rank <= best.getRank()) {
-                        best.setRank((short) rank);
-                        best.setUrl(rankedUrl);
-                        best.setRunDay(res.getRunDay());
+                        addRankCandidat(summariesByTarget.get(t), target, gRank);
                     }
 
-                    previousRunId.setValue(res.getRunId());
-                    previousRank.setValue(rank);
-                });
-                
+                    updateBest(bests[t], rank, rankedUrl, res);
+                    previousRanks[t] = rank;
+                }
+            });
+            
+            for (GoogleBest best : bests) {
                 if (best.getRank() != GoogleRank.UNRANKED) {
                     rankDB.insertBest(best);
                 }
             }
-            
-            // fill previous summary score
-            if(updateSummary){
+        }
+        
+        // fill previous summary score
+        if(updateSummary){
+            for (Map<Integer, GoogleTargetSummary> summaryByRunId : summariesByTarget) {
                 TreeMap<Integer, GoogleTargetSummary> summaries = new TreeMap<>(summaryByRunId);
                 
                 GoogleTargetSummary previousSummary = null;
@@ -266,7 +222,62 @@ public class GoogleSerpRescanDB {
         }
         
         LOG.debug("SERP rescan : done, duration = {}", DurationFormatUtils.formatDurationHMS(System.currentTimeMillis()-_start));
-    }    
+    }
+    
+    /**
+     * summaries by run id of each target, seeded with the summary of the run preceding the rescanned run
+     */
+    protected List<Map<Integer, GoogleTargetSummary>> initSummaries(List<GoogleTarget> targets, Run specPrevRun,
+        Map<Integer, GoogleTargetSummary> specPrevRunSummaryByTarget){
+        List<Map<Integer, GoogleTargetSummary>> summariesByTarget = new ArrayList<>(targets.size());
+        for (GoogleTarget target : targets) {
+            Map<Integer, GoogleTargetSummary> summaryByRunId = new HashMap<>();
+            GoogleTargetSummary specificPreviousSummary = specPrevRunSummaryByTarget.get(target.getId());
+            if(specificPreviousSummary != null){
+                summaryByRunId.put(specPrevRun.getId(), specificPreviousSummary);
+            }
+            summariesByTarget.add(summaryByRunId);
+        }
+        return summariesByTarget;
+    }
+    
+    /**
+     * best of each target for the search, fills the rank of each target in the run preceding the rescanned run
+     */
+    protected GoogleBest[] initBests(List<GoogleTarget> targets, GoogleSearch search, Run specPrevRun, int[] previousRanks){
+        GoogleBest[] bests = new GoogleBest[targets.size()];
+        for (int t = 0; t < targets.size(); t++) {
+            GoogleTarget target = targets.get(t);
+            previousRanks[t] = GoogleRank.UNRANKED;
+            bests[t] = new GoogleBest(target.getGroupId(), target.getId(), search.getId(), GoogleRank.UNRANKED, null, null);
+            
+            if(specPrevRun != null){
+                previousRanks[t] = rankDB.get(specPrevRun.getId(), target.getGroupId(), target.getId(), search.getId());
+                GoogleBest specificBest = rankDB.getBest(target.getGroupId(), target.getId(), search.getId());
+                if(specificBest != null){
+                    bests[t] = specificBest;
+                }
+            }
+        }
+        return bests;
+    }
+    
+    protected void addRankCandidat(Map<Integer, GoogleTargetSummary> summaryByRunId, GoogleTarget target, GoogleRank gRank){
+        GoogleTargetSummary summary = summaryByRunId.get(gRank.runId);
+        if (summary == null) {
+            summaryByRunId.put(gRank.runId, summary = new GoogleTargetSummary(target.getGroupId(),
+                target.getId(), gRank.runId, 0));
+        }
+        summary.addRankCandidat(gRank);
+    }
+    
+    protected void updateBest(GoogleBest best, int rank, String rankedUrl, GoogleSerp res){
+        if (rank != GoogleRank.UNRANKED && rank <= best.getRank()) {
+            best.setRank((short) rank);
+            best.setUrl(rankedUrl);
+            best.setRunDay(res.getRunDay());
+        }
+    }
     
     /*
     public void rescan(Integer specificRunId, List<GoogleSearch> searches, List<GoogleTarget> targets, boolean updateSummary) {
@@ -36,29 +36,7 @@ public class GoogleTargetSummaryDB extends AbstractDB {
         int inserted = 0;
         
         try(Connection con = ds.getConnection()){
-            
-            for (GoogleTargetSummary target : summaries) {
-                inserted += new SQLMergeClause(con, dbTplConf, t_summary)
-                    .set(t_summary.groupId, target.getGroupId())
-                    .set(t_summary.googleTargetId, target.getTargetId())
-                    .set(t_summary.runId, target.getRunId())
-                    
-                    .set(t_summary.totalTop3, target.getTotalTop3())
-                    .set(t_summary.totalTop10, target.getTotalTop10())
-                    .set(t_summary.totalTop100, target.getTotalTop100())
-                    .set(t_summary.totalOut, target.getTotalOut())
-                    
-                    .set(t_summary.topRanks, target.getTopRanksSerialized())
-                    .set(t_summary.topImprovements, target.getTopImprovementsSerialized())
-                    .set(t_summary.topLosts, target.getTopLostsSerialized())
-                    
-                    .set(t_summary.scoreRaw, target.getScoreRaw())
-                    .set(t_summary.scoreBasisPoint, target.getScoreBP())
-                    .set(t_summary.previousScoreBasisPoint, target.getPreviousScoreBP())
-                    
-                    .execute();
-            }
-            
+            inserted = insert(con, summaries);
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
@@ -66,6 +44,37 @@ public class GoogleTargetSummaryDB extends AbstractDB {
         return inserted;
     }
     
+    /**
+     * insert using the caller connection, the caller is in charge of the transaction
+     */
+    public int insert(Connection con, Collection<GoogleTargetSummary> summaries) throws Exception {
+        int inserted = 0;
+        
+        for (GoogleTargetSummary target : summaries) {
+            inserted += new SQLMergeClause(con, dbTplConf, t_summary)
+                .set(t_summary.groupId, target.getGroupId())
+                .set(t_summary.googleTargetId, target.getTargetId())
+                .set(t_summary.runId, target.getRunId())
+                
+                .set(t_summary.totalTop3, target.getTotalTop3())
+                .set(t_summary.totalTop10, target.getTotalTop10())
+                .set(t_summary.totalTop100, target.getTotalTop100())
+                .set(t_summary.totalOut, target.getTotalOut())
+                
+                .set(t_summary.topRanks, target.getTopRanksSerialized())
+                .set(t_summary.topImprovements, target.getTopImprovementsSerialized())
+                .set(t_summary.topLosts, target.getTopLostsSerialized())
+                
+                .set(t_summary.scoreRaw, target.getScoreRaw())
+                .set(t_summary.scoreBasisPoint, target.getScoreBP())
+                .set(t_summary.previousScoreBasisPoint, target.getPreviousScoreBP())
+                
+                .execute();
+        }
+        
+        return inserted;
+    }
+    
     public boolean deleteByTarget(int targetId){
         boolean deleted = false;
         try(Connection con = ds.getConnection()){
@@ -81,15 +90,22 @@ public class GoogleTargetSummaryDB extends AbstractDB {
     public boolean deleteByRun(int runId){
         boolean deleted = false;
         try(Connection con = ds.getConnection()){
-            deleted = new SQLDeleteClause(con, dbTplConf, t_summary)
-                .where(t_summary.runId.eq(runId))
-                .execute() == 1;
+            deleted = deleteByRun(con, runId);
         }catch(Exception ex){
             LOG.error("SQLError", ex);
         }
         return deleted;
     }    
     
+    /**
+     * delete using the caller connection, the caller is in charge of the transaction
+     */
+    public boolean deleteByRun(Connection con, int runId) throws Exception {
+        return new SQLDeleteClause(con, dbTplConf, t_summary)
+            .where(t_summary.runId.eq(runId))
+            .execute() == 1;
+    }
+    
     public void wipe(){
         try(Connection con = ds.getConnection()){
             new SQLDeleteClause(con, dbTplConf, t_summary).execute();
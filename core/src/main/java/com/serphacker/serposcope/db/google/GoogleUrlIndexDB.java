@@ -0,0 +1,481 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLMergeClause;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSerpEntry;
+import com.serphacker.serposcope.models.google.GoogleUrlPostings;
+import com.serphacker.serposcope.querybuilder.QGoogleSerp;
+import com.serphacker.serposcope.querybuilder.QGoogleUrl;
+import com.serphacker.serposcope.querybuilder.QGoogleUrlPosting;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.rowset.serial.SerialBlob;
+
+/**
+ * reverse index of the serps: urls are interned in GOOGLE_URL and the positions of an url in the serps of a search
+ * are kept in a single GOOGLE_URL_POSTING row, so url lookups don't decompress every serp of the search.
+ * Serps written through {@link GoogleResultDB} are indexed in the same transaction.
+ * Urls are never deleted, only their postings.
+ */
+@Singleton
+public class GoogleUrlIndexDB extends AbstractDB {
+
+    static QGoogleUrl t_url = QGoogleUrl.googleUrl;
+    static QGoogleUrlPosting t_posting = QGoogleUrlPosting.googleUrlPosting;
+    static QGoogleSerp t_serp = QGoogleSerp.googleSerp;
+
+    public final static int WRITE_BATCH_SIZE = 500;
+    public final static int LOOKUP_BATCH_SIZE = 500;
+    public final static int DELETE_SEARCH_BATCH_SIZE = 50;
+
+    @Inject
+    GoogleSerpDB serpDB;
+
+    /**
+     * positions of the url in the serps of the search, null if the url was never seen in this search
+     */
+    public GoogleUrlPostings get(String url, int googleSearchId){
+        GoogleUrlPostings postings = null;
+
+        try(Connection con = ds.getConnection()){
+            Integer urlId = lookup(con, Collections.singletonList(url)).get(url);
+            if(urlId == null){
+                return null;
+            }
+
+            Tuple tuple = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_posting.all())
+                .from(t_posting)
+                .where(t_posting.googleUrlId.eq(urlId))
+                .where(t_posting.googleSearchId.eq(googleSearchId))
+                .fetchFirst();
+
+            postings = fromTuple(tuple);
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        return postings;
+    }
+
+    /**
+     * postings of the url in every search it was seen in, ordered by search id
+     */
+    public List<GoogleUrlPostings> list(String url){
+        List<GoogleUrlPostings> list = new ArrayList<>();
+
+        try(Connection con = ds.getConnection()){
+            Integer urlId = lookup(con, Collections.singletonList(url)).get(url);
+            if(urlId == null){
+                return list;
+            }
+
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_posting.all())
+                .from(t_posting)
+                .where(t_posting.googleUrlId.eq(urlId))
+                .orderBy(t_posting.googleSearchId.asc())
+                .fetch();
+
+            for (Tuple tuple : tuples) {
+                list.add(fromTuple(tuple));
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        return list;
+    }
+
+    /**
+     * adds the serps to the index using the caller connection, the caller is in charge of the transaction.
+     * Returns the number of postings written.
+     */
+    public long index(Connection con, Collection<GoogleSerp> serps) throws Exception {
+        if(serps.isEmpty()){
+            return 0;
+        }
+
+        List<Map<String, Integer>> serpPositions = new ArrayList<>(serps.size());
+        Set<String> urls = new HashSet<>();
+        for (GoogleSerp serp : serps) {
+            Map<String, Integer> positions = positions(serp);
+            serpPositions.add(positions);
+            urls.addAll(positions.keySet());
+        }
+        Map<String, Integer> ids = intern(con, urls);
+
+        Map<Integer, Set<Integer>> urlIdsBySearch = new HashMap<>();
+        int i = 0;
+        for (GoogleSerp serp : serps) {
+            Set<Integer> urlIds = urlIdsBySearch.computeIfAbsent(serp.getGoogleSearchId(), (searchId) -> new HashSet<>());
+            for (String url : serpPositions.get(i++).keySet()) {
+                urlIds.add(ids.get(url));
+            }
+        }
+
+        Map<Integer, Map<Integer, GoogleUrlPostings>> postingsBySearch = new HashMap<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : urlIdsBySearch.entrySet()) {
+            postingsBySearch.put(entry.getKey(), listBySearch(con, entry.getKey(), entry.getValue()));
+        }
+
+        i = 0;
+        for (GoogleSerp serp : serps) {
+            Map<Integer, GoogleUrlPostings> searchPostings = postingsBySearch.get(serp.getGoogleSearchId());
+            for (Map.Entry<String, Integer> position : serpPositions.get(i++).entrySet()) {
+                searchPostings.computeIfAbsent(ids.get(position.getKey()),
+                    (urlId) -> new GoogleUrlPostings(urlId, serp.getGoogleSearchId())
+                ).put(serp.getRunId(), position.getValue());
+            }
+        }
+
+        long written = 0;
+        for (Map<Integer, GoogleUrlPostings> searchPostings : postingsBySearch.values()) {
+            written += insert(con, searchPostings.values());
+        }
+        return written;
+    }
+
+    public boolean deleteByRunId(int runId){
+        return deleteByRunIds(Collections.singletonList(runId));
+    }
+
+    /**
+     * removes the runs from the postings, postings left empty are deleted
+     */
+    public boolean deleteByRunIds(Collection<Integer> runIds){
+        if(runIds.isEmpty()){
+            return true;
+        }
+
+        try(Connection con = ds.getConnection()){
+            con.setAutoCommit(false);
+            try {
+                deleteByRunIds(con, runIds);
+                con.commit();
+                return true;
+            } catch(Exception ex){
+                con.rollback();
+                throw ex;
+            } finally {
+                con.setAutoCommit(true);
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    /**
+     * removes the runs from the postings using the caller connection, the caller is in charge of the transaction.
+     * Only the searches having a serp in the runs are scanned, the serps must not be deleted yet.
+     */
+    protected void deleteByRunIds(Connection con, Collection<Integer> runIds) throws Exception {
+        int minRunId = Collections.min(runIds);
+        int maxRunId = Collections.max(runIds);
+
+        List<Integer> searchIds = new SQLQuery<Void>(con, dbTplConf)
+            .select(t_serp.googleSearchId)
+            .distinct()
+            .from(t_serp)
+            .where(t_serp.runId.in(runIds))
+            .fetch();
+
+        for (int i = 0; i < searchIds.size(); i += DELETE_SEARCH_BATCH_SIZE) {
+            List<Integer> batch = searchIds.subList(i, Math.min(i + DELETE_SEARCH_BATCH_SIZE, searchIds.size()));
+
+            // the rewrite waits for the cursor to be closed, only the postings of the runs are kept
+            List<GoogleUrlPostings> updated = new ArrayList<>();
+            List<GoogleUrlPostings> emptied = new ArrayList<>();
+            try(CloseableIterator<Tuple> it = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_posting.all())
+                .from(t_posting)
+                .where(t_posting.googleSearchId.in(batch))
+                .where(t_posting.firstRunId.loe(maxRunId))
+                .where(t_posting.lastRunId.goe(minRunId))
+                .iterate()){
+                while(it.hasNext()){
+                    GoogleUrlPostings postings = fromTuple(it.next());
+                    boolean removed = false;
+                    for (Integer runId : runIds) {
+                        removed |= postings.remove(runId);
+                    }
+                    if(removed){
+                        (postings.size() == 0 ? emptied : updated).add(postings);
+                    }
+                }
+            }
+
+            if(!emptied.isEmpty()){
+                SQLDeleteClause delete = new SQLDeleteClause(con, dbTplConf, t_posting);
+                for (GoogleUrlPostings postings : emptied) {
+                    delete.where(t_posting.googleUrlId.eq(postings.getGoogleUrlId()))
+                        .where(t_posting.googleSearchId.eq(postings.getGoogleSearchId()))
+                        .addBatch();
+                }
+                delete.execute();
+            }
+            insert(con, updated);
+        }
+    }
+
+    public boolean deleteBySearch(int googleSearchId){
+        boolean deleted = false;
+        try(Connection con = ds.getConnection()){
+            deleted = new SQLDeleteClause(con, dbTplConf, t_posting)
+                .where(t_posting.googleSearchId.eq(googleSearchId))
+                .execute() > 0;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return deleted;
+    }
+
+    public void wipe(){
+        try(Connection con = ds.getConnection()){
+            new SQLDeleteClause(con, dbTplConf, t_posting)
+                .execute();
+            new SQLDeleteClause(con, dbTplConf, t_url)
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    /**
+     * rebuilds the index from GOOGLE_SERP, returns the number of postings written or -1 on error
+     */
+    public long rebuild(){
+        try(Connection con = ds.getConnection()){
+            return rebuild(con);
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return -1;
+    }
+
+    /**
+     * rebuild using the caller connection, the caller is in charge of the transaction
+     */
+    public long rebuild(Connection con) throws Exception {
+        new SQLDeleteClause(con, dbTplConf, t_posting).execute();
+        new SQLDeleteClause(con, dbTplConf, t_url).execute();
+
+        long written = 0;
+        try(CloseableIterator<Tuple> serps = new SQLQuery<Void>(con, dbTplConf)
+            .select(t_serp.all())
+            .from(t_serp)
+            .orderBy(t_serp.googleSearchId.asc(), t_serp.runId.asc())
+            .iterate()
+        ){
+            // postings of one search at a time, urls ids are cached for the current search only
+            int googleSearchId = 0;
+            Map<Integer, GoogleUrlPostings> searchPostings = new HashMap<>();
+            Map<String, Integer> ids = new HashMap<>();
+
+            while(serps.hasNext()){
+                GoogleSerp serp = serpDB.fromTuple(serps.next());
+                if(serp.getGoogleSearchId() != googleSearchId){
+                    written += insert(con, searchPostings.values());
+                    searchPostings.clear();
+                    ids.clear();
+                    googleSearchId = serp.getGoogleSearchId();
+                }
+
+                Map<String, Integer> positions = positions(serp);
+                List<String> missing = new ArrayList<>();
+                for (String url : positions.keySet()) {
+                    if(!ids.containsKey(url)){
+                        missing.add(url);
+                    }
+                }
+                ids.putAll(intern(con, missing));
+
+                for (Map.Entry<String, Integer> position : positions.entrySet()) {
+                    searchPostings.computeIfAbsent(ids.get(position.getKey()),
+                        (urlId) -> new GoogleUrlPostings(urlId, serp.getGoogleSearchId())
+                    ).put(serp.getRunId(), position.getValue());
+                }
+            }
+            written += insert(con, searchPostings.values());
+        }
+
+        return written;
+    }
+
+    /**
+     * batch upsert using the caller connection
+     */
+    protected long insert(Connection con, Collection<GoogleUrlPostings> postings) throws Exception {
+        long written = 0;
+        SQLMergeClause clause = null;
+        int batched = 0;
+        for (GoogleUrlPostings posting : postings) {
+            if(clause == null){
+                clause = new SQLMergeClause(con, dbTplConf, t_posting);
+            }
+            clause
+                .set(t_posting.googleUrlId, posting.getGoogleUrlId())
+                .set(t_posting.googleSearchId, posting.getGoogleSearchId())
+                .set(t_posting.firstRunId, posting.getFirstRunId())
+                .set(t_posting.lastRunId, posting.getLastRunId())
+                .set(t_posting.postings, new SerialBlob(posting.getSerialized()))
+                .addBatch();
+            if(++batched >= WRITE_BATCH_SIZE){
+                clause.execute();
+                written += batched;
+                clause = null;
+                batched = 0;
+            }
+        }
+        if(clause != null){
+            clause.execute();
+            written += batched;
+        }
+        return written;
+    }
+
+    /**
+     * ids of the urls, urls not yet in GOOGLE_URL are added
+     */
+    protected Map<String, Integer> intern(Connection con, Collection<String> urls) throws Exception {
+        Map<String, Integer> ids = lookup(con, urls);
+
+        List<String> missing = new ArrayList<>();
+        for (String url : urls) {
+            if(!ids.containsKey(url)){
+                missing.add(url);
+            }
+        }
+        if(missing.isEmpty()){
+            return ids;
+        }
+
+        for (int i = 0; i < missing.size(); i += WRITE_BATCH_SIZE) {
+            SQLInsertClause clause = new SQLInsertClause(con, dbTplConf, t_url);
+            for (String url : missing.subList(i, Math.min(i + WRITE_BATCH_SIZE, missing.size()))) {
+                clause
+                    .set(t_url.urlHash, hash(url))
+                    .set(t_url.url, url)
+                    .addBatch();
+            }
+            clause.execute();
+        }
+        ids.putAll(lookup(con, missing));
+
+        return ids;
+    }
+
+    /**
+     * ids of the urls already in GOOGLE_URL
+     */
+    protected Map<String, Integer> lookup(Connection con, Collection<String> urls) throws Exception {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> list = new ArrayList<>(urls);
+
+        for (int i = 0; i < list.size(); i += LOOKUP_BATCH_SIZE) {
+            Set<String> chunk = new HashSet<>(list.subList(i, Math.min(i + LOOKUP_BATCH_SIZE, list.size())));
+            Set<Long> hashes = new HashSet<>();
+            for (String url : chunk) {
+                hashes.add(hash(url));
+            }
+
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_url.id, t_url.url)
+                .from(t_url)
+                .where(t_url.urlHash.in(hashes))
+                .fetch();
+
+            // different urls may share a hash
+            for (Tuple tuple : tuples) {
+                if(chunk.contains(tuple.get(t_url.url))){
+                    ids.put(tuple.get(t_url.url), tuple.get(t_url.id));
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    protected Map<Integer, GoogleUrlPostings> listBySearch(Connection con, int googleSearchId, Collection<Integer> googleUrlIds)
+    throws Exception {
+        Map<Integer, GoogleUrlPostings> map = new HashMap<>();
+        List<Integer> list = new ArrayList<>(googleUrlIds);
+
+        for (int i = 0; i < list.size(); i += LOOKUP_BATCH_SIZE) {
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_posting.all())
+                .from(t_posting)
+                .where(t_posting.googleSearchId.eq(googleSearchId))
+                .where(t_posting.googleUrlId.in(list.subList(i, Math.min(i + LOOKUP_BATCH_SIZE, list.size()))))
+                .fetch();
+
+            for (Tuple tuple : tuples) {
+                GoogleUrlPostings postings = fromTuple(tuple);
+                map.put(postings.getGoogleUrlId(), postings);
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * 1-based position of the first occurrence of each url of the serp
+     */
+    protected static Map<String, Integer> positions(GoogleSerp serp){
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        List<GoogleSerpEntry> entries = serp.getEntries();
+        for (int i = 0; i < entries.size(); i++) {
+            String url = entries.get(i).getUrl();
+            if(url != null){
+                positions.putIfAbsent(url, i + 1);
+            }
+        }
+        return positions;
+    }
+
+    protected static long hash(String url){
+        return Hashing.murmur3_128().hashString(url, StandardCharsets.UTF_8).asLong();
+    }
+
+    protected GoogleUrlPostings fromTuple(Tuple tuple) throws Exception {
+        if(tuple == null){
+            return null;
+        }
+
+        GoogleUrlPostings postings = new GoogleUrlPostings(tuple.get(t_posting.googleUrlId),
+            tuple.get(t_posting.googleSearchId));
+        Blob blob = tuple.get(t_posting.postings);
+        if(blob != null){
+            postings.setSerialized(blob.getBytes(1, (int)blob.length()));
+        }
+        return postings;
+    }
+
+}
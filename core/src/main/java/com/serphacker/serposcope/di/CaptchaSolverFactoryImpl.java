@@ -76,7 +76,9 @@ public class CaptchaSolverFactoryImpl implements CaptchaSolverFactory {
         }
         
         Collections.shuffle(solvers);
-        return new RandomCaptchaSolver(solvers);
+        RandomCaptchaSolver solver = new RandomCaptchaSolver(solvers);
+        solver.setHedgePercentile(config.getCaptchaHedgePercentile() / 100d);
+        return solver;
     }
     
     protected boolean init(CaptchaSolver solver){
@@ -8,6 +8,7 @@
 package com.serphacker.serposcope.di;
 
 import com.serphacker.serposcope.scraper.http.ScrapClient;
+import com.serphacker.serposcope.scraper.http.ScrapClientConfig;
 
 /**
  *
@@ -15,13 +16,20 @@ import com.serphacker.serposcope.scraper.http.ScrapClient;
  */
 
 public class ScrapClientFactoryImpl implements ScrapClientFactory {
+    
+    // each scraper thread has its own client and works with one proxy at a time, the connections of the
+    // proxies it used last are enough, more would only multiply the idle sockets by threads x proxies
+    public final static int MAX_IDLE_CONNECTIONS = 4;
 
     @Override
     public ScrapClient get(String defaultUserAgent, int timeoutMS) {
-        ScrapClient client = new ScrapClient();
-        client.setUseragent(defaultUserAgent);
-        client.setTimeout(timeoutMS);
-        client.setInsecureSSL(true);
-        return client;
+        return new ScrapClient(ScrapClientConfig.builder()
+                .userAgent(defaultUserAgent)
+                .timeout(timeoutMS)
+                .insecureSSL(true)
+                // keeps the connections (and tls sessions) of each proxy warm across rotations
+                .pooled(ScrapClient.MAX_POOLED_CONNECTIONS)
+                .maxIdleConnections(MAX_IDLE_CONNECTIONS)
+                .build());
     }
 }
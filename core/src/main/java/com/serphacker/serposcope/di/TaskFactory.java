@@ -8,6 +8,7 @@
 package com.serphacker.serposcope.di;
 
 import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.task.google.GoogleRescanTask;
 import com.serphacker.serposcope.task.google.GoogleTask;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,4 +17,5 @@ import javax.annotation.Nullable;
 
 public interface TaskFactory {
     GoogleTask create(Run run);
+    GoogleRescanTask createRescan(Run run);
 }
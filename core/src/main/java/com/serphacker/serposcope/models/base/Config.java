@@ -45,6 +45,9 @@ public class Config {
     
     public final static int DEFAULT_PRUNE_RUNS = 365;
     int pruneRuns = DEFAULT_PRUNE_RUNS;
+    
+    public final static int DEFAULT_CAPTCHA_HEDGE_PERCENTILE = 0;
+    int captchaHedgePercentile = DEFAULT_CAPTCHA_HEDGE_PERCENTILE;
 
     public String getDbcUser() {
         return dbcUser;
@@ -152,5 +155,17 @@ public class Config {
     public void setPruneRuns(int pruneRuns) {
         this.pruneRuns = pruneRuns;
     }
+
+    /**
+     * percentile (0-100) of the solve durations of a captcha service after which the captcha is also submitted to
+     * the next service, 0 to disable
+     */
+    public int getCaptchaHedgePercentile() {
+        return captchaHedgePercentile;
+    }
+
+    public void setCaptchaHedgePercentile(int captchaHedgePercentile) {
+        this.captchaHedgePercentile = captchaHedgePercentile;
+    }
     
 }
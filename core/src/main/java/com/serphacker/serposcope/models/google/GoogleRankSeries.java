@@ -0,0 +1,240 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * rank history of a target for a search, ordered by run id.
+ * Serialized as varints of the run id delta and of the zigzag encoded rank delta.
+ */
+public class GoogleRankSeries {
+
+    private final static byte SERIAL_VERSION = 0;
+
+    final int groupId;
+    final int googleTargetId;
+    final int googleSearchId;
+
+    int size;
+    int[] runIds;
+    short[] ranks;
+
+    public GoogleRankSeries(int groupId, int googleTargetId, int googleSearchId) {
+        this.groupId = groupId;
+        this.googleTargetId = googleTargetId;
+        this.googleSearchId = googleSearchId;
+        this.runIds = new int[8];
+        this.ranks = new short[8];
+    }
+
+    public int getGroupId() {
+        return groupId;
+    }
+
+    public int getGoogleTargetId() {
+        return googleTargetId;
+    }
+
+    public int getGoogleSearchId() {
+        return googleSearchId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRunId(int index) {
+        return runIds[index];
+    }
+
+    public short getRank(int index) {
+        return ranks[index];
+    }
+
+    /**
+     * 0 if empty
+     */
+    public int getFirstRunId() {
+        return size == 0 ? 0 : runIds[0];
+    }
+
+    /**
+     * 0 if empty
+     */
+    public int getLastRunId() {
+        return size == 0 ? 0 : runIds[size - 1];
+    }
+
+    /**
+     * index of the run or (-(insertion point) - 1) like {@link Arrays#binarySearch(int[], int)}
+     */
+    public int indexOf(int runId) {
+        if (size > 0 && runIds[size - 1] == runId) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(runIds, 0, size, runId);
+    }
+
+    /**
+     * rank of the run, {@link GoogleRank#UNRANKED} if the run is not in the series
+     */
+    public short getRankOfRun(int runId) {
+        int index = indexOf(runId);
+        return index < 0 ? (short) GoogleRank.UNRANKED : ranks[index];
+    }
+
+    /**
+     * appends the rank of a run, or replaces it if the run is already in the series
+     */
+    public void put(int runId, int rank) {
+        if (size == 0 || runId > runIds[size - 1]) {
+            ensureCapacity(size + 1);
+            runIds[size] = runId;
+            ranks[size] = (short) rank;
+            size++;
+            return;
+        }
+
+        int index = indexOf(runId);
+        if (index >= 0) {
+            ranks[index] = (short) rank;
+            return;
+        }
+
+        index = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(runIds, index, runIds, index + 1, size - index);
+        System.arraycopy(ranks, index, ranks, index + 1, size - index);
+        runIds[index] = runId;
+        ranks[index] = (short) rank;
+        size++;
+    }
+
+    /**
+     * false if the run is not in the series
+     */
+    public boolean remove(int runId) {
+        int index = indexOf(runId);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(runIds, index + 1, runIds, index, size - index - 1);
+        System.arraycopy(ranks, index + 1, ranks, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    protected void ensureCapacity(int capacity) {
+        if (capacity > runIds.length) {
+            int newCapacity = Math.max(capacity, runIds.length * 2);
+            runIds = Arrays.copyOf(runIds, newCapacity);
+            ranks = Arrays.copyOf(ranks, newCapacity);
+        }
+    }
+
+    public byte[] getSerialized() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(2 + size * 3);
+        baos.write(SERIAL_VERSION);
+        writeVarint(baos, size);
+        int previousRunId = 0;
+        int previousRank = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(baos, runIds[i] - previousRunId);
+            int diff = ranks[i] - previousRank;
+            writeVarint(baos, (diff << 1) ^ (diff >> 31));
+            previousRunId = runIds[i];
+            previousRank = ranks[i];
+        }
+        return baos.toByteArray();
+    }
+
+    public void setSerialized(byte[] data) throws IOException {
+        int[] offset = new int[]{0};
+        if (data.length == 0) {
+            throw new IOException("empty series");
+        }
+        if (data[offset[0]++] != SERIAL_VERSION) {
+            throw new UnsupportedOperationException("unsupported serialized version");
+        }
+
+        int newSize = readVarint(data, offset);
+        runIds = new int[Math.max(newSize, 8)];
+        ranks = new short[Math.max(newSize, 8)];
+        int runId = 0;
+        int rank = 0;
+        for (int i = 0; i < newSize; i++) {
+            runId += readVarint(data, offset);
+            int zigzag = readVarint(data, offset);
+            rank += (zigzag >>> 1) ^ -(zigzag & 1);
+            runIds[i] = runId;
+            ranks[i] = (short) rank;
+        }
+        size = newSize;
+    }
+
+    protected static void writeVarint(ByteArrayOutputStream baos, int value) {
+        while ((value & ~0x7F) != 0) {
+            baos.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        baos.write(value);
+    }
+
+    protected static int readVarint(byte[] data, int[] offset) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (offset[0] >= data.length) {
+                throw new IOException("truncated series");
+            }
+            byte b = data[offset[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 29 * hash + this.groupId;
+        hash = 29 * hash + this.googleTargetId;
+        hash = 29 * hash + this.googleSearchId;
+        for (int i = 0; i < size; i++) {
+            hash = 29 * hash + runIds[i];
+            hash = 29 * hash + ranks[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final GoogleRankSeries other = (GoogleRankSeries) obj;
+        if (this.groupId != other.groupId || this.googleTargetId != other.googleTargetId
+            || this.googleSearchId != other.googleSearchId || this.size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (runIds[i] != other.runIds[i] || ranks[i] != other.ranks[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ranks of a list of targets for a search, one row per run ordered by run id
+ */
+public class GoogleSearchRanks {
+
+    final int targets;
+    final List<LocalDateTime> runDays = new ArrayList<>();
+    int[] runIds = new int[16];
+    short[] ranks;
+    int size;
+    int maxRank;
+
+    public GoogleSearchRanks(int targets) {
+        this.targets = targets;
+        this.ranks = new short[16 * targets];
+    }
+
+    /**
+     * @param ranks one per target, {@link GoogleRank#UNRANKED} if not ranked
+     */
+    public void add(int runId, LocalDateTime runDay, int[] ranks) {
+        if (size == runIds.length) {
+            runIds = Arrays.copyOf(runIds, size * 2);
+            this.ranks = Arrays.copyOf(this.ranks, size * 2 * targets);
+        }
+        runIds[size] = runId;
+        runDays.add(runDay);
+        for (int i = 0; i < targets; i++) {
+            this.ranks[size * targets + i] = (short) ranks[i];
+            if (ranks[i] != GoogleRank.UNRANKED && ranks[i] > maxRank) {
+                maxRank = ranks[i];
+            }
+        }
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getTargets() {
+        return targets;
+    }
+
+    public int getRunId(int row) {
+        return runIds[row];
+    }
+
+    public LocalDateTime getRunDay(int row) {
+        return runDays.get(row);
+    }
+
+    public int getRank(int row, int target) {
+        return ranks[row * targets + target];
+    }
+
+    /**
+     * highest rank (ignoring unranked), 0 if none
+     */
+    public int getMaxRank() {
+        return maxRank;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 3;
+        hash = 41 * hash + targets;
+        for (int i = 0; i < size; i++) {
+            hash = 41 * hash + runIds[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final GoogleSearchRanks other = (GoogleSearchRanks) obj;
+        if (this.targets != other.targets || this.size != other.size || !this.runDays.equals(other.runDays)) {
+            return false;
+        }
+        return Arrays.equals(Arrays.copyOf(runIds, size), Arrays.copyOf(other.runIds, size))
+            && Arrays.equals(Arrays.copyOf(ranks, size * targets), Arrays.copyOf(other.ranks, size * targets));
+    }
+
+}
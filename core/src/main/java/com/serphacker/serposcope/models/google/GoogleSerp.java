@@ -7,6 +7,7 @@
  */
 package com.serphacker.serposcope.models.google;
 
+import it.unimi.dsi.fastutil.objects.Object2ShortOpenHashMap;
 import it.unimi.dsi.fastutil.shorts.Short2ShortArrayMap;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -22,11 +23,15 @@ import java.util.Map;
 public class GoogleSerp {
     
     private final static byte SERIAL_VERSION = 0;
+    // adds a flags byte, only written for partial serps so complete ones keep the version 0 layout
+    private final static byte SERIAL_VERSION_FLAGS = 1;
+    private final static byte FLAG_PARTIAL = 1;
     
     int runId;
     int googleSearchId;
     LocalDateTime runDay;
     List<GoogleSerpEntry> entries = new ArrayList<>();
+    boolean partial;
 
     public GoogleSerp(int runId, int googleSearchId, LocalDateTime runDay) {
         this.runId = runId;
@@ -56,13 +61,39 @@ public class GoogleSerp {
     public void setRunDay(LocalDateTime runDay) {
         this.runDay = runDay;
     }
+
+    /**
+     * pagination stopped once the targets were ranked, urls after the last entry were not fetched
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public void setPartial(boolean partial) {
+        this.partial = partial;
+    }
+    
+    /**
+     * url to position (1-based), when an url is present several times the last position is kept
+     */
+    public Object2ShortOpenHashMap<String> getPositionsByUrl(){
+        Object2ShortOpenHashMap<String> positions = new Object2ShortOpenHashMap<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            positions.put(entries.get(i).url, (short)(i + 1));
+        }
+        return positions;
+    }
     
     public void setSerializedEntries(byte[] data) throws IOException{
         ByteArrayInputStream bais = new ByteArrayInputStream(data);
         DataInputStream dis = new DataInputStream(bais);
         
         byte version = dis.readByte();
-        if(version != SERIAL_VERSION){
+        if(version == SERIAL_VERSION){
+            partial = false;
+        } else if(version == SERIAL_VERSION_FLAGS){
+            partial = (dis.readByte() & FLAG_PARTIAL) != 0;
+        } else {
             throw new UnsupportedOperationException("unsupported serialized version");
         }
 
@@ -85,7 +116,12 @@ public class GoogleSerp {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         DataOutputStream dos = new DataOutputStream(baos);
 
-        dos.writeByte(SERIAL_VERSION);
+        if(partial){
+            dos.writeByte(SERIAL_VERSION_FLAGS);
+            dos.writeByte(FLAG_PARTIAL);
+        } else {
+            dos.writeByte(SERIAL_VERSION);
+        }
         dos.writeShort(entries.size());
         for (GoogleSerpEntry entry : entries) {
             dos.writeUTF(entry.url);
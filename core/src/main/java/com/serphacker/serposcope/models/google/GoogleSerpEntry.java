@@ -7,6 +7,8 @@
  */
 package com.serphacker.serposcope.models.google;
 
+import it.unimi.dsi.fastutil.objects.Object2ShortMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
 import it.unimi.dsi.fastutil.shorts.Short2ShortArrayMap;
 import java.net.IDN;
 import java.net.URL;
@@ -36,10 +38,28 @@ public class GoogleSerpEntry {
                 }
             }
             
+            // the pagination of a partial serp stopped before this url could be found
+            if(position == 0 && entrySet.getValue().isPartial()){
+                continue;
+            }
+            
             map.put(day, (short)position);
         }
     }
 
+    /**
+     * same as {@link #fillPreviousPosition(java.util.Map)} with the url to position map of each previous serp,
+     * a negative position (default value of the map of a partial serp) leaves the day unknown
+     */
+    public void fillPreviousPosition(Short2ObjectMap<? extends Object2ShortMap<String>> positionsByDay){
+        for (Short2ObjectMap.Entry<? extends Object2ShortMap<String>> entry : positionsByDay.short2ObjectEntrySet()) {
+            short position = entry.getValue().getShort(url);
+            if(position >= 0){
+                map.put(entry.getShortKey(), position);
+            }
+        }
+    }
+
     public String getUrl() {
         return url;
     }
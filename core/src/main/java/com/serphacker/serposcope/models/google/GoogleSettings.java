@@ -17,10 +17,18 @@ public class GoogleSettings {
     
     int resultPerPage = 100;
     int pages = 1;
+    boolean stopWhenResolved = false;
+    boolean streamingParser = false;
     int minPauseBetweenPageSec = 5;
     int maxPauseBetweenPageSec = 5;
     int maxThreads = 1;
     int fetchRetry = 3;    
+    int writerBatchSize = 200;
+    int writerFlushIntervalMS = 1000;
+    int leasesPerProxy = 0;
+    int proxyBenchSec = 30;
+    int proxyMaxFailures = 8;
+    int proxyMinReuseSec = 0;
     
     GoogleCountryCode defaultCountry = GoogleCountryCode.__;
     String defaultDatacenter = null;
@@ -44,6 +52,28 @@ public class GoogleSettings {
         this.pages = pages;
     }
 
+    /**
+     * stop the pagination of a search once all the targets of its groups are ranked, the serp is stored as partial
+     */
+    public boolean isStopWhenResolved() {
+        return stopWhenResolved;
+    }
+
+    public void setStopWhenResolved(boolean stopWhenResolved) {
+        this.stopWhenResolved = stopWhenResolved;
+    }
+
+    /**
+     * parse the serps with the streaming parser instead of the DOM, the DOM is still used when it finds no result
+     */
+    public boolean isStreamingParser() {
+        return streamingParser;
+    }
+
+    public void setStreamingParser(boolean streamingParser) {
+        this.streamingParser = streamingParser;
+    }
+
     public int getMinPauseBetweenPageSec() {
         return minPauseBetweenPageSec;
     }
@@ -75,6 +105,67 @@ public class GoogleSettings {
     public void setFetchRetry(int fetchRetry) {
         this.fetchRetry = fetchRetry;
     }
+
+    public int getWriterBatchSize() {
+        return writerBatchSize;
+    }
+
+    public void setWriterBatchSize(int writerBatchSize) {
+        this.writerBatchSize = writerBatchSize;
+    }
+
+    public int getWriterFlushIntervalMS() {
+        return writerFlushIntervalMS;
+    }
+
+    public void setWriterFlushIntervalMS(int writerFlushIntervalMS) {
+        this.writerFlushIntervalMS = writerFlushIntervalMS;
+    }
+
+    /**
+     * concurrent searches per proxy with the async engine, 0 to use one thread per proxy.
+     * Pages are still fetched on at most maxThreads threads, leases only overlap the pauses between pages
+     */
+    public int getLeasesPerProxy() {
+        return leasesPerProxy;
+    }
+
+    public void setLeasesPerProxy(int leasesPerProxy) {
+        this.leasesPerProxy = leasesPerProxy;
+    }
+
+    /**
+     * bench duration after a first failure, doubled on each consecutive failure
+     */
+    public int getProxyBenchSec() {
+        return proxyBenchSec;
+    }
+
+    public void setProxyBenchSec(int proxyBenchSec) {
+        this.proxyBenchSec = proxyBenchSec;
+    }
+
+    /**
+     * consecutive failures before a proxy is dropped for the rest of the run, 0 to never drop
+     */
+    public int getProxyMaxFailures() {
+        return proxyMaxFailures;
+    }
+
+    public void setProxyMaxFailures(int proxyMaxFailures) {
+        this.proxyMaxFailures = proxyMaxFailures;
+    }
+
+    /**
+     * minimum delay before a proxy is used again
+     */
+    public int getProxyMinReuseSec() {
+        return proxyMinReuseSec;
+    }
+
+    public void setProxyMinReuseSec(int proxyMinReuseSec) {
+        this.proxyMinReuseSec = proxyMinReuseSec;
+    }
     
     // search
 
@@ -0,0 +1,174 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import static com.serphacker.serposcope.models.google.GoogleRank.UNRANKED;
+import com.serphacker.serposcope.models.google.GoogleTarget.PatternType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * matches a set of targets against a serp in a single pass over its urls.
+ *
+ * The host of each url is extracted once, DOMAIN targets are resolved by a hash lookup of the host and SUBDOMAIN
+ * targets by a hash lookup of the host and of each of its parent domains (a walk of the reversed labels), only
+ * REGEX targets (and domain targets with an unexpected pattern) are evaluated with their regex.
+ * Gives the same positions as calling {@link GoogleTarget#match(java.lang.String)} for each target on each url.
+ * immutable, thread safe
+ */
+public class GoogleTargetMatcher {
+
+    final static int[] NONE = new int[0];
+
+    final List<GoogleTarget> targets;
+    final Map<String,int[]> domains = new HashMap<>();
+    final Map<String,int[]> subdomains = new HashMap<>();
+    final int[] regexes;
+
+    public GoogleTargetMatcher(Collection<GoogleTarget> targets) {
+        this.targets = Collections.unmodifiableList(new ArrayList<>(targets));
+
+        List<Integer> regexList = new ArrayList<>();
+        for (int i = 0; i < this.targets.size(); i++) {
+            GoogleTarget target = this.targets.get(i);
+            PatternType type = target.getType();
+            if(PatternType.REGEX.equals(type) || !GoogleTarget.isValidPattern(type, target.getPattern())){
+                regexList.add(i);
+            } else {
+                add(PatternType.DOMAIN.equals(type) ? domains : subdomains, target.getPattern(), i);
+            }
+        }
+        regexes = regexList.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    protected static void add(Map<String,int[]> index, String pattern, int target){
+        int[] indexes = index.getOrDefault(pattern, NONE);
+        indexes = Arrays.copyOf(indexes, indexes.length + 1);
+        indexes[indexes.length - 1] = target;
+        index.put(pattern, indexes);
+    }
+
+    /**
+     * the targets, in the order of the positions returned by the match methods
+     */
+    public List<GoogleTarget> getTargets() {
+        return targets;
+    }
+
+    /**
+     * first position (1 based) of each target in the urls or {@link GoogleRank#UNRANKED}
+     */
+    public int[] match(List<String> urls){
+        return match(urls.size(), urls::get);
+    }
+
+    /**
+     * first position (1 based) of each target in the serp or {@link GoogleRank#UNRANKED}
+     */
+    public int[] match(GoogleSerp serp){
+        List<GoogleSerpEntry> entries = serp.getEntries();
+        return match(entries.size(), (i) -> entries.get(i).getUrl());
+    }
+
+    protected int[] match(int size, IntFunction<String> urls){
+        int[] positions = new int[targets.size()];
+        Arrays.fill(positions, UNRANKED);
+
+        int remaining = positions.length;
+        for (int i = 0; i < size && remaining > 0; i++) {
+            String url = urls.apply(i);
+            if(url == null){
+                continue;
+            }
+            int position = i + 1;
+
+            int hostStart = hostStart(url);
+            if(hostStart != -1 && (!domains.isEmpty() || !subdomains.isEmpty())){
+                int hostEnd = url.indexOf('/', hostStart);
+                if(hostEnd == -1 && endsWithLineTerminator(url)){
+                    // "$" also matches before a final line terminator, leave these urls to the regexes
+                    remaining -= matchRegexes(url, position, positions, true);
+                    continue;
+                }
+                String host = url.substring(hostStart, hostEnd == -1 ? url.length() : hostEnd);
+
+                remaining -= set(domains.get(host), position, positions);
+                remaining -= set(subdomains.get(host), position, positions);
+                for (int dot = host.indexOf('.', 1); dot != -1; dot = host.indexOf('.', dot + 1)) {
+                    remaining -= set(subdomains.get(host.substring(dot + 1)), position, positions);
+                }
+            }
+
+            remaining -= matchRegexes(url, position, positions, false);
+        }
+
+        return positions;
+    }
+
+    protected int matchRegexes(String url, int position, int[] positions, boolean all){
+        int found = 0;
+        if(all){
+            for (int target = 0; target < positions.length; target++) {
+                if(positions[target] == UNRANKED && targets.get(target).match(url)){
+                    positions[target] = position;
+                    found++;
+                }
+            }
+        } else {
+            for (int target : regexes) {
+                if(positions[target] == UNRANKED && targets.get(target).match(url)){
+                    positions[target] = position;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    protected static int set(int[] hits, int position, int[] positions){
+        if(hits == null){
+            return 0;
+        }
+        int found = 0;
+        for (int target : hits) {
+            if(positions[target] == UNRANKED){
+                positions[target] = position;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * index of the host in the url (right after "http://" or "https://") or -1
+     */
+    protected static int hostStart(String url){
+        if(url.startsWith("http://")){
+            return 7;
+        }
+        if(url.startsWith("https://")){
+            return 8;
+        }
+        return -1;
+    }
+
+    protected static boolean endsWithLineTerminator(String url){
+        if(url.isEmpty()){
+            return false;
+        }
+        char c = url.charAt(url.length() - 1);
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * positions of an url in the serps of a search, ordered by run id.
+ * Serialized like {@link GoogleRankSeries}, varints of the run id delta and of the zigzag encoded position delta.
+ */
+public class GoogleUrlPostings {
+
+    private final static byte SERIAL_VERSION = 0;
+
+    final int googleUrlId;
+    final int googleSearchId;
+
+    int size;
+    int[] runIds;
+    short[] positions;
+
+    public GoogleUrlPostings(int googleUrlId, int googleSearchId) {
+        this.googleUrlId = googleUrlId;
+        this.googleSearchId = googleSearchId;
+        this.runIds = new int[8];
+        this.positions = new short[8];
+    }
+
+    public int getGoogleUrlId() {
+        return googleUrlId;
+    }
+
+    public int getGoogleSearchId() {
+        return googleSearchId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRunId(int index) {
+        return runIds[index];
+    }
+
+    public short getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * 0 if empty
+     */
+    public int getFirstRunId() {
+        return size == 0 ? 0 : runIds[0];
+    }
+
+    /**
+     * 0 if empty
+     */
+    public int getLastRunId() {
+        return size == 0 ? 0 : runIds[size - 1];
+    }
+
+    /**
+     * index of the run or (-(insertion point) - 1) like {@link Arrays#binarySearch(int[], int)}
+     */
+    public int indexOf(int runId) {
+        if (size > 0 && runIds[size - 1] == runId) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(runIds, 0, size, runId);
+    }
+
+    /**
+     * 1-based position of the url in the serp of the run, 0 if the url is not in this serp
+     */
+    public short getPositionOfRun(int runId) {
+        int index = indexOf(runId);
+        return index < 0 ? 0 : positions[index];
+    }
+
+    /**
+     * appends the position of a run, or replaces it if the run is already in the postings
+     */
+    public void put(int runId, int position) {
+        if (size == 0 || runId > runIds[size - 1]) {
+            ensureCapacity(size + 1);
+            runIds[size] = runId;
+            positions[size] = (short) position;
+            size++;
+            return;
+        }
+
+        int index = indexOf(runId);
+        if (index >= 0) {
+            positions[index] = (short) position;
+            return;
+        }
+
+        index = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(runIds, index, runIds, index + 1, size - index);
+        System.arraycopy(positions, index, positions, index + 1, size - index);
+        runIds[index] = runId;
+        positions[index] = (short) position;
+        size++;
+    }
+
+    /**
+     * false if the run is not in the postings
+     */
+    public boolean remove(int runId) {
+        int index = indexOf(runId);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(runIds, index + 1, runIds, index, size - index - 1);
+        System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    protected void ensureCapacity(int capacity) {
+        if (capacity > runIds.length) {
+            int newCapacity = Math.max(capacity, runIds.length * 2);
+            runIds = Arrays.copyOf(runIds, newCapacity);
+            positions = Arrays.copyOf(positions, newCapacity);
+        }
+    }
+
+    public byte[] getSerialized() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(2 + size * 3);
+        baos.write(SERIAL_VERSION);
+        GoogleRankSeries.writeVarint(baos, size);
+        int previousRunId = 0;
+        int previousPosition = 0;
+        for (int i = 0; i < size; i++) {
+            GoogleRankSeries.writeVarint(baos, runIds[i] - previousRunId);
+            int diff = positions[i] - previousPosition;
+            GoogleRankSeries.writeVarint(baos, (diff << 1) ^ (diff >> 31));
+            previousRunId = runIds[i];
+            previousPosition = positions[i];
+        }
+        return baos.toByteArray();
+    }
+
+    public void setSerialized(byte[] data) throws IOException {
+        int[] offset = new int[]{0};
+        if (data.length == 0) {
+            throw new IOException("empty postings");
+        }
+        if (data[offset[0]++] != SERIAL_VERSION) {
+            throw new UnsupportedOperationException("unsupported serialized version");
+        }
+
+        int newSize = GoogleRankSeries.readVarint(data, offset);
+        runIds = new int[Math.max(newSize, 8)];
+        positions = new short[Math.max(newSize, 8)];
+        int runId = 0;
+        int position = 0;
+        for (int i = 0; i < newSize; i++) {
+            runId += GoogleRankSeries.readVarint(data, offset);
+            int zigzag = GoogleRankSeries.readVarint(data, offset);
+            position += (zigzag >>> 1) ^ -(zigzag & 1);
+            runIds[i] = runId;
+            positions[i] = (short) position;
+        }
+        size = newSize;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 37 * hash + this.googleUrlId;
+        hash = 37 * hash + this.googleSearchId;
+        for (int i = 0; i < size; i++) {
+            hash = 37 * hash + runIds[i];
+            hash = 37 * hash + positions[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final GoogleUrlPostings other = (GoogleUrlPostings) obj;
+        if (this.googleUrlId != other.googleUrlId || this.googleSearchId != other.googleSearchId
+            || this.size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (runIds[i] != other.runIds[i] || positions[i] != other.positions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.serphacker.serposcope.db.base.RunDB;
+import com.serphacker.serposcope.models.base.Run;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * throttled persistence of the progress and captchas of a run.
+ *
+ * The task keeps its live counters in memory, a single thread copies them to the run and writes the run row
+ * every flushIntervalMS when they changed, and once more on close.
+ */
+public class RunProgressWriter implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RunProgressWriter.class);
+
+    public final static long DEFAULT_FLUSH_INTERVAL_MS = 1000l;
+
+    final RunDB runDB;
+    final Run run;
+    final IntSupplier progress;
+    final IntSupplier captchas;
+    final long flushIntervalMS;
+
+    final CountDownLatch stop = new CountDownLatch(1);
+    final AtomicLong updates = new AtomicLong();
+    int writtenProgress;
+    int writtenCaptchas;
+
+    Thread thread;
+
+    public RunProgressWriter(RunDB runDB, Run run, IntSupplier progress, IntSupplier captchas, long flushIntervalMS) {
+        this.runDB = runDB;
+        this.run = run;
+        this.progress = progress;
+        this.captchas = captchas;
+        this.flushIntervalMS = Math.max(1, flushIntervalMS);
+        this.writtenProgress = run.getProgress();
+        this.writtenCaptchas = run.getCaptchas();
+    }
+
+    public void start(){
+        thread = new Thread(this, "run-progress-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * write the last values and stop the writer thread
+     */
+    public void close(){
+        if(thread == null){
+            return;
+        }
+        stop.countDown();
+        Uninterruptibles.joinUninterruptibly(thread);
+        thread = null;
+        LOG.debug("run progress written {} times", updates.get());
+    }
+
+    @Override
+    public void run() {
+        boolean stopped = false;
+        while(!stopped){
+            try {
+                stopped = stop.await(flushIntervalMS, TimeUnit.MILLISECONDS);
+            } catch(InterruptedException ex){
+                LOG.warn("progress writer interrupted, ignoring");
+            }
+            flush();
+        }
+    }
+
+    protected synchronized void flush(){
+        int currentProgress = progress.getAsInt();
+        int currentCaptchas = captchas.getAsInt();
+        run.setProgress(currentProgress);
+        run.setCaptchas(currentCaptchas);
+
+        try {
+            if(currentProgress != writtenProgress && runDB.updateProgress(run)){
+                writtenProgress = currentProgress;
+                updates.incrementAndGet();
+            }
+            if(currentCaptchas != writtenCaptchas && runDB.updateCaptchas(run)){
+                writtenCaptchas = currentCaptchas;
+                updates.incrementAndGet();
+            }
+        } catch(Exception ex){
+            LOG.error("unhandled exception while writing run progress", ex);
+        }
+    }
+
+    /**
+     * row updates issued so far
+     */
+    public long getUpdates() {
+        return updates.get();
+    }
+
+}
@@ -15,6 +15,7 @@ import com.serphacker.serposcope.models.base.Group;
 import com.serphacker.serposcope.models.base.Group.Module;
 import com.serphacker.serposcope.models.base.Run;
 import com.serphacker.serposcope.models.base.Run.Mode;
+import com.serphacker.serposcope.task.google.GoogleRescanTask;
 import com.serphacker.serposcope.task.google.GoogleTask;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -35,6 +36,7 @@ public class TaskManager {
     
     final Object googleTaskLock = new Object();
     GoogleTask googleTask;
+    GoogleRescanTask googleRescanTask;
     
     public boolean isGoogleRunning(){
         synchronized(googleTaskLock){
@@ -95,6 +97,51 @@ public class TaskManager {
         } 
     }
     
+    /**
+     * live progress of the run if it's the running google task, null otherwise
+     */
+    public Integer getGoogleTaskProgress(int runId){
+        synchronized(googleTaskLock){
+            if(googleTask == null || !googleTask.isAlive() || googleTask.getRun().getId() != runId){
+                return null;
+            }
+            
+            return googleTask.getProgress();
+        }
+    }
+    
+    /**
+     * rescan the serps of a finished run in background, one rescan at a time
+     */
+    public boolean startGoogleRescan(Run run){
+        synchronized(googleTaskLock){
+            if(googleRescanTask != null && googleRescanTask.isAlive()){
+                return false;
+            }
+            
+            googleRescanTask = googleTaskFactory.createRescan(run);
+            googleRescanTask.start();
+            return true;
+        }
+    }
+    
+    public GoogleRescanTask getRunningGoogleRescan(){
+        synchronized(googleTaskLock){
+            if(googleRescanTask == null || !googleRescanTask.isAlive()){
+                return null;
+            }
+            
+            return googleRescanTask;
+        }
+    }
+    
+    public void joinGoogleRescan() throws InterruptedException {
+        GoogleRescanTask task = getRunningGoogleRescan();
+        if(task != null){
+            task.join();
+        }
+    }
+    
     public List<Run> listRunningTasks(){
         List<Run> tasks = new ArrayList<>();
         
@@ -0,0 +1,368 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.db.google.GoogleDB;
+import com.serphacker.serposcope.db.google.GoogleRankDB;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleBest;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
+import com.serphacker.serposcope.models.google.GoogleTargetSummary;
+import it.unimi.dsi.fastutil.longs.Long2ShortMap;
+import it.unimi.dsi.fastutil.longs.Long2ShortOpenHashMap;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * background rescan of the serps of a run against the targets of every group.
+ *
+ * The searches are partitioned by id across a fork join pool, each partition streams its serps once, ordered by
+ * (search, run), and matches them against the targets of all the groups of the search. Ranks, bests and summaries
+ * are kept in memory and swapped with the rows of the run in a single transaction once every serp is rescanned,
+ * an aborted or failed rescan leaves the run untouched.
+ * Same output as {@link com.serphacker.serposcope.db.google.GoogleSerpRescanDB#rescan} called for each group.
+ */
+public class GoogleRescanTask extends Thread {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GoogleRescanTask.class);
+
+    public final static int SEARCHES_PER_PARTITION = 32;
+
+    final GoogleDB googleDB;
+    final BaseDB baseDB;
+    final Run run;
+    final int parallelism;
+
+    final AtomicInteger searchDone = new AtomicInteger();
+    final AtomicInteger unresolved = new AtomicInteger();
+    volatile int totalSearch;
+    volatile boolean abort;
+    volatile LocalDateTime started;
+
+    // read only once initialized
+    List<GoogleSearch> searches;
+    Map<Integer, List<Integer>> groupsBySearch;
+    Map<Integer, List<GoogleTarget>> targetsByGroup;
+    Map<Integer, Integer> searchCountByGroup;
+    Run previousRun;
+    Long2ShortMap previousRanks;
+    Long2ShortMap bestRanks;
+
+    final Map<List<Integer>, GoogleTargetMatcher> matchers = new ConcurrentHashMap<>();
+    final Map<Integer, Map<Integer, GoogleTargetSummary>> summariesByTarget = new ConcurrentHashMap<>();
+    final List<GoogleRank> ranks = Collections.synchronizedList(new ArrayList<>());
+    final List<GoogleBest> bests = Collections.synchronizedList(new ArrayList<>());
+
+    @Inject
+    public GoogleRescanTask(GoogleDB googleDB, BaseDB baseDB, @Assisted Run run) {
+        super("google-rescan-" + run.getId());
+        this.googleDB = googleDB;
+        this.baseDB = baseDB;
+        this.run = run;
+        this.parallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    public void run() {
+        started = LocalDateTime.now();
+        long _start = System.currentTimeMillis();
+        LOG.info("SERP rescan of run {} : starting", run.getId());
+        try {
+            rescan();
+            if(unresolved.get() > 0){
+                LOG.info("SERP rescan of run {} : {} targets not found in partial serps left without rank",
+                    run.getId(), unresolved.get());
+            }
+            LOG.info("SERP rescan of run {} : {}, duration = {}", new Object[]{run.getId(), abort ? "aborted" : "done",
+                DurationFormatUtils.formatDurationHMS(System.currentTimeMillis() - _start)});
+        } catch(Exception ex){
+            LOG.error("SERP rescan crashed", ex);
+        }
+    }
+
+    protected void rescan() {
+        initialize();
+        if(!searches.isEmpty() && !targetsByGroup.isEmpty()){
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new Partition(0, searches.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        if(abort){
+            // the ranks of the run are left as they were before the rescan
+            return;
+        }
+
+        if(!googleDB.result.replaceRun(run.getId(), ranks, bests, buildSummaries())){
+            LOG.warn("SERP rescan of run {} : failed to write {} ranks, previous ranks kept", run.getId(), ranks.size());
+        }
+    }
+
+    protected void initialize() {
+        groupsBySearch = googleDB.search.mapGroupsBySearchId();
+        targetsByGroup = googleDB.target.list().stream().collect(Collectors.groupingBy(GoogleTarget::getGroupId));
+        searchCountByGroup = googleDB.search.countByGroup();
+
+        searches = googleDB.search.list().stream()
+            .filter((search) -> !getTargets(search.getId()).isEmpty())
+            .sorted((s1, s2) -> Integer.compare(s1.getId(), s2.getId()))
+            .collect(Collectors.toList());
+        totalSearch = searches.size();
+
+        previousRanks = new Long2ShortOpenHashMap();
+        previousRanks.defaultReturnValue((short)GoogleRank.UNRANKED);
+        bestRanks = previousRanks;
+
+        previousRun = baseDB.run.findPrevious(run.getId());
+        if(previousRun != null){
+            previousRanks = googleDB.rank.loadRanks(previousRun.getId());
+            bestRanks = googleDB.rank.loadBests();
+            for (GoogleTargetSummary summary : googleDB.targetSummary.list(previousRun.getId())) {
+                summariesFor(summary.getTargetId()).put(previousRun.getId(), summary);
+            }
+        }
+        LOG.debug("SERP rescan : {} searches, {} groups, parallelism {}",
+            new Object[]{totalSearch, targetsByGroup.size(), parallelism});
+    }
+
+    /**
+     * targets of all the groups of the search, the matcher is shared by the searches of the same groups
+     */
+    protected GoogleTargetMatcher getMatcher(int searchId){
+        List<Integer> groups = groupsBySearch.getOrDefault(searchId, Collections.emptyList());
+        return matchers.computeIfAbsent(groups, (key) -> new GoogleTargetMatcher(getTargets(searchId)));
+    }
+
+    protected List<GoogleTarget> getTargets(int searchId){
+        List<GoogleTarget> targets = new ArrayList<>();
+        for (Integer group : groupsBySearch.getOrDefault(searchId, Collections.emptyList())) {
+            targets.addAll(targetsByGroup.getOrDefault(group, Collections.emptyList()));
+        }
+        return targets;
+    }
+
+    protected Map<Integer, GoogleTargetSummary> summariesFor(int targetId){
+        return summariesByTarget.computeIfAbsent(targetId, (id) -> new ConcurrentHashMap<>());
+    }
+
+    protected class Partition extends RecursiveAction {
+
+        final int from;
+        final int to;
+
+        Partition(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > SEARCHES_PER_PARTITION){
+                int middle = (from + to) >>> 1;
+                invokeAll(new Partition(from, middle), new Partition(middle, to));
+                return;
+            }
+            if(!abort){
+                rescanPartition(searches.subList(from, to));
+            }
+        }
+    }
+
+    /**
+     * rank state of a search being rescanned
+     */
+    protected class SearchState {
+
+        final GoogleSearch search;
+        final GoogleTargetMatcher matcher;
+        final int[] previousRanks;
+        final GoogleBest[] bests;
+        final boolean[] improved;
+
+        SearchState(GoogleSearch search) {
+            this.search = search;
+            this.matcher = getMatcher(search.getId());
+
+            List<GoogleTarget> targets = matcher.getTargets();
+            previousRanks = new int[targets.size()];
+            bests = new GoogleBest[targets.size()];
+            improved = new boolean[targets.size()];
+            for (int t = 0; t < targets.size(); t++) {
+                GoogleTarget target = targets.get(t);
+                long key = GoogleRankDB.targetSearchKey(target.getId(), search.getId());
+                previousRanks[t] = GoogleRescanTask.this.previousRanks.get(key);
+                bests[t] = new GoogleBest(target.getGroupId(), target.getId(), search.getId(), bestRanks.get(key), null, null);
+            }
+        }
+
+        void accept(GoogleSerp serp, List<GoogleRank> ranks){
+            List<GoogleTarget> targets = matcher.getTargets();
+            int[] positions = matcher.match(serp);
+            for (int t = 0; t < targets.size(); t++) {
+                GoogleTarget target = targets.get(t);
+                int rank = positions[t];
+                if(rank == GoogleRank.UNRANKED && serp.isPartial()){
+                    // the pagination stopped before this target was searched, its position is unknown
+                    unresolved.incrementAndGet();
+                    continue;
+                }
+                String rankedUrl = rank == GoogleRank.UNRANKED ? null : serp.getEntries().get(rank - 1).getUrl();
+
+                GoogleRank gRank = new GoogleRank(serp.getRunId(), target.getGroupId(), target.getId(), search.getId(),
+                    rank, (short)previousRanks[t], rankedUrl);
+                ranks.add(gRank);
+
+                Map<Integer, GoogleTargetSummary> summaries = summariesFor(target.getId());
+                GoogleTargetSummary summary = summaries.computeIfAbsent(serp.getRunId(),
+                    (runId) -> new GoogleTargetSummary(target.getGroupId(), target.getId(), runId, 0));
+                summary.addRankCandidat(gRank);
+
+                GoogleBest best = bests[t];
+                if (rank != GoogleRank.UNRANKED && rank <= best.getRank()) {
+                    best.setRank((short) rank);
+                    best.setUrl(rankedUrl);
+                    best.setRunDay(serp.getRunDay());
+                    improved[t] = true;
+                }
+                previousRanks[t] = rank;
+            }
+        }
+
+        /**
+         * the bests improved by the serps of the search
+         */
+        void end(List<GoogleBest> improvedBests){
+            for (int t = 0; t < bests.length; t++) {
+                if(improved[t]){
+                    improvedBests.add(bests[t]);
+                }
+            }
+        }
+    }
+
+    protected void rescanPartition(List<GoogleSearch> partition){
+        Map<Integer, GoogleSearch> searchById = new HashMap<>();
+        for (GoogleSearch search : partition) {
+            searchById.put(search.getId(), search);
+        }
+
+        List<GoogleRank> partitionRanks = new ArrayList<>();
+        List<GoogleBest> partitionBests = new ArrayList<>();
+        SearchState[] current = new SearchState[1];
+        int[] streamed = new int[1];
+
+        googleDB.serp.stream(run.getId(), run.getId(), searchById.keySet(), (GoogleSerp serp) -> {
+            if(abort){
+                return;
+            }
+            if(current[0] == null || current[0].search.getId() != serp.getGoogleSearchId()){
+                if(current[0] != null){
+                    current[0].end(partitionBests);
+                    searchDone.incrementAndGet();
+                    streamed[0]++;
+                }
+                current[0] = new SearchState(searchById.get(serp.getGoogleSearchId()));
+            }
+            current[0].accept(serp, partitionRanks);
+        });
+        if(current[0] != null){
+            current[0].end(partitionBests);
+            searchDone.incrementAndGet();
+            streamed[0]++;
+        }
+        ranks.addAll(partitionRanks);
+        bests.addAll(partitionBests);
+
+        // searches without serp in the run
+        searchDone.addAndGet(partition.size() - streamed[0]);
+    }
+
+    /**
+     * chain the score of each summary to the summary of the previous run, as done by a run
+     */
+    protected List<GoogleTargetSummary> buildSummaries(){
+        List<GoogleTargetSummary> built = new ArrayList<>();
+        for (Map<Integer, GoogleTargetSummary> summaryByRunId : summariesByTarget.values()) {
+            TreeMap<Integer, GoogleTargetSummary> summaries = new TreeMap<>(summaryByRunId);
+
+            GoogleTargetSummary previousSummary = null;
+            for (GoogleTargetSummary summary : summaries.values()) {
+                summary.computeScoreBP(searchCountByGroup.getOrDefault(summary.getGroupId(), 0));
+                if (previousSummary != null) {
+                    summary.setPreviousScoreBP(previousSummary.getScoreBP());
+                }
+                previousSummary = summary;
+            }
+
+            if(previousRun != null){
+                summaries.remove(previousRun.getId());
+            }
+            built.addAll(summaries.values());
+        }
+        return built;
+    }
+
+    public Run getRun() {
+        return run;
+    }
+
+    public LocalDateTime getStarted() {
+        return started;
+    }
+
+    public int getTotalSearch() {
+        return totalSearch;
+    }
+
+    /**
+     * targets absent from a partial serp, no rank is written for them
+     */
+    public int getUnresolved() {
+        return unresolved.get();
+    }
+
+    public int getSearchDone() {
+        return searchDone.get();
+    }
+
+    /**
+     * percentage of the searches rescanned
+     */
+    public int getProgress() {
+        int total = totalSearch;
+        return total == 0 ? 0 : (int) (((float)searchDone.get() / (float)total) * 100f);
+    }
+
+    public void abort() {
+        abort = true;
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * groups of each search and target matcher of each group, loaded once at the start of a run.
+ *
+ * Ids are kept in sorted int arrays with their values in parallel arrays and resolved by binary search, so the
+ * scraper threads get the group fan-out of a result without any database access.
+ * immutable, thread safe
+ */
+public class GoogleRunSnapshot {
+
+    final static int[] NONE = new int[0];
+
+    final int[] searchIds;
+    final int[][] groupsBySearch;
+    final int[] groupIds;
+    final GoogleTargetMatcher[] matchersByGroup;
+
+    public GoogleRunSnapshot(Map<Integer, List<Integer>> groupsBySearch, Map<Integer, GoogleTargetMatcher> matchersByGroup) {
+        this.searchIds = sortedKeys(groupsBySearch.keySet().stream().mapToInt(Integer::intValue).toArray());
+        this.groupsBySearch = new int[searchIds.length][];
+        for (int i = 0; i < searchIds.length; i++) {
+            int[] groups = groupsBySearch.get(searchIds[i]).stream().mapToInt(Integer::intValue).toArray();
+            Arrays.sort(groups);
+            this.groupsBySearch[i] = groups;
+        }
+
+        this.groupIds = sortedKeys(matchersByGroup.keySet().stream().mapToInt(Integer::intValue).toArray());
+        this.matchersByGroup = new GoogleTargetMatcher[groupIds.length];
+        for (int i = 0; i < groupIds.length; i++) {
+            this.matchersByGroup[i] = matchersByGroup.get(groupIds[i]);
+        }
+    }
+
+    protected static int[] sortedKeys(int[] keys) {
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * sorted ids of the groups of the search, do not modify
+     */
+    public int[] getGroups(int searchId) {
+        int index = Arrays.binarySearch(searchIds, searchId);
+        return index < 0 ? NONE : groupsBySearch[index];
+    }
+
+    /**
+     * matcher of the targets of the group, null if the group has no target
+     */
+    public GoogleTargetMatcher getMatcher(int groupId) {
+        int index = Arrays.binarySearch(groupIds, groupId);
+        return index < 0 ? null : matchersByGroup[index];
+    }
+
+    /**
+     * true when every target of the groups of the search is ranked in the urls, false if the search has no target
+     */
+    public boolean isResolved(int searchId, List<String> urls) {
+        boolean tracked = false;
+        for (int group : getGroups(searchId)) {
+            GoogleTargetMatcher matcher = getMatcher(group);
+            if (matcher == null) {
+                continue;
+            }
+            tracked = true;
+            for (int position : matcher.match(urls)) {
+                if (position == GoogleRank.UNRANKED) {
+                    return false;
+                }
+            }
+        }
+        return tracked;
+    }
+
+    public int getSearchCount() {
+        return searchIds.length;
+    }
+
+    public int getGroupCount() {
+        return groupIds.length;
+    }
+
+}
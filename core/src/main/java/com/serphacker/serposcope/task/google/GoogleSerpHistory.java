@@ -0,0 +1,189 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.db.google.GoogleSerpDB;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ShortOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectArrayMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMaps;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * url positions of the reference runs (1, 7, 30, 90 days ago) used to fill the serp history.
+ *
+ * Serps are loaded lazily in bulk : on a miss, the serps of the next chunkSize searches in the task order are
+ * loaded with one query per reference run and indexed as url to position maps.
+ * Memory is bounded by an LRU of maxSearches searches.
+ * thread safe, the serps are loaded outside of the LRU lock, a search being loaded is awaited by the other threads
+ */
+public class GoogleSerpHistory {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GoogleSerpHistory.class);
+
+    public final static int DEFAULT_CHUNK_SIZE = 50;
+    public final static int DEFAULT_MAX_SEARCHES = 500;
+
+    final GoogleSerpDB serpDB;
+    final Map<Short,Integer> runsByDay;
+    final int[] searchOrder;
+    final Int2IntOpenHashMap searchPositions;
+    final int chunkSize;
+    // guarded by itself
+    final LinkedHashMap<Integer, Short2ObjectMap<Object2ShortOpenHashMap<String>>> cache;
+    final ConcurrentMap<Integer, CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>>> loading
+        = new ConcurrentHashMap<>();
+
+    final AtomicInteger misses = new AtomicInteger();
+    final AtomicInteger loaded = new AtomicInteger();
+
+    public GoogleSerpHistory(GoogleSerpDB serpDB, Map<Short,Integer> runsByDay, int[] searchOrder) {
+        this(serpDB, runsByDay, searchOrder, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_SEARCHES);
+    }
+
+    public GoogleSerpHistory(GoogleSerpDB serpDB, Map<Short,Integer> runsByDay, int[] searchOrder,
+        int chunkSize, int maxSearches
+    ) {
+        this.serpDB = serpDB;
+        this.runsByDay = runsByDay;
+        this.searchOrder = searchOrder;
+        this.chunkSize = Math.max(1, Math.min(chunkSize, maxSearches));
+        this.searchPositions = new Int2IntOpenHashMap(searchOrder.length);
+        this.searchPositions.defaultReturnValue(-1);
+        for (int i = 0; i < searchOrder.length; i++) {
+            searchPositions.put(searchOrder[i], i);
+        }
+        this.cache = new LinkedHashMap<Integer, Short2ObjectMap<Object2ShortOpenHashMap<String>>>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > maxSearches;
+            }
+        };
+    }
+
+    /**
+     * url to position maps of the search, by day, days without serp are absent
+     */
+    public Short2ObjectMap<Object2ShortOpenHashMap<String>> get(int searchId){
+        if(runsByDay.isEmpty()){
+            return Short2ObjectMaps.EMPTY_MAP;
+        }
+
+        Short2ObjectMap<Object2ShortOpenHashMap<String>> positions = cached(searchId);
+        if(positions != null){
+            return positions;
+        }
+
+        CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>> future = new CompletableFuture<>();
+        CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>> pending = loading.putIfAbsent(searchId, future);
+        if(pending != null){
+            return pending.join();
+        }
+
+        // loaded by another thread between the cache lookup and the registration
+        positions = cached(searchId);
+        if(positions != null){
+            loading.remove(searchId);
+            future.complete(positions);
+            return positions;
+        }
+
+        misses.incrementAndGet();
+        return load(searchId, future);
+    }
+
+    protected Short2ObjectMap<Object2ShortOpenHashMap<String>> cached(int searchId){
+        synchronized(cache){
+            return cache.get(searchId);
+        }
+    }
+
+    /**
+     * loads the search and the next searches of the task not already cached or being loaded
+     */
+    protected Short2ObjectMap<Object2ShortOpenHashMap<String>> load(int searchId,
+        CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>> future
+    ){
+        Map<Integer, CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>>> futures = new LinkedHashMap<>();
+        futures.put(searchId, future);
+
+        int position = searchPositions.get(searchId);
+        if(position != -1){
+            for (int i = position + 1; i < searchOrder.length && futures.size() < chunkSize; i++) {
+                int nextId = searchOrder[i];
+                if(cached(nextId) != null){
+                    continue;
+                }
+                CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>> nextFuture = new CompletableFuture<>();
+                if(loading.putIfAbsent(nextId, nextFuture) == null){
+                    futures.put(nextId, nextFuture);
+                }
+            }
+        }
+
+        Map<Integer, Short2ObjectMap<Object2ShortOpenHashMap<String>>> chunk = new LinkedHashMap<>();
+        try {
+            for (Integer id : futures.keySet()) {
+                chunk.put(id, new Short2ObjectArrayMap<>(runsByDay.size()));
+            }
+
+            for (Map.Entry<Short, Integer> entry : runsByDay.entrySet()) {
+                short day = entry.getKey();
+                serpDB.stream(entry.getValue(), futures.keySet(), (serp) -> {
+                    Object2ShortOpenHashMap<String> positions = serp.getPositionsByUrl();
+                    if(serp.isPartial()){
+                        // urls absent from a partial serp have an unknown position
+                        positions.defaultReturnValue((short)-1);
+                    }
+                    chunk.get(serp.getGoogleSearchId()).put(day, positions);
+                });
+            }
+
+            // inserted in reverse order, the requested search is the most recently used
+            List<Integer> ids = new ArrayList<>(chunk.keySet());
+            synchronized(cache){
+                for (int i = ids.size() - 1; i >= 0; i--) {
+                    cache.put(ids.get(i), chunk.get(ids.get(i)));
+                }
+            }
+            loaded.addAndGet(ids.size());
+            LOG.trace("history of {} searches loaded", ids.size());
+        } catch(RuntimeException ex){
+            for (Map.Entry<Integer, CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>>> entry : futures.entrySet()) {
+                loading.remove(entry.getKey());
+                entry.getValue().completeExceptionally(ex);
+            }
+            throw ex;
+        }
+
+        for (Map.Entry<Integer, CompletableFuture<Short2ObjectMap<Object2ShortOpenHashMap<String>>>> entry : futures.entrySet()) {
+            loading.remove(entry.getKey());
+            entry.getValue().complete(chunk.get(entry.getKey()));
+        }
+        return chunk.get(searchId);
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    public int getLoaded() {
+        return loaded.get();
+    }
+
+}
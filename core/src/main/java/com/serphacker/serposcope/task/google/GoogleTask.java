@@ -10,6 +10,7 @@ package com.serphacker.serposcope.task.google;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.serphacker.serposcope.db.google.GoogleDB;
+import com.serphacker.serposcope.db.google.GoogleRankDB;
 import com.serphacker.serposcope.di.CaptchaSolverFactory;
 import com.serphacker.serposcope.di.ScrapClientFactory;
 //import com.serphacker.serposcope.di.ScraperFactory;
@@ -24,10 +25,13 @@ import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
 import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
 import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
+import com.serphacker.serposcope.scraper.google.scraper.strategy.StreamingSerpParsingStrategy;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
 import com.serphacker.serposcope.scraper.http.proxy.DirectNoProxy;
+import com.serphacker.serposcope.scraper.http.proxy.ProxyHealth;
 import com.serphacker.serposcope.scraper.http.proxy.ProxyRotator;
 import com.serphacker.serposcope.task.AbstractTask;
+import com.serphacker.serposcope.task.RunProgressWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -40,7 +44,13 @@ import com.serphacker.serposcope.scraper.http.proxy.ScrapProxy;
 import java.util.stream.Collectors;
 import com.serphacker.serposcope.di.GoogleScraperFactory;
 import com.serphacker.serposcope.models.google.GoogleBest;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
 import com.serphacker.serposcope.models.google.GoogleTargetSummary;
+import it.unimi.dsi.fastutil.longs.Long2ShortMap;
+import it.unimi.dsi.fastutil.longs.Long2ShortMaps;
+import it.unimi.dsi.fastutil.longs.Long2ShortOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ShortOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.Short2ObjectMap;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
@@ -49,16 +59,25 @@ public class GoogleTask extends AbstractTask {
 
     protected static final Logger LOG = LoggerFactory.getLogger(GoogleTask.class);
     
+    // stateless, shared by the scrapers when the streaming parser is enabled
+    final static StreamingSerpParsingStrategy STREAMING_PARSING_STRATEGY = new StreamingSerpParsingStrategy();
+    
     GoogleScraperFactory googleScraperFactory;
     CaptchaSolverFactory captchaSolverFactory;
     ScrapClientFactory scrapClientFactory;
     
     GoogleDB googleDB;
     ProxyRotator rotator;
+    GoogleTaskWriter writer;
+    RunProgressWriter progressWriter;
 
     Run previousRun;
     final Map<Short,Integer> previousRunsByDay = new ConcurrentHashMap<>();
+    Long2ShortMap previousRanks;
+    Long2ShortMap bestRanks;
+    GoogleSerpHistory serpHistory;
     final Map<Integer,List<GoogleTarget>> targetsByGroup = new ConcurrentHashMap<>();
+    GoogleRunSnapshot snapshot;
     final Map<Integer,GoogleTargetSummary> summariesByTarget = new ConcurrentHashMap<>();
     
     LinkedBlockingQueue<GoogleSearch> searches;
@@ -103,6 +122,7 @@ public class GoogleTask extends AbstractTask {
 
         initializeSearches();
         initializePreviousRuns();
+        initializeHistory();
         initializeTargets();
         
         
@@ -114,25 +134,48 @@ public class GoogleTask extends AbstractTask {
             proxies.add(new DirectNoProxy());
         }
         
-        if( proxies.size() < nThread ){
+        boolean async = googleOptions.getLeasesPerProxy() > 0;
+        if( !async && proxies.size() < nThread ){
             LOG.info("less proxy ({}) than max thread ({}), setting thread number to {}", 
                 new Object[]{proxies.size(), nThread, nThread});
             nThread = proxies.size();
         }
         
         rotator = new ProxyRotator(proxies);
+        rotator.setBenchMS(googleOptions.getProxyBenchSec() * 1000l);
+        rotator.setMaxConsecutiveFailures(googleOptions.getProxyMaxFailures());
+        rotator.setMinReuseMS(googleOptions.getProxyMinReuseSec() * 1000l);
         totalSearch = searches.size();
         
-        startThreads(nThread);
-        waitForThreads();
+        writer = new GoogleTaskWriter(googleDB.result, googleOptions.getWriterBatchSize(), googleOptions.getWriterFlushIntervalMS());
+        writer.start();
+        progressWriter = new RunProgressWriter(baseDB.run, run, this::getProgress, captchaCount::get,
+            RunProgressWriter.DEFAULT_FLUSH_INTERVAL_MS);
+        progressWriter.start();
+        try {
+            if(async){
+                runAsyncEngine(nThread, googleOptions.getLeasesPerProxy());
+            } else {
+                startThreads(nThread);
+                waitForThreads();
+            }
+        } finally {
+            writer.close();
+            progressWriter.close();
+        }
+        LOG.debug("serp history : {} searches loaded, {} misses", serpHistory.getLoaded(), serpHistory.getMisses());
         
         finalizeSummaries();
+        googleDB.rankSeries.appendRun(run.getId());
         
         if(solver != null){
             try {solver.close();} catch (IOException ex) {}
         }
         
-        LOG.warn("{} proxies failed during the task", proxies.size() - rotator.list().size());
+        LOG.warn("{} proxies failed during the task", rotator.health().stream().filter(ProxyHealth::isDead).count());
+        if(LOG.isDebugEnabled()){
+            rotator.health().forEach((health) -> LOG.debug("{}", health));
+        }
         
         int remainingSearch = totalSearch - searchDone.get();
         if(remainingSearch > 0){
@@ -165,6 +208,15 @@ public class GoogleTask extends AbstractTask {
         }
     }
     
+    protected void runAsyncEngine(int workers, int leasesPerProxy){
+        GoogleTaskAsyncEngine engine = new GoogleTaskAsyncEngine(this, workers, leasesPerProxy);
+        try {
+            engine.run();
+        } catch(InterruptedException ex){
+            interrupted = true;
+        }
+    }
+    
     protected void interruptThreads(){
         interrupted = true;
         for (Thread thread : threads) {
@@ -185,8 +237,7 @@ public class GoogleTask extends AbstractTask {
     }
     
     protected void incCaptchaCount(int captchas){
-        run.setCaptchas(captchaCount.addAndGet(captchas));
-        baseDB.run.updateCaptchas(run);
+        captchaCount.addAndGet(captchas);
     }
     
     protected void onSearchDone(GoogleSearch search, GoogleScrapResult res){
@@ -195,55 +246,53 @@ public class GoogleTask extends AbstractTask {
     }
     
     protected void incSearchDone(){
-        run.setProgress((int) (((float)searchDone.incrementAndGet()/(float)totalSearch)*100f) );
-        baseDB.run.updateProgress(run);
+        searchDone.incrementAndGet();
     }
     
     protected void insertSearchResult(GoogleSearch search, GoogleScrapResult res) {
-        Map<Short, GoogleSerp> history = getHistory(search);
+        Short2ObjectMap<Object2ShortOpenHashMap<String>> history = serpHistory.get(search.getId());
 
         GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+        serp.setPartial(res.partial);
         for (String url : res.urls) {
             GoogleSerpEntry entry = new GoogleSerpEntry(url);
             entry.fillPreviousPosition(history);
             serp.addEntry(entry);
         }
-        googleDB.serp.insert(serp);
+        
+        List<GoogleRank> ranks = new ArrayList<>();
+        List<GoogleBest> bests = new ArrayList<>();
 
-        List<Integer> groups = googleDB.search.listGroups(search);
-        for (Integer group : groups) {
-            List<GoogleTarget> targets = targetsByGroup.get(group);
-            if (targets == null) {
+        for (int group : snapshot.getGroups(search.getId())) {
+            GoogleTargetMatcher matcher = snapshot.getMatcher(group);
+            if (matcher == null) {
                 continue;
             }
-            for (GoogleTarget target : targets) {
-                int best = googleDB.rank.getBest(group, target.getId(), search.getId()).getRank();
-                int rank = GoogleRank.UNRANKED;
-                String rankedUrl = null;
-                for (int i = 0; i < res.urls.size(); i++) {
-                    if (target.match(res.urls.get(i))) {
-                        rankedUrl = res.urls.get(i);
-                        rank = i + 1;
-                        break;
-                    }
-                }
+            List<GoogleTarget> targets = matcher.getTargets();
+            int[] positions = matcher.match(res.urls);
+            for (int t = 0; t < targets.size(); t++) {
+                GoogleTarget target = targets.get(t);
+                long rankKey = GoogleRankDB.targetSearchKey(target.getId(), search.getId());
+                int best = bestRanks.get(rankKey);
+                int rank = positions[t];
+                String rankedUrl = rank == GoogleRank.UNRANKED ? null : res.urls.get(rank - 1);
                 
-                int previousRank = GoogleRank.UNRANKED;
-                if (previousRun != null) {
-                    previousRank = googleDB.rank.get(previousRun.getId(), group, target.getId(), search.getId());
-                }
+                int previousRank = previousRanks.get(rankKey);
                 
                 GoogleRank gRank = new GoogleRank(run.getId(), group, target.getId(), search.getId(), rank, previousRank, rankedUrl);
-                googleDB.rank.insert(gRank);
+                ranks.add(gRank);
                 
                 GoogleTargetSummary summary = summariesByTarget.get(target.getId());
                 summary.addRankCandidat(gRank);
                 
                 if(rank != GoogleRank.UNRANKED && rank <= best){
-                    googleDB.rank.insertBest(new GoogleBest(group, target.getId(), search.getId(), rank, run.getStarted(), rankedUrl));
+                    bestRanks.put(rankKey, (short)rank);
+                    bests.add(new GoogleBest(group, target.getId(), search.getId(), rank, run.getStarted(), rankedUrl));
                 }
             }
         }
+        
+        writer.write(serp, ranks, bests);
     }    
     
     protected void initializeSearches() {
@@ -276,6 +325,12 @@ public class GoogleTask extends AbstractTask {
                 new GoogleTargetSummary(target.getGroupId(), target.getId(), run.getId(), previousScorePercent.getOrDefault(target.getId(), 0))
             );
         }
+        Map<Integer,GoogleTargetMatcher> matchersByGroup = new HashMap<>();
+        for (Map.Entry<Integer, List<GoogleTarget>> entry : targetsByGroup.entrySet()) {
+            matchersByGroup.put(entry.getKey(), new GoogleTargetMatcher(entry.getValue()));
+        }
+        snapshot = new GoogleRunSnapshot(googleDB.search.mapGroupsBySearchId(), matchersByGroup);
+        LOG.debug("run snapshot : {} searches, {} groups with targets", snapshot.getSearchCount(), snapshot.getGroupCount());
         
         if(updateRun){
             List<GoogleTargetSummary> summaries = googleDB.targetSummary.list(run.getId());
@@ -286,11 +341,18 @@ public class GoogleTask extends AbstractTask {
     }
     
     protected void initializePreviousRuns(){
+        bestRanks = Long2ShortMaps.synchronize(googleDB.rank.loadBests());
+        previousRanks = new Long2ShortOpenHashMap();
+        previousRanks.defaultReturnValue((short)GoogleRank.UNRANKED);
+        
         previousRun = baseDB.run.findPrevious(run.getId());
         if(previousRun == null){
             return;
         }
         
+        previousRanks = googleDB.rank.loadRanks(previousRun.getId());
+        LOG.info("{} previous ranks and {} best ranks loaded", previousRanks.size(), bestRanks.size());
+        
         short[] days = new short[]{1,7,30,90};
         
         for (short day : days) {
@@ -301,17 +363,10 @@ public class GoogleTask extends AbstractTask {
         }
     }
     
-    protected Map<Short,GoogleSerp> getHistory(GoogleSearch search){
-        Map<Short,GoogleSerp> history = new HashMap<>();
-        
-        for (Map.Entry<Short, Integer> entry : previousRunsByDay.entrySet()) {
-            GoogleSerp serp = googleDB.serp.get(entry.getValue(), search.getId());
-            if(serp != null){
-                history.put(entry.getKey(), serp);
-            }
-        }
-        return history;
-    }    
+    protected void initializeHistory(){
+        int[] searchOrder = searches.stream().mapToInt(GoogleSearch::getId).toArray();
+        serpHistory = new GoogleSerpHistory(googleDB.serp, previousRunsByDay, searchOrder);
+    }
     
     protected void finalizeSummaries(){
         Map<Integer, Integer> searchCountByGroup = googleDB.search.countByGroup();
@@ -322,10 +377,14 @@ public class GoogleTask extends AbstractTask {
     }
     
     protected GoogleScraper genScraper(){
-        return googleScraperFactory.get(
+        GoogleScraper scraper = googleScraperFactory.get(
             scrapClientFactory.get(httpUserAgent, httpTimeoutMS),
             solver
         );
+        if(googleOptions.isStreamingParser()){
+            scraper.setParsingStrategy(STREAMING_PARSING_STRATEGY);
+        }
+        return scraper;
     }
 
     @Override
@@ -352,4 +411,16 @@ public class GoogleTask extends AbstractTask {
         return searchDone != null ? searchDone.get() : 0;
     }
 
+    /**
+     * live percentage of the searches done, the run row is only updated periodically
+     */
+    public int getProgress() {
+        int total = totalSearch;
+        return total == 0 ? 0 : (int) (((float)searchDone.get() / (float)total) * 100f);
+    }
+
+    public int getCaptchaCount() {
+        return captchaCount.get();
+    }
+
 }
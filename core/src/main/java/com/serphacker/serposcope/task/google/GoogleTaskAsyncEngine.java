@@ -0,0 +1,293 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
+import static com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status.OK;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper.ScrapState;
+import com.serphacker.serposcope.scraper.http.proxy.ScrapProxy;
+import com.serphacker.serposcope.scraper.http.proxy.ProxyHealth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * alternative to {@link GoogleTaskRunnable} threads where concurrency is bounded by proxy leases instead of threads.
+ *
+ * Each proxy grants leasesPerProxy leases, a lease scrapes one search at a time with its own scraper (and cookies).
+ * Searches are scraped page by page on a small worker pool, the pause between pages is a scheduled continuation
+ * so a pausing search doesn't hold a thread. Fetching a page (captcha solving included) is still blocking and holds a
+ * worker, so at most workers (the maxThreads setting) pages are fetched at once whatever the number of leases, extra
+ * leases only help when searches spend most of their time pausing. The leases of a failing proxy are parked during its backoff in the
+ * {@link com.serphacker.serposcope.scraper.http.proxy.ProxyRotator} and dropped once the proxy is dead.
+ */
+public class GoogleTaskAsyncEngine {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(GoogleTaskAsyncEngine.class);
+
+    static class Lease {
+        final ScrapProxy proxy;
+        GoogleScraper scraper;
+        GoogleSearch search;
+
+        Lease(ScrapProxy proxy) {
+            this.proxy = proxy;
+        }
+    }
+
+    final GoogleTask controller;
+    final int leasesPerProxy;
+    final ScheduledThreadPoolExecutor executor;
+    final CountDownLatch done = new CountDownLatch(1);
+
+    // guarded by this
+    final Set<ScrapProxy> proxies = new LinkedHashSet<>();
+    final Set<ScrapProxy> banned = new HashSet<>();
+    final Queue<Lease> idle = new ArrayDeque<>();
+    final Set<Lease> busy = new HashSet<>();
+    final Set<ScrapProxy> benched = new HashSet<>();
+    final List<Lease> parked = new ArrayList<>();
+    boolean stopped;
+
+    final AtomicInteger peakInFlight = new AtomicInteger();
+
+    public GoogleTaskAsyncEngine(GoogleTask controller, int workers, int leasesPerProxy) {
+        this.controller = controller;
+        this.leasesPerProxy = Math.max(1, leasesPerProxy);
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(Math.max(1, workers),
+            (runnable) -> new Thread(runnable, "google-async-" + threadId.getAndIncrement())
+        );
+    }
+
+    /**
+     * scrape until every search is done, every proxy failed or the calling thread is interrupted
+     */
+    public void run() throws InterruptedException {
+        synchronized(this){
+            ScrapProxy proxy;
+            while((proxy = controller.rotator.poll()) != null){
+                proxies.add(proxy);
+                for (int i = 0; i < leasesPerProxy; i++) {
+                    idle.add(new Lease(proxy));
+                }
+            }
+            LOG.info("async engine started with {} proxies, {} leases and {} workers",
+                new Object[]{proxies.size(), idle.size(), executor.getCorePoolSize()});
+            dispatch();
+        }
+
+        try {
+            done.await();
+        } finally {
+            shutdown();
+        }
+        LOG.info("async engine stopped, peak of {} concurrent searches", peakInFlight.get());
+    }
+
+    protected synchronized void dispatch(){
+        while(!stopped && !idle.isEmpty() && !controller.shouldStop()){
+            GoogleSearch search = controller.searches.poll();
+            if(search == null){
+                break;
+            }
+            Lease lease = idle.poll();
+            lease.search = search;
+            busy.add(lease);
+            long coolDownMS = controller.rotator.getCoolDownMS(lease.proxy);
+            if(coolDownMS > 0){
+                schedule(() -> start(lease), coolDownMS);
+            } else {
+                start(lease);
+            }
+        }
+        peakInFlight.accumulateAndGet(busy.size(), Math::max);
+
+        if(busy.isEmpty()){
+            if(idle.isEmpty() && !parked.isEmpty() && !stopped && !controller.shouldStop()){
+                LOG.debug("every proxy is benched, waiting");
+                return;
+            }
+            if(idle.isEmpty() && !controller.searches.isEmpty()){
+                LOG.warn("no more proxy, stopping the engine");
+            }
+            done.countDown();
+        }
+    }
+
+    protected void start(Lease lease){
+        execute(() -> {
+            try {
+                if(lease.scraper == null){
+                    lease.scraper = controller.genScraper();
+                    lease.scraper.getHttp().setProxy(lease.proxy);
+                }
+                LOG.info("search \"{}\" via {} | total search done : {}/{}",
+                    new Object[]{lease.search.getKeyword(), lease.proxy, controller.getSearchDone(), controller.totalSearch});
+                step(lease, lease.scraper.startScrap(GoogleTaskRunnable.getScrapConfig(
+                    controller.googleOptions, controller.snapshot, lease.search)));
+            } catch(Exception ex){
+                LOG.error("unhandled exception, dropping the lease", ex);
+                release(lease, true, false);
+            }
+        });
+    }
+
+    protected void step(Lease lease, ScrapState state){
+        try {
+            if(lease.scraper.scrapPage(state)){
+                long pause = state.getSearch().getRandomPagePauseMS();
+                schedule(() -> step(lease, state), pause);
+                return;
+            }
+        } catch(InterruptedException ex){
+            LOG.debug("interrupted while scraping \"{}\"", lease.search.getKeyword());
+            try {
+                release(lease, true, true);
+            } finally {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        } catch(Exception ex){
+            LOG.error("unhandled exception, dropping the lease", ex);
+            release(lease, true, false);
+            return;
+        }
+
+        GoogleScrapResult res = state.getResult();
+        if(res.captchas > 0){
+            controller.incCaptchaCount(res.captchas);
+        }
+
+        long latencyMS = lease.scraper.getHttp().getExecutionTimeMS();
+        if(res.status != OK){
+            LOG.warn("scrap failed for {} because of {}", lease.search.getKeyword(), res.status);
+            controller.rotator.failure(lease.proxy, latencyMS, res.captchas);
+            bench(lease);
+            return;
+        }
+
+        controller.rotator.success(lease.proxy, latencyMS, res.captchas);
+        controller.onSearchDone(lease.search, res);
+        release(lease, false, true);
+    }
+
+    /**
+     * park the leases of the proxy until the end of its backoff, drop them if the proxy is dead
+     */
+    protected synchronized void bench(Lease lease){
+        ProxyHealth health = controller.rotator.getHealth(lease.proxy);
+        if(health == null || health.isDead()){
+            banned.add(lease.proxy);
+            idle.removeIf((idleLease) -> idleLease.proxy == lease.proxy);
+            parked.removeIf((parkedLease) -> parkedLease.proxy == lease.proxy);
+            release(lease, true, false);
+            return;
+        }
+
+        if(busy.contains(lease)){
+            parked.add(lease);
+        }
+        idle.removeIf((idleLease) -> idleLease.proxy == lease.proxy && parked.add(idleLease));
+        if(benched.add(lease.proxy)){
+            schedule(() -> unbench(lease.proxy), health.getBenchedUntil() - System.currentTimeMillis());
+        }
+        release(lease, true, false);
+    }
+
+    protected synchronized void unbench(ScrapProxy proxy){
+        if(stopped){
+            return;
+        }
+        ProxyHealth health = controller.rotator.getHealth(proxy);
+        long wait = health.getBenchedUntil() - System.currentTimeMillis();
+        if(wait > 0){
+            schedule(() -> unbench(proxy), wait);
+            return;
+        }
+        benched.remove(proxy);
+        parked.removeIf((parkedLease) -> parkedLease.proxy == proxy && idle.add(parkedLease));
+        dispatch();
+    }
+
+    protected synchronized void release(Lease lease, boolean requeue, boolean reuse){
+        if(!busy.remove(lease)){
+            return;
+        }
+        if(requeue){
+            controller.searches.add(lease.search);
+        }
+        lease.search = null;
+        if(reuse && !banned.contains(lease.proxy)){
+            idle.add(lease);
+        }
+        dispatch();
+    }
+
+    protected void execute(Runnable runnable){
+        try {
+            executor.execute(runnable);
+        } catch(RejectedExecutionException ex){
+            LOG.debug("engine stopped, task rejected");
+        }
+    }
+
+    protected void schedule(Runnable runnable, long delayMS){
+        try {
+            executor.schedule(runnable, delayMS, TimeUnit.MILLISECONDS);
+        } catch(RejectedExecutionException ex){
+            LOG.debug("engine stopped, task rejected");
+        }
+    }
+
+    protected void shutdown(){
+        synchronized(this){
+            stopped = true;
+        }
+        executor.shutdownNow();
+        boolean terminated = false;
+        while(!terminated){
+            try {
+                terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch(InterruptedException ex){
+                LOG.warn("interrupted while stopping the engine, ignoring");
+            }
+        }
+
+        synchronized(this){
+            for (Lease lease : busy) {
+                controller.searches.add(lease.search);
+                lease.search = null;
+            }
+            busy.clear();
+            for (ScrapProxy proxy : proxies) {
+                if(!banned.contains(proxy)){
+                    controller.rotator.add(proxy);
+                }
+            }
+        }
+    }
+
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+}
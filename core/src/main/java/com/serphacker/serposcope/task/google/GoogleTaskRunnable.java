@@ -13,6 +13,8 @@ import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
 import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
 import static com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status.OK;
 import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
+import com.serphacker.serposcope.scraper.http.ScrapClient;
+import com.serphacker.serposcope.scraper.http.TransferCounters;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +27,7 @@ public class GoogleTaskRunnable implements Runnable {
 
     protected static final Logger LOG = LoggerFactory.getLogger(GoogleTaskRunnable.class);
 //    public final static int MAX_FETCH_TRY = 3;
+    public final static long WAIT_PROXY_MS = 1000l;
 
     GoogleTask controller;
     
@@ -53,29 +56,14 @@ public class GoogleTaskRunnable implements Runnable {
                     break;
                 }
                 
-                if(cookiesStickToProxy && proxy != null){
-                    List<Cookie> cookies = scraper.getHttp().getCookies();
-                    if(cookies != null){
-                        proxy.setAttr("cookies", cookies);
-                    }
-                }
-
-                proxy = controller.rotator.rotate(proxy);
-                if (proxy == null) {
-                    LOG.warn("no more proxy, stopping the thread");
-                    break;
-                }
-                scraper.getHttp().setProxy(proxy);
-                
-                if(cookiesStickToProxy){
-                    scraper.getHttp().clearCookies();
-                    List<Cookie> cookies = proxy.getAttr("cookies", List.class);
-                    if(cookies != null){
-                        scraper.getHttp().addCookies(proxy.getAttr("cookies", List.class));
-                    }
-                }
-
                 if(search == null){
+                    // the proxy is not kept leased while waiting for a search
+                    releaseProxy(proxy);
+                    proxy = null;
+                    if (controller.rotator.isEmpty()) {
+                        LOG.warn("no more proxy, stopping the thread");
+                        break;
+                    }
                     try {
                         search = controller.searches.poll(1, TimeUnit.SECONDS);
                     } catch (InterruptedException ex) {
@@ -89,6 +77,32 @@ public class GoogleTaskRunnable implements Runnable {
 //                    LOG.trace("no search to do, waiting for termination");
                     continue;
                 }
+                
+                saveCookies(proxy);
+                ScrapProxy previousProxy = proxy;
+                proxy = null;
+                try {
+                    proxy = controller.rotator.take(previousProxy, WAIT_PROXY_MS);
+                } catch (InterruptedException ex) {
+                    LOG.error("interrupted while waiting for a proxy, aborting the thread");
+                    break;
+                }
+                if (proxy == null) {
+                    if (controller.rotator.isEmpty()) {
+                        LOG.warn("no more proxy, stopping the thread");
+                        break;
+                    }
+                    continue;
+                }
+                scraper.getHttp().setProxy(proxy);
+                
+                if(cookiesStickToProxy){
+                    scraper.getHttp().clearCookies();
+                    List<Cookie> cookies = proxy.getAttr("cookies", List.class);
+                    if(cookies != null){
+                        scraper.getHttp().addCookies(proxy.getAttr("cookies", List.class));
+                    }
+                }
 
                 ++searchTry;
                 GoogleScrapResult res = null;
@@ -96,7 +110,7 @@ public class GoogleTaskRunnable implements Runnable {
                     new Object[]{search.getKeyword(), searchTry, controller.getSearchDone(), controller.totalSearch});
 
                 try {
-                    res = scraper.scrap(getScrapConfig(controller.googleOptions, search));
+                    res = scraper.scrap(getScrapConfig(controller.googleOptions, controller.snapshot, search));
                 } catch (InterruptedException ex) {
                     LOG.error("interrupted while scraping, aborting the thread");
                     break;
@@ -106,11 +120,13 @@ public class GoogleTaskRunnable implements Runnable {
                     controller.incCaptchaCount(res.captchas);
                 }
 
+                long latencyMS = scraper.getHttp().getExecutionTimeMS();
                 if (res.status != OK) {
                     LOG.warn("scrap failed for {} because of {}", search.getKeyword(), res.status);
-                    proxy = null;
+                    controller.rotator.failure(proxy, latencyMS, res.captchas);
                     continue;
                 }
+                controller.rotator.success(proxy, latencyMS, res.captchas);
 
                 controller.onSearchDone(search, res);
                 search = null;
@@ -120,17 +136,44 @@ public class GoogleTaskRunnable implements Runnable {
             LOG.error("unhandled exception, aborting the thread", ex);
             ex.printStackTrace();
         } finally {
-            if (proxy != null){
-                controller.rotator.add(proxy);
-            }
+            releaseProxy(proxy);
             if (search != null) {
                 controller.searches.add(search);
             }
         }
+        ScrapClient http = scraper.getHttp();
+        if (http != null && http.isPooled()) {
+            LOG.info("connections reused : {}, opened : {}", http.getConnectionHits(), http.getConnectionMisses());
+        }
+        TransferCounters transfer = http == null ? null : http.getTransferCounters();
+        if (transfer != null) {
+            LOG.info("response bytes transferred : {}, decoded : {}",
+                transfer.getTransferredBytes(), transfer.getDecodedBytes());
+        }
         LOG.info("google thread stopped");
     }
 
-    protected GoogleScrapSearch getScrapConfig(GoogleSettings options, GoogleSearch search) {
+    protected void saveCookies(ScrapProxy proxy){
+        if(cookiesStickToProxy && proxy != null){
+            List<Cookie> cookies = scraper.getHttp().getCookies();
+            if(cookies != null){
+                proxy.setAttr("cookies", cookies);
+            }
+        }
+    }
+    
+    /**
+     * give back the proxy to the rotator with the cookies of its session
+     */
+    protected void releaseProxy(ScrapProxy proxy){
+        if(proxy != null){
+            saveCookies(proxy);
+            controller.rotator.add(proxy);
+        }
+    }
+
+    protected static GoogleScrapSearch getScrapConfig(GoogleSettings options, GoogleRunSnapshot snapshot,
+        GoogleSearch search) {
         GoogleScrapSearch scrapSearch = new GoogleScrapSearch();
         
         // options.getFetchRetry(); // TODO
@@ -145,6 +188,10 @@ public class GoogleTaskRunnable implements Runnable {
         scrapSearch.setCountry(search.getCountry());
         scrapSearch.setLocal(search.getLocal());
         
+        if(options.isStopWhenResolved() && snapshot != null){
+            scrapSearch.setStopCondition((urls) -> snapshot.isResolved(search.getId(), urls));
+        }
+        
         return scrapSearch;
     }
     public static final long serialVersionUID = 0L;
@@ -0,0 +1,193 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.serphacker.serposcope.db.google.GoogleResultDB;
+import com.serphacker.serposcope.models.google.GoogleBest;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * write-behind persistence of the search results.
+ *
+ * Scraper threads hand their results to a bounded queue (blocking when the writer is late), a single writer
+ * thread drains it and writes serps, ranks and bests by batch, one transaction per batch.
+ * A batch is flushed when it reaches batchSize or when flushIntervalMS elapsed since the last flush.
+ * A batch failing twice is written result by result so a single bad result doesn't lose the whole batch.
+ */
+public class GoogleTaskWriter implements Runnable {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(GoogleTaskWriter.class);
+
+    public final static int QUEUE_BATCH_FACTOR = 4;
+
+    static class Result {
+        final GoogleSerp serp;
+        final List<GoogleRank> ranks;
+        final List<GoogleBest> bests;
+
+        Result(GoogleSerp serp, List<GoogleRank> ranks, List<GoogleBest> bests) {
+            this.serp = serp;
+            this.ranks = ranks;
+            this.bests = bests;
+        }
+    }
+
+    final static Result STOP = new Result(null, null, null);
+
+    final GoogleResultDB resultDB;
+    final BlockingQueue<Result> queue;
+    final int batchSize;
+    final long flushIntervalMS;
+
+    final AtomicLong written = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+    final AtomicLong writeTimeMS = new AtomicLong();
+
+    Thread thread;
+
+    public GoogleTaskWriter(GoogleResultDB resultDB, int batchSize, long flushIntervalMS) {
+        this.resultDB = resultDB;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMS = Math.max(1, flushIntervalMS);
+        this.queue = new ArrayBlockingQueue<>(this.batchSize * QUEUE_BATCH_FACTOR);
+    }
+
+    public void start(){
+        thread = new Thread(this, "google-writer");
+        thread.start();
+    }
+
+    /**
+     * blocks while the queue is full
+     */
+    public void write(GoogleSerp serp, List<GoogleRank> ranks, List<GoogleBest> bests){
+        Uninterruptibles.putUninterruptibly(queue, new Result(serp, ranks, bests));
+    }
+
+    /**
+     * flush everything written so far and stop the writer thread, must be called once all the writers are done
+     */
+    public void close(){
+        if(thread == null){
+            return;
+        }
+        Uninterruptibles.putUninterruptibly(queue, STOP);
+        Uninterruptibles.joinUninterruptibly(thread);
+        thread = null;
+        LOG.info("{} results written ({} failed) in {} ms", new Object[]{written.get(), failed.get(), writeTimeMS.get()});
+    }
+
+    @Override
+    public void run() {
+        List<Result> batch = new ArrayList<>(batchSize);
+        long nextFlush = System.currentTimeMillis() + flushIntervalMS;
+        boolean stop = false;
+
+        while(!stop){
+            long wait = nextFlush - System.currentTimeMillis();
+            try {
+                Result result = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll();
+                if(result != null){
+                    batch.add(result);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch(InterruptedException ex){
+                LOG.warn("writer interrupted, ignoring");
+            }
+
+            stop = batch.remove(STOP);
+            if(stop || batch.size() >= batchSize || System.currentTimeMillis() >= nextFlush){
+                flush(batch);
+                batch.clear();
+                nextFlush = System.currentTimeMillis() + flushIntervalMS;
+            }
+        }
+    }
+
+    protected void flush(List<Result> batch){
+        if(batch.isEmpty()){
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        boolean inserted = insert(batch);
+        if(!inserted){
+            LOG.warn("failed to write a batch of {} results, retrying", batch.size());
+            inserted = insert(batch);
+        }
+
+        if(inserted){
+            written.addAndGet(batch.size());
+        } else if(batch.size() == 1){
+            failed.incrementAndGet();
+            logFailed(batch.get(0));
+        } else {
+            // isolate the failing results, one transaction per result
+            LOG.warn("failed to write a batch of {} results, writing them one by one", batch.size());
+            for (Result result : batch) {
+                if(insert(Collections.singletonList(result))){
+                    written.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    logFailed(result);
+                }
+            }
+        }
+        writeTimeMS.addAndGet(System.currentTimeMillis() - start);
+    }
+
+    protected boolean insert(List<Result> batch){
+        List<GoogleSerp> serps = new ArrayList<>(batch.size());
+        List<GoogleRank> ranks = new ArrayList<>();
+        List<GoogleBest> bests = new ArrayList<>();
+        for (Result result : batch) {
+            serps.add(result.serp);
+            ranks.addAll(result.ranks);
+            bests.addAll(result.bests);
+        }
+
+        try {
+            if(resultDB.insert(serps, ranks, bests)){
+                LOG.debug("batch of {} results written ({} ranks, {} bests)", new Object[]{serps.size(), ranks.size(), bests.size()});
+                return true;
+            }
+        } catch(Exception ex){
+            LOG.error("unhandled exception while writing results", ex);
+        }
+        return false;
+    }
+
+    protected void logFailed(Result result){
+        LOG.error("failed to write the result of search {} for run {}, serp and {} ranks lost", new Object[]{
+            result.serp.getGoogleSearchId(), result.serp.getRunId(), result.ranks.size()});
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getWriteTimeMS() {
+        return writeTimeMS.get();
+    }
+
+}
@@ -101,4 +101,42 @@ create table `GOOGLE_TARGET_SUMMARY` (
     foreign key (run_id) references `RUN`(id)
 ) engine = innodb default charset=utf8 /*! collate utf8_bin */;
 
+drop table if exists `GOOGLE_RANK_SERIES`;
+create table `GOOGLE_RANK_SERIES` (
+    group_id int,
+    google_target_id int,
+    google_search_id int,
+
+    first_run_id int,
+    last_run_id int,
+    series blob,
+
+    primary key(group_id, google_target_id, google_search_id),
+    foreign key (group_id) references `GROUP`(id),
+    foreign key (google_target_id) references `GOOGLE_TARGET`(id),
+    foreign key (google_search_id) references `GOOGLE_SEARCH`(id)
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
+drop table if exists `GOOGLE_URL`;
+create table `GOOGLE_URL` (
+    id int primary key auto_increment,
+    url_hash bigint not null,
+    url text not null
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+create index `GOOGLE_URL_HASH` on `GOOGLE_URL`(url_hash);
+
+drop table if exists `GOOGLE_URL_POSTING`;
+create table `GOOGLE_URL_POSTING` (
+    google_url_id int,
+    google_search_id int,
+
+    first_run_id int,
+    last_run_id int,
+    postings blob,
+
+    primary key(google_url_id, google_search_id),
+    foreign key (google_url_id) references `GOOGLE_URL`(id),
+    foreign key (google_search_id) references `GOOGLE_SEARCH`(id)
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
 SET FOREIGN_KEY_CHECKS=1;
\ No newline at end of file
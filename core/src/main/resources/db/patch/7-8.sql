@@ -0,0 +1,15 @@
+drop table if exists `GOOGLE_RANK_SERIES`;
+create table `GOOGLE_RANK_SERIES` (
+    group_id int,
+    google_target_id int,
+    google_search_id int,
+
+    first_run_id int,
+    last_run_id int,
+    series blob,
+
+    primary key(group_id, google_target_id, google_search_id),
+    foreign key (group_id) references `GROUP`(id),
+    foreign key (google_target_id) references `GOOGLE_TARGET`(id),
+    foreign key (google_search_id) references `GOOGLE_SEARCH`(id)
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
@@ -16,7 +16,9 @@ import com.serphacker.serposcope.models.google.GoogleBest;
 import com.serphacker.serposcope.models.google.GoogleRank;
 import com.serphacker.serposcope.models.google.GoogleSearch;
 import com.serphacker.serposcope.models.google.GoogleTarget;
+import it.unimi.dsi.fastutil.longs.Long2ShortOpenHashMap;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
@@ -70,4 +72,88 @@ public class GoogleRankDBH2IT extends AbstractDBIT {
         GoogleBest best = new GoogleBest(grp.getId(), target.getId(), search.getId(), 1, LocalDateTime.MIN, longUrl);
         assertTrue(googleDB.rank.insertBest(best));        
     }
+    
+    @Test
+    public void testLoadRanksAndBests() {
+        
+        Group grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+        
+        GoogleSearch search1 = new GoogleSearch("search1");
+        GoogleSearch search2 = new GoogleSearch("search2");
+        googleDB.search.insert(Arrays.asList(search1, search2), grp.getId());
+        
+        GoogleTarget target = new GoogleTarget(grp.getId(), "name", GoogleTarget.PatternType.REGEX, "pattern");
+        googleDB.target.insert(Arrays.asList(target));
+        
+        Run run1 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0).minusDays(1));
+        baseDB.run.insert(run1);
+        Run run2 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0));
+        baseDB.run.insert(run2);
+        
+        googleDB.rank.insert(Arrays.asList(
+            new GoogleRank(run1.getId(), grp.getId(), target.getId(), search1.getId(), 4, 5, "url-1"),
+            new GoogleRank(run1.getId(), grp.getId(), target.getId(), search2.getId(), 7, 5, "url-2"),
+            new GoogleRank(run2.getId(), grp.getId(), target.getId(), search1.getId(), 3, 4, "url-3")
+        ));
+        googleDB.rank.insertBest(new GoogleBest(grp.getId(), target.getId(), search1.getId(), 3, LocalDateTime.MIN, "url-3"));
+        
+        Long2ShortOpenHashMap ranks = googleDB.rank.loadRanks(run1.getId());
+        assertEquals(2, ranks.size());
+        assertEquals(4, ranks.get(GoogleRankDB.targetSearchKey(target.getId(), search1.getId())));
+        assertEquals(7, ranks.get(GoogleRankDB.targetSearchKey(target.getId(), search2.getId())));
+        assertEquals(GoogleRank.UNRANKED, ranks.get(GoogleRankDB.targetSearchKey(target.getId() + 1, search2.getId())));
+        
+        Long2ShortOpenHashMap bests = googleDB.rank.loadBests();
+        assertEquals(1, bests.size());
+        assertEquals(3, bests.get(GoogleRankDB.targetSearchKey(target.getId(), search1.getId())));
+        assertEquals(GoogleRank.UNRANKED, bests.get(GoogleRankDB.targetSearchKey(target.getId(), search2.getId())));
+    }
+    
+    @Test
+    public void testStream() {
+        
+        Group grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+        
+        GoogleSearch search1 = new GoogleSearch("search1");
+        GoogleSearch search2 = new GoogleSearch("search2");
+        googleDB.search.insert(Arrays.asList(search1, search2), grp.getId());
+        
+        GoogleTarget target = new GoogleTarget(grp.getId(), "name", GoogleTarget.PatternType.REGEX, "pattern");
+        GoogleTarget other = new GoogleTarget(grp.getId(), "other", GoogleTarget.PatternType.REGEX, "other");
+        googleDB.target.insert(Arrays.asList(target, other));
+        
+        Run run1 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0).minusDays(2));
+        baseDB.run.insert(run1);
+        Run run2 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0).minusDays(1));
+        baseDB.run.insert(run2);
+        Run run3 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0));
+        baseDB.run.insert(run3);
+        
+        googleDB.rank.insert(Arrays.asList(
+            new GoogleRank(run3.getId(), grp.getId(), target.getId(), search1.getId(), 1, 2, "url-5"),
+            new GoogleRank(run2.getId(), grp.getId(), target.getId(), search2.getId(), 3, 4, "url-4"),
+            new GoogleRank(run2.getId(), grp.getId(), target.getId(), search1.getId(), 5, 6, "url-3"),
+            new GoogleRank(run2.getId(), grp.getId(), other.getId(), search1.getId(), 7, 8, "url-other"),
+            new GoogleRank(run1.getId(), grp.getId(), target.getId(), search1.getId(), 9, 10, "url-1")
+        ));
+        
+        List<GoogleRank> ranks = new ArrayList<>();
+        googleDB.rank.stream(run2.getId(), run3.getId(), grp.getId(), target.getId(), ranks::add);
+        assertEquals(3, ranks.size());
+        
+        assertEquals(run2.getId(), ranks.get(0).runId);
+        assertEquals(search1.getId(), ranks.get(0).googleSearchId);
+        assertEquals(5, ranks.get(0).rank);
+        assertEquals("url-3", ranks.get(0).url);
+        
+        assertEquals(run2.getId(), ranks.get(1).runId);
+        assertEquals(search2.getId(), ranks.get(1).googleSearchId);
+        assertEquals("url-4", ranks.get(1).url);
+        
+        assertEquals(run3.getId(), ranks.get(2).runId);
+        assertEquals(search1.getId(), ranks.get(2).googleSearchId);
+        assertEquals("url-5", ranks.get(2).url);
+    }
 }
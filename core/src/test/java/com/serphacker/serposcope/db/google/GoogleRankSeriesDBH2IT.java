@@ -0,0 +1,147 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleRankSeries;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GoogleRankSeriesDBH2IT extends AbstractDBIT {
+
+    @Inject
+    BaseDB baseDB;
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Override
+    protected String getDbUrl() {
+        return "jdbc:h2:mem:test;MODE=MySQL";
+    }
+
+    Group grp;
+    GoogleSearch search1, search2;
+    GoogleTarget target;
+    Run run1, run2, run3;
+
+    protected void insertData() {
+        grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+
+        search1 = new GoogleSearch("search1");
+        search2 = new GoogleSearch("search2");
+        googleDB.search.insert(Arrays.asList(search1, search2), grp.getId());
+
+        target = new GoogleTarget(grp.getId(), "name", GoogleTarget.PatternType.REGEX, "pattern");
+        googleDB.target.insert(Arrays.asList(target));
+
+        run1 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0).minusDays(2));
+        baseDB.run.insert(run1);
+        run2 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0).minusDays(1));
+        baseDB.run.insert(run2);
+        run3 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0));
+        baseDB.run.insert(run3);
+
+        googleDB.rank.insert(Arrays.asList(
+            new GoogleRank(run1.getId(), grp.getId(), target.getId(), search1.getId(), 4, GoogleRank.UNRANKED, "url"),
+            new GoogleRank(run1.getId(), grp.getId(), target.getId(), search2.getId(), 8, GoogleRank.UNRANKED, "url"),
+            new GoogleRank(run2.getId(), grp.getId(), target.getId(), search1.getId(), 3, 4, "url"),
+            new GoogleRank(run3.getId(), grp.getId(), target.getId(), search1.getId(), GoogleRank.UNRANKED, 3, null),
+            new GoogleRank(run3.getId(), grp.getId(), target.getId(), search2.getId(), 1, 8, "url")
+        ));
+    }
+
+    @Test
+    public void testAppendRun() {
+        insertData();
+
+        assertTrue(googleDB.rankSeries.appendRun(run1.getId()));
+        assertTrue(googleDB.rankSeries.appendRun(run2.getId()));
+        assertTrue(googleDB.rankSeries.appendRun(run3.getId()));
+        // appending twice is harmless
+        assertTrue(googleDB.rankSeries.appendRun(run3.getId()));
+
+        GoogleRankSeries series = googleDB.rankSeries.get(grp.getId(), target.getId(), search1.getId());
+        assertEquals(3, series.size());
+        assertEquals(4, series.getRankOfRun(run1.getId()));
+        assertEquals(3, series.getRankOfRun(run2.getId()));
+        assertEquals(GoogleRank.UNRANKED, series.getRankOfRun(run3.getId()));
+
+        series = googleDB.rankSeries.get(grp.getId(), target.getId(), search2.getId());
+        assertEquals(2, series.size());
+        assertEquals(run1.getId(), series.getFirstRunId());
+        assertEquals(run3.getId(), series.getLastRunId());
+
+        assertEquals(0, googleDB.rankSeries.check());
+
+        List<GoogleRank> ranks = new ArrayList<>();
+        googleDB.rankSeries.stream(run2.getId(), run3.getId(), grp.getId(), target.getId(), ranks::add);
+        assertEquals(3, ranks.size());
+        assertEquals(run2.getId(), ranks.get(0).runId);
+        assertEquals(search1.getId(), ranks.get(0).googleSearchId);
+        assertEquals(3, ranks.get(0).rank);
+        assertEquals(run3.getId(), ranks.get(1).runId);
+        assertEquals(search1.getId(), ranks.get(1).googleSearchId);
+        assertEquals(GoogleRank.UNRANKED, ranks.get(1).rank);
+        assertEquals(run3.getId(), ranks.get(2).runId);
+        assertEquals(search2.getId(), ranks.get(2).googleSearchId);
+        assertEquals(1, ranks.get(2).rank);
+    }
+
+    @Test
+    public void testRebuildAndCheck() {
+        insertData();
+
+        assertEquals(2, googleDB.rankSeries.check());
+        assertEquals(2, googleDB.rankSeries.rebuild());
+        assertEquals(0, googleDB.rankSeries.check());
+
+        // a run only written in GOOGLE_RANK
+        Run run4 = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0).plusDays(1));
+        baseDB.run.insert(run4);
+        googleDB.rank.insert(new GoogleRank(run4.getId(), grp.getId(), target.getId(), search1.getId(), 2, 1, "url"));
+        assertEquals(1, googleDB.rankSeries.check());
+        googleDB.rankSeries.appendRun(run4.getId());
+        assertEquals(0, googleDB.rankSeries.check());
+    }
+
+    @Test
+    public void testDelete() {
+        insertData();
+        googleDB.rankSeries.rebuild();
+
+        googleDB.rank.deleteByRunId(run1.getId());
+        assertTrue(googleDB.rankSeries.deleteByRunId(run1.getId()));
+        assertEquals(0, googleDB.rankSeries.check());
+        assertEquals(run2.getId(), googleDB.rankSeries.get(grp.getId(), target.getId(), search1.getId()).getFirstRunId());
+
+        googleDB.rank.deleteByRunId(run3.getId());
+        googleDB.rankSeries.deleteByRunIds(Arrays.asList(run3.getId()));
+        // no rank left
+        assertNull(googleDB.rankSeries.get(grp.getId(), target.getId(), search2.getId()));
+        assertEquals(0, googleDB.rankSeries.check());
+
+        assertTrue(googleDB.rankSeries.deleteBySearch(grp.getId(), search1.getId()));
+        assertNull(googleDB.rankSeries.get(grp.getId(), target.getId(), search1.getId()));
+    }
+
+}
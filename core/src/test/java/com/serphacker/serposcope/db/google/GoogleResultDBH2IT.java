@@ -0,0 +1,105 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleRankSeries;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTargetSummary;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GoogleResultDBH2IT extends AbstractDBIT {
+
+    @Inject
+    BaseDB baseDB;
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Override
+    protected String getDbUrl() {
+        return "jdbc:h2:mem:test;MODE=MySQL";
+    }
+
+    Group grp;
+    GoogleSearch search1, search2;
+    GoogleTarget target;
+    Run run;
+
+    protected void insertData() {
+        grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+
+        search1 = new GoogleSearch("search1");
+        search2 = new GoogleSearch("search2");
+        googleDB.search.insert(Arrays.asList(search1, search2), grp.getId());
+
+        target = new GoogleTarget(grp.getId(), "name", GoogleTarget.PatternType.REGEX, "pattern");
+        googleDB.target.insert(Arrays.asList(target));
+
+        run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0));
+        baseDB.run.insert(run);
+
+        googleDB.rank.insert(Arrays.asList(
+            new GoogleRank(run.getId(), grp.getId(), target.getId(), search1.getId(), 4, GoogleRank.UNRANKED, "url"),
+            new GoogleRank(run.getId(), grp.getId(), target.getId(), search2.getId(), 8, GoogleRank.UNRANKED, "url")
+        ));
+        googleDB.rankSeries.appendRun(run.getId());
+        googleDB.targetSummary.insert(Arrays.asList(new GoogleTargetSummary(grp.getId(), target.getId(), run.getId(), 0)));
+    }
+
+    @Test
+    public void testReplaceRun() {
+        insertData();
+
+        assertTrue(googleDB.result.replaceRun(run.getId(),
+            Arrays.asList(new GoogleRank(run.getId(), grp.getId(), target.getId(), search1.getId(), 2, GoogleRank.UNRANKED, "url")),
+            Collections.emptyList(),
+            Arrays.asList(new GoogleTargetSummary(grp.getId(), target.getId(), run.getId(), 0))
+        ));
+
+        assertEquals(2, googleDB.rank.get(run.getId(), grp.getId(), target.getId(), search1.getId()));
+        assertEquals(GoogleRank.UNRANKED, googleDB.rank.get(run.getId(), grp.getId(), target.getId(), search2.getId()));
+        assertEquals(2, googleDB.rankSeries.get(grp.getId(), target.getId(), search1.getId()).getRankOfRun(run.getId()));
+        assertNull(googleDB.rankSeries.get(grp.getId(), target.getId(), search2.getId()));
+        assertEquals(1, googleDB.targetSummary.list(run.getId()).size());
+        assertEquals(0, googleDB.rankSeries.check());
+    }
+
+    @Test
+    public void testReplaceRunKeepsPreviousRowsOnError() {
+        insertData();
+
+        // unknown search, the insert of the ranks fails
+        assertFalse(googleDB.result.replaceRun(run.getId(),
+            Arrays.asList(new GoogleRank(run.getId(), grp.getId(), target.getId(), Integer.MAX_VALUE, 2, GoogleRank.UNRANKED, "url")),
+            Collections.emptyList(),
+            Collections.emptyList()
+        ));
+
+        assertEquals(4, googleDB.rank.get(run.getId(), grp.getId(), target.getId(), search1.getId()));
+        assertEquals(8, googleDB.rank.get(run.getId(), grp.getId(), target.getId(), search2.getId()));
+        GoogleRankSeries series = googleDB.rankSeries.get(grp.getId(), target.getId(), search2.getId());
+        assertEquals(8, series.getRankOfRun(run.getId()));
+        assertEquals(1, googleDB.targetSummary.list(run.getId()).size());
+    }
+
+}
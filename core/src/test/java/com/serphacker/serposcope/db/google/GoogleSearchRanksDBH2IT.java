@@ -0,0 +1,145 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSearchRanks;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSerpEntry;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class GoogleSearchRanksDBH2IT extends AbstractDBIT {
+
+    @Inject
+    BaseDB baseDB;
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Override
+    protected String getDbUrl() {
+        return "jdbc:h2:mem:test;MODE=MySQL";
+    }
+
+    @Test
+    public void testList() {
+        Group grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+
+        GoogleSearch search = new GoogleSearch("search");
+        googleDB.search.insert(Arrays.asList(search), grp.getId());
+
+        GoogleTarget target1 = new GoogleTarget(grp.getId(), "site1", GoogleTarget.PatternType.DOMAIN, "www.site1.com");
+        GoogleTarget target2 = new GoogleTarget(grp.getId(), "site2", GoogleTarget.PatternType.DOMAIN, "www.site2.com");
+        googleDB.target.insert(Arrays.asList(target1, target2));
+        List<GoogleTarget> targets = Arrays.asList(target1, target2);
+        GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+
+        List<Run> runs = new ArrayList<>();
+        for (int day = 0; day < 4; day++) {
+            Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.of(2016, 1, 1 + day, 13, 37));
+            run.setFinished(run.getStarted().plusHours(1));
+            baseDB.run.insert(run);
+            runs.add(run);
+
+            GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+            serp.addEntry(new GoogleSerpEntry("http://www.other.com/"));
+            serp.addEntry(new GoogleSerpEntry("http://www.site" + (1 + day % 2) + ".com/"));
+            if (day > 1) {
+                serp.addEntry(new GoogleSerpEntry("http://www.site" + (2 - day % 2) + ".com/"));
+            }
+            googleDB.serp.insert(serp);
+
+            int[] positions = matcher.match(serp);
+            // the second target has no rank for the first run, as if it was added afterwards
+            for (int i = day == 0 ? 0 : 1; i >= 0; i--) {
+                googleDB.rank.insert(new GoogleRank(run.getId(), grp.getId(), targets.get(i).getId(), search.getId(),
+                    positions[i], GoogleRank.UNRANKED, null));
+            }
+            googleDB.rankSeries.appendRun(run.getId());
+        }
+
+        GoogleSearchRanks ranks = googleDB.searchRanks.list(runs, grp.getId(), search.getId(), targets);
+        assertEquals(4, ranks.size());
+        assertEquals(2, ranks.getRank(0, 0));
+        assertEquals(GoogleRank.UNRANKED, ranks.getRank(0, 1));
+        assertEquals(GoogleRank.UNRANKED, ranks.getRank(1, 0));
+        assertEquals(2, ranks.getRank(1, 1));
+        assertEquals(2, ranks.getRank(2, 0));
+        assertEquals(3, ranks.getRank(2, 1));
+        assertEquals(3, ranks.getMaxRank());
+        assertEquals(runs.get(3).getStarted(), ranks.getRunDay(3));
+
+        assertEquals(googleDB.searchRanks.listFromSerps(runs.get(0).getId(), runs.get(3).getId(), search.getId(), targets), ranks);
+
+        // the series don't know the first run of the second target, its serp is matched instead
+        googleDB.rank.deleteByRunId(runs.get(2).getId());
+        googleDB.rankSeries.deleteByRunId(runs.get(2).getId());
+        assertEquals(ranks, googleDB.searchRanks.list(runs, grp.getId(), search.getId(), targets));
+
+        // no serp, no row
+        googleDB.serp.deleteByRun(runs.get(1).getId());
+        googleDB.rank.deleteByRunId(runs.get(1).getId());
+        googleDB.rankSeries.deleteByRunId(runs.get(1).getId());
+        ranks = googleDB.searchRanks.list(runs, grp.getId(), search.getId(), targets);
+        assertEquals(3, ranks.size());
+        assertEquals(runs.get(2).getId(), ranks.getRunId(1));
+    }
+
+    @Test
+    public void testListPartialSerp() {
+        Group grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+
+        GoogleSearch search = new GoogleSearch("search");
+        googleDB.search.insert(Arrays.asList(search), grp.getId());
+
+        GoogleTarget target1 = new GoogleTarget(grp.getId(), "site1", GoogleTarget.PatternType.DOMAIN, "www.site1.com");
+        GoogleTarget target2 = new GoogleTarget(grp.getId(), "site2", GoogleTarget.PatternType.DOMAIN, "www.site2.com");
+        googleDB.target.insert(Arrays.asList(target1, target2));
+        List<GoogleTarget> targets = Arrays.asList(target1, target2);
+
+        List<Run> runs = new ArrayList<>();
+        for (int day = 0; day < 3; day++) {
+            Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.of(2016, 1, 1 + day, 13, 37));
+            run.setFinished(run.getStarted().plusHours(1));
+            baseDB.run.insert(run);
+            runs.add(run);
+
+            GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+            serp.addEntry(new GoogleSerpEntry("http://www.site1.com/"));
+            if (day == 0) {
+                serp.addEntry(new GoogleSerpEntry("http://www.site2.com/"));
+            }
+            // the second serp stopped before the second target could be found
+            serp.setPartial(day == 1);
+            googleDB.serp.insert(serp);
+        }
+
+        GoogleSearchRanks ranks = googleDB.searchRanks.list(runs, grp.getId(), search.getId(), targets);
+        assertEquals(3, ranks.size());
+        assertEquals(1, ranks.getRank(1, 0));
+        assertEquals(2, ranks.getRank(1, 1));
+        assertEquals(GoogleRank.UNRANKED, ranks.getRank(2, 1));
+        assertEquals(googleDB.searchRanks.listFromSerps(runs.get(0).getId(), runs.get(2).getId(), search.getId(), targets), ranks);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSerpEntry;
+import com.serphacker.serposcope.models.google.GoogleUrlPostings;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GoogleUrlIndexDBH2IT extends AbstractDBIT {
+
+    @Inject
+    BaseDB baseDB;
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Override
+    protected String getDbUrl() {
+        return "jdbc:h2:mem:test;MODE=MySQL";
+    }
+
+    Group grp;
+    GoogleSearch search1, search2;
+    List<Run> runs = new ArrayList<>();
+
+    protected void insertData() {
+        grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+
+        search1 = new GoogleSearch("search1");
+        search2 = new GoogleSearch("search2");
+        googleDB.search.insert(Arrays.asList(search1, search2), grp.getId());
+
+        for (int day = 0; day < 3; day++) {
+            Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.of(2016, 1, 1 + day, 13, 37));
+            baseDB.run.insert(run);
+            runs.add(run);
+
+            // "http://a.com/" moves down every day and is listed twice, "http://b.com/" only in the first run
+            GoogleSerp serp1 = serp(run, search1.getId(), day);
+            if (day == 0) {
+                serp1.addEntry(new GoogleSerpEntry("http://b.com/"));
+            }
+            serp1.addEntry(new GoogleSerpEntry("http://a.com/"));
+            GoogleSerp serp2 = serp(run, search2.getId(), 0);
+
+            assertTrue(googleDB.result.insert(Arrays.asList(serp1, serp2), Collections.emptyList(),
+                Collections.emptyList()));
+        }
+    }
+
+    protected GoogleSerp serp(Run run, int searchId, int shift) {
+        GoogleSerp serp = new GoogleSerp(run.getId(), searchId, run.getStarted());
+        for (int i = 0; i < shift; i++) {
+            serp.addEntry(new GoogleSerpEntry("http://other.com/" + i));
+        }
+        serp.addEntry(new GoogleSerpEntry("http://a.com/"));
+        return serp;
+    }
+
+    @Test
+    public void testIndex() {
+        insertData();
+
+        GoogleUrlPostings postings = googleDB.urlIndex.get("http://a.com/", search1.getId());
+        assertEquals(3, postings.size());
+        assertEquals(1, postings.getPositionOfRun(runs.get(0).getId()));
+        assertEquals(2, postings.getPositionOfRun(runs.get(1).getId()));
+        assertEquals(3, postings.getPositionOfRun(runs.get(2).getId()));
+
+        postings = googleDB.urlIndex.get("http://b.com/", search1.getId());
+        assertEquals(1, postings.size());
+        assertEquals(2, postings.getPositionOfRun(runs.get(0).getId()));
+        assertNull(googleDB.urlIndex.get("http://b.com/", search2.getId()));
+        assertNull(googleDB.urlIndex.get("http://c.com/", search1.getId()));
+
+        List<GoogleUrlPostings> list = googleDB.urlIndex.list("http://a.com/");
+        assertEquals(2, list.size());
+        assertEquals(search1.getId(), list.get(0).getGoogleSearchId());
+        assertEquals(search2.getId(), list.get(1).getGoogleSearchId());
+        assertEquals(3, list.get(1).size());
+
+        assertEquals(Arrays.asList(runs.get(0).getId(), runs.get(1).getId(), runs.get(2).getId()),
+            new ArrayList<>(googleDB.serp.listRunDays(runs.get(0).getId(), runs.get(2).getId(), search1.getId()).keySet()));
+    }
+
+    @Test
+    public void testRebuild() {
+        insertData();
+
+        GoogleUrlPostings a1 = googleDB.urlIndex.get("http://a.com/", search1.getId());
+        List<GoogleUrlPostings> other = googleDB.urlIndex.list("http://other.com/1");
+
+        googleDB.urlIndex.wipe();
+        assertNull(googleDB.urlIndex.get("http://a.com/", search1.getId()));
+
+        // a, b, other.com/0 and other.com/1 for search1, a for search2
+        assertEquals(5, googleDB.urlIndex.rebuild());
+        // urls are interned again with new ids
+        GoogleUrlPostings rebuilt = googleDB.urlIndex.get("http://a.com/", search1.getId());
+        assertEquals(a1.size(), rebuilt.size());
+        for (int i = 0; i < a1.size(); i++) {
+            assertEquals(a1.getRunId(i), rebuilt.getRunId(i));
+            assertEquals(a1.getPosition(i), rebuilt.getPosition(i));
+        }
+        assertEquals(other.size(), googleDB.urlIndex.list("http://other.com/1").size());
+    }
+
+    @Test
+    public void testDelete() {
+        insertData();
+
+        assertTrue(googleDB.urlIndex.deleteByRunId(runs.get(0).getId()));
+        GoogleUrlPostings postings = googleDB.urlIndex.get("http://a.com/", search1.getId());
+        assertEquals(2, postings.size());
+        assertEquals(0, postings.getPositionOfRun(runs.get(0).getId()));
+        assertNull(googleDB.urlIndex.get("http://b.com/", search1.getId()));
+        assertEquals(2, googleDB.urlIndex.get("http://a.com/", search2.getId()).size());
+
+        // only the searches having a serp in the run are scanned
+        googleDB.serp.deleteByRun(runs.get(1).getId());
+        assertTrue(googleDB.urlIndex.deleteByRunId(runs.get(1).getId()));
+        assertEquals(2, googleDB.urlIndex.get("http://a.com/", search1.getId()).size());
+
+        assertTrue(googleDB.urlIndex.deleteBySearch(search1.getId()));
+        assertNull(googleDB.urlIndex.get("http://a.com/", search1.getId()));
+        assertEquals(1, googleDB.urlIndex.list("http://a.com/").size());
+    }
+
+}
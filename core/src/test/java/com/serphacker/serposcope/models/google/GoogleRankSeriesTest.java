@@ -0,0 +1,85 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GoogleRankSeriesTest {
+
+    @Test
+    public void testPut() {
+        GoogleRankSeries series = new GoogleRankSeries(1, 2, 3);
+        assertEquals(0, series.getFirstRunId());
+        assertEquals(0, series.getLastRunId());
+
+        for (int runId = 10; runId <= 100; runId += 10) {
+            series.put(runId, runId / 10);
+        }
+        assertEquals(10, series.size());
+        assertEquals(10, series.getFirstRunId());
+        assertEquals(100, series.getLastRunId());
+
+        // replace
+        series.put(50, 42);
+        assertEquals(10, series.size());
+        assertEquals(42, series.getRankOfRun(50));
+
+        // insert in the middle and in front
+        series.put(55, 7);
+        series.put(5, 8);
+        assertEquals(12, series.size());
+        assertEquals(5, series.getFirstRunId());
+        assertEquals(7, series.getRankOfRun(55));
+        assertEquals(8, series.getRank(0));
+        assertEquals(GoogleRank.UNRANKED, series.getRankOfRun(56));
+
+        for (int i = 1; i < series.size(); i++) {
+            assertTrue(series.getRunId(i - 1) < series.getRunId(i));
+        }
+
+        assertTrue(series.remove(55));
+        assertFalse(series.remove(55));
+        assertEquals(11, series.size());
+        assertEquals(GoogleRank.UNRANKED, series.getRankOfRun(55));
+        assertEquals(60, series.getRunId(6));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        GoogleRankSeries series = new GoogleRankSeries(1, 2, 3);
+        series.put(1, 1);
+        series.put(2, GoogleRank.UNRANKED);
+        series.put(300, 100);
+        series.put(100000, 2);
+        series.put(100001, 2);
+
+        GoogleRankSeries read = new GoogleRankSeries(1, 2, 3);
+        read.setSerialized(series.getSerialized());
+        assertEquals(series, read);
+        assertEquals(GoogleRank.UNRANKED, read.getRankOfRun(2));
+        assertEquals(100001, read.getLastRunId());
+
+        GoogleRankSeries empty = new GoogleRankSeries(1, 2, 3);
+        read.setSerialized(empty.getSerialized());
+        assertEquals(empty, read);
+    }
+
+    @Test
+    public void testSerializedSize() {
+        GoogleRankSeries series = new GoogleRankSeries(1, 2, 3);
+        for (int runId = 1; runId <= 365; runId++) {
+            series.put(runId, 5 + (runId % 3));
+        }
+        // one byte per run delta and per small rank change
+        assertEquals(1 + 2 + 365 * 2, series.getSerialized().length);
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import java.io.IOException;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GoogleSerpTest {
+
+    GoogleSerp serp(boolean partial) {
+        GoogleSerp serp = new GoogleSerp(1, 2, null);
+        for (int i = 0; i < 3; i++) {
+            GoogleSerpEntry entry = new GoogleSerpEntry("url-" + i);
+            entry.map.put((short) 1, (short) (i + 10));
+            serp.addEntry(entry);
+        }
+        serp.setPartial(partial);
+        return serp;
+    }
+
+    @Test
+    public void testPartialSerialization() throws IOException {
+        byte[] data = serp(true).getSerializedEntries();
+        GoogleSerp unserialized = new GoogleSerp(1, 2, null);
+        unserialized.setSerializedEntries(data);
+        assertTrue(unserialized.isPartial());
+        assertEquals(3, unserialized.getEntries().size());
+        assertEquals("url-2", unserialized.getEntries().get(2).getUrl());
+        assertEquals(12, unserialized.getEntries().get(2).map.get((short) 1));
+    }
+
+    @Test
+    public void testCompleteSerializationUnchanged() throws IOException {
+        byte[] complete = serp(false).getSerializedEntries();
+        byte[] partial = serp(true).getSerializedEntries();
+        assertEquals(0, complete[0]);
+        assertEquals(complete.length + 1, partial.length);
+
+        GoogleSerp unserialized = new GoogleSerp(1, 2, null);
+        unserialized.setPartial(true);
+        unserialized.setSerializedEntries(complete);
+        assertFalse(unserialized.isPartial());
+        assertEquals(3, unserialized.getEntries().size());
+    }
+
+}
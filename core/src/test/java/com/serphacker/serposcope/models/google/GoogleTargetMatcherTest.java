@@ -0,0 +1,108 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import com.serphacker.serposcope.models.google.GoogleTarget.PatternType;
+import static com.serphacker.serposcope.models.google.GoogleRank.UNRANKED;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GoogleTargetMatcherTest {
+
+    public GoogleTargetMatcherTest() {
+    }
+
+    @Test
+    public void testMatch() {
+        List<GoogleTarget> targets = Arrays.asList(
+            new GoogleTarget(1, "d1", PatternType.DOMAIN, "www.site.com"),
+            new GoogleTarget(1, "d2", PatternType.DOMAIN, "site.com"),
+            new GoogleTarget(1, "s1", PatternType.SUBDOMAIN, "site.com"),
+            new GoogleTarget(1, "s2", PatternType.SUBDOMAIN, "other.com"),
+            new GoogleTarget(1, "r1", PatternType.REGEX, "/page[0-9]"),
+            new GoogleTarget(1, "d3", PatternType.DOMAIN, "www.site.com")
+        );
+
+        GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+        assertEquals(targets, matcher.getTargets());
+
+        assertArrayEquals(new int[]{2, 3, 2, UNRANKED, 4, 2}, matcher.match(Arrays.asList(
+            "ftp://www.site.com/",
+            "https://www.site.com/",
+            "http://site.com",
+            "http://www.notsite.com/page1",
+            "http://www.site.com/page2"
+        )));
+
+        assertArrayEquals(new int[]{UNRANKED, UNRANKED, UNRANKED, 1, UNRANKED, UNRANKED}, matcher.match(Arrays.asList(
+            "http://a.b.other.com/x.site.com/",
+            "http://www.site.com.evil.com/",
+            "http://www.site.com:8080/"
+        )));
+
+        GoogleSerp serp = new GoogleSerp(1, 1, LocalDateTime.now());
+        serp.addEntry(new GoogleSerpEntry("http://sub.site.com/page3"));
+        assertArrayEquals(new int[]{UNRANKED, UNRANKED, 1, UNRANKED, 1, UNRANKED}, matcher.match(serp));
+
+        assertArrayEquals(new int[0], new GoogleTargetMatcher(new ArrayList<>()).match(Arrays.asList("http://site.com/")));
+    }
+
+    @Test
+    public void testSameAsTargetMatch() {
+        Random r = new Random(0);
+        String[] labels = {"site", "www", "sub", "com", "fr", "x-y", "", "SITE"};
+        String[] prefixes = {"http://", "https://", "ftp://", "http:/", ""};
+        String[] suffixes = {"", "/", "/path", "?q=1", ":80/", "\n", "/a\n", ".", "#"};
+
+        List<GoogleTarget> targets = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String domain = randomHost(r, labels);
+            PatternType type = PatternType.values()[r.nextInt(2)];
+            if(GoogleTarget.isValidPattern(type, domain)){
+                targets.add(new GoogleTarget(1, "t" + i, type, domain));
+            }
+        }
+        targets.add(new GoogleTarget(1, "r1", PatternType.REGEX, "sub\\.site"));
+        targets.add(new GoogleTarget(1, "r2", PatternType.REGEX, "^https://"));
+        GoogleTargetMatcher matcher = new GoogleTargetMatcher(targets);
+
+        for (int serp = 0; serp < 500; serp++) {
+            List<String> urls = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                urls.add(prefixes[r.nextInt(prefixes.length)] + randomHost(r, labels) + suffixes[r.nextInt(suffixes.length)]);
+            }
+
+            int[] positions = matcher.match(urls);
+            for (int t = 0; t < targets.size(); t++) {
+                int expected = UNRANKED;
+                for (int i = 0; i < urls.size(); i++) {
+                    if(targets.get(t).match(urls.get(i))){
+                        expected = i + 1;
+                        break;
+                    }
+                }
+                assertEquals(targets.get(t).getPattern() + " " + urls, expected, positions[t]);
+            }
+        }
+    }
+
+    protected String randomHost(Random r, String[] labels){
+        StringBuilder builder = new StringBuilder(labels[r.nextInt(labels.length)]);
+        int n = r.nextInt(4);
+        for (int i = 0; i < n; i++) {
+            builder.append('.').append(labels[r.nextInt(labels.length)]);
+        }
+        return builder.toString();
+    }
+
+}
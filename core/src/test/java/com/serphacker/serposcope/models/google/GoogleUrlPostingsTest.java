@@ -0,0 +1,55 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GoogleUrlPostingsTest {
+
+    @Test
+    public void testPut() {
+        GoogleUrlPostings postings = new GoogleUrlPostings(1, 2);
+        postings.put(10, 3);
+        postings.put(30, 1);
+        postings.put(20, 100);
+        postings.put(30, 2);
+
+        assertEquals(3, postings.size());
+        assertEquals(10, postings.getFirstRunId());
+        assertEquals(30, postings.getLastRunId());
+        assertEquals(100, postings.getPositionOfRun(20));
+        assertEquals(2, postings.getPositionOfRun(30));
+        assertEquals(0, postings.getPositionOfRun(15));
+
+        assertTrue(postings.remove(20));
+        assertFalse(postings.remove(20));
+        assertEquals(0, postings.getPositionOfRun(20));
+        assertEquals(30, postings.getRunId(1));
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        GoogleUrlPostings postings = new GoogleUrlPostings(1, 2);
+        for (int runId = 1; runId <= 365; runId++) {
+            postings.put(runId * 2, 1 + (runId * 7) % 100);
+        }
+
+        GoogleUrlPostings read = new GoogleUrlPostings(1, 2);
+        read.setSerialized(postings.getSerialized());
+        assertEquals(postings, read);
+        assertEquals(1 + 7, read.getPositionOfRun(2));
+
+        GoogleUrlPostings empty = new GoogleUrlPostings(1, 2);
+        read.setSerialized(empty.getSerialized());
+        assertEquals(empty, read);
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task;
+
+import com.serphacker.serposcope.db.base.RunDB;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RunProgressWriterTest {
+
+    RunDB runDB;
+    List<Integer> progressWritten;
+    List<Integer> captchasWritten;
+
+    @Before
+    public void before() {
+        runDB = mock(RunDB.class);
+        progressWritten = Collections.synchronizedList(new ArrayList<>());
+        captchasWritten = Collections.synchronizedList(new ArrayList<>());
+        when(runDB.updateProgress(any())).then(invocation -> {
+            progressWritten.add(((Run) invocation.getArguments()[0]).getProgress());
+            return true;
+        });
+        when(runDB.updateCaptchas(any())).then(invocation -> {
+            captchasWritten.add(((Run) invocation.getArguments()[0]).getCaptchas());
+            return true;
+        });
+    }
+
+    @Test
+    public void testCoalesce() {
+        Run run = new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, LocalDateTime.now());
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger captchas = new AtomicInteger();
+
+        RunProgressWriter writer = new RunProgressWriter(runDB, run, () -> done.get() / 100, captchas::get, 60000);
+        writer.start();
+        for (int i = 0; i < 10000; i++) {
+            done.incrementAndGet();
+            if (i % 10 == 0) {
+                captchas.incrementAndGet();
+            }
+        }
+        writer.close();
+
+        assertEquals(Collections.singletonList(100), progressWritten);
+        assertEquals(Collections.singletonList(1000), captchasWritten);
+        assertEquals(2, writer.getUpdates());
+        assertEquals(100, run.getProgress());
+        assertEquals(1000, run.getCaptchas());
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        Run run = new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, LocalDateTime.now());
+        AtomicInteger progress = new AtomicInteger();
+
+        RunProgressWriter writer = new RunProgressWriter(runDB, run, progress::get, () -> 0, 10);
+        writer.start();
+        progress.set(50);
+        long timeout = System.currentTimeMillis() + 5000;
+        while (progressWritten.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+        assertEquals(Collections.singletonList(50), progressWritten);
+
+        // nothing changed, nothing written
+        Thread.sleep(50);
+        assertEquals(1, progressWritten.size());
+
+        progress.set(100);
+        writer.close();
+        assertEquals(100, (int) progressWritten.get(progressWritten.size() - 1));
+        assertTrue(writer.getUpdates() <= 2);
+        verify(runDB, never()).updateCaptchas(any());
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTarget.PatternType;
+import com.serphacker.serposcope.models.google.GoogleTargetMatcher;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GoogleRunSnapshotTest {
+
+    @Test
+    public void testLookup() {
+        Map<Integer, List<Integer>> groupsBySearch = new HashMap<>();
+        groupsBySearch.put(42, Arrays.asList(3, 1));
+        groupsBySearch.put(7, Arrays.asList(2));
+        groupsBySearch.put(1000, Arrays.asList(1, 2, 3));
+
+        GoogleTargetMatcher matcher1 = new GoogleTargetMatcher(Arrays.asList(
+            new GoogleTarget(1, "site1", PatternType.DOMAIN, "www.site1.com")));
+        GoogleTargetMatcher matcher3 = new GoogleTargetMatcher(Arrays.asList(
+            new GoogleTarget(3, "site3", PatternType.SUBDOMAIN, "site3.com")));
+        Map<Integer, GoogleTargetMatcher> matchersByGroup = new HashMap<>();
+        matchersByGroup.put(1, matcher1);
+        matchersByGroup.put(3, matcher3);
+
+        GoogleRunSnapshot snapshot = new GoogleRunSnapshot(groupsBySearch, matchersByGroup);
+        assertEquals(3, snapshot.getSearchCount());
+        assertEquals(2, snapshot.getGroupCount());
+
+        assertArrayEquals(new int[]{1, 3}, snapshot.getGroups(42));
+        assertArrayEquals(new int[]{2}, snapshot.getGroups(7));
+        assertArrayEquals(new int[]{1, 2, 3}, snapshot.getGroups(1000));
+        assertArrayEquals(new int[0], snapshot.getGroups(8));
+
+        assertSame(matcher1, snapshot.getMatcher(1));
+        assertNull(snapshot.getMatcher(2));
+        assertSame(matcher3, snapshot.getMatcher(3));
+        assertNull(snapshot.getMatcher(4));
+    }
+
+    @Test
+    public void testResolved() {
+        Map<Integer, List<Integer>> groupsBySearch = new HashMap<>();
+        groupsBySearch.put(1, Arrays.asList(1, 2));
+        groupsBySearch.put(2, Arrays.asList(3));
+
+        Map<Integer, GoogleTargetMatcher> matchersByGroup = new HashMap<>();
+        matchersByGroup.put(1, new GoogleTargetMatcher(Arrays.asList(
+            new GoogleTarget(1, "site1", PatternType.DOMAIN, "www.site1.com"))));
+        matchersByGroup.put(2, new GoogleTargetMatcher(Arrays.asList(
+            new GoogleTarget(2, "site2", PatternType.DOMAIN, "www.site2.com"),
+            new GoogleTarget(2, "site3", PatternType.DOMAIN, "www.site3.com"))));
+
+        GoogleRunSnapshot snapshot = new GoogleRunSnapshot(groupsBySearch, matchersByGroup);
+        List<String> urls = Arrays.asList("http://www.site3.com/", "http://www.site1.com/a");
+        assertFalse(snapshot.isResolved(1, urls));
+        assertTrue(snapshot.isResolved(1, Arrays.asList(
+            "http://www.site3.com/", "http://www.site1.com/a", "http://www.other.com/", "http://www.site2.com/b")));
+
+        // no target to find, never resolved
+        assertFalse(snapshot.isResolved(2, urls));
+        assertFalse(snapshot.isResolved(3, urls));
+    }
+
+    @Test
+    public void testEmpty() {
+        GoogleRunSnapshot snapshot = new GoogleRunSnapshot(new HashMap<>(), new HashMap<>());
+        assertArrayEquals(new int[0], snapshot.getGroups(1));
+        assertNull(snapshot.getMatcher(1));
+    }
+
+}
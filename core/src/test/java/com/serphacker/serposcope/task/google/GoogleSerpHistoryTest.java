@@ -0,0 +1,183 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.db.google.GoogleSerpDB;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSerpEntry;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class GoogleSerpHistoryTest {
+
+    GoogleSerpDB serpDB;
+    List<Collection<Integer>> queries;
+    int loadingSearch = -1;
+    CountDownLatch loadStarted = new CountDownLatch(1);
+    CountDownLatch loadReleased = new CountDownLatch(0);
+
+    @Before
+    public void before() {
+        serpDB = mock(GoogleSerpDB.class);
+        queries = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            int runId = (Integer) invocation.getArguments()[0];
+            Collection<Integer> searchIds = new ArrayList<>((Collection<Integer>) invocation.getArguments()[1]);
+            Consumer<GoogleSerp> callback = (Consumer<GoogleSerp>) invocation.getArguments()[2];
+            queries.add(searchIds);
+            if(searchIds.contains(loadingSearch)){
+                loadStarted.countDown();
+                loadReleased.await();
+            }
+            for (Integer searchId : searchIds) {
+                // run 7 has no serp for odd searches
+                if(runId == 7 && searchId % 2 == 1){
+                    continue;
+                }
+                GoogleSerp serp = new GoogleSerp(runId, searchId, LocalDateTime.MIN);
+                serp.addEntry(new GoogleSerpEntry("http://www.site" + searchId + ".com/"));
+                serp.addEntry(new GoogleSerpEntry("http://www.run" + runId + ".com/"));
+                // the serps of search 4 at run 7 stopped after the first page
+                serp.setPartial(runId == 7 && searchId == 4);
+                callback.accept(serp);
+            }
+            return null;
+        }).when(serpDB).stream(anyInt(), anyCollection(), any());
+    }
+
+    protected Map<Short,Integer> runsByDay(){
+        Map<Short,Integer> runsByDay = new HashMap<>();
+        runsByDay.put((short)1, 1);
+        runsByDay.put((short)7, 7);
+        return runsByDay;
+    }
+
+    @Test
+    public void testNoPreviousRun() {
+        GoogleSerpHistory history = new GoogleSerpHistory(serpDB, new HashMap<>(), new int[]{1,2,3});
+        assertTrue(history.get(1).isEmpty());
+        verify(serpDB, never()).stream(anyInt(), anyCollection(), any());
+    }
+
+    @Test
+    public void testPositions() {
+        GoogleSerpHistory history = new GoogleSerpHistory(serpDB, runsByDay(), new int[]{1,2,3,4});
+
+        assertEquals(1, history.get(2).get((short)1).getShort("http://www.site2.com/"));
+        assertEquals(2, history.get(2).get((short)1).getShort("http://www.run1.com/"));
+        assertEquals(2, history.get(2).get((short)7).getShort("http://www.run7.com/"));
+        assertEquals(0, history.get(2).get((short)7).getShort("http://www.run1.com/"));
+
+        assertEquals(1, history.get(3).size());
+        assertEquals(null, history.get(3).get((short)7));
+
+        GoogleSerpEntry entry = new GoogleSerpEntry("http://www.run1.com/");
+        entry.fillPreviousPosition(history.get(2));
+        assertEquals(2, (short)entry.getMap().get((short)1));
+        assertEquals(0, (short)entry.getMap().get((short)7));
+    }
+
+    @Test
+    public void testPartialSerp() {
+        GoogleSerpHistory history = new GoogleSerpHistory(serpDB, runsByDay(), new int[]{1,2,3,4});
+
+        assertEquals(-1, history.get(4).get((short)7).getShort("http://www.run1.com/"));
+        assertEquals(0, history.get(4).get((short)1).getShort("http://www.run7.com/"));
+
+        // not found in a partial serp, the position of the day is unknown
+        GoogleSerpEntry entry = new GoogleSerpEntry("http://www.run1.com/");
+        entry.fillPreviousPosition(history.get(4));
+        assertEquals(2, (short)entry.getMap().get((short)1));
+        assertFalse(entry.getMap().containsKey((short)7));
+
+        entry = new GoogleSerpEntry("http://www.run7.com/");
+        entry.fillPreviousPosition(history.get(4));
+        assertEquals(2, (short)entry.getMap().get((short)7));
+    }
+
+    @Test
+    public void testChunkLoading() {
+        GoogleSerpHistory history = new GoogleSerpHistory(serpDB, runsByDay(), new int[]{5,4,3,2,1}, 2, 100);
+
+        for (int searchId : new int[]{5,4,3,2,1}) {
+            history.get(searchId);
+        }
+
+        assertEquals(3, history.getMisses());
+        assertEquals(5, history.getLoaded());
+        // one query per run and chunk
+        assertEquals(6, queries.size());
+        for (Collection<Integer> query : queries) {
+            assertTrue(query.size() <= 2);
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        GoogleSerpHistory history = new GoogleSerpHistory(serpDB, runsByDay(), new int[]{1,2,3,4}, 2, 2);
+
+        history.get(1);
+        history.get(3);
+        assertEquals(2, history.getMisses());
+        history.get(1);
+        assertEquals(3, history.getMisses());
+    }
+
+    @Test(timeout = 10000)
+    public void testLoadOutsideOfLock() throws Exception {
+        GoogleSerpHistory history = new GoogleSerpHistory(serpDB, runsByDay(), new int[]{1,2}, 1, 100);
+        history.get(2);
+
+        loadingSearch = 1;
+        loadReleased = new CountDownLatch(1);
+        AtomicReference<Object> first = new AtomicReference<>();
+        AtomicReference<Object> second = new AtomicReference<>();
+        Thread loader = new Thread(() -> first.set(history.get(1)));
+        loader.start();
+        loadStarted.await();
+
+        // cached searches are served while another search is loading
+        assertEquals(1, history.get(2).get((short)1).getShort("http://www.site2.com/"));
+
+        // a search being loaded is awaited, not loaded twice
+        Thread waiter = new Thread(() -> second.set(history.get(1)));
+        waiter.start();
+        while(waiter.getState() != Thread.State.WAITING){
+            Thread.sleep(1);
+        }
+        loadReleased.countDown();
+        loader.join();
+        waiter.join();
+
+        assertSame(first.get(), second.get());
+        assertEquals(2, history.getMisses());
+        assertEquals(4, queries.size());
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSettings;
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
+import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper.ScrapState;
+import com.serphacker.serposcope.scraper.http.ScrapClient;
+import com.serphacker.serposcope.scraper.http.proxy.BindProxy;
+import com.serphacker.serposcope.scraper.http.proxy.ProxyRotator;
+import com.serphacker.serposcope.scraper.http.proxy.ScrapProxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GoogleTaskAsyncEngineTest {
+
+    GoogleTask taskController;
+    AtomicInteger scrapers;
+    AtomicInteger failingScrapers;
+    int failuresPerScraper = Integer.MAX_VALUE;
+    AtomicInteger concurrentPages;
+    AtomicInteger peakConcurrentPages;
+
+    @Before
+    public void before() throws Exception {
+        taskController = mock(GoogleTask.class);
+        taskController.rotator = new ProxyRotator(Collections.EMPTY_LIST);
+        taskController.searches = new LinkedBlockingQueue<>();
+        taskController.googleOptions = new GoogleSettings();
+        taskController.googleOptions.setMinPauseBetweenPageSec(0);
+        taskController.googleOptions.setMaxPauseBetweenPageSec(0);
+        taskController.googleOptions.setPages(2);
+
+        scrapers = new AtomicInteger();
+        failingScrapers = new AtomicInteger();
+        concurrentPages = new AtomicInteger();
+        peakConcurrentPages = new AtomicInteger();
+        when(taskController.genScraper()).then(invocation -> genScraper());
+    }
+
+    protected GoogleScraper genScraper() throws Exception {
+        AtomicInteger failures = new AtomicInteger(scrapers.getAndIncrement() < failingScrapers.get() ? failuresPerScraper : 0);
+        GoogleScraper scraper = mock(GoogleScraper.class);
+        when(scraper.getHttp()).thenReturn(mock(ScrapClient.class));
+        when(scraper.startScrap(any())).then(invocation -> new ScrapState((GoogleScrapSearch) invocation.getArguments()[0], null));
+        when(scraper.scrapPage(any())).then(invocation -> {
+            ScrapState state = (ScrapState) invocation.getArguments()[0];
+            peakConcurrentPages.accumulateAndGet(concurrentPages.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            concurrentPages.decrementAndGet();
+            if(failures.getAndDecrement() > 0){
+                state.setResult(new GoogleScrapResult(GoogleScrapResult.Status.ERROR_NETWORK, new ArrayList<>()));
+                return false;
+            }
+            List<String> urls = state.getResult() == null ? new ArrayList<>() : state.getResult().urls;
+            urls.add("http://www.site.com/" + urls.size());
+            state.setResult(new GoogleScrapResult(GoogleScrapResult.Status.OK, urls));
+            return urls.size() < state.getSearch().getPages();
+        });
+        return scraper;
+    }
+
+    protected List<ScrapProxy> addProxies(int count){
+        List<ScrapProxy> proxies = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            proxies.add(new BindProxy("127.0.0." + (i + 1)));
+        }
+        taskController.rotator.addAll(proxies);
+        return proxies;
+    }
+
+    protected void addSearches(int count){
+        for (int i = 0; i < count; i++) {
+            taskController.searches.add(new GoogleSearch("keyword-" + i));
+        }
+    }
+
+    @Test
+    public void testAllSearchesDone() throws Exception {
+        List<ScrapProxy> proxies = addProxies(2);
+        addSearches(20);
+
+        new GoogleTaskAsyncEngine(taskController, 2, 3).run();
+
+        verify(taskController, times(20)).onSearchDone(any(), any());
+        assertTrue(taskController.searches.isEmpty());
+        assertEquals(new HashSet<>(proxies), new HashSet<>(taskController.rotator.list()));
+        assertEquals(6, scrapers.get());
+    }
+
+    @Test
+    public void testConcurrencyBoundedByLeases() throws Exception {
+        taskController.googleOptions.setMinPauseBetweenPageSec(1);
+        taskController.googleOptions.setMaxPauseBetweenPageSec(1);
+        addProxies(4);
+        addSearches(16);
+
+        GoogleTaskAsyncEngine engine = new GoogleTaskAsyncEngine(taskController, 1, 2);
+        engine.run();
+
+        verify(taskController, times(16)).onSearchDone(any(), any());
+        // more searches in flight than worker threads, never more pages fetched concurrently than workers
+        assertEquals(8, engine.getPeakInFlight());
+        assertEquals(1, peakConcurrentPages.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testInterruptedSearchReleased() throws Exception {
+        List<ScrapProxy> proxies = addProxies(1);
+        addSearches(3);
+        GoogleScraper scraper = genScraper();
+        AtomicInteger interrupted = new AtomicInteger();
+        doAnswer(invocation -> {
+            if(interrupted.getAndIncrement() == 0){
+                throw new InterruptedException();
+            }
+            ScrapState state = (ScrapState) invocation.getArguments()[0];
+            state.setResult(new GoogleScrapResult(GoogleScrapResult.Status.OK, new ArrayList<>()));
+            return false;
+        }).when(scraper).scrapPage(any());
+        doReturn(scraper).when(taskController).genScraper();
+
+        new GoogleTaskAsyncEngine(taskController, 1, 1).run();
+
+        // the interrupted search is requeued and the lease reused
+        verify(taskController, times(3)).onSearchDone(any(), any());
+        assertEquals(new HashSet<>(proxies), new HashSet<>(taskController.rotator.list()));
+    }
+
+    @Test
+    public void testFailedProxyBenched() throws Exception {
+        List<ScrapProxy> proxies = addProxies(2);
+        addSearches(10);
+        failingScrapers.set(1);
+
+        new GoogleTaskAsyncEngine(taskController, 1, 1).run();
+
+        verify(taskController, times(10)).onSearchDone(any(), any());
+        assertEquals(1, taskController.rotator.getHealth(proxies.get(0)).getFailures());
+        assertEquals(new HashSet<>(proxies), new HashSet<>(taskController.rotator.list()));
+    }
+
+    @Test
+    public void testWaitBenchedProxy() throws Exception {
+        List<ScrapProxy> proxies = addProxies(1);
+        addSearches(5);
+        failingScrapers.set(1);
+        failuresPerScraper = 2;
+        taskController.rotator.setBenchMS(20);
+
+        new GoogleTaskAsyncEngine(taskController, 1, 1).run();
+
+        verify(taskController, times(5)).onSearchDone(any(), any());
+        assertEquals(2, taskController.rotator.getHealth(proxies.get(0)).getFailures());
+        assertEquals(5, taskController.rotator.getHealth(proxies.get(0)).getSuccesses());
+    }
+
+    @Test
+    public void testNoMoreProxy() throws Exception {
+        addProxies(2);
+        addSearches(10);
+        failingScrapers.set(2);
+        taskController.rotator.setMaxConsecutiveFailures(1);
+
+        new GoogleTaskAsyncEngine(taskController, 2, 1).run();
+
+        verify(taskController, times(0)).onSearchDone(any(), any());
+        assertEquals(10, taskController.searches.size());
+        assertTrue(taskController.rotator.list().isEmpty());
+    }
+
+}
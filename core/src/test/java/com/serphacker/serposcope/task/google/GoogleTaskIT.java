@@ -116,6 +116,8 @@ public class GoogleTaskIT extends AbstractDBIT {
         options.setResultPerPage(10);
         options.setMinPauseBetweenPageSec(0);
         options.setMaxPauseBetweenPageSec(0);
+        options.setProxyBenchSec(0);
+        options.setProxyMaxFailures(3);
         googleDB.options.update(options);
         
         // fruits
@@ -524,6 +526,53 @@ public class GoogleTaskIT extends AbstractDBIT {
     }
 
     
+    @Test
+    public void testRescanTask() throws Exception {
+        gsf = new GoogleScraperFactory() {
+            @Override
+            public GoogleScraper get(ScrapClient http, CaptchaSolver solver) {
+                return new RandomGScraper(http, solver);
+            }
+        };
+        taskFactory = Guice.createInjector(getModule()).getInstance(TaskFactory.class);
+        
+        initialize();
+        List<GoogleTarget> allTargets = googleDB.target.list();
+        
+        for (int day = 10; day <= 12; day++) {
+            GoogleTask task = taskFactory.create(new Run(Mode.CRON, Group.Module.GOOGLE, LocalDateTime.of(2010, 10, day, 0, 0).withNano(0)));
+            task.run();
+        }
+        
+        List<Run> runs = baseDB.run.listDone(null, null);
+        Map<Integer, List<GoogleTargetSummary>> originalSummaries = new HashMap<>();
+        Map<Integer, List<GoogleRank>> originalRanks = new HashMap<>();
+        for (Run run : runs) {
+            originalSummaries.put(run.getId(), googleDB.targetSummary.list(run.getId()));
+            originalRanks.put(run.getId(), listRanks(run, allTargets));
+        }
+        
+        for (Run run : runs) {
+            GoogleRescanTask rescan = taskFactory.createRescan(run);
+            rescan.run();
+            assertEquals(rescan.getTotalSearch(), rescan.getSearchDone());
+            assertEquals(100, rescan.getProgress());
+            
+            ReflectionAssert.assertReflectionEquals(originalSummaries.get(run.getId()), googleDB.targetSummary.list(run.getId()));
+            ReflectionAssert.assertReflectionEquals(originalRanks.get(run.getId()), listRanks(run, allTargets));
+        }
+    }
+    
+    protected List<GoogleRank> listRanks(Run run, List<GoogleTarget> targets){
+        List<GoogleRank> ranks = new ArrayList<>();
+        for (GoogleTarget target : targets) {
+            for (GoogleSearch search : googleDB.search.listByGroup(Arrays.asList(target.getGroupId()))) {
+                ranks.add(googleDB.rank.getFull(run.getId(), target.getGroupId(), target.getId(), search.getId()));
+            }
+        }
+        return ranks;
+    }
+    
     protected void entryToString(GoogleSerpEntry entry, int position){
         System.out.println(
             position + "|" + 
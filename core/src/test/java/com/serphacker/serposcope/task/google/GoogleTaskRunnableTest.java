@@ -78,6 +78,17 @@ public class GoogleTaskRunnableTest {
         }));        
     }    
 
+    /**
+     * wait for the thread to block on the empty search queue
+     */
+    protected void awaitPolling(Thread thread){
+        long deadline = System.currentTimeMillis() + 5000;
+        while(thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING){
+            assertTrue("thread never polled the queue", System.currentTimeMillis() < deadline);
+            Thread.yield();
+        }
+    }
+
     @Before
     public void before() {
         reconfigureLogger();
@@ -113,12 +124,26 @@ public class GoogleTaskRunnableTest {
         
         Thread thread = new Thread(runnable);
         thread.start();
-        Thread.sleep(50);
+        awaitPolling(thread);
         thread.interrupt();
         thread.join();
         assertLogged("interrupted while polling, aborting the thread");
     }
     
+    @Test
+    public void testNoProxyLeasedWhilePolling() throws Exception{
+        taskController.rotator.add(new BindProxy("127.0.0.1"));
+        taskController.searches = new LinkedBlockingQueue<>();
+        
+        Thread thread = new Thread(runnable);
+        thread.start();
+        awaitPolling(thread);
+        // the proxy stays available to the other threads while this one waits for a search
+        assertEquals(1, taskController.rotator.remaining());
+        thread.interrupt();
+        thread.join();
+    }
+    
 //    @Test
 //    public void testShouldRun() throws Exception{
 //        taskController.rotator.add(new BindProxy("127.0.0.1"));
@@ -225,7 +250,7 @@ public class GoogleTaskRunnableTest {
     */
     
     @Test
-    public void testProxyEviction() throws Exception{
+    public void testProxyBenched() throws Exception{
         ScrapProxy evictableProxy = new BindProxy("127.0.0.1");
         List<ScrapProxy> proxies = Arrays.asList(evictableProxy, new BindProxy("127.0.0.2"), new BindProxy("127.0.0.3"));
         taskController.rotator.addAll(proxies);
@@ -247,8 +272,10 @@ public class GoogleTaskRunnableTest {
         assertLogged("search \"keyword\" | try 1 | total search done : 0/0");
         assertLogged("scrap failed for keyword because of ERROR_NETWORK");
         verify(taskController, never()).onSearchDone(any(), any());
-        assertFalse(taskController.rotator.list().contains(evictableProxy));
-        assertEquals(proxies.size()-1, taskController.rotator.list().size());
+        // failing proxy is benched, not evicted
+        assertTrue(taskController.rotator.list().contains(evictableProxy));
+        assertEquals(1, taskController.rotator.getHealth(evictableProxy).getFailures());
+        assertEquals(proxies.size()-1, taskController.rotator.remaining());
         assertFalse(taskController.searches.isEmpty());
     }    
     
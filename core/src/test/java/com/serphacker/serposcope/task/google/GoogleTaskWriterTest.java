@@ -0,0 +1,136 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.db.google.GoogleResultDB;
+import com.serphacker.serposcope.models.google.GoogleBest;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GoogleTaskWriterTest {
+
+    GoogleResultDB resultDB;
+    List<Integer> batchSizes;
+    List<Integer> searchIds;
+
+    @Before
+    public void before() {
+        resultDB = mock(GoogleResultDB.class);
+        batchSizes = Collections.synchronizedList(new ArrayList<>());
+        searchIds = Collections.synchronizedList(new ArrayList<>());
+        when(resultDB.insert(anyCollection(), anyCollection(), anyCollection())).then(invocation -> {
+            Collection<GoogleSerp> serps = (Collection<GoogleSerp>) invocation.getArguments()[0];
+            batchSizes.add(serps.size());
+            serps.forEach(serp -> searchIds.add(serp.getGoogleSearchId()));
+            return true;
+        });
+    }
+
+    protected void write(GoogleTaskWriter writer, int searchId){
+        writer.write(
+            new GoogleSerp(1, searchId, LocalDateTime.MIN),
+            Arrays.asList(new GoogleRank(1, 1, 1, searchId, 1, 2, "http://www.site.com/")),
+            Arrays.asList(new GoogleBest(1, 1, searchId, 1, LocalDateTime.MIN, "http://www.site.com/"))
+        );
+    }
+
+    @Test
+    public void testFlushOnClose() {
+        GoogleTaskWriter writer = new GoogleTaskWriter(resultDB, 100, 60000);
+        writer.start();
+        for (int i = 0; i < 10; i++) {
+            write(writer, i);
+        }
+        writer.close();
+
+        assertEquals(Arrays.asList(10), batchSizes);
+        assertEquals(10, writer.getWritten());
+        assertEquals(0, writer.getFailed());
+    }
+
+    @Test
+    public void testBatchSize() {
+        GoogleTaskWriter writer = new GoogleTaskWriter(resultDB, 3, 60000);
+        writer.start();
+        for (int i = 0; i < 50; i++) {
+            write(writer, i);
+        }
+        writer.close();
+
+        for (Integer batchSize : batchSizes) {
+            assertTrue(batchSize <= 3);
+        }
+        assertEquals(50, searchIds.size());
+        assertEquals(50, writer.getWritten());
+    }
+
+    @Test
+    public void testFlushInterval() throws Exception {
+        GoogleTaskWriter writer = new GoogleTaskWriter(resultDB, 100, 50);
+        writer.start();
+        write(writer, 1);
+        Thread.sleep(500);
+        assertEquals(Arrays.asList(1), searchIds);
+        writer.close();
+    }
+
+    @Test
+    public void testFailedBatch() {
+        doReturn(false).when(resultDB).insert(any(), any(), any());
+        GoogleTaskWriter writer = new GoogleTaskWriter(resultDB, 100, 60000);
+        writer.start();
+        write(writer, 1);
+        write(writer, 2);
+        writer.close();
+
+        assertEquals(0, writer.getWritten());
+        assertEquals(2, writer.getFailed());
+    }
+
+    @Test
+    public void testFailedResultIsolated() {
+        doAnswer(invocation -> {
+            Collection<GoogleSerp> serps = (Collection<GoogleSerp>) invocation.getArguments()[0];
+            batchSizes.add(serps.size());
+            if(serps.stream().anyMatch(serp -> serp.getGoogleSearchId() == 2)){
+                return false;
+            }
+            serps.forEach(serp -> searchIds.add(serp.getGoogleSearchId()));
+            return true;
+        }).when(resultDB).insert(any(), any(), any());
+        GoogleTaskWriter writer = new GoogleTaskWriter(resultDB, 100, 60000);
+        writer.start();
+        write(writer, 1);
+        write(writer, 2);
+        write(writer, 3);
+        writer.close();
+
+        // batch, retry, then one insert per result
+        assertEquals(Arrays.asList(3, 3, 1, 1, 1), batchSizes);
+        assertEquals(Arrays.asList(1, 3), searchIds);
+        assertEquals(2, writer.getWritten());
+        assertEquals(1, writer.getFailed());
+    }
+
+}
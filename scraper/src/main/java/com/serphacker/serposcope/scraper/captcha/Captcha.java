@@ -95,4 +95,20 @@ public abstract class Captcha {
     public void setLastSolver(CaptchaSolver lastSolver) {
         this.lastSolver = lastSolver;
     }
+
+    /**
+     * a new unsolved captcha with the same challenge, to submit it to several solvers at once
+     */
+    public abstract Captcha copy();
+
+    /**
+     * takes the outcome of a copy solved by a solver
+     */
+    public void setResult(Captcha attempt) {
+        this.id = attempt.id;
+        this.status = attempt.status;
+        this.error = attempt.error;
+        this.solveDuration = attempt.solveDuration;
+        this.lastSolver = attempt.lastSolver;
+    }
 }
@@ -58,6 +58,25 @@ public class CaptchaImage extends Captcha {
 
     }
 
+    CaptchaImage(CaptchaImage other){
+        this.data = other.data;
+        this.md5 = other.md5;
+        this.mimes = other.mimes;
+    }
+
+    @Override
+    public CaptchaImage copy() {
+        return new CaptchaImage(this);
+    }
+
+    @Override
+    public void setResult(Captcha attempt) {
+        super.setResult(attempt);
+        if(attempt instanceof CaptchaImage){
+            this.response = ((CaptchaImage)attempt).response;
+        }
+    }
+
     public byte[] getImage(){
         return data[0];
     }
@@ -28,6 +28,21 @@ public class CaptchaRecaptcha extends Captcha {
         this.dataS = dataS;
     }
     
+    @Override
+    public CaptchaRecaptcha copy() {
+        CaptchaRecaptcha copy = new CaptchaRecaptcha(challenge, dataS, url);
+        copy.cookies = cookies;
+        return copy;
+    }
+
+    @Override
+    public void setResult(Captcha attempt) {
+        super.setResult(attempt);
+        if (attempt instanceof CaptchaRecaptcha) {
+            this.response = ((CaptchaRecaptcha) attempt).response;
+        }
+    }
+
     public String getChallenge() {
         return challenge;
     }
@@ -21,6 +21,7 @@ import com.sun.org.apache.xerces.internal.impl.dv.util.Base64;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -48,6 +49,27 @@ public class AntiCaptchaSolver implements CaptchaSolver {
     private int maxRetryOnOverload;
     Random random = new Random();
 
+    CaptchaBroker broker = CaptchaBroker.shared();
+    final CaptchaBroker.Provider poller = new CaptchaBroker.Provider() {
+
+        @Override
+        public long getPollingPauseMS() {
+            return POLLING_PAUSE_MS;
+        }
+
+        @Override
+        public Map<String, CaptchaBroker.Answer> poll(List<String> ids) throws Exception {
+            Map<String, CaptchaBroker.Answer> answers = new HashMap<>();
+            for (String id : ids) {
+                CaptchaBroker.Answer answer = pollAnswer(id);
+                if (answer != null) {
+                    answers.put(id, answer);
+                }
+            }
+            return answers;
+        }
+    };
+
     AtomicInteger captchaCount = new AtomicInteger();
 
     public AntiCaptchaSolver(String apiKey) {
@@ -88,6 +110,14 @@ public class AntiCaptchaSolver implements CaptchaSolver {
         this.apiUrl = apiUrl;
     }
 
+    public CaptchaBroker getBroker() {
+        return broker;
+    }
+
+    public void setBroker(CaptchaBroker broker) {
+        this.broker = broker;
+    }
+
     public String getApiKey() {
         return apiKey;
     }
@@ -204,79 +234,54 @@ public class AntiCaptchaSolver implements CaptchaSolver {
 
             captcha.setId(taskId.toString());
 
-            Map<String, Object> getTaskResultMap = new HashMap<>();
-            getTaskResultMap.put("clientKey", apiKey);
-            getTaskResultMap.put("taskId", taskId);
+            return broker.waitFor(poller, captcha, timeoutMS);
 
-            long timeLimit = System.currentTimeMillis() + timeoutMS;
-            while (System.currentTimeMillis() < timeLimit) {
+        } catch (IOException ex) {
+            LOG.error("io exception", ex);
+            captcha.setError(EXCEPTION);
+        } finally {
+            captcha.setSolveDuration(System.currentTimeMillis() - started);
+        }
 
-                http.post(apiUrlv2 + "/getTaskResult", getTaskResultMap, PostType.JSON);
+        return false;
+    }
 
-                String res = http.getContentAsString();
-                if (res == null) {
-                    captcha.setError(Captcha.Error.NETWORK_ERROR);
-                    return false;
-                }
+    /**
+     * the api has no batch status, null if not ready
+     */
+    protected CaptchaBroker.Answer pollAnswer(String taskId) throws IOException {
+        Map<String, Object> getTaskResultMap = new HashMap<>();
+        getTaskResultMap.put("clientKey", apiKey);
+        getTaskResultMap.put("taskId", Integer.parseInt(taskId));
 
-                DocumentContext jsonResult = JsonPath.using(JSONPATH_CONF).parse(res);
-
-                String status = jsonResult.read("$.status");
-                if ("ready".equals(status)) {
-
-                    if (captcha instanceof CaptchaRecaptcha) {
-                        String recaptchaResponse = jsonResult.read("$.solution.gRecaptchaResponse");
-                        if (recaptchaResponse == null || recaptchaResponse.isEmpty()) {
-                            captcha.setError(Captcha.Error.NETWORK_ERROR);
-                            captcha.setStatus(Captcha.Status.ERROR);
-                            return false;
-                        }
-
-                        ((CaptchaRecaptcha) captcha).setResponse(recaptchaResponse);
-                        captcha.setStatus(Captcha.Status.SOLVED);
-                        return true;
-                    }
-
-                    if (captcha instanceof CaptchaImage) {
-                        String textResponse = jsonResult.read("$.solution.text");
-                        if (textResponse == null || textResponse.isEmpty()) {
-                            captcha.setError(Captcha.Error.NETWORK_ERROR);
-                            captcha.setStatus(Captcha.Status.ERROR);
-                            return false;
-                        }
-
-                        ((CaptchaImage) captcha).setResponse(textResponse);
-                        captcha.setStatus(Captcha.Status.SOLVED);
-                        return true;
-                    }
+        try (ScrapClient http = new ScrapClient()) {
+            http.post(apiUrlv2 + "/getTaskResult", getTaskResultMap, PostType.JSON);
 
-                }
+            String res = http.getContentAsString();
+            if (res == null) {
+                return CaptchaBroker.Answer.error(Captcha.Error.NETWORK_ERROR);
+            }
 
-                Integer errId = jsonResult.read("$.errorId");
-                if (errId != null && errId != 0) {
-                    captcha.setError(Captcha.Error.NETWORK_ERROR);
-                    captcha.setStatus(Captcha.Status.ERROR);
-                    return false;
-                }
+            DocumentContext jsonResult = JsonPath.using(JSONPATH_CONF).parse(res);
 
-                try {
-                    Thread.sleep(POLLING_PAUSE_MS);
-                } catch (InterruptedException ex) {
-                    break;
+            String status = jsonResult.read("$.status");
+            if ("ready".equals(status)) {
+                String response = jsonResult.read("$.solution.gRecaptchaResponse");
+                if (response == null || response.isEmpty()) {
+                    response = jsonResult.read("$.solution.text");
                 }
+                if (response == null || response.isEmpty()) {
+                    return CaptchaBroker.Answer.error(Captcha.Error.NETWORK_ERROR);
+                }
+                return CaptchaBroker.Answer.solved(response);
             }
 
-            captcha.setError(Captcha.Error.TIMEOUT);
-            captcha.setStatus(Captcha.Status.ERROR);
-
-        } catch (IOException ex) {
-            LOG.error("io exception", ex);
-            captcha.setError(EXCEPTION);
-        } finally {
-            captcha.setSolveDuration(System.currentTimeMillis() - started);
+            Integer errId = jsonResult.read("$.errorId");
+            if (errId != null && errId != 0) {
+                return CaptchaBroker.Answer.error(Captcha.Error.NETWORK_ERROR);
+            }
         }
-
-        return false;
+        return null;
     }
 
     public boolean isRetryable(String response) {
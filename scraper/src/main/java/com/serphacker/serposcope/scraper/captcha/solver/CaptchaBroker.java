@@ -0,0 +1,278 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.captcha.solver;
+
+import com.serphacker.serposcope.scraper.captcha.Captcha;
+import com.serphacker.serposcope.scraper.captcha.CaptchaImage;
+import com.serphacker.serposcope.scraper.captcha.CaptchaRecaptcha;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * polls the status of the submitted captchas for all the scraper threads.
+ *
+ * Each provider is polled by a single periodic task, the outstanding ids are checked with one request per batch,
+ * so the number of requests to a provider doesn't grow with the number of waiting threads. The polling pause of
+ * the provider is the rate limit and the timeouts are enforced here.
+ * thread safe
+ */
+public class CaptchaBroker implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CaptchaBroker.class);
+
+    public final static int DEFAULT_THREADS = 4;
+
+    private final static CaptchaBroker SHARED = new CaptchaBroker(DEFAULT_THREADS);
+
+    public static CaptchaBroker shared() {
+        return SHARED;
+    }
+
+    /**
+     * status api of a captcha service
+     */
+    public interface Provider {
+
+        /**
+         * pause between two polls of the provider
+         */
+        long getPollingPauseMS();
+
+        /**
+         * max ids checked by a single poll
+         */
+        default int getMaxBatchSize() {
+            return 1;
+        }
+
+        /**
+         * answers of the captchas ready, missing ids are not ready yet
+         */
+        Map<String, Answer> poll(List<String> ids) throws Exception;
+    }
+
+    public static class Answer {
+
+        final String response;
+        final Captcha.Error error;
+
+        Answer(String response, Captcha.Error error) {
+            this.response = response;
+            this.error = error;
+        }
+
+        public static Answer solved(String response) {
+            return new Answer(response, Captcha.Error.SUCCESS);
+        }
+
+        public static Answer error(Captcha.Error error) {
+            return new Answer(null, error);
+        }
+
+        public boolean isSolved() {
+            return error == Captcha.Error.SUCCESS;
+        }
+
+        public String getResponse() {
+            return response;
+        }
+
+        public Captcha.Error getError() {
+            return error;
+        }
+    }
+
+    static class Pending {
+
+        final CompletableFuture<Answer> future = new CompletableFuture<>();
+        final long deadline;
+
+        Pending(long deadline) {
+            this.deadline = deadline;
+        }
+    }
+
+    static class ProviderState {
+
+        final Provider provider;
+        final Map<String, Pending> pending = new LinkedHashMap<>();
+        ScheduledFuture<?> task;
+
+        ProviderState(Provider provider) {
+            this.provider = provider;
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<Provider, ProviderState> states = new HashMap<>();
+    private final AtomicLong polls = new AtomicLong();
+
+    public CaptchaBroker(int threads) {
+        AtomicInteger threadId = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threads, (runnable) -> {
+            Thread thread = new Thread(runnable, "captcha-broker-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * completes with the answer of the captcha or with a TIMEOUT error after timeoutMS
+     */
+    public CompletableFuture<Answer> await(Provider provider, String id, long timeoutMS) {
+        Pending pending = new Pending(System.currentTimeMillis() + timeoutMS);
+        synchronized (states) {
+            if (executor.isShutdown()) {
+                pending.future.complete(Answer.error(Captcha.Error.INTERRUPTED));
+                return pending.future;
+            }
+            ProviderState state = states.computeIfAbsent(provider, ProviderState::new);
+            Pending previous = state.pending.put(id, pending);
+            if (previous != null) {
+                previous.future.complete(Answer.error(Captcha.Error.INTERRUPTED));
+            }
+            if (state.task == null) {
+                long pause = Math.max(1, provider.getPollingPauseMS());
+                state.task = executor.scheduleWithFixedDelay(() -> poll(state), pause, pause, TimeUnit.MILLISECONDS);
+            }
+        }
+        return pending.future;
+    }
+
+    /**
+     * waits for the answer of a submitted captcha and sets its response or its error
+     */
+    public boolean waitFor(Provider provider, Captcha captcha, long timeoutMS) {
+        CompletableFuture<Answer> future = await(provider, captcha.getId(), timeoutMS);
+        Answer answer;
+        try {
+            answer = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            answer = Answer.error(Captcha.Error.INTERRUPTED);
+        } catch (ExecutionException ex) {
+            answer = Answer.error(Captcha.Error.INTERRUPTED);
+        }
+
+        if (!answer.isSolved()) {
+            captcha.setError(answer.getError());
+            captcha.setStatus(Captcha.Status.ERROR);
+            return false;
+        }
+
+        if (captcha instanceof CaptchaImage) {
+            ((CaptchaImage) captcha).setResponse(answer.getResponse());
+        }
+
+        if (captcha instanceof CaptchaRecaptcha) {
+            ((CaptchaRecaptcha) captcha).setResponse(answer.getResponse());
+        }
+
+        captcha.setStatus(Captcha.Status.SOLVED);
+        return true;
+    }
+
+    protected void poll(ProviderState state) {
+        List<String> ids;
+        synchronized (states) {
+            long now = System.currentTimeMillis();
+            for (Iterator<Map.Entry<String, Pending>> it = state.pending.entrySet().iterator(); it.hasNext();) {
+                Pending pending = it.next().getValue();
+                if (now >= pending.deadline) {
+                    pending.future.complete(Answer.error(Captcha.Error.TIMEOUT));
+                }
+                if (pending.future.isDone()) {
+                    it.remove();
+                }
+            }
+
+            if (state.pending.isEmpty()) {
+                state.task.cancel(false);
+                state.task = null;
+                states.remove(state.provider);
+                return;
+            }
+            ids = new ArrayList<>(state.pending.keySet());
+        }
+
+        int batchSize = Math.max(1, state.provider.getMaxBatchSize());
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            List<String> batch = ids.subList(i, Math.min(ids.size(), i + batchSize));
+            Map<String, Answer> answers;
+            try {
+                polls.incrementAndGet();
+                answers = state.provider.poll(batch);
+            } catch (Exception ex) {
+                LOG.error("exception while polling captchas", ex);
+                continue;
+            }
+
+            if (answers == null || answers.isEmpty()) {
+                continue;
+            }
+
+            synchronized (states) {
+                for (Map.Entry<String, Answer> entry : answers.entrySet()) {
+                    if (entry.getValue() == null) {
+                        continue;
+                    }
+                    Pending pending = state.pending.remove(entry.getKey());
+                    if (pending != null) {
+                        pending.future.complete(entry.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * captchas waiting for an answer
+     */
+    public int getPending() {
+        synchronized (states) {
+            return states.values().stream().mapToInt((state) -> state.pending.size()).sum();
+        }
+    }
+
+    /**
+     * status requests sent to the providers
+     */
+    public long getPolls() {
+        return polls.get();
+    }
+
+    @Override
+    public void close() {
+        synchronized (states) {
+            executor.shutdownNow();
+            for (ProviderState state : states.values()) {
+                for (Pending pending : state.pending.values()) {
+                    pending.future.complete(Answer.error(Captcha.Error.INTERRUPTED));
+                }
+            }
+            states.clear();
+        }
+    }
+
+}
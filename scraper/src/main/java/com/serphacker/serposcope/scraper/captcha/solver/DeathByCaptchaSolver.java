@@ -17,6 +17,7 @@ import com.serphacker.serposcope.scraper.http.ScrapClient;
 import com.serphacker.serposcope.scraper.http.proxy.HttpProxy;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -43,6 +44,27 @@ public class DeathByCaptchaSolver implements CaptchaSolver {
 
     AtomicInteger captchaCount = new AtomicInteger();
 
+    CaptchaBroker broker = CaptchaBroker.shared();
+    final CaptchaBroker.Provider poller = new CaptchaBroker.Provider() {
+
+        @Override
+        public long getPollingPauseMS() {
+            return POLLING_PAUSE_MS;
+        }
+
+        @Override
+        public Map<String, CaptchaBroker.Answer> poll(List<String> ids) throws Exception {
+            Map<String, CaptchaBroker.Answer> answers = new HashMap<>();
+            for (String id : ids) {
+                CaptchaBroker.Answer answer = pollAnswer(id);
+                if (answer != null) {
+                    answers.put(id, answer);
+                }
+            }
+            return answers;
+        }
+    };
+
     public DeathByCaptchaSolver(String login, String password) {
         this(login, password, DEFAULT_TIMEOUT_MS);
     }
@@ -58,6 +80,14 @@ public class DeathByCaptchaSolver implements CaptchaSolver {
         this.maxRetryOnOverload = maxRetryOnOverload;
     }
 
+    public CaptchaBroker getBroker() {
+        return broker;
+    }
+
+    public void setBroker(CaptchaBroker broker) {
+        this.broker = broker;
+    }
+
     public long getTimeoutMS() {
         return timeoutMS;
     }
@@ -200,41 +230,7 @@ public class DeathByCaptchaSolver implements CaptchaSolver {
             }
             cap.setId(captchaId);
 
-            long timeLimit = System.currentTimeMillis() + timeoutMS;
-            while (System.currentTimeMillis() < timeLimit) {
-
-                int status = http.get(location + "?" + random.nextInt(Integer.MAX_VALUE));
-                if (status == 200) {
-                    Map<String, String> answer = parseAnswer(http.getContentAsString());
-                    if (answer.get("text") != null && !answer.get("text").isEmpty()) {
-                        
-                        if (cap instanceof CaptchaImage) {
-                            ((CaptchaImage) cap).setResponse(answer.get("text"));
-                        }
-                        
-                        if(cap instanceof CaptchaRecaptcha){
-                            if("0".equals(answer.get("is_correct"))){
-                                cap.setError(Captcha.Error.SERVICE_OVERLOADED);
-                                cap.setStatus(Captcha.Status.ERROR);
-                                return false;
-                            }
-                            ((CaptchaRecaptcha) cap).setResponse(answer.get("text"));
-                        }
-                        
-                        cap.setStatus(Captcha.Status.SOLVED);
-                        return true;
-                    }
-                }
-
-                try {
-                    Thread.sleep(POLLING_PAUSE_MS);
-                } catch (InterruptedException ex) {
-                    break;
-                }
-            }
-
-            cap.setError(Captcha.Error.TIMEOUT);
-            cap.setStatus(Captcha.Status.ERROR);
+            return broker.waitFor(poller, cap, timeoutMS);
 
         } catch (IOException ex) {
             LOG.error("io exception", ex);
@@ -250,6 +246,26 @@ public class DeathByCaptchaSolver implements CaptchaSolver {
         return status == 0 || status >= 500 && status <= 599;
     }
 
+    /**
+     * the api has no batch status, null if not ready
+     */
+    protected CaptchaBroker.Answer pollAnswer(String captchaId) throws IOException {
+        try (ScrapClient http = new ScrapClient()) {
+            int status = http.get(apiUrl + "captcha/" + captchaId + "?" + random.nextInt(Integer.MAX_VALUE));
+            if (status != 200) {
+                return null;
+            }
+            Map<String, String> answer = parseAnswer(http.getContentAsString());
+            if (answer.get("text") == null || answer.get("text").isEmpty()) {
+                return null;
+            }
+            if ("0".equals(answer.get("is_correct"))) {
+                return CaptchaBroker.Answer.error(Captcha.Error.SERVICE_OVERLOADED);
+            }
+            return CaptchaBroker.Answer.solved(answer.get("text"));
+        }
+    }
+
     private final static Pattern pExtractId = Pattern.compile("([0-9]+)$");
 
     protected String extractId(String location) {
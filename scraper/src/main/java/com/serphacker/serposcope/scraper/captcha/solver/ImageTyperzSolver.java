@@ -16,6 +16,7 @@ import com.serphacker.serposcope.scraper.http.ScrapClient;
 import com.sun.org.apache.xerces.internal.impl.dv.util.Base64;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -38,6 +39,27 @@ public class ImageTyperzSolver implements CaptchaSolver {
 
     AtomicInteger captchaCount = new AtomicInteger();
 
+    CaptchaBroker broker = CaptchaBroker.shared();
+    final CaptchaBroker.Provider poller = new CaptchaBroker.Provider() {
+
+        @Override
+        public long getPollingPauseMS() {
+            return POLLING_PAUSE_MS;
+        }
+
+        @Override
+        public Map<String, CaptchaBroker.Answer> poll(List<String> ids) throws Exception {
+            Map<String, CaptchaBroker.Answer> answers = new HashMap<>();
+            for (String id : ids) {
+                CaptchaBroker.Answer answer = pollRecaptchaAnswer(id);
+                if (answer != null) {
+                    answers.put(id, answer);
+                }
+            }
+            return answers;
+        }
+    };
+
     public ImageTyperzSolver(String apiKey) {
         this(apiKey, DEFAULT_TIMEOUT_MS);
     }
@@ -68,6 +90,14 @@ public class ImageTyperzSolver implements CaptchaSolver {
         this.maxRetryOnOverload = maxRetryOnError;
     }
 
+    public CaptchaBroker getBroker() {
+        return broker;
+    }
+
+    public void setBroker(CaptchaBroker broker) {
+        this.broker = broker;
+    }
+
     public String getApiKey() {
         return apiKey;
     }
@@ -214,53 +244,47 @@ public class ImageTyperzSolver implements CaptchaSolver {
                 return false;
             }
 
-            Map<String, Object> retrieveResponse = new HashMap<>();
-            retrieveResponse.put("action", "GETTEXT");
-            retrieveResponse.put("token", apiKey);
-            retrieveResponse.put("captchaid", "" + captchaId);
+            return broker.waitFor(poller, captcha, timeoutMS);
 
-            long timeLimit = System.currentTimeMillis() + timeoutMS;
-            while (System.currentTimeMillis() < timeLimit) {
+        } catch (IOException ex) {
+            LOG.error("io exception", ex);
+            captcha.setError(EXCEPTION);
+        } finally {
+            captcha.setSolveDuration(System.currentTimeMillis() - started);
+        }
 
-                http.post("http://captchatypers.com/captchaapi/GetRecaptchaTextToken.ashx",
-                        retrieveResponse,
-                        PostType.URL_ENCODED);
+        return false;
+    }
 
-                String getTextResponse = http.getContentAsString();
-                if (getTextResponse == null) {
-                    captcha.setError(Captcha.Error.NETWORK_ERROR);
-                    return false;
-                }
+    /**
+     * the api has no batch status, null if not ready
+     */
+    protected CaptchaBroker.Answer pollRecaptchaAnswer(String captchaId) throws IOException {
+        Map<String, Object> retrieveResponse = new HashMap<>();
+        retrieveResponse.put("action", "GETTEXT");
+        retrieveResponse.put("token", apiKey);
+        retrieveResponse.put("captchaid", captchaId);
 
-                if (!getTextResponse.contains("NOT_DECODED")) {
-                    if (isError(getTextResponse)) {
-                        captcha.setError(errorCode(getTextResponse));
-                        return false;
-                    }
+        try (ScrapClient http = new ScrapClient()) {
+            http.post("http://captchatypers.com/captchaapi/GetRecaptchaTextToken.ashx",
+                    retrieveResponse,
+                    PostType.URL_ENCODED);
 
-                    captcha.setResponse(getTextResponse);
-                    captcha.setStatus(Captcha.Status.SOLVED);
-                    return true;
-                }
+            String getTextResponse = http.getContentAsString();
+            if (getTextResponse == null) {
+                return CaptchaBroker.Answer.error(Captcha.Error.NETWORK_ERROR);
+            }
 
-                try {
-                    Thread.sleep(POLLING_PAUSE_MS);
-                } catch (InterruptedException ex) {
-                    break;
-                }
+            if (getTextResponse.contains("NOT_DECODED")) {
+                return null;
             }
 
-            captcha.setError(Captcha.Error.TIMEOUT);
-            captcha.setStatus(Captcha.Status.ERROR);
+            if (isError(getTextResponse)) {
+                return CaptchaBroker.Answer.error(errorCode(getTextResponse));
+            }
 
-        } catch (IOException ex) {
-            LOG.error("io exception", ex);
-            captcha.setError(EXCEPTION);
-        } finally {
-            captcha.setSolveDuration(System.currentTimeMillis() - started);
+            return CaptchaBroker.Answer.solved(getTextResponse);
         }
-
-        return false;
     }
 
     boolean isError(String response) {
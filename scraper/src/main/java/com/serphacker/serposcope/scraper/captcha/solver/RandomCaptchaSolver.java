@@ -1,6 +1,6 @@
 /*
  * Serposcope - SEO rank checker https://serposcope.serphacker.com/
- * 
+ *
  * Copyright (c) 2016 SERP Hacker
  * @author Pierre Nogues <support@serphacker.com>
  * @license https://opensource.org/licenses/MIT MIT License
@@ -11,58 +11,278 @@ package com.serphacker.serposcope.scraper.captcha.solver;
 import com.serphacker.serposcope.scraper.captcha.Captcha;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-
+/**
+ * failover between several solvers, ranked by their observed success rate and latency.
+ *
+ * In hedged mode, when the current solver hasn't answered within the hedge percentile of its own solve durations,
+ * the captcha is also submitted to the next solver, the first answer wins and the other attempts are cancelled.
+ * A hedged captcha may be paid to several services, hedging is disabled by default.
+ * Solvers without history are tried in random order.
+ */
 public class RandomCaptchaSolver implements CaptchaSolver {
-    
+
     private static final Logger LOG = LoggerFactory.getLogger(RandomCaptchaSolver.class);
-    
+
+    public final static double DEFAULT_HEDGE_PERCENTILE = 0d;
+    public final static long DEFAULT_HEDGE_DELAY_MS = 60000l;
+    public final static int MIN_SAMPLES = 5;
+    public final static int MAX_SAMPLES = 100;
+
+    /**
+     * recent solve durations and success rate of a solver
+     */
+    static class SolverStats {
+
+        final long[] durations = new long[MAX_SAMPLES];
+        int samples;
+        int next;
+        long attempts;
+        long successes;
+
+        synchronized void record(boolean success, long durationMS) {
+            attempts++;
+            if (!success) {
+                return;
+            }
+            successes++;
+            durations[next] = durationMS;
+            next = (next + 1) % durations.length;
+            samples = Math.min(samples + 1, durations.length);
+        }
+
+        /**
+         * percentile of the successful solve durations, -1 without enough samples
+         */
+        synchronized long percentile(double percentile) {
+            if (samples < MIN_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(durations, samples);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * samples) - 1;
+            return sorted[Math.max(0, Math.min(samples - 1, index))];
+        }
+
+        /**
+         * expected successes per second, higher is better
+         */
+        synchronized double score() {
+            double successRate = (successes + 1d) / (attempts + 2d);
+            long median = percentile(0.5d);
+            return successRate * 1000d / (median < 0 ? DEFAULT_HEDGE_DELAY_MS : Math.max(1, median));
+        }
+    }
+
+    static class Attempt {
+
+        final CaptchaSolver solver;
+        final Captcha captcha;
+        final long started = System.currentTimeMillis();
+        volatile boolean solved;
+        volatile boolean cancelled;
+        Future<Attempt> future;
+
+        Attempt(CaptchaSolver solver, Captcha captcha) {
+            this.solver = solver;
+            this.captcha = captcha;
+        }
+    }
+
     LinkedList<CaptchaSolver> solvers;
-    
+    final Map<CaptchaSolver, SolverStats> stats = new IdentityHashMap<>();
+    double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    ExecutorService executor;
+
     AtomicInteger captchaCount=new AtomicInteger();
 
     public RandomCaptchaSolver(Collection<CaptchaSolver> solvers) {
         this.solvers = new LinkedList<>(solvers);
+        for (CaptchaSolver solver : this.solvers) {
+            stats.put(solver, new SolverStats());
+        }
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * percentile of the solve durations of a solver after which the next one is tried in parallel, 0 to disable
+     * hedging and try the solvers one after another
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * solvers by decreasing success rate per solve duration
+     */
+    protected List<CaptchaSolver> rank() {
+        ArrayList<CaptchaSolver> ranked = new ArrayList<>(solvers);
+        Collections.shuffle(ranked, ThreadLocalRandom.current());
+        Map<CaptchaSolver, Double> scores = new IdentityHashMap<>();
+        for (CaptchaSolver solver : ranked) {
+            scores.put(solver, stats.get(solver).score());
+        }
+        ranked.sort(Comparator.comparing((CaptchaSolver solver) -> scores.get(solver)).reversed());
+        return ranked;
+    }
+
+    /**
+     * delay before hedging an attempt of the solver
+     */
+    protected long getHedgeDelay(CaptchaSolver solver) {
+        long delay = stats.get(solver).percentile(hedgePercentile);
+        return delay < 0 ? DEFAULT_HEDGE_DELAY_MS : delay;
     }
 
     @Override
     public boolean solve(Captcha captcha) {
         captchaCount.incrementAndGet();
-        
-        ArrayList<CaptchaSolver> localSolvers = new ArrayList<>(solvers);
-        Collections.shuffle(localSolvers, ThreadLocalRandom.current());
-        
-        for (CaptchaSolver solver : localSolvers) {
+
+        List<CaptchaSolver> ranked = rank();
+        if (hedgePercentile <= 0 || ranked.size() < 2) {
+            return solveSequentially(captcha, ranked);
+        }
+        return solveHedged(captcha, ranked);
+    }
+
+    protected boolean solveSequentially(Captcha captcha, List<CaptchaSolver> ranked) {
+        for (CaptchaSolver solver : ranked) {
             captcha.setStatus(Captcha.Status.CREATED);
             captcha.setError(Captcha.Error.SUCCESS);
             LOG.info("trying {}", solver.getFriendlyName());
-            if(solver.solve(captcha)){
+            long started = System.currentTimeMillis();
+            boolean solved = solver.solve(captcha);
+            stats.get(solver).record(solved, System.currentTimeMillis() - started);
+            if(solved){
                 return true;
             }
             LOG.info("{} failed with {}", solver.getFriendlyName(), captcha.getError());
         }
-        
+
         LOG.info("all captcha solver failed");
         return false;
     }
-    
+
+    protected boolean solveHedged(Captcha captcha, List<CaptchaSolver> ranked) {
+        ExecutorCompletionService<Attempt> completion = new ExecutorCompletionService<>(getExecutor());
+        List<Attempt> attempts = new ArrayList<>();
+        Attempt lastLaunched = null;
+        Attempt lastFailed = null;
+        int next = 0;
+        int running = 0;
+
+        try {
+            while (running > 0 || next < ranked.size()) {
+                if (running == 0) {
+                    lastLaunched = launch(completion, attempts, ranked.get(next++), captcha);
+                    running++;
+                    continue;
+                }
+
+                Future<Attempt> done;
+                if (next < ranked.size()) {
+                    long remaining = lastLaunched.started + getHedgeDelay(lastLaunched.solver) - System.currentTimeMillis();
+                    done = completion.poll(Math.max(0, remaining), TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        LOG.info("{} is slow, hedging", lastLaunched.solver.getFriendlyName());
+                        lastLaunched = launch(completion, attempts, ranked.get(next++), captcha);
+                        running++;
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+
+                running--;
+                Attempt attempt = done.get();
+                if (attempt.solved) {
+                    captcha.setResult(attempt.captcha);
+                    return true;
+                }
+                LOG.info("{} failed with {}", attempt.solver.getFriendlyName(), attempt.captcha.getError());
+                lastFailed = attempt;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            captcha.setError(Captcha.Error.INTERRUPTED);
+            return false;
+        } catch (ExecutionException ex) {
+            LOG.error("captcha solver exception", ex);
+            captcha.setError(Captcha.Error.EXCEPTION);
+            return false;
+        } finally {
+            for (Attempt attempt : attempts) {
+                attempt.cancelled = true;
+                attempt.future.cancel(true);
+            }
+        }
+
+        if (lastFailed != null) {
+            captcha.setResult(lastFailed.captcha);
+        }
+        LOG.info("all captcha solver failed");
+        return false;
+    }
+
+    protected Attempt launch(ExecutorCompletionService<Attempt> completion, List<Attempt> attempts,
+        CaptchaSolver solver, Captcha captcha) {
+        LOG.info("trying {}", solver.getFriendlyName());
+        Attempt attempt = new Attempt(solver, captcha.copy());
+        attempt.future = completion.submit(() -> {
+            attempt.solved = solver.solve(attempt.captcha);
+            // an attempt cancelled by a faster solver says nothing about this one
+            if (!attempt.cancelled) {
+                stats.get(solver).record(attempt.solved, System.currentTimeMillis() - attempt.started);
+            }
+            return attempt;
+        });
+        attempts.add(attempt);
+        return attempt;
+    }
+
+    protected synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger threadId = new AtomicInteger();
+            executor = Executors.newCachedThreadPool((runnable) -> {
+                Thread thread = new Thread(runnable, "captcha-hedge-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
     @Override
     public boolean init() {
         if(solvers.isEmpty()){
             return false;
         }
-        
+
         LOG.info("solvers : [{}]", solvers.stream().map(CaptchaSolver::getFriendlyName).collect(Collectors.joining(",")));
         return true;
-    }    
+    }
 
     @Override
     public boolean reportIncorrect(Captcha captcha) {
@@ -70,7 +290,7 @@ public class RandomCaptchaSolver implements CaptchaSolver {
             LOG.warn("captcha.getLastSolver() return null");
             return false;
         }
-        
+
         return captcha.getLastSolver().reportIncorrect(captcha);
     }
 
@@ -91,6 +311,11 @@ public class RandomCaptchaSolver implements CaptchaSolver {
 
     @Override
     public void close() throws IOException {
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
         for (CaptchaSolver solver : solvers) {
             try {
                 solver.close();
@@ -99,7 +324,7 @@ public class RandomCaptchaSolver implements CaptchaSolver {
             }
         }
     }
-    
+
     @Override
     public boolean testLogin() {
         for (CaptchaSolver solver : solvers) {
@@ -108,8 +333,8 @@ public class RandomCaptchaSolver implements CaptchaSolver {
             }
         }
         return false;
-    }    
-    
+    }
+
     @Override
     public float getCredit() {
 //        return (float)solvers.stream().mapToDouble(CaptchaSolver::getCredit).sum();
@@ -125,9 +350,9 @@ public class RandomCaptchaSolver implements CaptchaSolver {
 //            }
 //        }
 //        return false;
-        
+
         LOG.warn("hasCredit() not implemented");
-        return false;        
-    }    
+        return false;
+    }
 
 }
@@ -19,6 +19,7 @@ import com.serphacker.serposcope.scraper.http.proxy.HttpProxy;
 import com.sun.org.apache.xerces.internal.impl.dv.util.Base64;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -39,6 +40,7 @@ public class TwoCaptchaSolver implements CaptchaSolver {
 
     public final static long POLLING_PAUSE_MS = 2500l;
     public final static long DEFAULT_TIMEOUT_MS = 180000l;
+    public final static int MAX_POLLED_IDS = 100;
 
     private String apiUrl = "http://2captcha.com/";
     private String apiKey;
@@ -48,6 +50,25 @@ public class TwoCaptchaSolver implements CaptchaSolver {
 
     AtomicInteger captchaCount = new AtomicInteger();
 
+    CaptchaBroker broker = CaptchaBroker.shared();
+    final CaptchaBroker.Provider poller = new CaptchaBroker.Provider() {
+
+        @Override
+        public long getPollingPauseMS() {
+            return POLLING_PAUSE_MS;
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return MAX_POLLED_IDS;
+        }
+
+        @Override
+        public Map<String, CaptchaBroker.Answer> poll(List<String> ids) throws Exception {
+            return pollAnswers(ids);
+        }
+    };
+
     public TwoCaptchaSolver(String apiKey) {
         this(apiKey, DEFAULT_TIMEOUT_MS);
     }
@@ -86,6 +107,14 @@ public class TwoCaptchaSolver implements CaptchaSolver {
         this.apiUrl = apiUrl;
     }
 
+    public CaptchaBroker getBroker() {
+        return broker;
+    }
+
+    public void setBroker(CaptchaBroker broker) {
+        this.broker = broker;
+    }
+
     public String getApiKey() {
         return apiKey;
     }
@@ -176,48 +205,7 @@ public class TwoCaptchaSolver implements CaptchaSolver {
 
             captcha.setId(response.substring(3));
 
-            long timeLimit = System.currentTimeMillis() + timeoutMS;
-            while (System.currentTimeMillis() < timeLimit) {
-
-                int status = http.get(apiUrl + "res.php?key=" + apiKey +
-                        "&action=get" +
-                        "&id=" + captcha.getId() +
-                        "&random=" + random.nextInt(Integer.MAX_VALUE));
-
-                String res = http.getContentAsString();
-                if (res == null) {
-                    captcha.setError(Captcha.Error.NETWORK_ERROR);
-                    return false;
-                }
-
-                if (!"CAPCHA_NOT_READY".equals(res)) {
-                    if (res.startsWith("OK|") && !res.substring(3).isEmpty()) {
-
-                        if (captcha instanceof CaptchaRecaptcha) {
-                            ((CaptchaRecaptcha) captcha).setResponse(res.substring(3));
-                        }
-
-                        if (captcha instanceof CaptchaImage) {
-                            ((CaptchaImage) captcha).setResponse(res.substring(3));
-                        }
-                        captcha.setStatus(Captcha.Status.SOLVED);
-                        return true;
-                    }
-
-                    captcha.setError(Captcha.Error.NETWORK_ERROR);
-                    captcha.setStatus(Captcha.Status.ERROR);
-                    return false;
-                }
-
-                try {
-                    Thread.sleep(POLLING_PAUSE_MS);
-                } catch (InterruptedException ex) {
-                    break;
-                }
-            }
-
-            captcha.setError(Captcha.Error.TIMEOUT);
-            captcha.setStatus(Captcha.Status.ERROR);
+            return broker.waitFor(poller, captcha, timeoutMS);
 
         } catch (IOException ex) {
             LOG.error("io exception", ex);
@@ -229,6 +217,50 @@ public class TwoCaptchaSolver implements CaptchaSolver {
         return false;
     }
 
+    /**
+     * status of several captchas with a single request, answers are separated by a pipe in the order of the ids
+     */
+    protected Map<String, CaptchaBroker.Answer> pollAnswers(List<String> ids) throws IOException {
+        try (ScrapClient http = new ScrapClient()) {
+            http.get(apiUrl + "res.php?key=" + apiKey +
+                    "&action=get" +
+                    "&ids=" + String.join(",", ids) +
+                    "&random=" + random.nextInt(Integer.MAX_VALUE));
+            return parseAnswers(ids, http.getContentAsString());
+        }
+    }
+
+    /**
+     * a failed request leaves all the ids pending, they are polled again until their own deadline,
+     * an id only fails on its own error answer
+     */
+    protected Map<String, CaptchaBroker.Answer> parseAnswers(List<String> ids, String res) {
+        Map<String, CaptchaBroker.Answer> answers = new HashMap<>();
+        if (res == null || res.isEmpty()) {
+            LOG.debug("no res.php answer for {} ids", ids.size());
+            return answers;
+        }
+
+        String[] results = res.split("\\|", -1);
+        if (results.length != ids.size()) {
+            LOG.debug("invalid res.php answer for {} ids : \"{}\"", ids.size(), res);
+            return answers;
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            String result = results[i];
+            if (result.isEmpty() || "CAPCHA_NOT_READY".equals(result)) {
+                continue;
+            }
+            if (result.startsWith("ERROR_")) {
+                answers.put(ids.get(i), CaptchaBroker.Answer.error(Captcha.Error.NETWORK_ERROR));
+            } else {
+                answers.put(ids.get(i), CaptchaBroker.Answer.solved(result));
+            }
+        }
+        return answers;
+    }
+
     public boolean isRetryable(String response) {
         boolean retryable = response == null || response.toUpperCase().contains("ERROR_NO_SLOT_AVAILABLE");
         // LOG.debug("isRetryable ? {} - {}", retryable, response);
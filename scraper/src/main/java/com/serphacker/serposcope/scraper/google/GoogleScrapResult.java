@@ -25,6 +25,10 @@ public class GoogleScrapResult {
     public List<String> urls;
     public int captchas;
     public long googleResults;
+    /**
+     * pagination stopped before the last page because the stop condition of the search held
+     */
+    public boolean partial;
 
     public GoogleScrapResult() {
     }
@@ -54,6 +58,7 @@ public class GoogleScrapResult {
         hash = 73 * hash + Objects.hashCode(this.urls);
         hash = 73 * hash + this.captchas;
         hash = 73 * hash + (int) (this.googleResults ^ (this.googleResults >>> 32));
+        hash = 73 * hash + (this.partial ? 1 : 0);
         return hash;
     }
 
@@ -75,6 +80,9 @@ public class GoogleScrapResult {
         if (this.googleResults != other.googleResults) {
             return false;
         }
+        if (this.partial != other.partial) {
+            return false;
+        }
         if (this.status != other.status) {
             return false;
         }
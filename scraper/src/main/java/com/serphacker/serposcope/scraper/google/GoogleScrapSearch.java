@@ -7,8 +7,10 @@
  */
 package com.serphacker.serposcope.scraper.google;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Random;
+import java.util.function.Predicate;
 
 
 public class GoogleScrapSearch {
@@ -28,6 +30,7 @@ public class GoogleScrapSearch {
     GoogleDevice device = GoogleDevice.DESKTOP;
     String local;
     String customParameters;
+    Predicate<List<String>> stopCondition;
 
     public int getResultPerPage() {
         return resultPerPage;
@@ -93,6 +96,18 @@ public class GoogleScrapSearch {
         this.customParameters = customParameters;
     }
     
+    /**
+     * tested on the urls scraped so far after each page, the scrap ends early with a partial result when it holds,
+     * null to fetch all the pages
+     */
+    public Predicate<List<String>> getStopCondition() {
+        return stopCondition;
+    }
+
+    public void setStopCondition(Predicate<List<String>> stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+    
     public void setPagePauseMS(long minMs, long maxMs){
         if(minMs > maxMs){
             throw new IllegalArgumentException("minMs > maxMs");
@@ -16,6 +16,7 @@ import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
 import com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status;
 import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
 import com.serphacker.serposcope.scraper.google.scraper.strategy.DefaultSerpParsingStrategy;
+import com.serphacker.serposcope.scraper.google.scraper.strategy.ParsedSerp;
 import com.serphacker.serposcope.scraper.google.scraper.strategy.SerpParsingStrategy;
 import com.serphacker.serposcope.scraper.http.PostType;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
@@ -67,6 +68,7 @@ public class GoogleScraper {
     Random random = new Random();
 
     Document lastSerpHtml = null;
+    ParsedSerp lastParsedSerp = null;
     int captchas = 0;
 
     public GoogleScraper(ScrapClient client, CaptchaSolver solver) {
@@ -87,64 +89,126 @@ public class GoogleScraper {
         this.parsingStrategy = parsingStrategy == null ? new DefaultSerpParsingStrategy() : parsingStrategy;
     }
 
+    /**
+     * progress of a scrap fetched page by page, see {@link #startScrap(GoogleScrapSearch)}
+     */
+    public static class ScrapState {
+
+        final GoogleScrapSearch search;
+        final String referrer;
+        final List<String> urls = new ArrayList<>();
+        int page = 0;
+        long resultsNumber = 0;
+        GoogleScrapResult result;
+
+        public ScrapState(GoogleScrapSearch search, String referrer) {
+            this.search = search;
+            this.referrer = referrer;
+        }
+
+        public GoogleScrapSearch getSearch() {
+            return search;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        /**
+         * null until the last page has been scraped
+         */
+        public GoogleScrapResult getResult() {
+            return result;
+        }
+
+        public void setResult(GoogleScrapResult result) {
+            this.result = result;
+        }
+
+    }
+
     public GoogleScrapResult scrap(GoogleScrapSearch search) throws InterruptedException {
+        ScrapState state = startScrap(search);
+        while (scrapPage(state)) {
+            long pause = search.getRandomPagePauseMS();
+            if (pause > 0) {
+                LOG.trace("sleeping {} milliseconds", pause);
+                Thread.sleep(pause);
+            }
+        }
+        return state.result;
+    }
+
+    /**
+     * prepare a scrap to be fetched page by page with {@link #scrapPage(ScrapState)}, letting the caller
+     * handle the pause between pages
+     */
+    public ScrapState startScrap(GoogleScrapSearch search) {
         lastSerpHtml = null;
+        lastParsedSerp = null;
         captchas = 0;
-        List<String> urls = new ArrayList<>();
         prepareHttpClient(search);
-        long resultsNumber = 0;
+        return new ScrapState(search, "https://" + buildHost(search) + "/");
+    }
 
-        String referrer = "https://" + buildHost(search) + "/";
-        for (int page = 0; page < search.getPages(); page++) {
+    /**
+     * fetch the next page of the scrap
+     * @return true if another page must be fetched after a pause, false when the result is set
+     */
+    public boolean scrapPage(ScrapState state) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
 
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
+        GoogleScrapSearch search = state.search;
+        int page = state.page;
+        if (page >= search.getPages()) {
+            state.result = new GoogleScrapResult(Status.OK, state.urls, captchas, state.resultsNumber);
+            return false;
+        }
 
-            String url = buildRequestUrl(search, page);
+        String url = buildRequestUrl(search, page);
 
-            Status status = null;
-            for (int retry = 0; retry < maxRetry; retry++) {
+        Status status = null;
+        for (int retry = 0; retry < maxRetry; retry++) {
 
-                LOG.debug("GET {} via {} try {}", url, http.getProxy() == null ? new DirectNoProxy() : http.getProxy(),
-                        retry + 1);
+            LOG.debug("GET {} via {} try {}", url, http.getProxy() == null ? new DirectNoProxy() : http.getProxy(),
+                    retry + 1);
 
-                status = downloadSerp(url, referrer, search, retry);
+            status = downloadSerp(url, state.referrer, search, retry);
+            if (status == Status.OK) {
+                status = parseSerp(state.urls);
                 if (status == Status.OK) {
-                    status = parseSerp(urls);
-                    if (status == Status.OK) {
-                        break;
-                    }
-                }
-
-                if (!isRetryableStatus(status)) {
                     break;
                 }
             }
 
-            if (status != Status.OK) {
-                return new GoogleScrapResult(status, urls, captchas);
+            if (!isRetryableStatus(status)) {
+                break;
             }
+        }
 
-            if (page == 0) {
-                resultsNumber = parseResultsNumberOnFirstPage();
-            }
+        if (status != Status.OK) {
+            state.result = new GoogleScrapResult(status, state.urls, captchas);
+            return false;
+        }
 
-            if (!hasNextPage()) {
-                break;
-            }
+        if (page == 0) {
+            state.resultsNumber = parseResultsNumberOnFirstPage();
+        }
 
-            long pause = search.getRandomPagePauseMS();
-            if (pause > 0) {
-                try {
-                    LOG.trace("sleeping {} milliseconds", pause);
-                    Thread.sleep(pause);
-                } catch (InterruptedException ex) {
-                    throw ex;
-                }
-            }
+        if (!hasNextPage() || ++state.page >= search.getPages()) {
+            state.result = new GoogleScrapResult(Status.OK, state.urls, captchas, state.resultsNumber);
+            return false;
+        }
+
+        if (search.getStopCondition() != null && search.getStopCondition().test(state.urls)) {
+            LOG.debug("stop condition met after page {} of {}", page + 1, search.getPages());
+            state.result = new GoogleScrapResult(Status.OK, state.urls, captchas, state.resultsNumber);
+            state.result.partial = true;
+            return false;
         }
-        return new GoogleScrapResult(Status.OK, urls, captchas, resultsNumber);
+        return true;
     }
 
     protected void prepareHttpClient(GoogleScrapSearch search) {
@@ -203,21 +267,13 @@ public class GoogleScraper {
     }
 
     protected Status parseSerp(List<String> urls) {
-        String html = http.getContentAsString();
-        if (html == null || html.isEmpty()) {
-            return Status.ERROR_NETWORK;
-        }
-
-        lastSerpHtml = Jsoup.parse(html);
-        if (lastSerpHtml == null) {
-            return Status.ERROR_NETWORK;
-        }
-
-        return parsingStrategy.parse(lastSerpHtml, urls);
+        lastParsedSerp = parsingStrategy.parse(http, urls);
+        lastSerpHtml = lastParsedSerp.getDocument();
+        return lastParsedSerp.getStatus();
     }
 
     protected long parseResultsNumberOnFirstPage() {
-        return parsingStrategy.parseResultsCount(lastSerpHtml);
+        return lastParsedSerp == null ? 0 : lastParsedSerp.getResultsCount();
     }
 
     protected long extractResultsNumber(String html) {
@@ -225,7 +281,7 @@ public class GoogleScraper {
     }
 
     protected boolean hasNextPage() {
-        return parsingStrategy.hasNextPage(lastSerpHtml);
+        return lastParsedSerp != null && lastParsedSerp.hasNextPage();
     }
 
     protected String buildRequestUrl(GoogleScrapSearch search, int page) {
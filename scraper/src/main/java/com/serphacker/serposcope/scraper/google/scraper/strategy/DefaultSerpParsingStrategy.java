@@ -165,7 +165,10 @@ public class DefaultSerpParsingStrategy implements SerpParsingStrategy {
             return null;
         }
 
-        String attr = element.attr("href");
+        return extractLink(element.attr("href"));
+    }
+
+    protected String extractLink(String attr) {
         if (attr == null) {
             return null;
         }
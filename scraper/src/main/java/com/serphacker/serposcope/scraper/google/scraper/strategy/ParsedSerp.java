@@ -0,0 +1,56 @@
+package com.serphacker.serposcope.scraper.google.scraper.strategy;
+
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status;
+import com.serphacker.serposcope.scraper.http.ScraperHttpClient;
+import org.jsoup.nodes.Document;
+
+/**
+ * everything extracted from a serp by {@link SerpParsingStrategy#parse(ScraperHttpClient, java.util.List)}
+ */
+public class ParsedSerp {
+
+    final Status status;
+    final long resultsCount;
+    final boolean nextPage;
+    final Document document;
+    final SerpParsingStrategy strategy;
+
+    public ParsedSerp(Status status, long resultsCount, boolean nextPage) {
+        this.status = status;
+        this.resultsCount = resultsCount;
+        this.nextPage = nextPage;
+        this.document = null;
+        this.strategy = null;
+    }
+
+    /**
+     * serp parsed to a DOM, the results count and the next page flag are read from the document when asked
+     */
+    public ParsedSerp(Status status, Document document, SerpParsingStrategy strategy) {
+        this.status = status;
+        this.resultsCount = 0;
+        this.nextPage = false;
+        this.document = document;
+        this.strategy = strategy;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getResultsCount() {
+        return document == null ? resultsCount : strategy.parseResultsCount(document);
+    }
+
+    public boolean hasNextPage() {
+        return document == null ? nextPage : strategy.hasNextPage(document);
+    }
+
+    /**
+     * null if the serp was not parsed to a DOM
+     */
+    public Document getDocument() {
+        return document;
+    }
+
+}
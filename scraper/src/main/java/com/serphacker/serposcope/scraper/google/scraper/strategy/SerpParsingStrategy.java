@@ -1,11 +1,31 @@
 package com.serphacker.serposcope.scraper.google.scraper.strategy;
 
 import com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status;
+import com.serphacker.serposcope.scraper.http.ScraperHttpClient;
 import java.util.List;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 public interface SerpParsingStrategy {
 
+    /**
+     * parses the last response of the client, by default the page is decoded and parsed to a DOM then handed to
+     * the {@link Document} based methods
+     */
+    default ParsedSerp parse(ScraperHttpClient http, List<String> urls) {
+        String html = http.getContentAsString();
+        if (html == null || html.isEmpty()) {
+            return new ParsedSerp(Status.ERROR_NETWORK, 0, false);
+        }
+
+        Document document = Jsoup.parse(html);
+        if (document == null) {
+            return new ParsedSerp(Status.ERROR_NETWORK, 0, false);
+        }
+
+        return new ParsedSerp(parse(document, urls), document, this);
+    }
+
     Status parse(Document document, List<String> urls);
 
     long parseResultsCount(Document document);
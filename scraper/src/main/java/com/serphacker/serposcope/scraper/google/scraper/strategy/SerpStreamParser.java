@@ -0,0 +1,1292 @@
+package com.serphacker.serposcope.scraper.google.scraper.strategy;
+
+import com.serphacker.serposcope.scraper.http.ByteCharSequence;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.jsoup.nodes.Entities;
+
+/**
+ * single pass html tokenizer feeding a minimal tree builder which only keeps the stack of open elements.
+ *
+ * Follows the jsoup tokenizer states and the "in body" tree construction rules (implied end tags, scopes,
+ * void, raw text and table elements) so the element tree seen here is the one jsoup would build for serps.
+ * The adoption agency, the reconstruction of formatting elements and foster parenting are approximated.
+ * Attribute values are kept as offsets in the buffer and only decoded, with the charset of the page, when an url
+ * is extracted.
+ * not thread safe, one instance per page
+ */
+class SerpStreamParser {
+
+    static class Value {
+        final int start;
+        final int end;
+        final byte quote;
+
+        Value(int start, int end, byte quote) {
+            this.start = start;
+            this.end = end;
+            this.quote = quote;
+        }
+    }
+
+    static class Link {
+        Value href;
+        boolean firstChildImg;
+    }
+
+    static class Heading {
+        Value parentHref;
+        boolean parentIsLink;
+        boolean inRes;
+        boolean inMain;
+        boolean siteLink;
+        boolean firstLinkSet;
+        Link firstLink;
+    }
+
+    /**
+     * attributes the tree builder cares about
+     */
+    static class Attributes {
+        Value href;
+        String id;
+        boolean siteLinkClass;
+        boolean navendClass;
+
+        void clear() {
+            href = null;
+            id = null;
+            siteLinkClass = false;
+            navendClass = false;
+        }
+
+        Attributes copy() {
+            Attributes copy = new Attributes();
+            copy.href = href;
+            copy.id = id;
+            copy.siteLinkClass = siteLinkClass;
+            copy.navendClass = navendClass;
+            return copy;
+        }
+    }
+
+    /**
+     * entry of the list of active formatting elements, a null tag is a marker
+     */
+    static class Formatting {
+        final String tag;
+        final Attributes attributes;
+        int seq;
+
+        Formatting(String tag, Attributes attributes, int seq) {
+            this.tag = tag;
+            this.attributes = attributes;
+            this.seq = seq;
+        }
+    }
+
+    static class Frame {
+        String tag;
+        int seq;
+        int index;
+        int childCount;
+        Value href;
+        boolean idMain;
+        boolean inRes;
+        boolean inMain;
+        boolean inFooter;
+        boolean inStats;
+        boolean siteLinkScope;
+        boolean footerLink;
+        char lastChar;
+        Heading heading;
+        Link link;
+    }
+
+    final static Set<String> VOID = set("area", "base", "basefont", "bgsound", "br", "command", "embed", "hr", "img",
+        "input", "keygen", "link", "meta", "param", "source", "track", "wbr");
+    final static Set<String> RAW_TEXT = set("script", "style", "xmp", "iframe", "noembed", "noframes");
+    final static Set<String> RC_DATA = set("title", "textarea");
+    final static Set<String> HEADINGS = set("h1", "h2", "h3", "h4", "h5", "h6");
+    final static Set<String> CLOSE_P = set("address", "article", "aside", "blockquote", "center", "details", "dir",
+        "div", "dl", "fieldset", "figcaption", "figure", "footer", "header", "hgroup", "menu", "nav", "ol", "p",
+        "section", "summary", "ul", "pre", "listing", "form", "table", "hr", "xmp", "plaintext",
+        "h1", "h2", "h3", "h4", "h5", "h6", "li", "dd", "dt");
+    final static Set<String> BLOCK_END = set("address", "article", "aside", "blockquote", "button", "center",
+        "details", "dir", "div", "dl", "fieldset", "figcaption", "figure", "footer", "header", "hgroup", "listing",
+        "menu", "nav", "ol", "pre", "section", "summary", "ul", "applet", "marquee", "object");
+    final static Set<String> FORMATTING = set("a", "b", "big", "code", "em", "font", "i", "nobr", "s", "small",
+        "strike", "strong", "tt", "u");
+    final static Set<String> IMPLIED_END = set("dd", "dt", "li", "option", "optgroup", "p", "rp", "rt");
+    final static Set<String> SPECIAL = set("address", "applet", "area", "article", "aside", "base", "basefont",
+        "bgsound", "blockquote", "body", "br", "button", "caption", "center", "col", "colgroup", "command", "dd",
+        "details", "dir", "div", "dl", "dt", "embed", "fieldset", "figcaption", "figure", "footer", "form", "frame",
+        "frameset", "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hgroup", "hr", "html", "iframe", "img",
+        "input", "isindex", "li", "link", "listing", "marquee", "menu", "meta", "nav", "noembed", "noframes",
+        "noscript", "ol", "p", "param", "plaintext", "pre", "script", "section", "select", "style", "summary",
+        "table", "tbody", "td", "textarea", "tfoot", "th", "thead", "title", "tr", "ul", "wbr", "xmp");
+    final static Set<String> SCOPE = set("applet", "caption", "html", "table", "td", "th", "marquee", "object");
+    final static Set<String> TABLE_SECTIONS = set("tbody", "thead", "tfoot");
+    final static Set<String> MARKERS = set("applet", "marquee", "object", "td", "th", "caption");
+    final static Set<String> RECONSTRUCT = set("area", "br", "embed", "img", "keygen", "wbr", "input", "select",
+        "option", "optgroup", "xmp");
+    final static Set<String> NO_RECONSTRUCT = set("param", "source", "track", "hr", "base", "basefont", "bgsound",
+        "command", "link", "meta", "noframes", "script", "style", "title", "textarea", "iframe", "noembed", "rp", "rt");
+    final static Set<String> TABLE_CONTEXT = set("table", "tbody", "thead", "tfoot", "tr");
+    final static Set<String> NOT_FOSTERED = set("table", "tbody", "thead", "tfoot", "tr", "td", "th", "caption",
+        "colgroup", "col", "script", "style", "form");
+    final static Set<String> IGNORED = set("html", "head", "body", "frameset", "frame", "isindex");
+
+    final static String[] LIST_SCOPE = {"ol", "ul"};
+    final static String[] BUTTON_SCOPE = {"button"};
+
+    final ByteCharSequence buf;
+    final Charset charset;
+    final int length;
+
+    final String[] names = new String[512];
+    Frame[] stack = new Frame[64];
+    int depth;
+    int seq;
+    int rootChildCount;
+    int footerLinks;
+    int pendingHeadings;
+    boolean formOpen;
+
+    final List<Formatting> formatting = new ArrayList<>();
+
+    // the tag being parsed
+    String tagName;
+    int nameEnd;
+    boolean selfClosing;
+    final Attributes attributes = new Attributes();
+
+    // output
+    final List<Heading> headings = new ArrayList<>();
+    final List<Link> mainLinks = new ArrayList<>();
+    boolean resFound;
+    boolean mainFound;
+    boolean statsFound;
+    StringBuilder resultStats;
+    boolean nextLink;
+    int navends;
+    int lastNavend = -1;
+    boolean lastNavendFirstLink;
+    boolean footerNextLink;
+
+    /**
+     * the charset must be ascii compatible, markup is matched byte per byte
+     */
+    SerpStreamParser(ByteCharSequence buf, Charset charset) {
+        this.buf = buf;
+        this.charset = charset;
+        this.length = buf.length();
+    }
+
+    boolean hasNextPage() {
+        return nextLink || (navends > 1 && lastNavendFirstLink) || footerNextLink;
+    }
+
+    void parse() {
+        int pos = 0;
+        int textStart = 0;
+        while (pos < length) {
+            if (buf.byteAt(pos) != '<') {
+                ++pos;
+                continue;
+            }
+            text(textStart, pos, true);
+            textStart = pos;
+            int next = tag(pos);
+            if (next < 0) {
+                ++pos;
+                continue;
+            }
+            pos = textStart = next;
+
+            if (tagName != null && depth > 0 && stack[depth - 1].tag == tagName) {
+                boolean rcdata = RC_DATA.contains(tagName);
+                if (rcdata || RAW_TEXT.contains(tagName)) {
+                    int end = rawTextEnd(pos, tagName);
+                    if (rcdata) {
+                        text(pos, end, false);
+                    }
+                    pos = textStart = end;
+                }
+            }
+            tagName = null;
+        }
+        text(textStart, length, true);
+
+        while (depth > 0) {
+            pop();
+        }
+    }
+
+    /**
+     * @return position after the markup starting at pos, -1 if the '<' is plain text
+     */
+    int tag(int pos) {
+        int p = pos + 1;
+        if (p >= length) {
+            return -1;
+        }
+        byte c = buf.byteAt(p);
+        if (c == '!') {
+            if (startsWith(p + 1, "--")) {
+                return commentEnd(p + 3);
+            }
+            return indexOf('>', p + 1) + 1;
+        }
+        if (c == '?') {
+            return indexOf('>', p + 1) + 1;
+        }
+        if (c == '/') {
+            ++p;
+            if (p >= length) {
+                return -1;
+            }
+            c = buf.byteAt(p);
+            if (c == '>') {
+                return p + 1;
+            }
+            if (!isLetter(c)) {
+                return indexOf('>', p) + 1;
+            }
+            String name = tagName(p);
+            p = attributes(nameEnd);
+            if (p < 0) {
+                return length;
+            }
+            endTag(name);
+            return p;
+        }
+        if (!isLetter(c)) {
+            return -1;
+        }
+
+        String name = tagName(p);
+        attributes.clear();
+        selfClosing = false;
+        p = attributes(nameEnd);
+        if (p < 0) {
+            return length;
+        }
+        tagName = startTag(name);
+        return p;
+    }
+
+    int commentEnd(int p) {
+        if (p < length && buf.byteAt(p) == '>') {
+            return p + 1;
+        }
+        if (p + 1 < length && buf.byteAt(p) == '-' && buf.byteAt(p + 1) == '>') {
+            return p + 2;
+        }
+        for (int i = p; i + 2 < length; i++) {
+            if (buf.byteAt(i) == '-' && buf.byteAt(i + 1) == '-') {
+                if (buf.byteAt(i + 2) == '>') {
+                    return i + 3;
+                }
+                if (buf.byteAt(i + 2) == '!' && i + 3 < length && buf.byteAt(i + 3) == '>') {
+                    return i + 4;
+                }
+            }
+        }
+        return length;
+    }
+
+    int rawTextEnd(int p, String name) {
+        int len = name.length();
+        for (int i = p; i + len + 1 < length; i++) {
+            if (buf.byteAt(i) == '<' && buf.byteAt(i + 1) == '/' && matchesIgnoreCase(i + 2, name)) {
+                int after = i + 2 + len;
+                if (after >= length || isWhitespace(buf.byteAt(after)) || buf.byteAt(after) == '/' || buf.byteAt(after) == '>') {
+                    return i;
+                }
+            }
+        }
+        return length;
+    }
+
+    String tagName(int p) {
+        int end = p;
+        int hash = 0;
+        while (end < length) {
+            byte c = buf.byteAt(end);
+            if (isWhitespace(c) || c == '/' || c == '>' || c == 0) {
+                break;
+            }
+            hash = 31 * hash + lower(c);
+            ++end;
+        }
+
+        nameEnd = end;
+        int slot = (hash ^ (hash >>> 16)) & (names.length - 1);
+        String name = names[slot];
+        if (name == null || !matchesIgnoreCase(p, end, name)) {
+            name = buf.toString(p, end, charset).toLowerCase().intern();
+            names[slot] = name;
+        }
+        return name;
+    }
+
+    /**
+     * parse the attributes up to the end of the tag
+     * @return position after the tag, -1 on eof
+     */
+    int attributes(int p) {
+        while (true) {
+            while (p < length && isWhitespace(buf.byteAt(p))) {
+                ++p;
+            }
+            if (p >= length) {
+                return -1;
+            }
+
+            byte c = buf.byteAt(p);
+            if (c == '>') {
+                return p + 1;
+            }
+            if (c == '/') {
+                if (p + 1 < length && buf.byteAt(p + 1) == '>') {
+                    selfClosing = true;
+                    return p + 2;
+                }
+                ++p;
+                continue;
+            }
+
+            int nameStart = p++;
+            while (p < length && !isWhitespace(buf.byteAt(p)) && buf.byteAt(p) != '/' && buf.byteAt(p) != '=' && buf.byteAt(p) != '>') {
+                ++p;
+            }
+            int nameEnd = p;
+            while (p < length && isWhitespace(buf.byteAt(p))) {
+                ++p;
+            }
+
+            Value value = null;
+            if (p < length && buf.byteAt(p) == '=') {
+                ++p;
+                while (p < length && isWhitespace(buf.byteAt(p))) {
+                    ++p;
+                }
+                if (p >= length) {
+                    return -1;
+                }
+                c = buf.byteAt(p);
+                if (c == '"' || c == '\'') {
+                    int end = indexOf(c, p + 1);
+                    if (end < 0) {
+                        return -1;
+                    }
+                    value = new Value(p + 1, end, c);
+                    p = end + 1;
+                } else if (c != '>') {
+                    int start = p;
+                    while (p < length && !isWhitespace(buf.byteAt(p)) && buf.byteAt(p) != '>') {
+                        ++p;
+                    }
+                    value = new Value(start, p, (byte) '>');
+                }
+            }
+            attribute(nameStart, nameEnd, value);
+        }
+    }
+
+    void attribute(int nameStart, int nameEnd, Value value) {
+        int len = nameEnd - nameStart;
+        if (len == 4 && matchesIgnoreCase(nameStart, nameEnd, "href")) {
+            attributes.href = value == null ? new Value(nameEnd, nameEnd, (byte) 0) : value;
+        } else if (len == 2 && matchesIgnoreCase(nameStart, nameEnd, "id")) {
+            attributes.id = value == null ? "" : attribute(value);
+        } else if (len == 5 && matchesIgnoreCase(nameStart, nameEnd, "class")) {
+            attributes.siteLinkClass = false;
+            attributes.navendClass = false;
+            if (value != null) {
+                classes(value.start, value.end);
+            }
+        }
+    }
+
+    void classes(int start, int end) {
+        int p = start;
+        while (p < end) {
+            while (p < end && isWhitespace(buf.byteAt(p))) {
+                ++p;
+            }
+            int classStart = p;
+            while (p < end && !isWhitespace(buf.byteAt(p))) {
+                ++p;
+            }
+            if (matchesIgnoreCase(classStart, p, "mslg") || matchesIgnoreCase(classStart, p, "nrg")
+                || matchesIgnoreCase(classStart, p, "nrgw")) {
+                attributes.siteLinkClass = true;
+            } else if (matchesIgnoreCase(classStart, p, "navend")) {
+                attributes.navendClass = true;
+            }
+        }
+    }
+
+    /**
+     * tree construction for a start tag
+     * @return the tag name if an element has been pushed (raw text content may follow)
+     */
+    String startTag(String name) {
+        if (IGNORED.contains(name) || "caption".equals(name) || "colgroup".equals(name) || "col".equals(name)) {
+            if (!IGNORED.contains(name) && inTableScope("table")) {
+                if ("col".equals(name)) {
+                    clearToContext("table", "colgroup");
+                    if (top().tag != "colgroup") {
+                        open("colgroup", null);
+                    }
+                    openEmpty(name);
+                    return null;
+                }
+                clearToContext("table");
+                return push(name);
+            }
+            return null;
+        }
+
+        if ("tr".equals(name) || "td".equals(name) || "th".equals(name) || TABLE_SECTIONS.contains(name)) {
+            if (!inTableScope("table")) {
+                return null;
+            }
+            if (TABLE_SECTIONS.contains(name)) {
+                clearToContext("table");
+                return push(name);
+            }
+            if ("tr".equals(name)) {
+                clearToContext("table", "tbody", "thead", "tfoot");
+                if (top().tag == "table") {
+                    open("tbody", null);
+                }
+                return push(name);
+            }
+            clearToContext("table", "tbody", "thead", "tfoot", "tr");
+            if (top().tag == "table") {
+                open("tbody", null);
+            }
+            if (top().tag != "tr") {
+                open("tr", null);
+            }
+            return push(name);
+        }
+
+        if ("image".equals(name)) {
+            name = "img";
+        }
+
+        if ("li".equals(name)) {
+            closeListItem("li");
+        } else if ("dd".equals(name) || "dt".equals(name)) {
+            closeListItem("dd", "dt");
+        }
+
+        if (CLOSE_P.contains(name)) {
+            if ("form".equals(name) && formOpen) {
+                return null;
+            }
+            closeParagraph();
+            if (HEADINGS.contains(name) && depth > 0 && HEADINGS.contains(top().tag)) {
+                pop();
+            }
+            if ("form".equals(name)) {
+                formOpen = true;
+            }
+        } else if ("a".equals(name)) {
+            Formatting open = activeFormatting(name);
+            if (open != null) {
+                adoption(name);
+                remove(stackIndexOf(open.seq));
+                formatting.remove(open);
+            }
+        } else if ("nobr".equals(name)) {
+            reconstructFormatting();
+            if (inScope(name)) {
+                adoption(name);
+            }
+        } else if ("button".equals(name)) {
+            if (inScope(name)) {
+                generateImpliedEndTags(null);
+                popUntil(name);
+            }
+        } else if ("option".equals(name) || "optgroup".equals(name)) {
+            if (depth > 0 && top().tag == "option") {
+                pop();
+            }
+        }
+
+        if (!CLOSE_P.contains(name) && !NO_RECONSTRUCT.contains(name)) {
+            reconstructFormatting();
+        }
+
+        if (VOID.contains(name)) {
+            openEmpty(name);
+            return null;
+        }
+        return push(name);
+    }
+
+    String push(String name) {
+        Frame frame = open(name, attributes);
+        if (FORMATTING.contains(name)) {
+            pushFormatting(frame);
+        } else if (MARKERS.contains(name)) {
+            formatting.add(new Formatting(null, null, frame.seq));
+        }
+        if (selfClosing) {
+            endTag(name);
+            return null;
+        }
+        return name;
+    }
+
+    void endTag(String name) {
+        if (IGNORED.contains(name)) {
+            return;
+        }
+
+        if ("p".equals(name)) {
+            if (!inScope("p", BUTTON_SCOPE)) {
+                open("p", null);
+                pop();
+                return;
+            }
+            generateImpliedEndTags("p");
+            popUntil("p");
+        } else if ("li".equals(name)) {
+            if (inScope("li", LIST_SCOPE)) {
+                generateImpliedEndTags("li");
+                popUntil("li");
+            }
+        } else if ("dd".equals(name) || "dt".equals(name)) {
+            if (inScope(name)) {
+                generateImpliedEndTags(name);
+                popUntil(name);
+            }
+        } else if (HEADINGS.contains(name)) {
+            if (inScope(HEADINGS)) {
+                generateImpliedEndTags(name);
+                while (depth > 0 && !HEADINGS.contains(pop().tag)) {
+                }
+            }
+        } else if (BLOCK_END.contains(name)) {
+            if (inScope(name)) {
+                generateImpliedEndTags(null);
+                popUntil(name);
+            }
+        } else if ("form".equals(name)) {
+            formOpen = false;
+            if (inScope(name)) {
+                generateImpliedEndTags(null);
+                remove(lastIndexOf(name));
+            }
+        } else if (FORMATTING.contains(name)) {
+            adoption(name);
+        } else if ("br".equals(name)) {
+            attributes.clear();
+            reconstructFormatting();
+            openEmpty(name);
+        } else if ("table".equals(name) || "caption".equals(name) || "colgroup".equals(name)
+            || "tr".equals(name) || "td".equals(name) || "th".equals(name) || TABLE_SECTIONS.contains(name)) {
+            if (inTableScope(name)) {
+                generateImpliedEndTags(null);
+                popUntil(name);
+            }
+        } else {
+            anyOtherEndTag(name);
+        }
+    }
+
+    void anyOtherEndTag(String name) {
+        for (int i = depth - 1; i >= 0; i--) {
+            String tag = stack[i].tag;
+            if (tag == name) {
+                generateImpliedEndTags(name);
+                popUntil(name);
+                return;
+            }
+            if (SPECIAL.contains(tag)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * adoption agency algorithm, the furthest block case only fixes the stack of open elements, elements already
+     * seen keep their parent
+     */
+    void adoption(String name) {
+        for (int k = 0; k < 8; k++) {
+            Formatting element = activeFormatting(name);
+            if (element == null) {
+                anyOtherEndTag(name);
+                return;
+            }
+            int index = stackIndexOf(element.seq);
+            if (index < 0) {
+                formatting.remove(element);
+                return;
+            }
+            if (!inScope(name)) {
+                return;
+            }
+
+            int furthestBlock = -1;
+            for (int i = index + 1; i < depth; i++) {
+                if (SPECIAL.contains(stack[i].tag)) {
+                    furthestBlock = i;
+                    break;
+                }
+            }
+            if (furthestBlock < 0) {
+                popUntil(name);
+                formatting.remove(element);
+                return;
+            }
+
+            Frame block = stack[furthestBlock];
+            for (int j = 0, node = furthestBlock - 1; j < 3 && node > index; j++, node--) {
+                Formatting entry = formattingOf(stack[node].seq);
+                if (entry == null) {
+                    remove(node);
+                    --furthestBlock;
+                } else {
+                    stack[node].href = null;
+                    entry.attributes.clear();
+                }
+            }
+
+            remove(index);
+            --furthestBlock;
+            formatting.remove(element);
+
+            Frame adopter = insertFrame(furthestBlock + 1);
+            adopter.tag = element.tag;
+            adopter.seq = seq++;
+            adopter.index = 0;
+            adopter.childCount = block.childCount;
+            adopter.href = element.attributes.href;
+            adopter.idMain = "main".equals(element.attributes.id);
+            adopter.inRes = block.inRes;
+            adopter.inMain = block.inMain;
+            adopter.inFooter = block.inFooter || block.tag == "footer";
+            adopter.inStats = block.inStats;
+            adopter.siteLinkScope = block.siteLinkScope || element.attributes.siteLinkClass;
+            adopter.lastChar = 0;
+            adopter.heading = null;
+            adopter.link = null;
+            adopter.footerLink = false;
+            block.childCount = 1;
+        }
+    }
+
+    Formatting activeFormatting(String name) {
+        for (int i = formatting.size() - 1; i >= 0; i--) {
+            Formatting entry = formatting.get(i);
+            if (entry.tag == null) {
+                return null;
+            }
+            if (entry.tag == name) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    Formatting formattingOf(int seq) {
+        for (int i = formatting.size() - 1; i >= 0; i--) {
+            Formatting entry = formatting.get(i);
+            if (entry.tag != null && entry.seq == seq) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    void pushFormatting(Frame frame) {
+        Attributes copy = attributes.copy();
+        int same = 0;
+        for (int i = formatting.size() - 1; i >= 0; i--) {
+            Formatting entry = formatting.get(i);
+            if (entry.tag == null) {
+                break;
+            }
+            if (entry.tag == frame.tag && sameAttributes(entry.attributes, copy) && ++same == 3) {
+                formatting.remove(i);
+                break;
+            }
+        }
+        formatting.add(new Formatting(frame.tag, copy, frame.seq));
+    }
+
+    boolean sameAttributes(Attributes a, Attributes b) {
+        return a.siteLinkClass == b.siteLinkClass && a.navendClass == b.navendClass
+            && (a.id == null ? b.id == null : a.id.equals(b.id))
+            && attribute(a.href).equals(attribute(b.href)) && (a.href == null) == (b.href == null);
+    }
+
+    /**
+     * reopen the formatting elements implicitly closed (like a &lt;b&gt; closed by a &lt;/p&gt;)
+     */
+    void reconstructFormatting() {
+        int size = formatting.size();
+        if (size == 0) {
+            return;
+        }
+        Formatting last = formatting.get(size - 1);
+        if (last.tag == null || stackIndexOf(last.seq) >= 0) {
+            return;
+        }
+
+        int pos = size - 1;
+        while (pos > 0) {
+            Formatting entry = formatting.get(pos - 1);
+            if (entry.tag == null || stackIndexOf(entry.seq) >= 0) {
+                break;
+            }
+            --pos;
+        }
+        for (; pos < size; pos++) {
+            Formatting entry = formatting.get(pos);
+            entry.seq = open(entry.tag, entry.attributes).seq;
+        }
+    }
+
+    void clearFormattingToMarker() {
+        while (!formatting.isEmpty()) {
+            if (formatting.remove(formatting.size() - 1).tag == null) {
+                return;
+            }
+        }
+    }
+
+    int stackIndexOf(int seq) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (stack[i].seq == seq) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void closeParagraph() {
+        if (inScope("p", BUTTON_SCOPE)) {
+            generateImpliedEndTags("p");
+            popUntil("p");
+        }
+    }
+
+    void closeListItem(String... names) {
+        for (int i = depth - 1; i >= 0; i--) {
+            String tag = stack[i].tag;
+            if (Arrays.asList(names).contains(tag)) {
+                generateImpliedEndTags(tag);
+                popUntil(tag);
+                return;
+            }
+            if (SPECIAL.contains(tag) && tag != "address" && tag != "div" && tag != "p") {
+                return;
+            }
+        }
+    }
+
+    void generateImpliedEndTags(String except) {
+        while (depth > 0 && IMPLIED_END.contains(top().tag) && top().tag != except) {
+            pop();
+        }
+    }
+
+    void clearToContext(String... names) {
+        List<String> context = Arrays.asList(names);
+        while (depth > 0 && !context.contains(top().tag)) {
+            pop();
+        }
+    }
+
+    boolean inScope(String name) {
+        return inScope(name, null);
+    }
+
+    boolean inScope(String name, String[] extras) {
+        for (int i = depth - 1; i >= 0; i--) {
+            String tag = stack[i].tag;
+            if (tag == name) {
+                return true;
+            }
+            if (SCOPE.contains(tag)) {
+                return false;
+            }
+            if (extras != null) {
+                for (String extra : extras) {
+                    if (tag == extra) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean inScope(Set<String> names) {
+        for (int i = depth - 1; i >= 0; i--) {
+            String tag = stack[i].tag;
+            if (names.contains(tag)) {
+                return true;
+            }
+            if (SCOPE.contains(tag)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    boolean inTableScope(String name) {
+        for (int i = depth - 1; i >= 0; i--) {
+            String tag = stack[i].tag;
+            if (tag == name) {
+                return true;
+            }
+            if (tag == "table") {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    int lastIndexOf(String name) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (stack[i].tag == name) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void popUntil(String name) {
+        while (depth > 0 && pop().tag != name) {
+        }
+    }
+
+    Frame top() {
+        return stack[depth - 1];
+    }
+
+    void openEmpty(String name) {
+        open(name, attributes);
+        pop();
+    }
+
+    Frame insertFrame(int index) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        Frame frame = stack[depth];
+        if (index < depth) {
+            System.arraycopy(stack, index, stack, index + 1, depth - index);
+            frame = null;
+        }
+        if (frame == null) {
+            frame = stack[index] = new Frame();
+        }
+        ++depth;
+        return frame;
+    }
+
+    /**
+     * insert an element as the last child of the current node and push it on the stack
+     */
+    Frame open(String name, Attributes attributes) {
+        Frame parent = depth == 0 ? null : stack[depth - 1];
+        Frame table = null;
+        if (parent != null && TABLE_CONTEXT.contains(parent.tag) && !NOT_FOSTERED.contains(name)) {
+            // foster parenting, inserted in the parent of the table, just before it
+            int index = lastIndexOf("table");
+            if (index >= 0) {
+                table = stack[index];
+                parent = index == 0 ? null : stack[index - 1];
+            }
+        }
+        Frame frame = insertFrame(depth);
+
+        frame.tag = name;
+        frame.seq = seq++;
+        frame.childCount = 0;
+        frame.lastChar = 0;
+        frame.heading = null;
+        frame.link = null;
+        frame.href = attributes == null ? null : attributes.href;
+        String id = attributes == null ? null : attributes.id;
+        boolean siteLinkClass = attributes != null && attributes.siteLinkClass;
+        boolean navendClass = attributes != null && attributes.navendClass;
+
+        if (table != null) {
+            frame.index = table.index++;
+            if (parent == null) {
+                ++rootChildCount;
+            } else {
+                ++parent.childCount;
+            }
+        }
+
+        if (parent == null) {
+            if (table == null) {
+                frame.index = rootChildCount++;
+            }
+            frame.inRes = frame.inMain = frame.inFooter = frame.inStats = frame.siteLinkScope = false;
+        } else {
+            if (table == null) {
+                frame.index = parent.childCount++;
+            }
+            if (frame.index == 0) {
+                if (parent.seq == lastNavend) {
+                    lastNavendFirstLink = name == "a";
+                }
+                if (parent.link != null) {
+                    parent.link.firstChildImg = name == "img";
+                }
+            }
+            frame.inRes = parent.inRes;
+            frame.inMain = parent.inMain;
+            frame.inFooter = parent.inFooter || parent.tag == "footer";
+            frame.inStats = parent.inStats;
+            frame.siteLinkScope = parent.siteLinkScope;
+        }
+
+        if (frame.inStats) {
+            resultStats.append('\n');
+        }
+
+        frame.idMain = "main".equals(id);
+        if (id != null) {
+            if (!resFound && "res".equals(id)) {
+                resFound = frame.inRes = true;
+            } else if (!mainFound && frame.idMain) {
+                mainFound = frame.inMain = true;
+            } else if (!statsFound && "resultStats".equals(id)) {
+                statsFound = frame.inStats = true;
+                resultStats = new StringBuilder();
+            } else if ("pnnext".equals(id)) {
+                nextLink = true;
+            }
+        }
+        if (navendClass) {
+            ++navends;
+            lastNavend = frame.seq;
+            lastNavendFirstLink = false;
+        }
+
+        if (name == "h3" && (frame.inRes || frame.inMain)) {
+            Heading heading = frame.heading = new Heading();
+            heading.inRes = frame.inRes;
+            heading.inMain = frame.inMain;
+            if (parent != null) {
+                heading.parentHref = parent.href;
+                heading.parentIsLink = parent.tag == "a";
+                heading.siteLink = parent.siteLinkScope;
+            }
+            headings.add(heading);
+            ++pendingHeadings;
+        } else if (name == "a") {
+            link(frame);
+        }
+
+        frame.siteLinkScope |= siteLinkClass;
+        return frame;
+    }
+
+    void link(Frame frame) {
+        Link link = null;
+        if (pendingHeadings > 0) {
+            for (int i = depth - 2; i >= 0; i--) {
+                Heading heading = stack[i].heading;
+                if (heading != null && !heading.firstLinkSet) {
+                    heading.firstLinkSet = true;
+                    heading.firstLink = link = link == null ? newLink(frame) : link;
+                    --pendingHeadings;
+                }
+            }
+        }
+
+        if (frame.inMain && frame.index == 0 && isMainLink(depth - 1)) {
+            mainLinks.add(link == null ? newLink(frame) : link);
+        }
+
+        if (frame.inFooter) {
+            frame.footerLink = true;
+            ++footerLinks;
+        }
+    }
+
+    Link newLink(Frame frame) {
+        Link link = frame.link = new Link();
+        link.href = frame.href;
+        return link;
+    }
+
+    /**
+     * "#main > div > div:first-child > div:first-child > a:first-child, #main > div > div:first-child > a:first-child"
+     */
+    boolean isMainLink(int index) {
+        if (index < 3 || !isFirstDiv(stack[index - 1])) {
+            return false;
+        }
+        if (stack[index - 2].tag == "div" && stack[index - 3].idMain) {
+            return true;
+        }
+        return index >= 4 && isFirstDiv(stack[index - 2]) && stack[index - 3].tag == "div" && stack[index - 4].idMain;
+    }
+
+    boolean isFirstDiv(Frame frame) {
+        return frame.tag == "div" && frame.index == 0;
+    }
+
+    Frame pop() {
+        Frame frame = stack[--depth];
+        closed(frame);
+        return frame;
+    }
+
+    void remove(int index) {
+        if (index < 0) {
+            return;
+        }
+        Frame frame = stack[index];
+        System.arraycopy(stack, index + 1, stack, index, depth - index - 1);
+        stack[--depth] = frame;
+        closed(frame);
+    }
+
+    void closed(Frame frame) {
+        if (MARKERS.contains(frame.tag)) {
+            clearFormattingToMarker();
+        }
+        if (frame.inStats) {
+            resultStats.append('\n');
+        }
+        if (frame.heading != null && !frame.heading.firstLinkSet) {
+            frame.heading.firstLinkSet = true;
+            --pendingHeadings;
+        }
+        if (frame.footerLink) {
+            frame.footerLink = false;
+            --footerLinks;
+            if (frame.lastChar == '>') {
+                footerNextLink = true;
+            }
+        }
+    }
+
+    void text(int start, int end, boolean reconstruct) {
+        if (start >= end) {
+            return;
+        }
+        if (reconstruct) {
+            reconstructFormatting();
+        }
+        if (depth == 0) {
+            return;
+        }
+        boolean inStats = top().inStats;
+        if (!inStats && footerLinks == 0) {
+            return;
+        }
+
+        String text = unescape(buf.toString(start, end, charset), false, (char) 0);
+        if (inStats) {
+            resultStats.append(text);
+        }
+        if (footerLinks > 0) {
+            char lastChar = 0;
+            for (int i = text.length() - 1; i >= 0; i--) {
+                char c = text.charAt(i);
+                if (c > ' ' && c != '\u00a0') {
+                    lastChar = c;
+                    break;
+                }
+            }
+            if (lastChar != 0) {
+                for (int i = 0; i < depth; i++) {
+                    if (stack[i].footerLink) {
+                        stack[i].lastChar = lastChar;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * decoded attribute value, empty if the attribute is missing (like jsoup)
+     */
+    String attribute(Value value) {
+        if (value == null || value.start >= value.end) {
+            return "";
+        }
+        return unescape(buf.toString(value.start, value.end, charset), true,
+            (char) value.quote);
+    }
+
+    /**
+     * decode the character references like the jsoup tokenizer
+     */
+    static String unescape(String text, boolean inAttribute, char allowed) {
+        int amp = text.indexOf('&');
+        if (amp < 0) {
+            return text;
+        }
+
+        StringBuilder builder = new StringBuilder(text.length());
+        builder.append(text, 0, amp);
+        int length = text.length();
+        int i = amp;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c != '&') {
+                builder.append(c);
+                ++i;
+                continue;
+            }
+            int next = characterReference(text, i + 1, inAttribute, allowed, builder);
+            if (next < 0) {
+                builder.append('&');
+                ++i;
+            } else {
+                i = next;
+            }
+        }
+        return builder.toString();
+    }
+
+    static int characterReference(String text, int p, boolean inAttribute, char allowed, StringBuilder builder) {
+        int length = text.length();
+        if (p >= length) {
+            return -1;
+        }
+        char c = text.charAt(p);
+        if (c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == ' ' || c == '<' || c == '&'
+            || (allowed != 0 && c == allowed)) {
+            return -1;
+        }
+
+        if (c == '#') {
+            int q = p + 1;
+            boolean hex = q < length && (text.charAt(q) == 'x' || text.charAt(q) == 'X');
+            if (hex) {
+                ++q;
+            }
+            int start = q;
+            while (q < length && (hex ? Character.digit(text.charAt(q), 16) >= 0 && text.charAt(q) < 128
+                : text.charAt(q) >= '0' && text.charAt(q) <= '9')) {
+                ++q;
+            }
+            if (q == start) {
+                return -1;
+            }
+            int codepoint;
+            try {
+                codepoint = Integer.valueOf(text.substring(start, q), hex ? 16 : 10);
+            } catch (NumberFormatException ex) {
+                codepoint = -1;
+            }
+            if (q < length && text.charAt(q) == ';') {
+                ++q;
+            }
+            if (codepoint == -1 || (codepoint >= 0xD800 && codepoint <= 0xDFFF) || codepoint > 0x10FFFF) {
+                builder.append('\uFFFD');
+            } else {
+                builder.appendCodePoint(codepoint);
+            }
+            return q;
+        }
+
+        int q = p;
+        while (q < length && Character.isLetter(text.charAt(q))) {
+            ++q;
+        }
+        while (q < length && text.charAt(q) >= '0' && text.charAt(q) <= '9') {
+            ++q;
+        }
+        String name = text.substring(p, q);
+        boolean semicolon = q < length && text.charAt(q) == ';';
+        if (!(Entities.isBaseNamedEntity(name) || (Entities.isNamedEntity(name) && semicolon))) {
+            return -1;
+        }
+        if (inAttribute && q < length) {
+            char next = text.charAt(q);
+            if (Character.isLetter(next) || (next >= '0' && next <= '9') || next == '=' || next == '-' || next == '_') {
+                return -1;
+            }
+        }
+        if (semicolon) {
+            ++q;
+        }
+        builder.append(Entities.getByName(name));
+        return q;
+    }
+
+    boolean startsWith(int p, String prefix) {
+        if (p + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buf.byteAt(p + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean matchesIgnoreCase(int p, String name) {
+        return p + name.length() <= length && matchesIgnoreCase(p, p + name.length(), name);
+    }
+
+    boolean matchesIgnoreCase(int start, int end, String name) {
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (lower(buf.byteAt(start + i)) != Character.toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int indexOf(byte c, int from) {
+        for (int i = from; i < length; i++) {
+            if (buf.byteAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    int indexOf(char c, int from) {
+        int index = indexOf((byte) c, from);
+        return index < 0 ? length - 1 : index;
+    }
+
+    static int lower(byte c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    static boolean isLetter(byte c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    static boolean isWhitespace(byte c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.serphacker.serposcope.scraper.google.scraper.strategy;
+
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status;
+import com.serphacker.serposcope.scraper.http.ByteCharSequence;
+import com.serphacker.serposcope.scraper.http.ScraperHttpClient;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * extracts the organic urls, the results count and the next page flag from the raw bytes of a serp in a
+ * single streaming pass, without decoding the page to a String nor building a DOM.
+ *
+ * Produces the same output as {@link DefaultSerpParsingStrategy}, the tree construction of jsoup is mimicked for
+ * the parts of the html5 algorithm serps rely on (implied end tags, void and raw text elements, scopes).
+ * The {@link org.jsoup.nodes.Document} based methods are inherited from {@link DefaultSerpParsingStrategy}.
+ * Opt-in with {@code google.streaming_parser}, {@link DefaultSerpParsingStrategy} stays the default.
+ * stateless, thread safe
+ */
+public class StreamingSerpParsingStrategy extends DefaultSerpParsingStrategy {
+
+    /**
+     * decodes with the charset detected by the client, falls back to the DOM parser when this charset is not
+     * ascii compatible or when the streaming pass finds no result
+     */
+    @Override
+    public ParsedSerp parse(ScraperHttpClient http, List<String> urls) {
+        Charset charset = http.getDetectedCharset();
+        if (charset != null && !isAsciiCompatible(charset)) {
+            return super.parse(http, urls);
+        }
+
+        int size = urls.size();
+        ParsedSerp serp = parse(http.getContentView(), charset, urls);
+        if (serp.getStatus() == Status.ERROR_NETWORK || urls.size() > size) {
+            return serp;
+        }
+        return super.parse(http, urls);
+    }
+
+    public ParsedSerp parse(byte[] content, List<String> urls) {
+        return parse(content == null ? null : new ByteCharSequence(content), null, urls);
+    }
+
+    public ParsedSerp parse(ByteCharSequence content, List<String> urls) {
+        return parse(content, null, urls);
+    }
+
+    /**
+     * parses the bytes in place, the view must stay valid until the method returns.
+     * The charset must be ascii compatible, utf-8 if null.
+     */
+    public ParsedSerp parse(ByteCharSequence content, Charset charset, List<String> urls) {
+        if (content == null || content.length() == 0) {
+            return new ParsedSerp(Status.ERROR_NETWORK, 0, false);
+        }
+
+        SerpStreamParser parser = new SerpStreamParser(content, charset == null ? StandardCharsets.UTF_8 : charset);
+        parser.parse();
+
+        Status status;
+        if (parser.resFound) {
+            status = parseLayoutRes(parser, urls);
+        } else if (parser.mainFound) {
+            status = parseLayoutMain(parser, urls);
+        } else {
+            status = Status.ERROR_PARSING;
+        }
+
+        long resultsCount = parser.resultStats == null ? 0 : extractResultsNumber(parser.resultStats.toString());
+        return new ParsedSerp(status, resultsCount, parser.hasNextPage());
+    }
+
+    /**
+     * the markup is only matched byte per byte when it is encoded like in ascii (not the case of utf-16 or ebcdic)
+     */
+    protected static boolean isAsciiCompatible(Charset charset) {
+        String markup = "<a href=\"/\">&#;</a>";
+        return charset.canEncode() && Arrays.equals(markup.getBytes(StandardCharsets.US_ASCII), markup.getBytes(charset));
+    }
+
+    protected Status parseLayoutRes(SerpStreamParser parser, List<String> urls) {
+        boolean titleLinks = false;
+        for (SerpStreamParser.Heading heading : parser.headings) {
+            if (heading.inRes && heading.parentIsLink) {
+                titleLinks = true;
+                String link = extractLink(parser.attribute(heading.parentHref));
+                if (link != null) {
+                    urls.add(link);
+                }
+            }
+        }
+
+        if (!titleLinks) {
+            parseLayoutLegacy(parser, urls, true);
+        }
+        return Status.OK;
+    }
+
+    protected Status parseLayoutMain(SerpStreamParser parser, List<String> urls) {
+        if (parser.mainLinks.isEmpty()) {
+            parseLayoutLegacy(parser, urls, false);
+            return Status.OK;
+        }
+
+        for (SerpStreamParser.Link mainLink : parser.mainLinks) {
+            if (mainLink.firstChildImg) {
+                continue;
+            }
+            String link = extractLink(parser.attribute(mainLink.href));
+            if (link != null) {
+                urls.add(link);
+            }
+        }
+        return Status.OK;
+    }
+
+    protected void parseLayoutLegacy(SerpStreamParser parser, List<String> urls, boolean res) {
+        for (SerpStreamParser.Heading heading : parser.headings) {
+            if ((res ? !heading.inRes : !heading.inMain) || heading.siteLink) {
+                continue;
+            }
+
+            String link = extractLink(parser.attribute(heading.parentHref));
+            if (link == null && heading.firstLink != null) {
+                link = extractLink(parser.attribute(heading.firstLink.href));
+            }
+            if (link != null) {
+                urls.add(link);
+            }
+        }
+    }
+
+}
@@ -7,7 +7,13 @@
  */
 package com.serphacker.serposcope.scraper.http;
 
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
+/**
+ * read only view over a range of bytes, chars are the latin1 decoding of the bytes.
+ * No copy is made, the view is only valid as long as the underlying bytes are not reused.
+ */
 public class ByteCharSequence implements CharSequence {
 
     private final byte[] data;
@@ -34,6 +40,10 @@ public class ByteCharSequence implements CharSequence {
         return (char) (data[offset + index] & 0xff);
     }
 
+    public byte byteAt(int index) {
+        return data[offset + index];
+    }
+
     @Override
     public CharSequence subSequence(int start, int end) {
         return new ByteCharSequence(data, offset + start, end - start);
@@ -43,5 +53,20 @@ public class ByteCharSequence implements CharSequence {
     public String toString() {
         return new String(data, offset, length);
     }
+
+    public String toString(Charset charset) {
+        return new String(data, offset, length, charset);
+    }
+
+    /**
+     * decodes the bytes from start (inclusive) to end (exclusive)
+     */
+    public String toString(int start, int end, Charset charset) {
+        return new String(data, offset + start, end - start, charset);
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOfRange(data, offset, offset + length);
+    }
     
 }
@@ -0,0 +1,93 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * size classed pool of response buffers shared by the scrap clients.
+ *
+ * Classes are powers of two from {@link #MIN_SIZE} to {@link #MAX_POOLED_SIZE}, each class keeps at most
+ * {@link #MAX_IDLE_BYTES} of idle buffers. Bigger buffers are allocated and left to the gc.
+ * thread safe
+ */
+public class ResponseBufferPool {
+
+    public final static int MIN_SIZE = 16 * 1024;
+    public final static int MAX_POOLED_SIZE = 8 * 1024 * 1024;
+    public final static int MAX_IDLE_BYTES = 32 * 1024 * 1024;
+
+    private final static ResponseBufferPool SHARED = new ResponseBufferPool(MAX_IDLE_BYTES);
+
+    public static ResponseBufferPool shared() {
+        return SHARED;
+    }
+
+    final ArrayBlockingQueue<byte[]>[] classes;
+
+    @SuppressWarnings("unchecked")
+    public ResponseBufferPool(int maxIdleBytes) {
+        classes = new ArrayBlockingQueue[sizeClass(MAX_POOLED_SIZE) + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ArrayBlockingQueue<>(Math.max(1, maxIdleBytes / classSize(i)));
+        }
+    }
+
+    /**
+     * a buffer of at least minSize bytes, its content is undefined
+     */
+    public byte[] acquire(int minSize) {
+        if (minSize > MAX_POOLED_SIZE) {
+            return new byte[minSize];
+        }
+        int sizeClass = sizeClass(minSize);
+        byte[] buffer = classes[sizeClass].poll();
+        return buffer != null ? buffer : new byte[classSize(sizeClass)];
+    }
+
+    /**
+     * a buffer of at least minSize bytes starting with the used bytes of buffer, buffer is released
+     */
+    public byte[] grow(byte[] buffer, int used, int minSize) {
+        if (buffer.length >= minSize) {
+            return buffer;
+        }
+        byte[] grown = acquire(minSize);
+        System.arraycopy(buffer, 0, grown, 0, used);
+        release(buffer);
+        return grown;
+    }
+
+    /**
+     * gives back a buffer, it must not be used anymore by the caller
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length < MIN_SIZE || buffer.length > MAX_POOLED_SIZE
+                || Integer.bitCount(buffer.length) != 1) {
+            return;
+        }
+        classes[sizeClass(buffer.length)].offer(buffer);
+    }
+
+    public int getIdleBuffers() {
+        return Arrays.stream(classes).mapToInt(ArrayBlockingQueue::size).sum();
+    }
+
+    protected static int sizeClass(int size) {
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_SIZE);
+    }
+
+    protected static int classSize(int sizeClass) {
+        return MIN_SIZE << sizeClass;
+    }
+
+}
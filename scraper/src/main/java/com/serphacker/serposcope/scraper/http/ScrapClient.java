@@ -9,8 +9,11 @@ package com.serphacker.serposcope.scraper.http;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.serphacker.serposcope.scraper.http.extensions.CloseableBasicHttpClientConnectionManager;
+import com.serphacker.serposcope.scraper.http.extensions.CountingInputStream;
 import com.serphacker.serposcope.scraper.http.extensions.ScrapClientPlainConnectionFactory;
+import com.serphacker.serposcope.scraper.http.extensions.ScrapClientPoolingConnectionManager;
 import com.serphacker.serposcope.scraper.http.extensions.ScrapClientSSLConnectionFactory;
+import com.serphacker.serposcope.scraper.http.extensions.ScrapClientSSLSessionCache;
 import com.serphacker.serposcope.scraper.http.extensions.ScrapClientSocksAuthenticator;
 import com.serphacker.serposcope.scraper.http.factory.GetRequestFactory;
 import com.serphacker.serposcope.scraper.http.factory.HttpRequestFactory;
@@ -22,12 +25,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
@@ -42,6 +44,7 @@ import org.apache.http.cookie.Cookie;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +56,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.config.SocketConfig;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
@@ -68,11 +73,22 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     public final static String DEFAULT_USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; WOW64; rv:42.0) Gecko/20100101 Firefox/42.0";
     public final static int DEFAULT_TIMEOUT_MS = 30000;
     public final static int DEFAULT_MAX_RESPONSE_LENGTH = (1024 * 1024 * 4) - 1;// 4MB
+    public final static int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 2;
+    public final static int MAX_POOLED_CONNECTIONS = 64;
+    public final static long DEFAULT_CONNECTION_TTL_MS = ScrapClientSSLSessionCache.DEFAULT_TTL_MS;
+    // no brotli decoder in the dependencies, "br" is not advertised
+    public final static String ACCEPT_ENCODING = "gzip, deflate";
+
+    // connection state of direct exchanges, pooled connections are only reused by exchanges with the same proxy
+    final static ScrapProxy DIRECT = new DirectNoProxy();
 
     CloseableHttpClient client;
     BasicCredentialsProvider credentialProvider = new BasicCredentialsProvider();
     BasicCookieStore basicCookieStore = new BasicCookieStore();
+    // single connection, exchanges are serialized on it, null when pooled
     final CloseableBasicHttpClientConnectionManager connManager;
+    // connections per (proxy, host) route, exchanges run concurrently, null when not pooled
+    final ScrapClientPoolingConnectionManager poolingConnManager;
     ScrapClientPlainConnectionFactory plainConnectionFactory = new ScrapClientPlainConnectionFactory();
     ScrapClientSSLConnectionFactory sslConnectionFactory = new ScrapClientSSLConnectionFactory(plainConnectionFactory);
 
@@ -80,18 +96,17 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     Integer timeoutMS = DEFAULT_TIMEOUT_MS;
     ScrapProxy proxy;
     int maxResponseLength;
-    byte[] buffer;
+    ResponseBufferPool bufferPool = ResponseBufferPool.shared();
     List<Header> requestHeaders = new ArrayList<>();
-    Map<HttpHost, HttpHost> routes = new HashMap<>();
+    Map<HttpHost, HttpHost> routes = new ConcurrentHashMap<>();
     boolean proxyChangedSinceLastRequest;
     int maxRedirect = 0;
 
-    long executionTimeMS;
-    CloseableHttpResponse response;
-    byte[] content;
-    int statusCode;
-    Exception exception;
-    String lastRedirect;
+    final TransferCounters transferCounters = new TransferCounters();
+    final Map<ScrapProxy, TransferCounters> transferCountersByProxy = new ConcurrentHashMap<>();
+
+    // last exchange done with request(), holds the response body until the next request or close()
+    volatile ScrapResponse last = new ScrapResponse(bufferPool);
 
     public ScrapClient() {
         this(ScrapClientConfig.builder().build());
@@ -102,21 +117,38 @@ public class ScrapClient implements Closeable, CredentialsProvider {
 
         sslConnectionFactory.setInsecure(config.isInsecureSSL());
 
-        connManager = new CloseableBasicHttpClientConnectionManager(
-                RegistryBuilder.<ConnectionSocketFactory>create()
-                        .register("http", plainConnectionFactory)
-                        .register("https", sslConnectionFactory)
-                        .build());
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", plainConnectionFactory)
+                .register("https", sslConnectionFactory)
+                .build();
 
-        client = HttpClients
+        HttpClientBuilder builder = HttpClients
                 .custom()
                 .setRoutePlanner(new ScrapClientRoutePlanner(routes, () -> proxy))
                 .setDefaultCredentialsProvider(this)
                 .setDefaultCookieStore(basicCookieStore)
-                .setConnectionReuseStrategy(
-                        new ScrapClientConnectionReuseStrategy(() -> proxyChangedSinceLastRequest, () -> proxy))
-                .setConnectionManager(connManager)
-                .build();
+                // bodies are decoded by doExchange, straight into the pooled buffer
+                .disableContentCompression();
+
+        if (config.isPooled()) {
+            connManager = null;
+            poolingConnManager = new ScrapClientPoolingConnectionManager(registry, config.getConnectionTTLMS());
+            poolingConnManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+            poolingConnManager.setMaxTotal(Math.max(MAX_POOLED_CONNECTIONS, config.getMaxConnectionsPerRoute()));
+            poolingConnManager.setValidateAfterInactivity(2000);
+            poolingConnManager.setMaxIdle(config.getMaxIdleConnections());
+            builder.setConnectionManager(poolingConnManager);
+            sslConnectionFactory.setSessionCache(config.getConnectionTTLMS() == ScrapClientSSLSessionCache.DEFAULT_TTL_MS
+                    ? ScrapClientSSLSessionCache.shared()
+                    : new ScrapClientSSLSessionCache(config.getConnectionTTLMS()));
+        } else {
+            connManager = new CloseableBasicHttpClientConnectionManager(registry);
+            poolingConnManager = null;
+            builder.setConnectionManager(connManager)
+                    .setConnectionReuseStrategy(
+                            new ScrapClientConnectionReuseStrategy(() -> proxyChangedSinceLastRequest, () -> proxy));
+        }
+        client = builder.build();
 
         // Aplicar configurações do config
         this.useragent = config.getUserAgent();
@@ -163,8 +195,10 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     }
 
     public void setProxy(ScrapProxy proxy) {
-        synchronized (connManager) {
-            connManager.closeConnection();
+        if (connManager != null) {
+            synchronized (connManager) {
+                connManager.closeConnection();
+            }
         }
         proxyChangedSinceLastRequest = true;
         if (proxy != null && proxy instanceof DirectNoProxy) {
@@ -192,7 +226,11 @@ public class ScrapClient implements Closeable, CredentialsProvider {
         if (timeoutMS != null) {
             newSocketConfig.setSoTimeout(timeoutMS);
         }
-        connManager.setSocketConfig(newSocketConfig.build());
+        if (connManager != null) {
+            connManager.setSocketConfig(newSocketConfig.build());
+        } else {
+            poolingConnManager.setDefaultSocketConfig(newSocketConfig.build());
+        }
     }
 
     public int getMaxResponseLength() {
@@ -203,98 +241,82 @@ public class ScrapClient implements Closeable, CredentialsProvider {
         return maxRedirect;
     }
 
+    public boolean isPooled() {
+        return poolingConnManager != null;
+    }
+
+    /**
+     * leases which got back a warm connection, 0 if not pooled
+     */
+    public long getConnectionHits() {
+        return poolingConnManager == null ? 0 : poolingConnManager.getCounters().getHits();
+    }
+
+    /**
+     * leases which had to open a new connection, 0 if not pooled
+     */
+    public long getConnectionMisses() {
+        return poolingConnManager == null ? 0 : poolingConnManager.getCounters().getMisses();
+    }
+
+    /**
+     * hit/miss counters of the connections through the proxy (null for direct), null if none
+     */
+    public ScrapClientPoolingConnectionManager.Counters getConnectionCounters(ScrapProxy proxy) {
+        if (poolingConnManager == null) {
+            return null;
+        }
+        return poolingConnManager.getCounters(proxy == null || proxy instanceof DirectNoProxy ? DIRECT : proxy);
+    }
+
     public boolean isInsecureSSL() {
         return sslConnectionFactory.isInsecure();
     }
 
     private void applyMaxResponseLength(int maxResponseLength) {
         this.maxResponseLength = maxResponseLength + 1;
-        buffer = new byte[this.maxResponseLength];
     }
 
     public CloseableHttpResponse getResponse() {
-        return response;
+        return last.getResponse();
     }
 
+    /**
+     * a copy of the response body
+     */
     public byte[] getContent() {
-        return content;
+        return last.getContent();
     }
 
-    public String getContentAsString() {
-        if (response == null || content == null) {
-            return null;
-        }
-
-        Charset charset = getDetectedCharset();
-
-        if (charset == null) {
-            charset = Charset.forName("UTF-8");
-        }
+    /**
+     * read only view of the response body without copy, only valid until the next request or close()
+     */
+    public ByteCharSequence getContentView() {
+        return last.getContentView();
+    }
 
-        return new String(content, charset);
+    public String getContentAsString() {
+        return last.getContentAsString();
     }
 
     public Charset getDetectedCharset() {
-        ContentType contentType = null;
-        try {
-            contentType = ContentType.get(response.getEntity());
-        } catch (Exception ex) {
-        }
-
-        Charset charset = null;
-        if (contentType != null) {
-            try {
-                charset = contentType.getCharset();
-            } catch (final Exception ex) {
-            }
-
-            if (charset == null) {
-                if (contentType.getMimeType().contains("text/html")) {
-                    charset = detectCharsetFromHtmlMeta();
-                }
-            }
-
-        }
-
-        return charset;
+        return last.getDetectedCharset();
     }
 
-    final static Pattern pcharset = Pattern.compile("charset=['\"]?([^\"'\\s]+)");
-
     protected Charset detectCharsetFromHtmlMeta() {
-        if (content == null) {
-            return null;
-        }
-
-        int len = content.length > 4096 ? 4096 : content.length;
-        Matcher matcher = pcharset.matcher(new ByteCharSequence(content, 0, len));
-        if (matcher.find()) {
-            try {
-                return Charset.forName(matcher.group(1));
-            } catch (Exception ex) {
-            }
-        }
-
-        return null;
+        return last.detectCharsetFromHtmlMeta();
     }
 
     public String getResponseHeader(String key) {
-        if (response == null) {
-            return null;
-        }
-        Header header = response.getFirstHeader(key);
-        if (header == null) {
-            return null;
-        }
-        return header.getValue();
+        return last.getResponseHeader(key);
     }
 
     public int getStatusCode() {
-        return statusCode;
+        return last.getStatusCode();
     }
 
     public Exception getException() {
-        return exception;
+        return last.getException();
     }
 
     public int get(String url) {
@@ -327,9 +349,8 @@ public class ScrapClient implements Closeable, CredentialsProvider {
             HttpEntity entity = dataType.createEntity(sanitizedData, resolvedCharset, jsonMapper);
             return execute(new PostRequestFactory(url, useragent, entity, referrer));
         } catch (Exception ex) {
-            statusCode = -1;
-            exception = ex;
-            return statusCode;
+            setLast(ScrapResponse.failed(bufferPool, ex));
+            return -1;
         }
     }
 
@@ -381,72 +402,209 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     }
 
     protected void clearPreviousRequest() {
-        content = null;
-        exception = null;
-        response = null;
-        statusCode = 0;
-        lastRedirect = null;
+        setLast(new ScrapResponse(bufferPool));
+    }
+
+    protected void setLast(ScrapResponse response) {
+        ScrapResponse previous;
+        synchronized (this) {
+            previous = last;
+            last = response;
+        }
+        previous.close();
     }
 
+    /**
+     * executes the request with the proxy of the client, the outcome is available with the getters of the client
+     * until the next request
+     */
     public int request(HttpRequestBase request) {
+        clearPreviousRequest();
+        ScrapResponse response = exchange(request, proxy);
+        setLast(response);
+        return response.getStatusCode();
+    }
+
+    /**
+     * executes the request with the proxy of the client, see {@link #exchange(HttpRequestBase, ScrapProxy)}
+     */
+    public ScrapResponse exchange(HttpRequestBase request) {
+        return exchange(request, proxy);
+    }
+
+    /**
+     * executes the request through the given proxy (null for direct) with its own context, the state of the client
+     * (status, content, ...) is left untouched.
+     * Exchanges run concurrently when the client is pooled and are serialized on the single connection otherwise.
+     * The returned response must be closed to give back its buffer.
+     */
+    public ScrapResponse exchange(HttpRequestBase request, ScrapProxy proxy) {
+        if (proxy instanceof DirectNoProxy) {
+            proxy = null;
+        }
+        if (proxy instanceof SocksProxy) {
+            ScrapClientSocksAuthenticator.INSTANCE.addProxy((SocksProxy) proxy);
+        }
+
+        if (connManager == null) {
+            return doExchange(request, proxy);
+        }
+
         synchronized (connManager) {
             try {
-                clearPreviousRequest();
-                executionTimeMS = System.currentTimeMillis();
-
-                HttpClientContext context = HttpClientContext.create();
-                initializeRequest(request, context);
-
-                response = client.execute(request, context);
-                statusCode = response.getStatusLine().getStatusCode();
-                RedirectLocations redirects = context.getAttribute(HttpClientContext.REDIRECT_LOCATIONS,
-                        RedirectLocations.class);
-                if (redirects != null && !redirects.isEmpty()) {
-                    lastRedirect = redirects.get(redirects.size() - 1).toString();
-                }
-
-                HttpEntity entity = response.getEntity();
-                long contentLength = entity.getContentLength();
+                return doExchange(request, proxy);
+            } finally {
+                proxyChangedSinceLastRequest = false;
+            }
+        }
+    }
 
-                if (contentLength > maxResponseLength) {
-                    throw new ResponseTooBigException(
-                            "content length (" + contentLength + ") "
-                                    + "is greater than max response leength (" + maxResponseLength + ")");
-                }
+    protected ScrapResponse doExchange(HttpRequestBase request, ScrapProxy proxy) {
+        ScrapResponse exchange = new ScrapResponse(bufferPool);
+        exchange.executionTimeMS = System.currentTimeMillis();
+        CountingInputStream raw = null;
+        try {
+            HttpClientContext context = HttpClientContext.create();
+            initializeRequest(request, context, proxy);
+
+            exchange.response = client.execute(request, context);
+            exchange.statusCode = exchange.response.getStatusLine().getStatusCode();
+            RedirectLocations redirects = context.getAttribute(HttpClientContext.REDIRECT_LOCATIONS,
+                    RedirectLocations.class);
+            if (redirects != null && !redirects.isEmpty()) {
+                exchange.lastRedirect = redirects.get(redirects.size() - 1).toString();
+            }
 
-                InputStream stream = entity.getContent();
-                int totalRead = 0;
-                int read = 0;
+            HttpEntity entity = exchange.response.getEntity();
+            try {
+                exchange.contentType = ContentType.get(entity);
+            } catch (Exception ex) {
+            }
+            long contentLength = entity.getContentLength();
+            String encoding = getContentEncoding(entity);
+
+            // the length on the wire, maxResponseLength applies to the decoded length
+            if (encoding == null && contentLength > maxResponseLength) {
+                throw new ResponseTooBigException(
+                        "content length (" + contentLength + ") "
+                                + "is greater than max response leength (" + maxResponseLength + ")");
+            }
 
-                while (totalRead < maxResponseLength
-                        && (read = stream.read(buffer, totalRead, maxResponseLength - totalRead)) != -1) {
-                    totalRead += read;
+            raw = new CountingInputStream(entity.getContent());
+            InputStream stream = decode(encoding, raw);
+            exchange.contentEncoding = encoding;
+            // starts small (or at the announced length) and grows by size class up to maxResponseLength
+            int initialSize = ResponseBufferPool.MIN_SIZE;
+            if (contentLength > 0) {
+                initialSize = (int) Math.min(encoding == null ? contentLength + 1 : contentLength * 4, maxResponseLength);
+            }
+            byte[] buffer = bufferPool.acquire(initialSize);
+            exchange.buffer = buffer;
+            int totalRead = 0;
+            int read = 0;
+
+            while (totalRead < maxResponseLength) {
+                if (totalRead == buffer.length) {
+                    buffer = bufferPool.grow(buffer, totalRead, Math.min(buffer.length * 2, maxResponseLength));
+                    exchange.buffer = buffer;
                 }
-
-                if (totalRead == maxResponseLength && read != 0) {
-                    throw new ResponseTooBigException("already read " + totalRead + " bytes");
+                read = stream.read(buffer, totalRead, Math.min(buffer.length, maxResponseLength) - totalRead);
+                if (read == -1) {
+                    break;
                 }
-                content = Arrays.copyOfRange(buffer, 0, totalRead);
+                totalRead += read;
+            }
 
-            } catch (Exception ex) {
-                content = null;
-                statusCode = -1;
-                exception = ex;
-            } finally {
-                proxyChangedSinceLastRequest = false;
-                closeResponse();
-                executionTimeMS = System.currentTimeMillis() - executionTimeMS;
+            exchange.decodedBytes = totalRead;
+            if (totalRead == maxResponseLength && read != 0) {
+                throw new ResponseTooBigException("already read " + totalRead + " bytes");
+            }
+            exchange.bufferLength = totalRead;
+
+        } catch (Exception ex) {
+            exchange.close();
+            exchange.statusCode = -1;
+            exchange.exception = ex;
+        } finally {
+            closeResponse(exchange.response);
+            exchange.executionTimeMS = System.currentTimeMillis() - exchange.executionTimeMS;
+            if (raw != null) {
+                exchange.transferredBytes = raw.getCount();
+                countTransfer(proxy, exchange.transferredBytes, exchange.decodedBytes);
             }
+        }
+
+        return exchange;
+    }
+
+    /**
+     * the content coding of the entity in lower case, null for identity
+     */
+    protected static String getContentEncoding(HttpEntity entity) {
+        Header header = entity.getContentEncoding();
+        if (header == null || header.getValue() == null) {
+            return null;
+        }
+        String encoding = header.getValue().trim().toLowerCase();
+        return encoding.isEmpty() || "identity".equals(encoding) ? null : encoding;
+    }
 
-            return statusCode;
+    /**
+     * streaming decoder of the content coding, unknown codings are read as is
+     */
+    protected static InputStream decode(String encoding, InputStream raw) throws IOException {
+        if (encoding == null) {
+            return raw;
         }
+        switch (encoding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(raw, 8192);
+            case "deflate":
+                // zlib wrapped or raw deflate, both are sent in the wild
+                return new DeflateInputStream(raw);
+            default:
+                return raw;
+        }
+    }
+
+    protected void countTransfer(ScrapProxy proxy, long transferred, long decoded) {
+        transferCounters.add(transferred, decoded);
+        transferCountersByProxy.computeIfAbsent(proxy == null ? DIRECT : proxy, (k) -> new TransferCounters())
+                .add(transferred, decoded);
+    }
+
+    /**
+     * body bytes transferred and decoded by all the exchanges of the client
+     */
+    public TransferCounters getTransferCounters() {
+        return transferCounters;
+    }
+
+    /**
+     * body bytes transferred and decoded through the proxy (null for direct), null if none
+     */
+    public TransferCounters getTransferCounters(ScrapProxy proxy) {
+        return transferCountersByProxy.get(proxy == null || proxy instanceof DirectNoProxy ? DIRECT : proxy);
     }
 
-    protected void initializeRequest(HttpRequestBase request, HttpClientContext context) {
+    protected void initializeRequest(HttpRequestBase request, HttpClientContext context, ScrapProxy proxy) {
+        ScrapProxy exchangeProxy = proxy == null ? DIRECT : proxy;
+        context.setAttribute(ScrapClientRoutePlanner.PROXY_ATTRIBUTE, exchangeProxy);
+        context.setCredentialsProvider(new ExchangeCredentialsProvider(proxy));
+        if (poolingConnManager != null) {
+            // socks proxies are not part of the route
+            context.setUserToken(exchangeProxy);
+        }
+
         if (request.getFirstHeader("user-agent") == null) {
             request.setHeader("User-Agent", useragent);
         }
 
+        if (request.getFirstHeader("accept-encoding") == null) {
+            request.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+        }
+
         for (Header requestHeader : requestHeaders) {
             request.setHeader(requestHeader);
         }
@@ -473,6 +631,10 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     }
 
     public void closeResponse() {
+        closeResponse(last.getResponse());
+    }
+
+    protected void closeResponse(CloseableHttpResponse response) {
         if (response != null) {
             try {
                 response.close();
@@ -485,6 +647,7 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     @Override
     public void close() throws IOException {
         closeResponse();
+        last.close();
         if (client != null) {
             client.close();
         }
@@ -508,6 +671,10 @@ public class ScrapClient implements Closeable, CredentialsProvider {
 
     @Override
     public Credentials getCredentials(AuthScope authscope) {
+        return getCredentials(proxy, authscope);
+    }
+
+    protected Credentials getCredentials(ScrapProxy proxy, AuthScope authscope) {
         if (proxy != null && proxy instanceof HttpProxy) {
             HttpProxy httpProxy = (HttpProxy) proxy;
             if (httpProxy.getIp().equals(authscope.getHost())
@@ -541,11 +708,43 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     }
 
     public long getExecutionTimeMS() {
-        return executionTimeMS;
+        return last.getExecutionTimeMS();
+    }
+
+    public long getTransferredBytes() {
+        return last.getTransferredBytes();
+    }
+
+    public long getDecodedBytes() {
+        return last.getDecodedBytes();
     }
 
     public String getLastRedirect() {
-        return lastRedirect;
+        return last.getLastRedirect();
+    }
+
+    class ExchangeCredentialsProvider implements CredentialsProvider {
+
+        final ScrapProxy proxy;
+
+        ExchangeCredentialsProvider(ScrapProxy proxy) {
+            this.proxy = proxy;
+        }
+
+        @Override
+        public Credentials getCredentials(AuthScope authscope) {
+            return ScrapClient.this.getCredentials(proxy, authscope);
+        }
+
+        @Override
+        public void setCredentials(AuthScope scope, Credentials auth) {
+            ScrapClient.this.setCredentials(scope, auth);
+        }
+
+        @Override
+        public void clear() {
+            ScrapClient.this.clear();
+        }
     }
 
 }
@@ -22,6 +22,9 @@ public class ScrapClientConfig {
     private final boolean insecureSSL;
     private final int maxRedirect;
     private final List<Header> requestHeaders;
+    private final int maxConnectionsPerRoute;
+    private final long connectionTTLMS;
+    private final int maxIdleConnections;
 
     private ScrapClientConfig(Builder builder) {
         this.userAgent = builder.userAgent;
@@ -31,6 +34,9 @@ public class ScrapClientConfig {
         this.insecureSSL = builder.insecureSSL;
         this.maxRedirect = builder.maxRedirect;
         this.requestHeaders = Collections.unmodifiableList(new ArrayList<>(builder.requestHeaders));
+        this.maxConnectionsPerRoute = builder.maxConnectionsPerRoute;
+        this.connectionTTLMS = builder.connectionTTLMS;
+        this.maxIdleConnections = builder.maxIdleConnections;
     }
 
     public String getUserAgent() {
@@ -61,6 +67,33 @@ public class ScrapClientConfig {
         return requestHeaders;
     }
 
+    /**
+     * 0 for the single connection manager, otherwise the connections kept per (proxy, host) route.
+     * socks proxies are not part of the route, their connections share the limit of the target host
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public boolean isPooled() {
+        return maxConnectionsPerRoute > 0;
+    }
+
+    /**
+     * how long the idle connections (and tls sessions) of a pooled client are kept
+     */
+    public long getConnectionTTLMS() {
+        return connectionTTLMS;
+    }
+
+    /**
+     * idle connections kept by a pooled client over all its routes, the least recently used are closed first,
+     * 0 for no limit
+     */
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -73,6 +106,9 @@ public class ScrapClientConfig {
         private boolean insecureSSL = false;
         private int maxRedirect = 0;
         private List<Header> requestHeaders = new ArrayList<>();
+        private int maxConnectionsPerRoute = 0;
+        private long connectionTTLMS = ScrapClient.DEFAULT_CONNECTION_TTL_MS;
+        private int maxIdleConnections = 0;
 
         public Builder userAgent(String userAgent) {
             this.userAgent = userAgent;
@@ -119,6 +155,25 @@ public class ScrapClientConfig {
             return this;
         }
 
+        public Builder pooled(int maxConnectionsPerRoute) {
+            this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+            return this;
+        }
+
+        public Builder pooled() {
+            return pooled(ScrapClient.DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+        }
+
+        public Builder connectionTTL(long connectionTTLMS) {
+            this.connectionTTLMS = connectionTTLMS;
+            return this;
+        }
+
+        public Builder maxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
         public ScrapClientConfig build() {
             validate();
             return new ScrapClientConfig(this);
@@ -135,6 +190,17 @@ public class ScrapClientConfig {
             if (maxRedirect < 0) {
                 throw new IllegalArgumentException("maxRedirect não pode ser negativo: " + maxRedirect);
             }
+            if (maxConnectionsPerRoute < 0) {
+                throw new IllegalArgumentException(
+                        "maxConnectionsPerRoute não pode ser negativo: " + maxConnectionsPerRoute);
+            }
+            if (connectionTTLMS <= 0) {
+                throw new IllegalArgumentException("connectionTTL deve ser positivo: " + connectionTTLMS);
+            }
+            if (maxIdleConnections < 0) {
+                throw new IllegalArgumentException(
+                        "maxIdleConnections não pode ser negativo: " + maxIdleConnections);
+            }
         }
     }
 
@@ -148,6 +214,9 @@ public class ScrapClientConfig {
                 ", insecureSSL=" + insecureSSL +
                 ", maxRedirect=" + maxRedirect +
                 ", requestHeaders=" + requestHeaders.size() + " headers" +
+                ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+                ", connectionTTLMS=" + connectionTTLMS +
+                ", maxIdleConnections=" + maxIdleConnections +
                 '}';
     }
 }
@@ -20,7 +20,7 @@ class ScrapClientConnectionReuseStrategy extends DefaultConnectionReuseStrategy
 
     @Override
     public boolean keepAlive(HttpResponse response, HttpContext context) {
-        ScrapProxy proxy = proxySupplier.get();
+        ScrapProxy proxy = ScrapClientRoutePlanner.proxy(context, proxySupplier);
         if (!proxyChangedSinceLastRequest.get() && (proxy == null || (proxy instanceof BindProxy))) {
             return super.keepAlive(response, context);
         }
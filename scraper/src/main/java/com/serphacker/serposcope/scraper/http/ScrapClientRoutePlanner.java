@@ -1,6 +1,7 @@
 package com.serphacker.serposcope.scraper.http;
 
 import com.serphacker.serposcope.scraper.http.proxy.BindProxy;
+import com.serphacker.serposcope.scraper.http.proxy.DirectNoProxy;
 import com.serphacker.serposcope.scraper.http.proxy.HttpProxy;
 import com.serphacker.serposcope.scraper.http.proxy.ScrapProxy;
 import com.serphacker.serposcope.scraper.http.proxy.SocksProxy;
@@ -19,6 +20,9 @@ import org.apache.http.protocol.HttpContext;
 
 class ScrapClientRoutePlanner implements HttpRoutePlanner {
 
+    // proxy of a single exchange, overrides the proxy of the client
+    final static String PROXY_ATTRIBUTE = "scrap.proxy";
+
     private final Map<HttpHost, HttpHost> routes;
     private final Supplier<ScrapProxy> proxySupplier;
 
@@ -32,7 +36,7 @@ class ScrapClientRoutePlanner implements HttpRoutePlanner {
             throws HttpException {
         boolean ssl = "https".equalsIgnoreCase(originalTarget.getSchemeName());
         HttpHost target = routes.getOrDefault(originalTarget, originalTarget);
-        ScrapProxy proxy = proxySupplier.get();
+        ScrapProxy proxy = proxy(context, proxySupplier);
 
         if (proxy == null) {
             return new HttpRoute(target);
@@ -67,5 +71,12 @@ class ScrapClientRoutePlanner implements HttpRoutePlanner {
 
         throw new UnsupportedOperationException("unsupported proxy type : " + proxy);
     }
-}
 
+    static ScrapProxy proxy(HttpContext context, Supplier<ScrapProxy> proxySupplier) {
+        Object proxy = context == null ? null : context.getAttribute(PROXY_ATTRIBUTE);
+        if (proxy == null) {
+            return proxySupplier.get();
+        }
+        return proxy instanceof DirectNoProxy ? null : (ScrapProxy) proxy;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http;
+
+import java.io.Closeable;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ContentType;
+
+/**
+ * outcome of a single exchange of a {@link ScrapClient}, independent of the other exchanges of the client.
+ *
+ * The body is held in a pooled buffer until {@link #close()}.
+ */
+public class ScrapResponse implements Closeable {
+
+    final static Pattern pcharset = Pattern.compile("charset=['\"]?([^\"'\\s]+)");
+
+    final ResponseBufferPool bufferPool;
+    CloseableHttpResponse response;
+    ContentType contentType;
+    int statusCode;
+    Exception exception;
+    String lastRedirect;
+    long executionTimeMS;
+    String contentEncoding;
+    long transferredBytes;
+    long decodedBytes;
+
+    byte[] buffer;
+    int bufferLength;
+    byte[] content;
+
+    ScrapResponse(ResponseBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    static ScrapResponse failed(ResponseBufferPool bufferPool, Exception exception) {
+        ScrapResponse failed = new ScrapResponse(bufferPool);
+        failed.statusCode = -1;
+        failed.exception = exception;
+        return failed;
+    }
+
+    /**
+     * the underlying response, already closed
+     */
+    public CloseableHttpResponse getResponse() {
+        return response;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+
+    public String getLastRedirect() {
+        return lastRedirect;
+    }
+
+    public long getExecutionTimeMS() {
+        return executionTimeMS;
+    }
+
+    /**
+     * content coding of the body on the wire (gzip, deflate...), null for identity
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * body bytes received on the wire
+     */
+    public long getTransferredBytes() {
+        return transferredBytes;
+    }
+
+    /**
+     * body bytes after content decoding
+     */
+    public long getDecodedBytes() {
+        return decodedBytes;
+    }
+
+    public String getResponseHeader(String key) {
+        if (response == null) {
+            return null;
+        }
+        Header header = response.getFirstHeader(key);
+        if (header == null) {
+            return null;
+        }
+        return header.getValue();
+    }
+
+    /**
+     * a copy of the response body
+     */
+    public byte[] getContent() {
+        if (content == null && buffer != null) {
+            content = Arrays.copyOf(buffer, bufferLength);
+        }
+        return content;
+    }
+
+    /**
+     * read only view of the response body without copy, only valid until close()
+     */
+    public ByteCharSequence getContentView() {
+        if (buffer == null) {
+            return null;
+        }
+        return new ByteCharSequence(buffer, 0, bufferLength);
+    }
+
+    public String getContentAsString() {
+        if (response == null || buffer == null) {
+            return null;
+        }
+
+        Charset charset = getDetectedCharset();
+
+        if (charset == null) {
+            charset = Charset.forName("UTF-8");
+        }
+
+        return new String(buffer, 0, bufferLength, charset);
+    }
+
+    public Charset getDetectedCharset() {
+        Charset charset = null;
+        if (contentType != null) {
+            try {
+                charset = contentType.getCharset();
+            } catch (final Exception ex) {
+            }
+
+            if (charset == null) {
+                if (contentType.getMimeType().contains("text/html")) {
+                    charset = detectCharsetFromHtmlMeta();
+                }
+            }
+
+        }
+
+        return charset;
+    }
+
+    protected Charset detectCharsetFromHtmlMeta() {
+        if (buffer == null) {
+            return null;
+        }
+
+        int len = bufferLength > 4096 ? 4096 : bufferLength;
+        Matcher matcher = pcharset.matcher(new ByteCharSequence(buffer, 0, len));
+        if (matcher.find()) {
+            try {
+                return Charset.forName(matcher.group(1));
+            } catch (Exception ex) {
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * gives back the body buffer to the pool, the content views become invalid
+     */
+    @Override
+    public void close() {
+        bufferPool.release(buffer);
+        buffer = null;
+        bufferLength = 0;
+        content = null;
+    }
+
+}
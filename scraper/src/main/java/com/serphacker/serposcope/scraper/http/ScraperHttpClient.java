@@ -2,6 +2,7 @@ package com.serphacker.serposcope.scraper.http;
 
 import com.serphacker.serposcope.scraper.http.proxy.ScrapProxy;
 import java.io.Closeable;
+import java.nio.charset.Charset;
 import java.util.Map;
 import org.apache.http.HttpHost;
 import org.apache.http.cookie.Cookie;
@@ -32,6 +33,21 @@ public interface ScraperHttpClient extends Closeable {
 
     byte[] getContent();
 
+    /**
+     * read only view of the response body, only valid until the next request
+     */
+    default ByteCharSequence getContentView() {
+        byte[] content = getContent();
+        return content == null ? null : new ByteCharSequence(content);
+    }
+
+    /**
+     * charset of the last response from its headers or its meta tag, null if unknown
+     */
+    default Charset getDetectedCharset() {
+        return null;
+    }
+
     void clearCookies();
 
     void addCookie(Cookie cookie);
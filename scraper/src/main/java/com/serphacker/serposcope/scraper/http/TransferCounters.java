@@ -0,0 +1,53 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * bytes of response bodies received on the wire (transferred) and after content decoding (decoded).
+ * thread safe
+ */
+public class TransferCounters {
+
+    final AtomicLong responses = new AtomicLong();
+    final AtomicLong transferredBytes = new AtomicLong();
+    final AtomicLong decodedBytes = new AtomicLong();
+
+    void add(long transferred, long decoded) {
+        responses.incrementAndGet();
+        transferredBytes.addAndGet(transferred);
+        decodedBytes.addAndGet(decoded);
+    }
+
+    public long getResponses() {
+        return responses.get();
+    }
+
+    public long getTransferredBytes() {
+        return transferredBytes.get();
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    /**
+     * share of the decoded bytes which did not go through the wire
+     */
+    public double getSavings() {
+        long decoded = decodedBytes.get();
+        return decoded == 0 ? 0d : 1d - (double) transferredBytes.get() / decoded;
+    }
+
+    @Override
+    public String toString() {
+        return "transferred=" + getTransferredBytes() + " decoded=" + getDecodedBytes() + " responses=" + getResponses();
+    }
+
+}
@@ -1,10 +1,12 @@
 package com.serphacker.serposcope.scraper.http.adapter;
 
+import com.serphacker.serposcope.scraper.http.ByteCharSequence;
 import com.serphacker.serposcope.scraper.http.PostType;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
 import com.serphacker.serposcope.scraper.http.ScraperHttpClient;
 import com.serphacker.serposcope.scraper.http.proxy.ScrapProxy;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Map;
 import org.apache.http.HttpHost;
 import org.apache.http.cookie.Cookie;
@@ -84,6 +86,16 @@ public class ScrapClientAdapter implements ScraperHttpClient {
         return delegate.getContent();
     }
 
+    @Override
+    public ByteCharSequence getContentView() {
+        return delegate.getContentView();
+    }
+
+    @Override
+    public Charset getDetectedCharset() {
+        return delegate.getDetectedCharset();
+    }
+
     @Override
     public void clearCookies() {
         delegate.clearCookies();
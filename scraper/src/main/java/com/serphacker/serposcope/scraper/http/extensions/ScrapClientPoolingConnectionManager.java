@@ -0,0 +1,151 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http.extensions;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.Registry;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * connection pool keeping the idle connections of each (proxy, host) route for a ttl.
+ *
+ * The state of a connection is the proxy it was opened through, so connections are only reused by the same proxy.
+ * A lease is a hit when it gets back an open connection and a miss when a new one has to be opened.
+ * Idle connections are evicted lazily on lease, no thread is started. When more than maxIdle connections are idle,
+ * the least recently released are closed on release.
+ * thread safe
+ */
+public class ScrapClientPoolingConnectionManager extends PoolingHttpClientConnectionManager {
+
+    public static class Counters {
+
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+    }
+
+    private final long idleTTLMS;
+    private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+    private final Counters counters = new Counters();
+    private final Map<Object, Counters> countersByState = new ConcurrentHashMap<>();
+    private volatile int maxIdle;
+
+    public ScrapClientPoolingConnectionManager(Registry<ConnectionSocketFactory> registry, long idleTTLMS) {
+        super(registry);
+        this.idleTTLMS = idleTTLMS;
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        evictIdleConnections();
+        ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                HttpClientConnection conn = request.get(timeout, tunit);
+                count(state, conn.isOpen());
+                return conn;
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection managedConn, Object state, long keepalive, TimeUnit tunit) {
+        super.releaseConnection(managedConn, state, keepalive, tunit);
+        if (maxIdle > 0 && getTotalStats().getAvailable() > maxIdle) {
+            closeExtraIdleConnections();
+        }
+    }
+
+    /**
+     * released connections are first in the available list, the ones after the first maxIdle are closed
+     */
+    protected void closeExtraIdleConnections() {
+        int[] kept = new int[]{0};
+        enumAvailable((entry) -> {
+            if (++kept[0] > maxIdle) {
+                entry.close();
+            }
+        });
+    }
+
+    protected void count(Object state, boolean hit) {
+        Counters stateCounters = state == null ? null : countersByState.computeIfAbsent(state, (k) -> new Counters());
+        if (hit) {
+            counters.hits.incrementAndGet();
+            if (stateCounters != null) {
+                stateCounters.hits.incrementAndGet();
+            }
+        } else {
+            counters.misses.incrementAndGet();
+            if (stateCounters != null) {
+                stateCounters.misses.incrementAndGet();
+            }
+        }
+    }
+
+    protected void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        long last = lastEviction.get();
+        if (now - last < idleTTLMS / 2 || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        closeExpiredConnections();
+        closeIdleConnections(idleTTLMS, TimeUnit.MILLISECONDS);
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * idle connections kept over all the routes, 0 for no limit
+     */
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    public long getIdleTTLMS() {
+        return idleTTLMS;
+    }
+
+    public Counters getCounters() {
+        return counters;
+    }
+
+    /**
+     * counters of the connections opened through a proxy (the connection state), null if none was leased
+     */
+    public Counters getCounters(Object state) {
+        return countersByState.get(state);
+    }
+
+}
@@ -33,6 +33,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpHost;
 import org.apache.http.annotation.Contract;
 import org.apache.http.annotation.ThreadingBehavior;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
 import org.apache.http.conn.ssl.DefaultHostnameVerifier;
 import org.apache.http.conn.util.PublicSuffixMatcherLoader;
@@ -88,6 +89,7 @@ public class ScrapClientSSLConnectionFactory implements LayeredConnectionSocketF
     private final String[] supportedProtocols;
     private final String[] supportedCipherSuites;
     private boolean insecure;
+    private ScrapClientSSLSessionCache sessionCache;
 
     public ScrapClientSSLConnectionFactory(ScrapClientPlainConnectionFactory plainConnectionSocketFactory) {
         this(plainConnectionSocketFactory, false);
@@ -188,7 +190,14 @@ public class ScrapClientSSLConnectionFactory implements LayeredConnectionSocketF
         final int port,
         final HttpContext context) throws IOException {
 
-        SSLSocketFactory sslSocketFactory = insecure ? insecoreSSLSocketfactory : defaultSSLSocketFactory;
+        SSLSocketFactory sslSocketFactory = null;
+        Object proxy = context == null ? null : context.getAttribute(HttpClientContext.USER_TOKEN);
+        if (sessionCache != null && proxy != null) {
+            sslSocketFactory = sessionCache.get(proxy, insecure);
+        }
+        if (sslSocketFactory == null) {
+            sslSocketFactory = insecure ? insecoreSSLSocketfactory : defaultSSLSocketFactory;
+        }
 
         final SSLSocket sslsock = (SSLSocket) sslSocketFactory.createSocket(
             socket,
@@ -316,4 +325,15 @@ public class ScrapClientSSLConnectionFactory implements LayeredConnectionSocketF
         this.insecure = insecure;
     }
 
+    public ScrapClientSSLSessionCache getSessionCache() {
+        return sessionCache;
+    }
+
+    /**
+     * when set, tls sessions are kept per connection state (the proxy of pooled clients)
+     */
+    public void setSessionCache(ScrapClientSSLSessionCache sessionCache) {
+        this.sessionCache = sessionCache;
+    }
+
 }
@@ -0,0 +1,133 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http.extensions;
+
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ssl socket factories per proxy, each with its own ssl context, so a tls session is only resumed through the
+ * proxy which negotiated it. Sessions expire after the ttl and so do the factories of the proxies not used anymore.
+ * thread safe
+ */
+public class ScrapClientSSLSessionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScrapClientSSLSessionCache.class);
+
+    public final static long DEFAULT_TTL_MS = 120000L;
+
+    private final static ScrapClientSSLSessionCache SHARED = new ScrapClientSSLSessionCache(DEFAULT_TTL_MS);
+
+    public static ScrapClientSSLSessionCache shared() {
+        return SHARED;
+    }
+
+    static class Key {
+
+        final Object proxy;
+        final boolean insecure;
+
+        Key(Object proxy, boolean insecure) {
+            this.proxy = proxy;
+            this.insecure = insecure;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(proxy) + (insecure ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return insecure == other.insecure && Objects.equals(proxy, other.proxy);
+        }
+    }
+
+    static class Entry {
+
+        final SSLSocketFactory factory;
+        volatile long lastUsed;
+
+        Entry(SSLSocketFactory factory) {
+            this.factory = factory;
+        }
+    }
+
+    private final long ttlMS;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong lastEviction = new AtomicLong(System.currentTimeMillis());
+
+    public ScrapClientSSLSessionCache(long ttlMS) {
+        this.ttlMS = ttlMS;
+    }
+
+    /**
+     * the factory of the proxy, null if no ssl context could be created
+     */
+    public SSLSocketFactory get(Object proxy, boolean insecure) {
+        long now = System.currentTimeMillis();
+        evict(now);
+
+        Entry entry = entries.computeIfAbsent(new Key(proxy, insecure), (key) -> {
+            SSLContext context = createContext(key.insecure);
+            return context == null ? null : new Entry(context.getSocketFactory());
+        });
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry.factory;
+    }
+
+    protected SSLContext createContext(boolean insecure) {
+        try {
+            SSLContext context = insecure
+                ? SSLContexts.custom().loadTrustMaterial(null, (X509Certificate[] chain, String authType) -> true).build()
+                : SSLContexts.createDefault();
+            context.getClientSessionContext().setSessionTimeout((int) Math.max(1, ttlMS / 1000));
+            return context;
+        } catch (Exception ex) {
+            LOG.error("ex in ssl context initialization", ex);
+            return null;
+        }
+    }
+
+    protected void evict(long now) {
+        long last = lastEviction.get();
+        if (now - last < ttlMS / 2 || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            if (now - it.next().lastUsed > ttlMS) {
+                it.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getTtlMS() {
+        return ttlMS;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http.proxy;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * usage statistics of a proxy in a {@link ProxyRotator}.
+ * Updates are synchronized on the instance (one lock per proxy), reads are lock free.
+ */
+public class ProxyHealth {
+
+    public final static double LATENCY_REFERENCE_MS = 5000d;
+    public final static double LATENCY_EWMA_ALPHA = 0.2d;
+
+    final ScrapProxy proxy;
+    final AtomicBoolean leased = new AtomicBoolean();
+
+    volatile int successes;
+    volatile int failures;
+    volatile int captchas;
+    volatile int consecutiveFailures;
+    volatile double latencyMS = -1;
+    volatile long benchedUntil;
+    volatile long lastUsedAt;
+    volatile long leaseOrder;
+    volatile boolean dead;
+
+    ProxyHealth(ScrapProxy proxy, long leaseOrder) {
+        this.proxy = proxy;
+        this.leaseOrder = leaseOrder;
+    }
+
+    synchronized void success(long latencyMS, int captchas, long now){
+        ++this.successes;
+        this.lastUsedAt = now;
+        this.captchas += captchas;
+        this.consecutiveFailures = 0;
+        this.benchedUntil = 0;
+        updateLatency(latencyMS);
+    }
+
+    /**
+     * bench the proxy with an exponential backoff, dead after maxConsecutiveFailures
+     */
+    synchronized void failure(long latencyMS, int captchas, long now, long benchMS, long maxBenchMS, int maxConsecutiveFailures){
+        ++this.failures;
+        this.lastUsedAt = now;
+        this.captchas += captchas;
+        ++this.consecutiveFailures;
+        updateLatency(latencyMS);
+
+        if(maxConsecutiveFailures > 0 && consecutiveFailures >= maxConsecutiveFailures){
+            dead = true;
+            return;
+        }
+        int shift = Math.min(consecutiveFailures - 1, 30);
+        benchedUntil = now + Math.min(maxBenchMS, benchMS << shift);
+    }
+
+    void updateLatency(long latencyMS){
+        if(latencyMS <= 0){
+            return;
+        }
+        this.latencyMS = this.latencyMS < 0 ? latencyMS : LATENCY_EWMA_ALPHA * latencyMS + (1 - LATENCY_EWMA_ALPHA) * this.latencyMS;
+    }
+
+    /**
+     * between 0 and 1, success rate (with a neutral prior) penalized by captchas and latency
+     */
+    public double getScore(){
+        int successes = this.successes;
+        int failures = this.failures;
+        double successRate = (successes + 1d) / (successes + failures + 2d);
+        double captchaRate = Math.min(1d, captchas / (double)(successes + failures + 1));
+        double latency = this.latencyMS;
+        double latencyFactor = latency <= 0 ? 1d : 1d / (1d + latency / LATENCY_REFERENCE_MS);
+        return successRate * (1d - captchaRate) * latencyFactor;
+    }
+
+    public boolean isBenched(long now){
+        return benchedUntil > now;
+    }
+
+    /**
+     * end of the bench or of the reuse cool down, whichever comes last
+     */
+    public long getAvailableAt(long minReuseMS){
+        long lastUsedAt = this.lastUsedAt;
+        return Math.max(benchedUntil, lastUsedAt == 0 ? 0 : lastUsedAt + minReuseMS);
+    }
+
+    public ScrapProxy getProxy() {
+        return proxy;
+    }
+
+    public boolean isLeased() {
+        return leased.get();
+    }
+
+    public int getSuccesses() {
+        return successes;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public int getCaptchas() {
+        return captchas;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public double getLatencyMS() {
+        return latencyMS;
+    }
+
+    public long getBenchedUntil() {
+        return benchedUntil;
+    }
+
+    public long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    @Override
+    public String toString() {
+        return proxy + " [score=" + String.format("%.2f", getScore()) + ", successes=" + successes + ", failures=" + failures
+            + ", captchas=" + captchas + ", latency=" + (long)latencyMS + "ms" + (dead ? ", dead" : "") + "]";
+    }
+
+}
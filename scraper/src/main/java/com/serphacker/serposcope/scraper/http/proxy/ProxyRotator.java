@@ -1,67 +1,298 @@
-/* 
+/*
  * Serposcope - SEO rank checker https://serposcope.serphacker.com/
- * 
+ *
  * Copyright (c) 2016 SERP Hacker
  * @author Pierre Nogues <support@serphacker.com>
  * @license https://opensource.org/licenses/MIT MIT License
  */
 package com.serphacker.serposcope.scraper.http.proxy;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
 
 
 /**
+ * hands out the healthiest available proxy, least recently used first among proxies of the same health.
+ *
+ * Failing proxies are benched with an exponential backoff and only dropped after maxConsecutiveFailures.
+ * A proxy is not handed out again before minReuseMS since its last use.
+ * Selection is lock free (a proxy is leased with a CAS), statistics are updated under a per proxy lock,
+ * threads waiting in {@link #take(ScrapProxy, long)} are parked until the next proxy is available or released.
  * thread safe
  * @author admin
  */
 public class ProxyRotator {
 
-    final Queue<ScrapProxy> proxies = new ArrayDeque<>();
+    public final static long DEFAULT_BENCH_MS = 30000l;
+    public final static long DEFAULT_MAX_BENCH_MS = 30l*60l*1000l;
+    public final static int DEFAULT_MAX_CONSECUTIVE_FAILURES = 8;
+
+    /**
+     * scores are compared by bucket so a slightly better proxy doesn't monopolize the selection
+     */
+    public final static int SCORE_BUCKETS = 10;
+
+    final ConcurrentMap<ScrapProxy,ProxyHealth> healths = new ConcurrentHashMap<>();
+    final AtomicLong useSequence = new AtomicLong();
+    final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    volatile long minReuseMS = 0;
+    volatile long benchMS = DEFAULT_BENCH_MS;
+    volatile long maxBenchMS = DEFAULT_MAX_BENCH_MS;
+    volatile int maxConsecutiveFailures = DEFAULT_MAX_CONSECUTIVE_FAILURES;
 
     public ProxyRotator(Collection<ScrapProxy> proxies) {
-        this.proxies.addAll(proxies);
+        addAll(proxies);
     }
-    
+
     public boolean addAll(Collection<ScrapProxy> proxies){
-        synchronized(proxies){
-            return this.proxies.addAll(proxies);
+        boolean changed = false;
+        for (ScrapProxy proxy : proxies) {
+            changed |= add(proxy);
         }
+        return changed;
     }
-    
+
+    /**
+     * register a new proxy or give back a leased one, a proxy already known keeps its health
+     */
     public boolean add(ScrapProxy proxy){
-        synchronized(proxy){
-            return proxies.add(proxy);
+        boolean[] created = new boolean[1];
+        ProxyHealth health = healths.computeIfAbsent(proxy, (key) -> {
+            created[0] = true;
+            return new ProxyHealth(key, useSequence.getAndIncrement());
+        });
+        boolean added = created[0] || (!health.dead && health.leased.compareAndSet(true, false));
+        if(added){
+            Thread waiter = waiters.peek();
+            if(waiter != null){
+                LockSupport.unpark(waiter);
+            }
         }
+        return added;
     }
-    
+
     public ScrapProxy poll(){
         return rotate(null);
     }
-    
+
+    /**
+     * give back the previous proxy (if any) and lease the best available one
+     * @return null if every proxy is leased, benched, cooling down or dead
+     */
     public ScrapProxy rotate(ScrapProxy previousProxy){
-        synchronized(proxies){
-            if(previousProxy != null){
-                proxies.add(previousProxy);
+        if(previousProxy != null){
+            add(previousProxy);
+        }
+
+        long now = now();
+        long minReuseMS = this.minReuseMS;
+        while(true){
+            ProxyHealth best = null;
+            int bestBucket = -1;
+            for (ProxyHealth health : healths.values()) {
+                if(health.dead || health.leased.get() || health.getAvailableAt(minReuseMS) > now){
+                    continue;
+                }
+                int bucket = bucket(health);
+                if(best == null || bucket > bestBucket || (bucket == bestBucket && health.leaseOrder < best.leaseOrder)){
+                    best = health;
+                    bestBucket = bucket;
+                }
+            }
+
+            if(best == null){
+                return null;
+            }
+
+            if(best.leased.compareAndSet(false, true)){
+                best.leaseOrder = useSequence.getAndIncrement();
+                return best.proxy;
             }
-            return proxies.poll();
         }
     }
-    
+
+    /**
+     * give back the previous proxy (if any) and lease the best available one, parking until a proxy is available
+     * @return null if no proxy is available before timeoutMS or if every proxy is dead
+     */
+    public ScrapProxy take(ScrapProxy previousProxy, long timeoutMS) throws InterruptedException {
+        if(previousProxy != null){
+            add(previousProxy);
+        }
+
+        long deadline = now() + timeoutMS;
+        Thread current = Thread.currentThread();
+        waiters.add(current);
+        try {
+            while(true){
+                ScrapProxy proxy = rotate(null);
+                if(proxy != null){
+                    return proxy;
+                }
+                if(isEmpty()){
+                    return null;
+                }
+
+                long now = now();
+                long wakeup = Math.min(deadline, nextAvailableAt());
+                if(deadline <= now){
+                    return null;
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(1, wakeup - now)));
+                if(Thread.interrupted()){
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+
+    /**
+     * earliest time a proxy not leased will be available, Long.MAX_VALUE if none
+     */
+    protected long nextAvailableAt(){
+        long minReuseMS = this.minReuseMS;
+        long next = Long.MAX_VALUE;
+        for (ProxyHealth health : healths.values()) {
+            if(!health.dead && !health.leased.get()){
+                next = Math.min(next, health.getAvailableAt(minReuseMS));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * milliseconds before the proxy cool down ends (ignoring its bench), 0 if it can be used now
+     */
+    public long getCoolDownMS(ScrapProxy proxy){
+        ProxyHealth health = healths.get(proxy);
+        if(health == null || health.lastUsedAt == 0){
+            return 0;
+        }
+        return Math.max(0, health.lastUsedAt + minReuseMS - now());
+    }
+
+    protected int bucket(ProxyHealth health){
+        return (int)(health.getScore() * SCORE_BUCKETS);
+    }
+
+    public void success(ScrapProxy proxy, long latencyMS, int captchas){
+        ProxyHealth health = healths.get(proxy);
+        if(health != null){
+            health.success(latencyMS, captchas, now());
+        }
+    }
+
+    /**
+     * bench the proxy, it won't be handed out before the end of the backoff
+     */
+    public void failure(ScrapProxy proxy, long latencyMS, int captchas){
+        ProxyHealth health = healths.get(proxy);
+        if(health != null){
+            health.failure(latencyMS, captchas, now(), benchMS, maxBenchMS, maxConsecutiveFailures);
+        }
+    }
+
+    public ProxyHealth getHealth(ScrapProxy proxy){
+        return healths.get(proxy);
+    }
+
+    /**
+     * statistics of every proxy, healthiest first
+     */
+    public List<ProxyHealth> health(){
+        return healths.values().stream()
+            .sorted(Comparator.comparingDouble(ProxyHealth::getScore).reversed())
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * number of proxies available right now
+     */
     public int remaining(){
-        synchronized(proxies){
-            return proxies.size();
+        long now = now();
+        long minReuseMS = this.minReuseMS;
+        int remaining = 0;
+        for (ProxyHealth health : healths.values()) {
+            if(!health.dead && !health.leased.get() && health.getAvailableAt(minReuseMS) <= now){
+                ++remaining;
+            }
         }
+        return remaining;
     }
-    
+
+    /**
+     * true if every proxy is dead
+     */
+    public boolean isEmpty(){
+        return healths.values().stream().allMatch((health) -> health.dead);
+    }
+
+    /**
+     * proxies not leased and not dead (including benched ones)
+     */
     public List<ScrapProxy> list(){
-        synchronized(proxies){
-            return new ArrayList<>(proxies);
+        List<ScrapProxy> proxies = new ArrayList<>();
+        for (ProxyHealth health : healths.values()) {
+            if(!health.dead && !health.leased.get()){
+                proxies.add(health.proxy);
+            }
         }
-    } 
-    
-    
+        return proxies;
+    }
+
+    protected long now(){
+        return System.currentTimeMillis();
+    }
+
+    public long getMinReuseMS() {
+        return minReuseMS;
+    }
+
+    /**
+     * minimum delay between two uses of the same proxy
+     */
+    public void setMinReuseMS(long minReuseMS) {
+        this.minReuseMS = minReuseMS;
+    }
+
+    public long getBenchMS() {
+        return benchMS;
+    }
+
+    public void setBenchMS(long benchMS) {
+        this.benchMS = benchMS;
+    }
+
+    public long getMaxBenchMS() {
+        return maxBenchMS;
+    }
+
+    public void setMaxBenchMS(long maxBenchMS) {
+        this.maxBenchMS = maxBenchMS;
+    }
+
+    public int getMaxConsecutiveFailures() {
+        return maxConsecutiveFailures;
+    }
+
+    /**
+     * 0 to never drop a proxy
+     */
+    public void setMaxConsecutiveFailures(int maxConsecutiveFailures) {
+        this.maxConsecutiveFailures = maxConsecutiveFailures;
+    }
+
 }
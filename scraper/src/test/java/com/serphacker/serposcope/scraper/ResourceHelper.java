@@ -24,7 +24,11 @@ public class ResourceHelper {
     }
 
     public static String readResourceAsString(String resourcePath) throws IOException {
-        return new String(ByteStreams.toByteArray(ResourceHelper.class.getResourceAsStream(resourcePath)));
+        return new String(readResource(resourcePath));
+    }
+
+    public static byte[] readResource(String resourcePath) throws IOException {
+        return ByteStreams.toByteArray(ResourceHelper.class.getResourceAsStream(resourcePath));
     }
 
 }
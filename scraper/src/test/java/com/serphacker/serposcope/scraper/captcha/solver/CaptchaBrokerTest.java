@@ -0,0 +1,199 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.captcha.solver;
+
+import com.serphacker.serposcope.scraper.captcha.Captcha;
+import com.serphacker.serposcope.scraper.captcha.CaptchaRecaptcha;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CaptchaBrokerTest {
+
+    final static int CAPTCHAS = 5;
+
+    @Test
+    public void testBatchedPolling() throws Exception {
+        AtomicInteger submitted = new AtomicInteger();
+        List<String> polls = new CopyOnWriteArrayList<>();
+
+        // stub of the 2captcha api, answers once all the captchas are submitted
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", (exchange) -> {
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getQuery();
+            String response = "ERROR_WRONG_USER_KEY";
+            if (path.endsWith("in.php")) {
+                response = "OK|" + (1000 + submitted.incrementAndGet());
+            } else if (path.endsWith("res.php") && query.contains("ids=")) {
+                polls.add(query);
+                String[] ids = query.replaceAll(".*ids=([0-9,]+).*", "$1").split(",");
+                List<String> results = new ArrayList<>();
+                for (String id : ids) {
+                    results.add(submitted.get() < CAPTCHAS ? "CAPCHA_NOT_READY" : "token-" + id);
+                }
+                response = String.join("|", results);
+            }
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CAPTCHAS);
+        try (CaptchaBroker broker = new CaptchaBroker(1)) {
+            TwoCaptchaSolver solver = new TwoCaptchaSolver("key", 30000l);
+            solver.setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            solver.setBroker(broker);
+
+            List<CaptchaRecaptcha> captchas = new ArrayList<>();
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < CAPTCHAS; i++) {
+                CaptchaRecaptcha captcha = new CaptchaRecaptcha("challenge", "data-s", "https://www.google.com/sorry");
+                captchas.add(captcha);
+                results.add(executor.submit(() -> solver.solve(captcha)));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(20, TimeUnit.SECONDS));
+            }
+            for (CaptchaRecaptcha captcha : captchas) {
+                assertEquals(Captcha.Status.SOLVED, captcha.getStatus());
+                assertEquals("token-" + captcha.getId(), captcha.getResponse());
+            }
+
+            // all the outstanding ids in a single request
+            assertEquals(polls.size(), broker.getPolls());
+            assertTrue(polls.size() < CAPTCHAS);
+            String lastPoll = polls.get(polls.size() - 1);
+            assertEquals(CAPTCHAS, lastPoll.replaceAll(".*ids=([0-9,]+).*", "$1").split(",").length);
+            assertEquals(0, broker.getPending());
+        } finally {
+            executor.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testFailedPollKeepsPending() throws Exception {
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger polled = new AtomicInteger();
+
+        // stub of the 2captcha api, the first polls get an empty then a truncated answer
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", (exchange) -> {
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getQuery();
+            String response = "ERROR_WRONG_USER_KEY";
+            if (path.endsWith("in.php")) {
+                response = "OK|" + (1000 + submitted.incrementAndGet());
+            } else if (path.endsWith("res.php") && query.contains("ids=")) {
+                String[] ids = query.replaceAll(".*ids=([0-9,]+).*", "$1").split(",");
+                switch (polled.incrementAndGet()) {
+                    case 1:
+                        response = "";
+                        break;
+                    case 2:
+                        response = "token-" + ids[0];
+                        break;
+                    default:
+                        List<String> results = new ArrayList<>();
+                        for (String id : ids) {
+                            results.add("1002".equals(id) ? "ERROR_CAPTCHA_UNSOLVABLE" : "token-" + id);
+                        }
+                        response = String.join("|", results);
+                }
+            }
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+
+        try (CaptchaBroker broker = new CaptchaBroker(1)) {
+            TwoCaptchaSolver solver = new TwoCaptchaSolver("key", 30000l);
+            solver.setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            solver.setBroker(broker);
+
+            CaptchaRecaptcha first = new CaptchaRecaptcha("challenge", "data-s", "https://www.google.com/sorry");
+            CaptchaRecaptcha second = new CaptchaRecaptcha("challenge", "data-s", "https://www.google.com/sorry");
+            CompletableFuture<Boolean> firstSolved = CompletableFuture.supplyAsync(() -> solver.solve(first));
+            while (submitted.get() < 1) {
+                Thread.sleep(1);
+            }
+            CompletableFuture<Boolean> secondSolved = CompletableFuture.supplyAsync(() -> solver.solve(second));
+
+            // only the id answered with an error fails
+            assertTrue(firstSolved.get(20, TimeUnit.SECONDS));
+            assertEquals("token-1001", first.getResponse());
+            assertFalse(secondSolved.get(20, TimeUnit.SECONDS));
+            assertTrue(polled.get() >= 3);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        AtomicInteger polled = new AtomicInteger();
+        CaptchaBroker.Provider provider = new CaptchaBroker.Provider() {
+            @Override
+            public long getPollingPauseMS() {
+                return 10;
+            }
+
+            @Override
+            public Map<String, CaptchaBroker.Answer> poll(List<String> ids) throws Exception {
+                polled.incrementAndGet();
+                if (ids.contains("solved")) {
+                    return Collections.singletonMap("solved", CaptchaBroker.Answer.solved("ok"));
+                }
+                return Collections.emptyMap();
+            }
+        };
+
+        try (CaptchaBroker broker = new CaptchaBroker(1)) {
+            CompletableFuture<CaptchaBroker.Answer> never = broker.await(provider, "never", 100);
+            CompletableFuture<CaptchaBroker.Answer> solved = broker.await(provider, "solved", 100);
+
+            assertEquals("ok", solved.get(5, TimeUnit.SECONDS).getResponse());
+            assertEquals(Captcha.Error.TIMEOUT, never.get(5, TimeUnit.SECONDS).getError());
+            assertTrue(polled.get() > 0);
+
+            // the provider isn't polled anymore once nothing is pending
+            Thread.sleep(50);
+            assertEquals(0, broker.getPending());
+            int polls = polled.get();
+            Thread.sleep(50);
+            assertEquals(polls, polled.get());
+
+            CompletableFuture<CaptchaBroker.Answer> closed = broker.await(provider, "closed", 10000);
+            broker.close();
+            assertEquals(Captcha.Error.INTERRUPTED, closed.get(5, TimeUnit.SECONDS).getError());
+        }
+    }
+
+}
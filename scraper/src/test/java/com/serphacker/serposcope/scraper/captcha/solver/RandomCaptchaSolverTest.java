@@ -108,4 +108,107 @@ public class RandomCaptchaSolverTest {
         }
     }
     
+    static class SleepingCaptchaSolver extends DummyCaptchaSolver {
+
+        final long sleepMS;
+        volatile boolean interrupted;
+
+        public SleepingCaptchaSolver(int id, long sleepMS) {
+            super(id, true);
+            this.sleepMS = sleepMS;
+        }
+
+        @Override
+        public boolean solve(Captcha captcha) {
+            try {
+                Thread.sleep(sleepMS);
+            } catch (InterruptedException ex) {
+                interrupted = true;
+                captcha.setError(Captcha.Error.INTERRUPTED);
+                return false;
+            }
+            captcha.setLastSolver(this);
+            return super.solve(captcha);
+        }
+    }
+
+    @Test
+    public void testRank() {
+        DummyCaptchaSolver slow = new DummyCaptchaSolver(1, true);
+        DummyCaptchaSolver fast = new DummyCaptchaSolver(2, true);
+        DummyCaptchaSolver failing = new DummyCaptchaSolver(3, true);
+        RandomCaptchaSolver solver = new RandomCaptchaSolver(Arrays.asList(slow, fast, failing));
+        solver.setHedgePercentile(0.9d);
+
+        for (int i = 0; i < RandomCaptchaSolver.MIN_SAMPLES; i++) {
+            solver.stats.get(slow).record(true, 20000);
+            solver.stats.get(fast).record(true, 10000);
+            solver.stats.get(failing).record(true, 10000);
+            solver.stats.get(failing).record(false, 1000);
+            solver.stats.get(failing).record(false, 1000);
+        }
+
+        assertEquals(Arrays.asList(fast, slow, failing), solver.rank());
+        assertEquals(10000, solver.getHedgeDelay(fast));
+        assertEquals(RandomCaptchaSolver.DEFAULT_HEDGE_DELAY_MS, new RandomCaptchaSolver(Arrays.asList(fast)).getHedgeDelay(fast));
+    }
+
+    @Test
+    public void testHedge() throws Exception {
+        SleepingCaptchaSolver slow = new SleepingCaptchaSolver(1, 10000);
+        SleepingCaptchaSolver fast = new SleepingCaptchaSolver(2, 10);
+
+        try (RandomCaptchaSolver solver = new RandomCaptchaSolver(Arrays.asList(slow, fast))) {
+            solver.setHedgePercentile(0.9d);
+            // slow is usually fast and ranked first
+            for (int i = 0; i < RandomCaptchaSolver.MIN_SAMPLES; i++) {
+                solver.stats.get(slow).record(true, 50);
+            }
+
+            CaptchaImage captcha = new CaptchaImage(new byte[][]{});
+            long started = System.currentTimeMillis();
+            assertTrue(solver.solve(captcha));
+            assertTrue(System.currentTimeMillis() - started < 5000);
+            assertEquals(Captcha.Status.SOLVED, captcha.getStatus());
+            assertSame(fast, captcha.getLastSolver());
+
+            // the slow attempt is cancelled and not counted
+            Thread.sleep(100);
+            assertTrue(slow.interrupted);
+            assertEquals(RandomCaptchaSolver.MIN_SAMPLES, solver.stats.get(slow).attempts);
+            assertEquals(1, solver.stats.get(fast).successes);
+        }
+    }
+
+    @Test
+    public void testHedgeDisabledByDefault() throws Exception {
+        SleepingCaptchaSolver slow = new SleepingCaptchaSolver(1, 200);
+        SleepingCaptchaSolver fast = new SleepingCaptchaSolver(2, 10);
+
+        try (RandomCaptchaSolver solver = new RandomCaptchaSolver(Arrays.asList(slow, fast))) {
+            for (int i = 0; i < RandomCaptchaSolver.MIN_SAMPLES; i++) {
+                solver.stats.get(slow).record(true, 50);
+            }
+
+            CaptchaImage captcha = new CaptchaImage(new byte[][]{});
+            assertTrue(solver.solve(captcha));
+            assertSame(slow, captcha.getLastSolver());
+            assertEquals(0, solver.stats.get(fast).attempts);
+        }
+    }
+
+    @Test
+    public void testHedgeAllFailed() throws Exception {
+        try (RandomCaptchaSolver solver = new RandomCaptchaSolver(Arrays.asList(
+            new DummyCaptchaSolver(1, false),
+            new DummyCaptchaSolver(2, false)
+        ))) {
+            solver.setHedgePercentile(0.9d);
+            CaptchaImage captcha = new CaptchaImage(new byte[][]{});
+            assertFalse(solver.solve(captcha));
+            assertEquals(Captcha.Status.ERROR, captcha.getStatus());
+            assertEquals(Captcha.Error.SERVICE_OVERLOADED, captcha.getError());
+        }
+    }
+
 }
@@ -1,6 +1,8 @@
 package com.serphacker.serposcope.scraper.google.scraper;
 
 import com.serphacker.serposcope.scraper.ResourceHelper;
+import com.serphacker.serposcope.scraper.google.scraper.strategy.StreamingSerpParsingStrategy;
+import com.serphacker.serposcope.scraper.http.ByteCharSequence;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -82,4 +84,35 @@ public class GoogleScraperParserTest {
 
     }
 
+    @Test
+    public void streaming() throws Exception {
+
+        List<String> dirs = DIRECTORIES.stream().map(d -> d + "/top-10").collect(Collectors.toList());
+        List<String> files = ResourceHelper.listResourceDir(dirs);
+
+        for (String file : files) {
+
+            if (file.endsWith(".res")) {
+                continue;
+            }
+
+            List<String> expectedUrls = Arrays.stream(ResourceHelper.readResourceAsString(file + ".res")
+                    .split("\\r?\\n"))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .collect(Collectors.toList());
+
+            ScrapClient http = mock(ScrapClient.class);
+            when(http.getContentView()).thenReturn(new ByteCharSequence(ResourceHelper.readResource(file)));
+            GoogleScraper scraper = new GoogleScraper(http, null, new StreamingSerpParsingStrategy());
+            List<String> urls = new ArrayList<>();
+            assertEquals(OK, scraper.parseSerp(urls));
+            assertTrue(scraper.hasNextPage());
+            assertNull(scraper.getLastSerpHtml());
+
+            assertEquals(expectedUrls, urls.subList(0, Math.min(urls.size(), expectedUrls.size())));
+        }
+
+    }
+
 }
@@ -16,6 +16,7 @@ import static com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status.
 
 import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
 import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
+import com.serphacker.serposcope.scraper.google.scraper.strategy.ParsedSerp;
 import com.serphacker.serposcope.scraper.google.scraper.strategy.SerpParsingStrategy;
 import com.serphacker.serposcope.scraper.http.PostType;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
@@ -141,6 +142,87 @@ public class GoogleScraperTest {
         assertEquals(1, strategy.parseResultsCountCalls);
     }
 
+    @Test
+    public void testScrapPageByPage() throws Exception {
+        StubHttpClient http = new StubHttpClient();
+        RecordingStrategy strategy = new RecordingStrategy();
+        strategy.hasNext = true;
+        strategy.resultsCount = 42L;
+        strategy.urlToAdd = "http://example.com";
+
+        GoogleScraper scraper = new GoogleScraper((ScraperHttpClient) http, null, strategy);
+
+        GoogleScrapSearch search = new GoogleScrapSearch();
+        search.setKeyword("keyword");
+        search.setPages(3);
+
+        GoogleScraper.ScrapState state = scraper.startScrap(search);
+        assertTrue(scraper.scrapPage(state));
+        assertEquals(1, state.getPage());
+        assertNull(state.getResult());
+        assertTrue(scraper.scrapPage(state));
+        assertFalse(scraper.scrapPage(state));
+
+        GoogleScrapResult result = state.getResult();
+        assertThat(result.status, is(OK));
+        assertEquals(3, result.urls.size());
+        assertEquals(42L, result.googleResults);
+        assertEquals(1, strategy.parseResultsCountCalls);
+    }
+
+    @Test
+    public void testStopCondition() throws Exception {
+        StubHttpClient http = new StubHttpClient();
+        RecordingStrategy strategy = new RecordingStrategy();
+        strategy.hasNext = true;
+        strategy.urlToAdd = "http://example.com";
+
+        GoogleScraper scraper = new GoogleScraper((ScraperHttpClient) http, null, strategy);
+
+        GoogleScrapSearch search = new GoogleScrapSearch();
+        search.setKeyword("keyword");
+        search.setPages(5);
+        search.setStopCondition((urls) -> urls.size() >= 2);
+
+        GoogleScrapResult result = scraper.scrap(search);
+        assertThat(result.status, is(OK));
+        assertTrue(result.partial);
+        assertEquals(2, result.urls.size());
+        assertEquals(2, strategy.parseCalls);
+
+        // condition never met, all the pages are fetched
+        search.setStopCondition((urls) -> false);
+        result = scraper.scrap(search);
+        assertThat(result.status, is(OK));
+        assertFalse(result.partial);
+        assertEquals(5, result.urls.size());
+    }
+
+    @Test
+    public void testStrategyParsesTheResponse() throws Exception {
+        StubHttpClient http = new StubHttpClient();
+        http.content = null;
+
+        // a strategy reading the response itself, the page is never decoded by the scraper
+        GoogleScraper scraper = new GoogleScraper((ScraperHttpClient) http, null, new RecordingStrategy() {
+            @Override
+            public ParsedSerp parse(ScraperHttpClient client, List<String> urls) {
+                urls.add("http://example.com");
+                return new ParsedSerp(OK, 42L, false);
+            }
+        });
+
+        GoogleScrapSearch search = new GoogleScrapSearch();
+        search.setKeyword("keyword");
+        search.setPages(3);
+
+        GoogleScrapResult result = scraper.scrap(search);
+        assertThat(result.status, is(OK));
+        assertEquals(Arrays.asList("http://example.com"), result.urls);
+        assertEquals(42L, result.googleResults);
+        assertNull(scraper.getLastSerpHtml());
+    }
+
     private static class StubHttpClient implements ScraperHttpClient {
 
         int status = 200;
@@ -0,0 +1,173 @@
+package com.serphacker.serposcope.scraper.google.scraper.strategy;
+
+import com.serphacker.serposcope.scraper.ResourceHelper;
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status;
+import com.serphacker.serposcope.scraper.http.ByteCharSequence;
+import com.serphacker.serposcope.scraper.http.ScraperHttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StreamingSerpParsingStrategyTest {
+
+    public final static Logger LOG = LoggerFactory.getLogger(StreamingSerpParsingStrategyTest.class);
+
+    private final static List<String> DIRECTORIES = Arrays.asList(
+            "/google/201804/top-10",
+            "/google/201804/last-page",
+            "/google/201810/top-10",
+            "/google/201810/last-page",
+            "/google/201910/top-10",
+            "/google/201910/last-page",
+            "/google/202111/top-10",
+            "/google/202111/last-page");
+
+    DefaultSerpParsingStrategy dom = new DefaultSerpParsingStrategy();
+    StreamingSerpParsingStrategy streaming = new StreamingSerpParsingStrategy();
+
+    @Test
+    public void sameOutputAsDefault() throws Exception {
+        List<String> files = ResourceHelper.listResourceDir(DIRECTORIES).stream()
+                .filter(file -> !file.endsWith(".res"))
+                .collect(Collectors.toList());
+        assertFalse(files.isEmpty());
+
+        for (String file : files) {
+            LOG.debug("checking {}", file);
+            byte[] content = ResourceHelper.readResource(file);
+            assertSameOutput(file, content);
+        }
+    }
+
+    @Test
+    public void markup() throws Exception {
+        // entities in attributes, implied paragraph ends, comments, raw text and void elements
+        assertSameOutput("res", ("<html><body><div id=\"res\"><p>intro<div class=\"g\">"
+                + "<!-- <a href=\"http://comment.com/\"><h3>x</h3></a> -->"
+                + "<script>var s = '<a href=\"http://script.com/\"><h3>x</h3></a>';</script>"
+                + "<a href=\"/url?q=http://www.site1.com/&amp;sa=U\"><br><h3>site 1</h3></a>"
+                + "<a href='http://www.site2.com/?a=1&copy=2&amp;b=3'><h3>site 2</h3></a>"
+                + "<a href=http://www.site3.com/><img src=x><h3>site 3</h3></a>"
+                + "<a href=\"https://www.google.com/aclk?sa=l\"><h3>ad</h3></a>"
+                + "</div></div><div id=\"resultStats\">About 1,234 results<nobr> (0.5 seconds)&nbsp;</nobr></div>"
+                + "<table><tr><td><a id=\"pnnext\" href=\"/search?start=10\">Next</a></table>"
+                + "</body></html>").getBytes(StandardCharsets.UTF_8));
+
+        assertSameOutput("legacy", ("<div id=\"res\"><ol><li class=\"g\"><h3 class=\"r\"><a href=\"http://www.site1.com/\">"
+                + "site 1</a></h3><li class=\"g\"><div class=\"nrgw\"><h3><a href=\"http://www.sitelink.com/\">x</a></h3>"
+                + "</div><li><h3><b>no link</b></h3></ol></div>"
+                + "<footer><a href=\"/search?start=10\">Next <span>&gt;</span>  </a></footer>").getBytes(StandardCharsets.UTF_8));
+
+        assertSameOutput("main", ("<div id=\"main\"><div><div><a href=\"/url?q=http://www.site1.com/&amp;sa=U\">"
+                + "<div>site 1</div></a></div></div><div><div><div><a href=\"http://www.site2.com/\">site 2</a></div>"
+                + "</div></div><div><div><a href=\"http://www.image.com/\"><img src=x></a></div></div>"
+                + "<div><span></span><div><a href=\"http://www.second.com/\">x</a></div></div></div>")
+                .getBytes(StandardCharsets.UTF_8));
+
+        // foster parenting and reconstruction of formatting elements
+        assertSameOutput("malformed", ("<div id=\"res\"><table><a href=\"http://www.fostered.com/\"><h3>x</h3></a>"
+                + "<tr><td><a href=\"http://www.cell.com/\"><h3>y</h3></td></table></div>"
+                + "<footer><p><a href=\"/search?start=10\">Next</p> &gt;</footer>").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void noLayout() throws Exception {
+        List<String> urls = new ArrayList<>();
+        ParsedSerp serp = streaming.parse("<html><body><div>nothing</div></body></html>".getBytes(), urls);
+        assertEquals(Status.ERROR_PARSING, serp.getStatus());
+        assertTrue(urls.isEmpty());
+        assertEquals(Status.ERROR_NETWORK, streaming.parse(new byte[0], urls).getStatus());
+    }
+
+    @Test
+    public void fallbackToDom() throws Exception {
+        byte[] nothing = "<html><body><div>nothing</div></body></html>".getBytes(StandardCharsets.UTF_8);
+        ScraperHttpClient http = mock(ScraperHttpClient.class);
+        when(http.getContentView()).thenReturn(new ByteCharSequence(nothing));
+        when(http.getContentAsString()).thenReturn(new String(nothing, StandardCharsets.UTF_8));
+
+        List<String> urls = new ArrayList<>();
+        ParsedSerp serp = streaming.parse(http, urls);
+        assertEquals(Status.ERROR_PARSING, serp.getStatus());
+        assertNotNull(serp.getDocument());
+
+        byte[] page = ("<div id=\"res\"><div class=\"g\"><a href=\"http://www.site1.com/\"><h3>site 1</h3></a>"
+                + "</div></div>").getBytes(StandardCharsets.UTF_8);
+        when(http.getContentView()).thenReturn(new ByteCharSequence(page));
+        serp = streaming.parse(http, urls);
+        assertEquals(Status.OK, serp.getStatus());
+        assertNull(serp.getDocument());
+        assertEquals(Arrays.asList("http://www.site1.com/"), urls);
+    }
+
+    @Test
+    public void detectedCharset() throws Exception {
+        String html = "<div id=\"res\"><div class=\"g\"><a href=\"http://www.caf\u00e9.com/cr\u00e8me\"><h3>caf\u00e9</h3></a>"
+                + "</div></div>";
+        ScraperHttpClient http = mock(ScraperHttpClient.class);
+        when(http.getDetectedCharset()).thenReturn(StandardCharsets.ISO_8859_1);
+        when(http.getContentView()).thenReturn(new ByteCharSequence(html.getBytes(StandardCharsets.ISO_8859_1)));
+
+        List<String> expectedUrls = new ArrayList<>();
+        dom.parse(Jsoup.parse(html), expectedUrls);
+
+        List<String> urls = new ArrayList<>();
+        ParsedSerp serp = streaming.parse(http, urls);
+        assertEquals(Status.OK, serp.getStatus());
+        assertNull(serp.getDocument());
+        assertEquals(expectedUrls, urls);
+
+        // not ascii compatible, parsed by the DOM
+        when(http.getDetectedCharset()).thenReturn(StandardCharsets.UTF_16);
+        when(http.getContentView()).thenReturn(new ByteCharSequence(html.getBytes(StandardCharsets.UTF_16)));
+        when(http.getContentAsString()).thenReturn(html);
+        urls.clear();
+        serp = streaming.parse(http, urls);
+        assertNotNull(serp.getDocument());
+        assertEquals(expectedUrls, urls);
+    }
+
+    @Test
+    public void view() throws Exception {
+        byte[] page = ("<div id=\"res\"><div class=\"g\"><a href=\"http://www.site1.com/\"><h3>site 1</h3></a>"
+                + "</div></div>").getBytes(StandardCharsets.UTF_8);
+        byte[] padded = new byte[page.length + 20];
+        Arrays.fill(padded, (byte) '<');
+        System.arraycopy(page, 0, padded, 10, page.length);
+
+        List<String> urls = new ArrayList<>();
+        ParsedSerp serp = streaming.parse(new ByteCharSequence(padded, 10, page.length), urls);
+        assertEquals(Status.OK, serp.getStatus());
+        assertEquals(Arrays.asList("http://www.site1.com/"), urls);
+    }
+
+    protected void assertSameOutput(String name, byte[] content) {
+        Document document = Jsoup.parse(new String(content, StandardCharsets.UTF_8));
+        List<String> expectedUrls = new ArrayList<>();
+        Status expectedStatus = dom.parse(document, expectedUrls);
+
+        List<String> urls = new ArrayList<>();
+        ParsedSerp serp = streaming.parse(content, urls);
+
+        assertEquals(name, expectedStatus, serp.getStatus());
+        assertEquals(name, expectedUrls, urls);
+        assertEquals(name, dom.parseResultsCount(document), serp.getResultsCount());
+        assertEquals(name, dom.hasNextPage(document), serp.hasNextPage());
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ResponseBufferPoolTest {
+
+    @Test
+    public void testAcquireRelease() {
+        ResponseBufferPool pool = new ResponseBufferPool(64 * 1024);
+
+        byte[] small = pool.acquire(1);
+        assertEquals(ResponseBufferPool.MIN_SIZE, small.length);
+        assertEquals(32 * 1024, pool.acquire(ResponseBufferPool.MIN_SIZE + 1).length);
+        assertEquals(ResponseBufferPool.MAX_POOLED_SIZE + 1, pool.acquire(ResponseBufferPool.MAX_POOLED_SIZE + 1).length);
+
+        pool.release(small);
+        assertEquals(1, pool.getIdleBuffers());
+        assertSame(small, pool.acquire(100));
+        assertEquals(0, pool.getIdleBuffers());
+
+        // not pooled
+        pool.release(new byte[1000]);
+        pool.release(new byte[ResponseBufferPool.MIN_SIZE + 1]);
+        pool.release(new byte[ResponseBufferPool.MAX_POOLED_SIZE * 2]);
+        assertEquals(0, pool.getIdleBuffers());
+
+        // bounded
+        for (int i = 0; i < 10; i++) {
+            pool.release(new byte[ResponseBufferPool.MIN_SIZE]);
+        }
+        assertEquals(4, pool.getIdleBuffers());
+    }
+
+    @Test
+    public void testGrow() {
+        ResponseBufferPool pool = new ResponseBufferPool(1024 * 1024);
+        byte[] buffer = pool.acquire(1);
+        Arrays.fill(buffer, (byte) 7);
+
+        assertSame(buffer, pool.grow(buffer, buffer.length, buffer.length));
+
+        byte[] grown = pool.grow(buffer, 10, buffer.length + 1);
+        assertEquals(buffer.length * 2, grown.length);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(7, grown[i]);
+        }
+        assertEquals(1, pool.getIdleBuffers());
+        assertSame(buffer, pool.acquire(1));
+    }
+
+    @Test
+    public void testScrapClient() throws Exception {
+        byte[] body = new byte[100_000];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", (exchange) -> {
+            // chunked, no content length
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().build())) {
+            assertEquals(200, client.get(url));
+            ByteCharSequence view = client.getContentView();
+            assertEquals(body.length, view.length());
+            assertEquals('a', view.charAt(0));
+            assertEquals('b', view.byteAt(27));
+            assertArrayEquals(body, view.toByteArray());
+            assertArrayEquals(body, client.getContent());
+            assertEquals(new String(body, "UTF-8"), client.getContentAsString());
+        }
+
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().maxResponseLength(50_000).build())) {
+            assertEquals(-1, client.get(url));
+            assertTrue(client.getException() instanceof ResponseTooBigException);
+            assertNull(client.getContent());
+            assertNull(client.getContentView());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ScrapClientCompressionTest {
+
+    HttpServer server;
+    String url;
+    byte[] body;
+    volatile String acceptEncoding;
+
+    @Before
+    public void before() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("<div class=\"g\"><a href=\"http://www.site").append(i).append(".com/\">result</a></div>\n");
+        }
+        body = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", (exchange) -> {
+            acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            String encoding = exchange.getRequestURI().getPath().substring(1);
+            byte[] encoded = encode(encoding, body);
+            if (!encoding.isEmpty()) {
+                exchange.getResponseHeaders().add("Content-Encoding", encoding.replace("-raw", ""));
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, encoded.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(encoded);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+    }
+
+    protected static byte[] encode(String encoding, byte[] data) throws java.io.IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        OutputStream os;
+        switch (encoding) {
+            case "gzip":
+                os = new GZIPOutputStream(bos);
+                break;
+            case "deflate":
+                os = new DeflaterOutputStream(bos);
+                break;
+            case "deflate-raw":
+                os = new DeflaterOutputStream(bos, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+                break;
+            default:
+                os = bos;
+        }
+        os.write(data);
+        os.close();
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        try (ScrapClient client = new ScrapClient()) {
+            long transferred = 0;
+            for (String encoding : new String[]{"", "gzip", "deflate", "deflate-raw"}) {
+                assertEquals(encoding, 200, client.get(url + encoding));
+                assertEquals(ScrapClient.ACCEPT_ENCODING, acceptEncoding);
+                assertArrayEquals(encoding, body, client.getContentView().toByteArray());
+                assertEquals(encoding, new String(body, StandardCharsets.UTF_8), client.getContentAsString());
+
+                assertEquals(encode(encoding, body).length, client.getTransferredBytes());
+                assertEquals(body.length, client.getDecodedBytes());
+                if (!encoding.isEmpty()) {
+                    assertTrue(client.getTransferredBytes() * 10 < client.getDecodedBytes());
+                }
+                transferred += client.getTransferredBytes();
+            }
+
+            assertEquals(4, client.getTransferCounters().getResponses());
+            assertEquals(transferred, client.getTransferCounters().getTransferredBytes());
+            assertEquals(4l * body.length, client.getTransferCounters().getDecodedBytes());
+            assertEquals(4, client.getTransferCounters(null).getResponses());
+            assertTrue(client.getTransferCounters().getSavings() > 0.5);
+        }
+    }
+
+    @Test
+    public void testMaxResponseLengthOnDecodedSize() throws Exception {
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().maxResponseLength(body.length - 1).build())) {
+            assertEquals(-1, client.get(url + "gzip"));
+            assertTrue(client.getException() instanceof ResponseTooBigException);
+            assertNull(client.getContent());
+            assertTrue(client.getTransferredBytes() > 0);
+        }
+
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().maxResponseLength(body.length).build())) {
+            assertEquals(200, client.get(url + "gzip"));
+            assertArrayEquals(body, client.getContent());
+        }
+    }
+
+}
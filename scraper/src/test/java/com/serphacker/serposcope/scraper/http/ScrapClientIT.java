@@ -141,7 +141,7 @@ public class ScrapClientIT {
     }
 
     @Test
-    public void testGetLastRedirect() {
+    public void testGetLastRedirect() throws Exception {
         ScrapClientConfig config = ScrapClientConfig.builder()
                 .followRedirects()
                 .build();
@@ -217,16 +217,21 @@ public class ScrapClientIT {
     @Test
     public void testDetectCharsetFromHtmlMeta() {
         ScrapClient cli = new ScrapClient();
-        cli.content = "qdsfqsdf<meta charset=\"utf-8\" />qsdfs".getBytes();
+        setContent(cli, "qdsfqsdf<meta charset=\"utf-8\" />qsdfs");
         assertEquals(Charset.forName("utf-8"), cli.detectCharsetFromHtmlMeta());
 
-        cli.content = "http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\" />".getBytes();
+        setContent(cli, "http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\" />");
         assertEquals(Charset.forName("utf-8"), cli.detectCharsetFromHtmlMeta());
 
-        cli.content = "http-equiv=\"Content-Type\" content=\"text/html; charset=xxx\" />".getBytes();
+        setContent(cli, "http-equiv=\"Content-Type\" content=\"text/html; charset=xxx\" />");
         assertNull(cli.detectCharsetFromHtmlMeta());
     }
 
+    protected void setContent(ScrapClient cli, String content) {
+        cli.last.buffer = content.getBytes();
+        cli.last.bufferLength = cli.last.buffer.length;
+    }
+
     @Test
     public void testGetContentAsString() {
         ScrapClient cli = new ScrapClient();
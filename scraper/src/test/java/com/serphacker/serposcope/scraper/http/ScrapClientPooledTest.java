@@ -0,0 +1,178 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http;
+
+import com.serphacker.serposcope.scraper.http.proxy.HttpProxy;
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.methods.HttpGet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ScrapClientPooledTest {
+
+    HttpServer server;
+    String url;
+    Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    volatile CountDownLatch concurrent = new CountDownLatch(0);
+
+    @Before
+    public void before() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", (exchange) -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            concurrent.countDown();
+            try {
+                // only returns once all the expected exchanges are in flight
+                concurrent.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+            }
+            byte[] body = exchange.getRequestURI().toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void after() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentExchanges() throws Exception {
+        int n = 4;
+        concurrent = new CountDownLatch(n);
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().pooled(n).build())) {
+            assertTrue(client.isPooled());
+
+            List<Future<ScrapResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                String path = "/page" + i;
+                futures.add(executor.submit(() -> client.exchange(new HttpGet(url + path))));
+            }
+
+            for (int i = 0; i < n; i++) {
+                try (ScrapResponse response = futures.get(i).get(10, TimeUnit.SECONDS)) {
+                    assertNull(response.getException());
+                    assertEquals(200, response.getStatusCode());
+                    assertEquals("/page" + i, response.getContentAsString());
+                }
+            }
+            assertEquals(0, concurrent.getCount());
+            assertEquals(n, clientPorts.size());
+            // the state of the client is not touched by exchanges
+            assertEquals(0, client.getStatusCode());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testKeepAlivePerProxy() throws Exception {
+        HttpProxy proxy = new HttpProxy("127.0.0.1", server.getAddress().getPort());
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().pooled().build())) {
+            for (int i = 0; i < 3; i++) {
+                client.setProxy(null);
+                assertEquals(200, client.get(url + "/direct"));
+                assertEquals("/direct", client.getContentAsString());
+
+                // through the proxy the request line holds the absolute url
+                try (ScrapResponse response = client.exchange(new HttpGet("http://www.example.com/proxied"), proxy)) {
+                    assertEquals(200, response.getStatusCode());
+                    assertEquals("http://www.example.com/proxied", response.getContentAsString());
+                }
+            }
+        }
+        // one warm connection per route, kept across proxy changes
+        assertEquals(2, clientPorts.size());
+    }
+
+    @Test
+    public void testMaxIdleConnections() throws Exception {
+        HttpProxy proxy = new HttpProxy("127.0.0.1", server.getAddress().getPort());
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().pooled().maxIdleConnections(1).build())) {
+            for (int i = 0; i < 3; i++) {
+                client.setProxy(null);
+                assertEquals(200, client.get(url + "/direct"));
+                client.setProxy(proxy);
+                assertEquals(200, client.get("http://www.example.com/"));
+            }
+            // only the connection of the last route is kept, alternating routes always opens a new one
+            assertEquals(0, client.getConnectionHits());
+            assertEquals(6, client.getConnectionMisses());
+
+            assertEquals(200, client.get("http://www.example.com/"));
+            assertEquals(1, client.getConnectionHits());
+        }
+        assertEquals(6, clientPorts.size());
+    }
+
+    @Test
+    public void testConnectionCounters() throws Exception {
+        HttpProxy proxy = new HttpProxy("127.0.0.1", server.getAddress().getPort());
+        try (ScrapClient client = new ScrapClient(ScrapClientConfig.builder().pooled().connectionTTL(200).build())) {
+            assertNull(client.getConnectionCounters(proxy));
+
+            for (int i = 0; i < 3; i++) {
+                client.setProxy(proxy);
+                assertEquals(200, client.get("http://www.example.com/"));
+                client.setProxy(null);
+                assertEquals(200, client.get(url + "/"));
+            }
+            assertEquals(4, client.getConnectionHits());
+            assertEquals(2, client.getConnectionMisses());
+            assertEquals(2, client.getConnectionCounters(proxy).getHits());
+            assertEquals(1, client.getConnectionCounters(proxy).getMisses());
+            assertEquals(2, client.getConnectionCounters(null).getHits());
+
+            // idle connections are evicted after the ttl
+            Thread.sleep(300);
+            assertEquals(200, client.get(url + "/"));
+            assertEquals(3, client.getConnectionMisses());
+            assertEquals(3, clientPorts.size());
+        }
+    }
+
+    @Test
+    public void testSingleConnection() throws Exception {
+        try (ScrapClient client = new ScrapClient()) {
+            assertFalse(client.isPooled());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(200, client.get(url + "/single"));
+                assertEquals("/single", client.getContentAsString());
+            }
+            try (ScrapResponse response = client.exchange(new HttpGet(url + "/exchange"))) {
+                assertEquals("/exchange", response.getContentAsString());
+            }
+            assertEquals("/single", client.getContentAsString());
+        }
+        assertEquals(1, clientPorts.size());
+    }
+
+}
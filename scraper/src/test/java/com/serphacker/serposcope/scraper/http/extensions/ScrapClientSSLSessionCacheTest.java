@@ -0,0 +1,38 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http.extensions;
+
+import com.serphacker.serposcope.scraper.http.proxy.HttpProxy;
+import com.serphacker.serposcope.scraper.http.proxy.SocksProxy;
+import javax.net.ssl.SSLSocketFactory;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ScrapClientSSLSessionCacheTest {
+
+    @Test
+    public void testGet() throws Exception {
+        ScrapClientSSLSessionCache cache = new ScrapClientSSLSessionCache(60000);
+
+        SSLSocketFactory http = cache.get(new HttpProxy("127.0.0.1", 8080), false);
+        assertNotNull(http);
+        assertSame(http, cache.get(new HttpProxy("127.0.0.1", 8080), false));
+        assertNotSame(http, cache.get(new HttpProxy("127.0.0.1", 8080), true));
+        assertNotSame(http, cache.get(new HttpProxy("127.0.0.2", 8080), false));
+        assertNotSame(http, cache.get(new SocksProxy("127.0.0.1", 8080), false));
+        assertEquals(4, cache.size());
+
+        // unused factories expire
+        SSLSocketFactory socks = cache.get(new SocksProxy("127.0.0.1", 8080), false);
+        cache.evict(System.currentTimeMillis() + 61000);
+        assertEquals(0, cache.size());
+        assertNotSame(http, cache.get(new HttpProxy("127.0.0.1", 8080), false));
+        assertNotSame(socks, cache.get(new SocksProxy("127.0.0.1", 8080), false));
+    }
+
+}
@@ -7,8 +7,13 @@
  */
 package com.serphacker.serposcope.scraper.http.proxy;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.slf4j.Logger;
@@ -56,5 +61,212 @@ public class ProxyRotatorTest {
         }
         assertNull(rotator.poll());
     }
+
+    @Test
+    public void testAddKeepsHealth(){
+        ScrapProxy proxy = new HttpProxy("127.0.0.1", 0);
+        ProxyRotator rotator = new ProxyRotator(Arrays.asList(proxy));
+        ProxyHealth health = rotator.getHealth(proxy);
+        long sequence = rotator.useSequence.get();
+
+        assertSame(proxy, rotator.poll());
+        rotator.failure(proxy, 0, 0);
+        assertTrue(rotator.add(proxy));
+        // already registered and not leased
+        assertFalse(rotator.add(proxy));
+
+        assertSame(health, rotator.getHealth(proxy));
+        assertEquals(1, health.getFailures());
+        // only the lease used a sequence number
+        assertEquals(sequence + 1, rotator.useSequence.get());
+    }
     
+    static class ClockedRotator extends ProxyRotator {
+        long now = 1000l;
+
+        ClockedRotator(Collection<ScrapProxy> proxies) {
+            super(proxies);
+        }
+
+        @Override
+        protected long now() {
+            return now;
+        }
+    }
+
+    @Test
+    public void testBenchBackoff(){
+        ScrapProxy proxy = new HttpProxy("127.0.0.1", 0);
+        ClockedRotator rotator = new ClockedRotator(Arrays.asList(proxy));
+        rotator.setBenchMS(100);
+        rotator.setMaxBenchMS(300);
+
+        assertEquals(proxy, rotator.poll());
+        rotator.failure(proxy, 0, 0);
+        assertNull(rotator.rotate(proxy));
+        assertEquals(1100l, rotator.getHealth(proxy).getBenchedUntil());
+
+        rotator.now = 1100l;
+        assertEquals(proxy, rotator.poll());
+        rotator.failure(proxy, 0, 0);
+        assertEquals(1300l, rotator.getHealth(proxy).getBenchedUntil());
+        rotator.failure(proxy, 0, 0);
+        assertEquals(1400l, rotator.getHealth(proxy).getBenchedUntil());
+
+        rotator.success(proxy, 0, 0);
+        assertEquals(proxy, rotator.rotate(proxy));
+        assertEquals(0, rotator.getHealth(proxy).getConsecutiveFailures());
+    }
+
+    @Test
+    public void testDeadProxy(){
+        ScrapProxy proxy = new HttpProxy("127.0.0.1", 0);
+        ProxyRotator rotator = new ProxyRotator(Arrays.asList(proxy));
+        rotator.setMaxConsecutiveFailures(2);
+
+        rotator.failure(proxy, 0, 0);
+        assertFalse(rotator.isEmpty());
+        rotator.failure(proxy, 0, 0);
+        assertTrue(rotator.getHealth(proxy).isDead());
+        assertTrue(rotator.isEmpty());
+        assertTrue(rotator.list().isEmpty());
+        assertNull(rotator.poll());
+    }
+
+    @Test
+    public void testHealthiestFirst(){
+        List<ScrapProxy> proxies = Arrays.asList(
+            new HttpProxy("127.0.0.1", 0),
+            new HttpProxy("127.0.0.2", 0),
+            new HttpProxy("127.0.0.3", 0)
+        );
+        ProxyRotator rotator = new ProxyRotator(proxies);
+        rotator.setBenchMS(0);
+        rotator.setMaxConsecutiveFailures(0);
+        for (int i = 0; i < 10; i++) {
+            rotator.success(proxies.get(0), 500, 1);
+            rotator.success(proxies.get(1), 500, 0);
+            rotator.failure(proxies.get(2), 500, 0);
+        }
+
+        assertEquals(proxies.get(1), rotator.poll());
+        assertEquals(proxies.get(0), rotator.poll());
+        assertEquals(proxies.get(2), rotator.poll());
+        assertEquals(proxies.get(1), rotator.health().get(0).getProxy());
+    }
+
+    @Test
+    public void testLatencyPenalty(){
+        List<ScrapProxy> proxies = Arrays.asList(
+            new HttpProxy("127.0.0.1", 0),
+            new HttpProxy("127.0.0.2", 0)
+        );
+        ProxyRotator rotator = new ProxyRotator(proxies);
+        for (int i = 0; i < 10; i++) {
+            rotator.success(proxies.get(0), 20000, 0);
+            rotator.success(proxies.get(1), 200, 0);
+        }
+        assertEquals(proxies.get(1), rotator.poll());
+    }
+
+    @Test
+    public void testConcurrentLeases() throws Exception {
+        List<ScrapProxy> proxies = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            proxies.add(new HttpProxy("127.0.0." + i, 0));
+        }
+        ProxyRotator rotator = new ProxyRotator(proxies);
+        Set<ScrapProxy> leased = ConcurrentHashMap.newKeySet();
+        AtomicInteger errors = new AtomicInteger();
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                ScrapProxy proxy = null;
+                for (int j = 0; j < 1000; j++) {
+                    if(proxy != null){
+                        leased.remove(proxy);
+                    }
+                    proxy = rotator.rotate(proxy);
+                    if(proxy == null || !leased.add(proxy)){
+                        errors.incrementAndGet();
+                        proxy = null;
+                    }
+                }
+                if(proxy != null){
+                    leased.remove(proxy);
+                    rotator.add(proxy);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+        assertEquals(proxies.size(), rotator.remaining());
+    }
+
+    @Test
+    public void testMinReuse(){
+        ScrapProxy proxy1 = new HttpProxy("127.0.0.1", 0);
+        ScrapProxy proxy2 = new HttpProxy("127.0.0.2", 0);
+        ClockedRotator rotator = new ClockedRotator(Arrays.asList(proxy1, proxy2));
+        rotator.setMinReuseMS(500);
+
+        assertEquals(proxy1, rotator.poll());
+        rotator.success(proxy1, 0, 0);
+        assertEquals(proxy2, rotator.rotate(proxy1));
+        rotator.success(proxy2, 0, 0);
+        assertNull(rotator.rotate(proxy2));
+        assertEquals(500, rotator.getCoolDownMS(proxy1));
+
+        rotator.now += 500;
+        assertEquals(0, rotator.getCoolDownMS(proxy1));
+        assertEquals(proxy1, rotator.poll());
+    }
+
+    @Test
+    public void testTakeWaitsCoolDown() throws Exception {
+        ScrapProxy proxy = new HttpProxy("127.0.0.1", 0);
+        ProxyRotator rotator = new ProxyRotator(Arrays.asList(proxy));
+        rotator.setMinReuseMS(100);
+
+        assertEquals(proxy, rotator.poll());
+        rotator.success(proxy, 0, 0);
+        long start = System.currentTimeMillis();
+        assertEquals(proxy, rotator.take(proxy, 5000));
+        assertTrue(System.currentTimeMillis() - start >= 90);
+    }
+
+    @Test
+    public void testTakeWokenByRelease() throws Exception {
+        ScrapProxy proxy = new HttpProxy("127.0.0.1", 0);
+        ProxyRotator rotator = new ProxyRotator(Arrays.asList(proxy));
+        assertEquals(proxy, rotator.poll());
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+            }
+            rotator.add(proxy);
+        });
+        releaser.start();
+
+        long start = System.currentTimeMillis();
+        assertEquals(proxy, rotator.take(null, 10000));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        releaser.join();
+    }
+
+    @Test
+    public void testTakeTimeout() throws Exception {
+        ScrapProxy proxy = new HttpProxy("127.0.0.1", 0);
+        ProxyRotator rotator = new ProxyRotator(Arrays.asList(proxy));
+        assertEquals(proxy, rotator.poll());
+        assertNull(rotator.take(null, 50));
+    }
+
 }
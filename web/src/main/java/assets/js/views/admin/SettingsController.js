@@ -80,10 +80,25 @@ serposcope.adminSettingsController = function () {
         }
     };
     
+    var clickCheckRankSeries = function(){
+        if(confirm($(this).attr("data-warning"))){
+            $('<form>', {
+                'action': $(this).attr("data-action"),
+                'method': 'post',
+                'target': '_top'
+            }).append($('<input>', {
+                'name': '_xsrf',
+                'value': $('#_xsrf').attr("data-value"),
+                'type': 'hidden'
+            })).appendTo(document.body).submit();
+        }
+    };
+    
     var settings = function() {
         $('#btn-reset-settings').click(resetSettings);
         $('.btn-test-captcha').click(testCaptcha);
         $('.btn-prune-now').click(clickPruneNow);
+        $('.btn-check-rank-series').click(clickCheckRankSeries);
     };
     
     var oPublic = {
@@ -60,6 +60,7 @@ public class Routes implements ApplicationRoutes {
         router.POST().route("/admin/settings/reset").with(SettingsController.class, "reset");        
         router.GET().route("/admin/settings/test-captcha").with(SettingsController.class, "testCaptcha");
         router.POST().route("/admin/settings/prune").with(SettingsController.class, "prune");
+        router.POST().route("/admin/settings/check-rank-series").with(SettingsController.class, "checkRankSeries");
         
         router.GET().route("/admin/google").with(GoogleSettingsController.class, "settings");
         router.POST().route("/admin/google/update").with(GoogleSettingsController.class, "update");
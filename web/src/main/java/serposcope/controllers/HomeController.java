@@ -18,6 +18,7 @@ import com.serphacker.serposcope.models.base.Group.Module;
 import com.serphacker.serposcope.models.base.Run;
 import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.models.google.GoogleTargetSummary;
+import com.serphacker.serposcope.task.TaskManager;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -56,6 +57,9 @@ public class HomeController extends BaseController {
     @Inject
     DBSizeUtils dbSizeUtils;
     
+    @Inject
+    TaskManager taskManager;
+    
     public static class TargetHomeEntry {
 
         public TargetHomeEntry(String groupName, GoogleTarget target, GoogleTargetSummary summary, List<Integer> scoreHistory) {
@@ -152,7 +156,9 @@ public class HomeController extends BaseController {
         if(taskId != null){
             Run run = baseDB.run.find(taskId);
             if(run != null){
-                map.put("progress", run.getProgress());
+                // the run row is only updated periodically while the task is running
+                Integer liveProgress = taskManager.getGoogleTaskProgress(taskId);
+                map.put("progress", liveProgress != null ? liveProgress : run.getProgress());
                 map.put("status", run.getStatus());
             }
         }
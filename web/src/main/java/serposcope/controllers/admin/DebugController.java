@@ -107,7 +107,9 @@ public class DebugController extends BaseController {
         FlashScope flash = context.getFlashScope();
         
         googleDB.targetSummary.wipe();
+        googleDB.rankSeries.wipe();
         googleDB.rank.wipe();
+        googleDB.urlIndex.wipe();
         googleDB.serp.wipe();
         baseDB.run.wipe();
         
@@ -121,7 +123,9 @@ public class DebugController extends BaseController {
         
         
         googleDB.targetSummary.wipe();
+        googleDB.rankSeries.wipe();
         googleDB.rank.wipe();
+        googleDB.urlIndex.wipe();
         googleDB.serp.wipe();
         baseDB.run.wipe();
         
@@ -13,6 +13,7 @@ import com.google.inject.Singleton;
 import com.serphacker.serposcope.db.base.BaseDB;
 import static com.serphacker.serposcope.db.base.ConfigDB.APP_PRUNE_RUNS;
 import com.serphacker.serposcope.db.base.PruneDB;
+import com.serphacker.serposcope.db.google.GoogleDB;
 import com.serphacker.serposcope.models.base.Config;
 import com.serphacker.serposcope.scraper.captcha.solver.AntiCaptchaSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
@@ -20,6 +21,7 @@ import com.serphacker.serposcope.scraper.captcha.solver.DeathByCaptchaSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.DecaptcherSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.ImageTyperzSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.TwoCaptchaSolver;
+import com.serphacker.serposcope.task.TaskManager;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import ninja.Context;
@@ -59,6 +61,12 @@ public class SettingsController extends BaseController {
     @Inject
     PruneDB pruneDB;
     
+    @Inject
+    GoogleDB googleDB;
+    
+    @Inject
+    TaskManager taskManager;
+    
     @Inject
     DBSizeUtils dbSizeUtils;
     
@@ -91,6 +99,7 @@ public class SettingsController extends BaseController {
         @Param("anticaptchaApiKey") String anticaptchaApiKey,
         @Param("twoCaptchaKey") String twoCaptchaKey,
         @Param("imageTyperzKey") String imageTyperzKey,
+        @Param("captchaHedgePercentile") Integer captchaHedgePercentile,
         @Param("pruneRuns") Integer pruneRuns
     ){
         FlashScope flash = context.getFlashScope();
@@ -136,6 +145,10 @@ public class SettingsController extends BaseController {
             config.setImageTyperzKey(imageTyperzKey);
         }
         
+        if(captchaHedgePercentile != null && captchaHedgePercentile > 0 && captchaHedgePercentile < 100){
+            config.setCaptchaHedgePercentile(captchaHedgePercentile);
+        }
+        
         if(pruneRuns == null || pruneRuns == 0){
             config.setPruneRuns(0);
         } else {
@@ -189,6 +202,30 @@ public class SettingsController extends BaseController {
         return Results.redirect(router.getReverseRoute(SettingsController.class, "settings"));
     }
     
+    /**
+     * compares the rank series with GOOGLE_RANK and rebuilds them if they differ
+     */
+    @FilterWith(XSRFFilter.class)
+    public Result checkRankSeries(Context context){
+        FlashScope flash = context.getFlashScope();
+        
+        if(taskManager.isGoogleRunning() || taskManager.getRunningGoogleRescan() != null){
+            flash.error("admin.settings.rankSeriesTaskRunning");
+            return Results.redirect(router.getReverseRoute(SettingsController.class, "settings"));
+        }
+        
+        int inconsistent = googleDB.rankSeries.check();
+        if(inconsistent == 0){
+            flash.success("admin.settings.rankSeriesConsistent");
+        } else if(inconsistent < 0 || googleDB.rankSeries.rebuild() < 0){
+            flash.error("admin.settings.rankSeriesCheckFailed");
+        } else {
+            flash.success(msg.get("admin.settings.rankSeriesRebuilt", context, Optional.absent(), inconsistent).get());
+        }
+        
+        return Results.redirect(router.getReverseRoute(SettingsController.class, "settings"));
+    }
+    
     public Result testCaptcha(
         Context context,
         @Param("service") String captchaService,
@@ -32,6 +32,7 @@ import serposcope.controllers.BaseController;
 import serposcope.filters.AdminFilter;
 import serposcope.filters.XSRFFilter;
 import com.serphacker.serposcope.task.TaskManager;
+import com.serphacker.serposcope.task.google.GoogleRescanTask;
 import java.util.Arrays;
 import ninja.params.PathParam;
 import serposcope.controllers.HomeController;
@@ -82,6 +83,7 @@ public class TaskController extends BaseController {
             .render("previousPage", previousPage)
             .render("nextPage", nextPage)
             .render("running", running)
+            .render("rescan", taskManager.getRunningGoogleRescan())
             .render("done", done);
     }
 
@@ -173,8 +175,16 @@ public class TaskController extends BaseController {
 
         switch (run.getModule()) {
             case GOOGLE:
+                GoogleRescanTask rescan = taskManager.getRunningGoogleRescan();
+                if(rescan != null && rescan.getRun().getId() == run.getId()){
+                    // the rescan would write back the ranks of the deleted run
+                    flash.error("admin.task.errRunBeingRescanned");
+                    return Results.redirect(router.getReverseRoute(TaskController.class, "tasks"));
+                }
                 googleDB.targetSummary.deleteByRun(run.getId());
                 googleDB.rank.deleteByRunId(run.getId());
+                googleDB.rankSeries.deleteByRunId(run.getId());
+                googleDB.urlIndex.deleteByRunId(run.getId());
                 googleDB.serp.deleteByRun(run.getId());
                 baseDB.run.delete(run.getId());
                 flash.put("warning", "admin.task.googleRunDeleted");
@@ -203,15 +213,10 @@ public class TaskController extends BaseController {
 
         switch (run.getModule()) {
             case GOOGLE:
-                // delete google ranks
-                googleDB.targetSummary.deleteByRun(run.getId());
-                googleDB.rank.deleteByRunId(run.getId());
-                
-                List<Group> groups = baseDB.group.list();
-                for (Group group : groups) {
-                    List<GoogleTarget> targets = googleDB.target.list(Arrays.asList(group.getId()));
-                    List<GoogleSearch> searches = googleDB.search.listByGroup(Arrays.asList(group.getId()));
-                    googleDB.serpRescan.rescan(run.getId(), targets, searches, true);
+                // ranks and summaries of the run are rebuilt in background and replaced once the rescan is done
+                if(!taskManager.startGoogleRescan(run)){
+                    flash.error("admin.task.errRescanAlreadyRunning");
+                    return Results.redirect(router.getReverseRoute(TaskController.class, "tasks"));
                 }
                 
                 /*
@@ -286,7 +291,7 @@ public class TaskController extends BaseController {
                 }
                 */
                 
-                flash.success("admin.task.serpRescanDone");
+                flash.success("admin.task.serpRescanStarted");
                 break;
 
             default:
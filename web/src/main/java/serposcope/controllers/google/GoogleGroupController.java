@@ -469,6 +469,7 @@ public class GoogleGroupController extends GoogleController {
 
             googleDB.targetSummary.deleteByTarget(target.getId());
             googleDB.rank.deleteByTarget(group.getId(), target.getId());
+            googleDB.rankSeries.deleteByTarget(group.getId(), target.getId());
             googleDB.target.delete(target.getId());
         }
 
@@ -493,6 +494,7 @@ public class GoogleGroupController extends GoogleController {
         for (GoogleTarget target : targets) {
             googleDB.targetSummary.deleteByTarget(target.getId());
             googleDB.rank.deleteByTarget(group.getId(), target.getId());
+            googleDB.rankSeries.deleteByTarget(group.getId(), target.getId());
             googleDB.target.delete(target.getId());
         }
 
@@ -563,7 +565,9 @@ public class GoogleGroupController extends GoogleController {
         synchronized (searchLock) {
             googleDB.search.deleteFromGroup(search, group.getId());
             googleDB.rank.deleteBySearch(group.getId(), search.getId());
+            googleDB.rankSeries.deleteBySearch(group.getId(), search.getId());
             if (!googleDB.search.hasGroup(search)) {
+                googleDB.urlIndex.deleteBySearch(search.getId());
                 googleDB.serp.deleteBySearch(search.getId());
                 googleDB.search.delete(search);
             }
@@ -30,7 +30,10 @@ import com.serphacker.serposcope.models.google.GoogleSearch;
 import com.serphacker.serposcope.models.google.GoogleSerp;
 import com.serphacker.serposcope.models.google.GoogleSerpEntry;
 import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleSearchRanks;
+import com.serphacker.serposcope.models.google.GoogleUrlPostings;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -170,42 +173,28 @@ public class GoogleSearchController extends GoogleController {
         }
         builder.append(",\"ranks\":[");
         
-        final int[] maxRank = new int[1];
+        List<Run> runs = baseDB.run.listDone(firstRun.getId(), lastRun.getId());
+        GoogleSearchRanks ranks = googleDB.searchRanks.list(runs, group.getId(), searchId, targets);
         
-        googleDB.serp.stream(firstRun.getId(), lastRun.getId(), searchId, (GoogleSerp serp) -> {
-            
-            builder.append('[').append(serp.getRunDay().toEpochSecond(ZoneOffset.UTC)*1000l).append(',');
+        for (int row = 0; row < ranks.size(); row++) {
+            builder.append('[').append(ranks.getRunDay(row).toEpochSecond(ZoneOffset.UTC)*1000l).append(',');
             
             // calendar
-            builder.append("null").append(",");
-            
-            for (GoogleTarget target : targets) {
-                int position = UNRANKED;
-                for (int i = 0; i < serp.getEntries().size(); i++) {
-                    if(target.match(serp.getEntries().get(i).getUrl())){
-                        position = i + 1;
-                        break;
-                    }
-                }
-                
-                builder.append(position == UNRANKED ? "null" : position).append(',');
-                if(position != UNRANKED && position > maxRank[0]){
-                    maxRank[0] = position;
-                }
-            }
+            builder.append("null");
             
-            if(builder.charAt(builder.length()-1) == ','){
-                builder.setCharAt(builder.length()-1, ']');
+            for (int target = 0; target < ranks.getTargets(); target++) {
+                int position = ranks.getRank(row, target);
+                builder.append(',').append(position == UNRANKED ? "null" : position);
             }
-            builder.append(',');
-        });
+            builder.append("],");
+        }
         if(builder.charAt(builder.length()-1) == ','){
             builder.setCharAt(builder.length()-1, ']');
         } else {
             builder.append(']');
         }
         
-        builder.append(",\"maxRank\":").append(maxRank[0]);
+        builder.append(",\"maxRank\":").append(ranks.getMaxRank());
         builder.append("}");
         
         return builder.toString();
@@ -242,23 +231,19 @@ public class GoogleSearchController extends GoogleController {
             return Results.badRequest().text();
         }
         
+        // positions from the url index, the serps are only read for their run day
+        GoogleUrlPostings postings = googleDB.urlIndex.get(url, search.getId());
+        Map<Integer, LocalDateTime> runDays = googleDB.serp.listRunDays(firstRun.getId(), lastRun.getId(), search.getId());
+        
         StringBuilder builder = new StringBuilder("{");
-        googleDB.serp.stream(firstRun.getId(), lastRun.getId(), search.getId(), (GoogleSerp t) -> {
-            int position = 0;
-            for (int i = 0; i < t.getEntries().size(); i++) {
-                if(t.getEntries().get(i).getUrl().equals(url)){
-                    position = i + 1;
-                    break;
-                }
-            }
-            
+        for (Map.Entry<Integer, LocalDateTime> runDay : runDays.entrySet()) {
             builder
                 .append("\"")
-                .append(t.getRunDay().toEpochSecond(ZoneOffset.UTC)*1000l)
+                .append(runDay.getValue().toEpochSecond(ZoneOffset.UTC)*1000l)
                 .append("\":")
-                .append(position)
+                .append(postings == null ? 0 : postings.getPositionOfRun(runDay.getKey()))
                 .append(",");
-        });
+        }
         
         if(builder.charAt(builder.length()-1) == ','){
             builder.setCharAt(builder.length()-1, '}');
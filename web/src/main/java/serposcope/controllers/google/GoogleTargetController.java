@@ -29,16 +29,19 @@ import com.serphacker.serposcope.models.google.GoogleSearch;
 import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.scraper.google.GoogleDevice;
 import static com.serphacker.serposcope.scraper.google.GoogleDevice.SMARTPHONE;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -399,36 +402,12 @@ public class GoogleTargetController extends GoogleController {
         LocalDate endDate
     ) {
         String display = "chart";
-        StringBuilder builder = new StringBuilder("{\"searches\": [");
-        for (GoogleSearch search : searches) {
-            builder.append("\"").append(StringEscapeUtils.escapeJson(search.getKeyword())).append("\",");
-        }
-        builder.setCharAt(builder.length() - 1, ']');
-        builder.append(",\"ranks\": [");
-
-        int maxRank = 0;
-        for (Run run : runs) {
-            builder.append("\n\t[").append(run.getStarted().toEpochSecond(ZoneOffset.UTC) * 1000l).append(",");
-            // calendar
-            builder.append("null,");
-
-            Map<Integer, GoogleRank> ranks = googleDB.rank.list(run.getId(), group.getId(), target.getId())
-                .stream().collect(Collectors.toMap((g) -> g.googleSearchId, Function.identity()));
-            
-            for (GoogleSearch search : searches) {
-                GoogleRank fullRank = ranks.get(search.getId());
-//                GoogleRank fullRank = googleDB.rank.getFull(run.getId(), group.getId(), target.getId(), search.getId());
-                if (fullRank != null && fullRank.rank != GoogleRank.UNRANKED && fullRank.rank > maxRank) {
-                    maxRank = fullRank.rank;
-                }
-                builder.append(fullRank == null || fullRank.rank == GoogleRank.UNRANKED ? "null" : fullRank.rank).append(',');
-            }
-
-            builder.setCharAt(builder.length() - 1, ']');
-            builder.append(",");
+        ChartJson chart = new ChartJson(runs, searches);
+        if (!runs.isEmpty()) {
+            googleDB.rankSeries.stream(runs.get(0).getId(), runs.get(runs.size() - 1).getId(),
+                group.getId(), target.getId(), chart::accept);
         }
-        builder.setCharAt(builder.length() - 1, ']');
-        builder.append(",\n\"maxRank\": ").append(maxRank).append("}");
+        String ranksJson = chart.finish();
 
         List<Event> events = baseDB.event.list(group, startDate, endDate);
         String jsonEvents = null;
@@ -452,10 +431,96 @@ public class GoogleTargetController extends GoogleController {
             .render("minDate", minDay)
             .render("maxDate", maxDay)
             .render("display", display)
-            .render("ranksJson", builder.toString())
+            .render("ranksJson", ranksJson)
             .render("eventsJson", jsonEvents);
     }
 
+    /**
+     * builds the json of the rank chart in a single pass over the ranks of a target ordered by run id,
+     * only the row of the current run is kept in memory
+     */
+    protected static class ChartJson {
+        
+        final List<Run> runs;
+        final Map<Integer, Integer> columns = new HashMap<>();
+        final short[] row;
+        final StringBuilder builder;
+        
+        int runIndex = 0;
+        int maxRank = 0;
+
+        /**
+         * @param runs ordered by id
+         */
+        public ChartJson(List<Run> runs, List<GoogleSearch> searches) {
+            this.runs = runs;
+            this.row = new short[searches.size()];
+            Arrays.fill(row, (short) UNRANKED);
+            
+            // timestamp and a few ranks per run
+            builder = new StringBuilder(64 + searches.size() * 32 + runs.size() * (24 + searches.size() * 4));
+            builder.append("{\"searches\": [");
+            for (int i = 0; i < searches.size(); i++) {
+                GoogleSearch search = searches.get(i);
+                columns.put(search.getId(), i);
+                if (i != 0) {
+                    builder.append(',');
+                }
+                builder.append("\"").append(StringEscapeUtils.escapeJson(search.getKeyword())).append("\"");
+            }
+            builder.append("],\"ranks\": [");
+        }
+
+        /**
+         * ranks of unknown runs or searches are ignored
+         */
+        public void accept(GoogleRank rank) {
+            while (runIndex < runs.size() && runs.get(runIndex).getId() < rank.runId) {
+                writeRow();
+            }
+            if (runIndex >= runs.size() || runs.get(runIndex).getId() != rank.runId) {
+                return;
+            }
+            
+            Integer column = columns.get(rank.googleSearchId);
+            if (column == null || rank.rank == UNRANKED) {
+                return;
+            }
+            row[column] = rank.rank;
+            if (rank.rank > maxRank) {
+                maxRank = rank.rank;
+            }
+        }
+
+        public String finish() {
+            while (runIndex < runs.size()) {
+                writeRow();
+            }
+            builder.append("],\n\"maxRank\": ").append(maxRank).append("}");
+            return builder.toString();
+        }
+        
+        protected void writeRow() {
+            if (runIndex != 0) {
+                builder.append(',');
+            }
+            builder.append("\n\t[").append(runs.get(runIndex++).getStarted().toEpochSecond(ZoneOffset.UTC) * 1000l);
+            // calendar
+            builder.append(",null");
+            for (int i = 0; i < row.length; i++) {
+                builder.append(',');
+                if (row[i] == UNRANKED) {
+                    builder.append("null");
+                } else {
+                    builder.append(row[i]);
+                    row[i] = (short) UNRANKED;
+                }
+            }
+            builder.append(']');
+        }
+        
+    }
+
     protected Result renderExport(
         Group group,
         GoogleTarget target,
@@ -471,49 +536,146 @@ public class GoogleTargetController extends GoogleController {
             .text()
             .addHeader("Content-Disposition", "attachment; filename=\"export.csv\"")
             .render((Context context, Result result) -> {
+                String acceptEncoding = context.getHeader("Accept-Encoding");
+                boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+                if (gzip) {
+                    result.addHeader("Content-Encoding", "gzip");
+                }
                 ResponseStreams stream = context.finalizeHeaders(result);
-                try (Writer writer = stream.getWriter()) {
-                    writer.append("date,rank,url,target,keyword,device,country,datacenter,local,custom\n");
-                    for (Run run : runs) {
-                        String day = run.getDay().toString();
-                        for (GoogleSearch search : searches) {
-                            GoogleRank rank = googleDB.rank.getFull(run.getId(), group.getId(), target.getId(), search.getId());
-                            writer.append(day).append(",");
-                            if (rank != null) {
-                                writer.append(Integer.toString(rank.rank)).append(",");
-                                writer.append(rank.url).append(",");
-                            } else {
-                                writer.append(",").append(",");
-                            }
-                            writer.append(StringEscapeUtils.escapeCsv(target.getName())).append(",");
-                            writer.append(StringEscapeUtils.escapeCsv(search.getKeyword())).append(",");
-                            writer.append(search.getDevice() == GoogleDevice.DESKTOP ? "D" : "M").append(",");
-                            writer.append(search.getCountry().name()).append(",");
-                            writer.append(
-                                search.getDatacenter() != null
-                                    ? StringEscapeUtils.escapeCsv(search.getDatacenter())
-                                    : ""
-                            ).append(",");
-                            writer.append(
-                                search.getLocal() != null
-                                    ? StringEscapeUtils.escapeCsv(search.getLocal())
-                                    : ""
-                            ).append(",");
-                            writer.append(
-                                search.getCustomParameters() != null
-                                    ? StringEscapeUtils.escapeCsv(search.getCustomParameters())
-                                    : ""
-                            );
-                            writer.append("\n");
+                
+                OutputStream os = null;
+                try {
+                    os = stream.getOutputStream();
+                    if (gzip) {
+                        os = new GZIPOutputStream(os);
+                    }
+                    try (Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8))) {
+                        CsvExport export = new CsvExport(writer, target, runs, searches);
+                        export.writeHeader();
+                        if (!runs.isEmpty()) {
+                            googleDB.rank.stream(runs.get(0).getId(), runs.get(runs.size() - 1).getId(),
+                                group.getId(), target.getId(), (GoogleRank rank) -> {
+                                    try {
+                                        export.accept(rank);
+                                    } catch (IOException ex) {
+                                        throw new UncheckedIOException(ex);
+                                    }
+                                });
                         }
+                        export.finish();
                     }
-
-                } catch (IOException ex) {
+                } catch (IOException | UncheckedIOException ex) {
                     LOG.warn("error while exporting csv");
                 }
             });
 
     }
+    
+    /**
+     * writes the csv rows of a target, one per run and search, from its ranks ordered by run id then search id.
+     * Runs and searches without rank get a row with an empty rank and url.
+     */
+    protected static class CsvExport {
+        
+        final Writer writer;
+        final List<Run> runs;
+        final int[] searchIds;
+        final String[] searchColumns;
+        
+        int runIndex = 0;
+        int searchIndex = 0;
+        String day;
+
+        /**
+         * @param runs ordered by id
+         */
+        public CsvExport(Writer writer, GoogleTarget target, List<Run> runs, List<GoogleSearch> searches) {
+            this.writer = writer;
+            this.runs = runs;
+            
+            List<GoogleSearch> sorted = new ArrayList<>(searches);
+            sorted.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+            
+            searchIds = new int[sorted.size()];
+            searchColumns = new String[sorted.size()];
+            String targetName = StringEscapeUtils.escapeCsv(target.getName());
+            for (int i = 0; i < sorted.size(); i++) {
+                GoogleSearch search = sorted.get(i);
+                searchIds[i] = search.getId();
+                searchColumns[i] = targetName + ","
+                    + StringEscapeUtils.escapeCsv(search.getKeyword()) + ","
+                    + (search.getDevice() == GoogleDevice.DESKTOP ? "D" : "M") + ","
+                    + search.getCountry().name() + ","
+                    + (search.getDatacenter() != null ? StringEscapeUtils.escapeCsv(search.getDatacenter()) : "") + ","
+                    + (search.getLocal() != null ? StringEscapeUtils.escapeCsv(search.getLocal()) : "") + ","
+                    + (search.getCustomParameters() != null ? StringEscapeUtils.escapeCsv(search.getCustomParameters()) : "")
+                    + "\n";
+            }
+            
+            if (!runs.isEmpty()) {
+                day = runs.get(0).getDay().toString();
+            }
+        }
+        
+        public void writeHeader() throws IOException {
+            writer.append("date,rank,url,target,keyword,device,country,datacenter,local,custom\n");
+        }
+
+        /**
+         * writes the rows up to this rank, ranks of unknown runs or searches are ignored
+         */
+        public void accept(GoogleRank rank) throws IOException {
+            while (runIndex < runs.size()) {
+                int runId = runs.get(runIndex).getId();
+                if (rank.runId < runId) {
+                    return;
+                }
+                if (rank.runId > runId) {
+                    nextRun();
+                    continue;
+                }
+                
+                while (searchIndex < searchIds.length && searchIds[searchIndex] < rank.googleSearchId) {
+                    writeRow(null);
+                }
+                if (searchIndex < searchIds.length && searchIds[searchIndex] == rank.googleSearchId) {
+                    writeRow(rank);
+                }
+                return;
+            }
+        }
+
+        /**
+         * writes the rows left after the last rank
+         */
+        public void finish() throws IOException {
+            while (runIndex < runs.size()) {
+                nextRun();
+            }
+        }
+        
+        protected void nextRun() throws IOException {
+            while (searchIndex < searchIds.length) {
+                writeRow(null);
+            }
+            searchIndex = 0;
+            if (++runIndex < runs.size()) {
+                day = runs.get(runIndex).getDay().toString();
+            }
+        }
+        
+        protected void writeRow(GoogleRank rank) throws IOException {
+            writer.append(day).append(",");
+            if (rank != null) {
+                writer.append(Integer.toString(rank.rank)).append(",");
+                writer.append(rank.url).append(",");
+            } else {
+                writer.append(",").append(",");
+            }
+            writer.append(searchColumns[searchIndex++]);
+        }
+        
+    }
 
     public Result jsonRanks(
         Context context,
@@ -0,0 +1,120 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ * 
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package serposcope.controllers.google;
+
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import serposcope.controllers.google.GoogleTargetController.ChartJson;
+import serposcope.controllers.google.GoogleTargetController.CsvExport;
+
+public class GoogleTargetControllerTest {
+
+    @Test
+    public void testCsvExport() throws Exception {
+        GoogleTarget target = new GoogleTarget(1, 1, "my, target", GoogleTarget.PatternType.DOMAIN, "www.site.com");
+        
+        GoogleSearch search2 = new GoogleSearch("kw2");
+        search2.setId(2);
+        GoogleSearch search1 = new GoogleSearch("kw1");
+        search1.setId(1);
+        search1.setLocal("paris");
+        
+        Run run1 = run(10, LocalDateTime.of(2016, 1, 1, 0, 0));
+        Run run3 = run(30, LocalDateTime.of(2016, 1, 3, 0, 0));
+        
+        StringWriter writer = new StringWriter();
+        CsvExport export = new CsvExport(writer, target, Arrays.asList(run1, run3), Arrays.asList(search2, search1));
+        export.writeHeader();
+        export.accept(new GoogleRank(10, 1, 1, 2, 4, 5, "url-1"));
+        // run not in the export
+        export.accept(new GoogleRank(20, 1, 1, 1, 1, 1, "url-2"));
+        export.accept(new GoogleRank(30, 1, 1, 1, 7, 4, "url-3"));
+        // search not in the export
+        export.accept(new GoogleRank(30, 1, 1, 3, 1, 1, "url-4"));
+        export.finish();
+        
+        assertEquals(
+            "date,rank,url,target,keyword,device,country,datacenter,local,custom\n"
+            + "2016-01-01,,,\"my, target\",kw1,D,__,,paris,\n"
+            + "2016-01-01,4,url-1,\"my, target\",kw2,D,__,,,\n"
+            + "2016-01-03,7,url-3,\"my, target\",kw1,D,__,,paris,\n"
+            + "2016-01-03,,,\"my, target\",kw2,D,__,,,\n",
+            writer.toString()
+        );
+    }
+    
+    @Test
+    public void testCsvExportNoRank() throws Exception {
+        GoogleTarget target = new GoogleTarget(1, 1, "target", GoogleTarget.PatternType.DOMAIN, "www.site.com");
+        GoogleSearch search = new GoogleSearch("kw");
+        search.setId(1);
+        
+        StringWriter writer = new StringWriter();
+        CsvExport export = new CsvExport(writer, target, 
+            Arrays.asList(run(1, LocalDateTime.of(2016, 1, 1, 0, 0)), run(2, LocalDateTime.of(2016, 1, 2, 0, 0))),
+            Arrays.asList(search));
+        export.finish();
+        assertEquals("2016-01-01,,,target,kw,D,__,,,\n2016-01-02,,,target,kw,D,__,,,\n", writer.toString());
+        
+        writer = new StringWriter();
+        new CsvExport(writer, target, Collections.emptyList(), Arrays.asList(search)).finish();
+        assertEquals("", writer.toString());
+    }
+    
+    @Test
+    public void testChartJson() throws Exception {
+        GoogleSearch search1 = new GoogleSearch("kw\"1");
+        search1.setId(1);
+        GoogleSearch search2 = new GoogleSearch("kw2");
+        search2.setId(2);
+        
+        ChartJson chart = new ChartJson(
+            Arrays.asList(run(10, LocalDateTime.of(2016, 1, 1, 0, 0)), run(30, LocalDateTime.of(2016, 1, 3, 0, 0))),
+            Arrays.asList(search2, search1));
+        chart.accept(new GoogleRank(10, 1, 1, 1, 4, 5, "url-1"));
+        chart.accept(new GoogleRank(10, 1, 1, 2, GoogleRank.UNRANKED, 5, null));
+        // run not in the chart
+        chart.accept(new GoogleRank(20, 1, 1, 1, 80, 1, "url-2"));
+        chart.accept(new GoogleRank(30, 1, 1, 2, 12, 4, "url-3"));
+        // search not in the chart
+        chart.accept(new GoogleRank(30, 1, 1, 3, 90, 1, "url-4"));
+        
+        assertEquals(
+            "{\"searches\": [\"kw2\",\"kw\\\"1\"],\"ranks\": ["
+            + "\n\t[1451606400000,null,null,4],"
+            + "\n\t[1451779200000,null,12,null]],"
+            + "\n\"maxRank\": 12}",
+            chart.finish()
+        );
+    }
+    
+    @Test
+    public void testChartJsonNoRank() throws Exception {
+        GoogleSearch search = new GoogleSearch("kw");
+        search.setId(1);
+        
+        ChartJson chart = new ChartJson(Arrays.asList(run(1, LocalDateTime.of(2016, 1, 1, 0, 0))), Arrays.asList(search));
+        assertEquals("{\"searches\": [\"kw\"],\"ranks\": [\n\t[1451606400000,null,null]],\n\"maxRank\": 0}", chart.finish());
+    }
+    
+    protected Run run(int id, LocalDateTime started) {
+        Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, started);
+        run.setId(id);
+        return run;
+    }
+
+}